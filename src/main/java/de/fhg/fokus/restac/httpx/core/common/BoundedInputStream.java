@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * View of a message body whose length is given by the <code>Content-Length</code> header. At most
+ * this number of bytes is read from the underlying stream. Closing the view skips the rest of the
+ * body but leaves the underlying stream open, so the next message can be read from the same 
+ * connection.
+ * 
+ * @author Murat Ates
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+	/* number of bytes left */
+	private long remaining;
+	
+	private long mark = -1;
+	
+	/**
+	 * Constructs a new <code>BoundedInputStream</code> with the specified attributes.
+	 * 
+	 * @param in		the underlying stream
+	 * @param length	the number of bytes which may be read
+	 */
+	public BoundedInputStream(InputStream in, long length) {
+		super(in);
+		this.remaining = length;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		int b = in.read();
+		if (b == -1) {
+			throw new IOException("Premature end of body, " + remaining + " byte(s) missing");
+		}
+		remaining--;
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		int readBytes = in.read(b, off, (int)Math.min(len, remaining));
+		if (readBytes == -1) {
+			throw new IOException("Premature end of body, " + remaining + " byte(s) missing");
+		}
+		remaining -= readBytes;
+		return readBytes;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(Math.min(n, remaining));
+		remaining -= skipped;
+		return skipped;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), remaining);
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+		in.mark(readlimit);
+		mark = remaining;
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		if (mark == -1) {
+			throw new IOException("Mark not set");
+		}
+		in.reset();
+		remaining = mark;
+	}
+	
+	/**
+	 * Returns the number of bytes of the body which have not been read yet.
+	 * 
+	 * @return the number of remaining bytes
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+	
+	/**
+	 * Skips the rest of the body, the underlying stream stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+		byte[] buffer = null;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (buffer == null) {
+					buffer = new byte[(int)Math.min(remaining, 4096)];
+				}
+				if (read(buffer, 0, buffer.length) == -1) {
+					break;
+				}
+			} else {
+				remaining -= skipped;
+			}
+		}
+	}
+}
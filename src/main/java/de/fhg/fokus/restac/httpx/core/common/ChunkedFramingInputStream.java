@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * View of a message body with chunked transfer encoding. The bytes are passed through still 
+ * encoded, but the view follows the chunk headers with a <code>HTTPXChunkParser</code> and 
+ * reports the end of the stream after the last chunk and the trailer. Closing the view skips 
+ * the rest of the body but leaves the underlying stream open, so the next message can be read 
+ * from the same connection. A body whose chunks add up to more than the maximum length fails 
+ * as soon as the header of the offending chunk has been read.
+ * 
+ * @author Murat Ates
+ * @see HTTPXChunkParser
+ */
+public class ChunkedFramingInputStream extends FilterInputStream {
+
+	private final HTTPXChunkParser parser = new HTTPXChunkParser();
+	
+	private final long maxLength;
+	
+	/**
+	 * Constructs a new <code>ChunkedFramingInputStream</code> on the specified stream.
+	 * 
+	 * @param in	the underlying stream, positioned at the first chunk
+	 */
+	public ChunkedFramingInputStream(InputStream in) {
+		this(in, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructs a new <code>ChunkedFramingInputStream</code> on the specified stream which 
+	 * accepts at most the specified length of chunk-data.
+	 * 
+	 * @param in			the underlying stream, positioned at the first chunk
+	 * @param maxLength		the maximum sum of the chunk sizes
+	 */
+	public ChunkedFramingInputStream(InputStream in, long maxLength) {
+		super(in);
+		this.maxLength = maxLength;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (parser.isComplete()) {
+			return -1;
+		}
+		int b = in.read();
+		if (b == -1) {
+			throw new IOException(parser.isData() ? "Premature end of chunk" : "Premature end of chunked body");
+		}
+		if (parser.isData()) {
+			parser.consumed(1);
+		} else {
+			update(b);
+		}
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (parser.isComplete()) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (parser.isData()) {
+			int readBytes = in.read(b, off, (int)Math.min(len, parser.getRemaining()));
+			if (readBytes == -1) {
+				throw new IOException("Premature end of chunk");
+			}
+			parser.consumed(readBytes);
+			return readBytes;
+		}
+		
+		//chunk headers are passed byte by byte
+		int count = 0;
+		while (count < len && !parser.isComplete() && !parser.isData()) {
+			int c = read();
+			b[off + count++] = (byte)c;
+		}
+		return count;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		byte[] buffer = new byte[(int)Math.min(Math.max(n, 1), 4096)];
+		while (skipped < n) {
+			int readBytes = read(buffer, 0, (int)Math.min(buffer.length, n - skipped));
+			if (readBytes == -1) {
+				break;
+			}
+			skipped += readBytes;
+		}
+		return skipped;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), parser.getRemaining());
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the last chunk and the trailer have been read.
+	 * 
+	 * @return <code>true</code> if the body has been read completely
+	 */
+	public boolean isComplete() {
+		return parser.isComplete();
+	}
+	
+	/**
+	 * Skips the rest of the body, the underlying stream stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+		byte[] buffer = new byte[1024];
+		while (read(buffer, 0, buffer.length) != -1) {
+			//skip
+		}
+	}
+	
+	/* Feeds one byte outside of chunk-data into the parser */
+	private void update(int b) throws IOException {
+		try {
+			parser.update(b);
+		} catch (HTTPXProtocolViolationException e) {
+			throw new IOException(e.getMessage());
+		}
+		if (parser.getLength() > maxLength) {
+			throw new IOException("Chunked body exceeds " + maxLength + " bytes");
+		}
+	}
+}
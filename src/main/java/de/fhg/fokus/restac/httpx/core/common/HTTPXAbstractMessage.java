@@ -87,6 +87,24 @@ public abstract class HTTPXAbstractMessage {
 		return headers.get(name);
 	}
 	
+	/**
+	 * Returns the value of a header field, the name is compared ignoring case.
+	 * 
+	 * @param name	the name of the header field.
+	 * @return		the value of the header field.
+	 */
+	public String getHeaderIgnoreCase(String name){
+		String value = headers.get(name);
+		if (value == null) {
+			for (Map.Entry<String, String> elem : headers.entrySet()) {
+				if (elem.getKey().equalsIgnoreCase(name)) {
+					return elem.getValue();
+				}
+			}
+		}
+		return value;
+	}
+	
 	/**
 	 * Returns the protocol of the HTTP message, e.g. <code>HTTP / HTTPU / HTTPMU</code>.
 	 * 
@@ -32,7 +32,7 @@ import org.apache.log4j.Logger;
  * @author Murat Ates
  *
  */
-public class HTTPXActionMessageFilterImpl implements HTTPXActionMessageFilter {
+public class HTTPXActionMessageFilterImpl implements HTTPXAttributeActionMessageFilter {
 private final static Logger LOGGER = Logger.getLogger(HTTPXActionMessageFilter.class);
 	
 	private String protocol;
@@ -158,4 +158,31 @@ private final static Logger LOGGER = Logger.getLogger(HTTPXActionMessageFilter.c
 	public String getProtocol() {
 		return protocol;
 	}
+
+	/**
+	 * Returns the registered filter host.
+	 * 
+	 * @return	the host attribute
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Returns the registered filter port.
+	 * 
+	 * @return	the port attribute
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Returns the registered filter query.
+	 * 
+	 * @return	the query attribute
+	 */
+	public String getQuery() {
+		return query;
+	}
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+/**
+ * A <code>HTTPXActionMessageFilter</code> which is completely described by its attributes. 
+ * A message passes the filter if every attribute which is not <code>null</code> (or <code>0</code> 
+ * for the port) equals the corresponding part of the message ignoring case, the path must be equal 
+ * to the complete path of the message. Dispatchers use the attributes to index such filters 
+ * instead of asking every filter with <code>doesPass</code>.
+ * 
+ * @author Murat Ates
+ * 
+ * @see HTTPXActionMessageFilterImpl
+ */
+public interface HTTPXAttributeActionMessageFilter extends HTTPXActionMessageFilter {
+
+	/**
+	 * Returns the protocol of the filter.
+	 * 
+	 * @return	the protocol or <code>null</code> for any protocol
+	 */
+	public String getProtocol();
+	
+	/**
+	 * Returns the host of the filter.
+	 * 
+	 * @return	the host or <code>null</code> for any host
+	 */
+	public String getHost();
+	
+	/**
+	 * Returns the port of the filter.
+	 * 
+	 * @return	the port or <code>0</code> for any port
+	 */
+	public int getPort();
+	
+	/**
+	 * Returns the path of the filter.
+	 * 
+	 * @return	the path or <code>null</code> for any path
+	 */
+	public String getPath();
+	
+	/**
+	 * Returns the query of the filter.
+	 * 
+	 * @return	the query or <code>null</code> for any query
+	 */
+	public String getQuery();
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * Incremental parser for a body with chunked transfer encoding. Like the 
+ * <code>HTTPXHeadParser</code> it keeps its state between the calls, so it serves the blocking 
+ * streams as well as the non-blocking server: bytes outside of chunk-data are fed with 
+ * <code>update</code>, the caller reads the chunk-data itself and reports it with 
+ * <code>consumed</code>. <code>parse</code> passes over both for bodies which are 
+ * collected in a buffer.
+ * <pre>
+ * Chunked-Body = *chunk last-chunk trailer CRLF
+ * chunk        = chunk-size [ chunk-extension ] CRLF chunk-data CRLF
+ * last-chunk   = 1*("0") [ chunk-extension ] CRLF
+ * trailer      = *(entity-header CRLF)
+ * </pre>
+ * The length of chunk header and trailer lines and the number of trailer fields are limited 
+ * like the lines and fields of a head.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXChunkParser {
+
+	private final static int CHUNK_SIZE = 0;
+	private final static int CHUNK_DATA = 1;
+	private final static int CHUNK_END = 2;
+	private final static int TRAILER = 3;
+	private final static int DONE = 4;
+	
+	private final int maxLineLength;
+	
+	private final int maxTrailerCount;
+	
+	private int state = CHUNK_SIZE;
+	
+	/* bytes left in the current chunk-data */
+	private long remaining;
+	
+	/* sum of the chunk sizes announced so far */
+	private long length;
+	
+	/* the current chunk-size or trailer line */
+	private final StringBuilder line = new StringBuilder();
+	
+	private Map<String, String> trailers = null;
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkParser</code> with the default limits of the <code>HTTPXHeadParser</code>.
+	 */
+	public HTTPXChunkParser() {
+		this(HTTPXHeadParser.DEFAULT_MAX_LINE_LENGTH, HTTPXHeadParser.DEFAULT_MAX_HEADER_COUNT);
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkParser</code> with the specified limits.
+	 * 
+	 * @param maxLineLength		the maximum length of a chunk header or trailer line
+	 * @param maxTrailerCount	the maximum number of trailer fields
+	 */
+	public HTTPXChunkParser(int maxLineLength, int maxTrailerCount) {
+		this.maxLineLength = maxLineLength;
+		this.maxTrailerCount = maxTrailerCount;
+	}
+	
+	/**
+	 * Parses the specified bytes of the body, chunk-data included. Parsing stops after the 
+	 * trailer, the remaining bytes do not belong to the body and are not consumed.
+	 * 
+	 * @param bytes			the bytes
+	 * @param offset		the offset of the first byte
+	 * @param len			the number of bytes
+	 * @return				the number of bytes consumed
+	 * @throws HTTPXProtocolViolationException	if the body is malformed or exceeds a limit
+	 */
+	public int parse(byte[] bytes, int offset, int len) throws HTTPXProtocolViolationException{
+		int i = offset;
+		int end = offset + len;
+		
+		while (i < end && state != DONE) {
+			if (state == CHUNK_DATA) {
+				int n = (int)Math.min(remaining, end - i);
+				consumed(n);
+				i += n;
+			} else {
+				update(bytes[i++] & 0xff);
+			}
+		}
+		return i - offset;
+	}
+	
+	/**
+	 * Parses one byte outside of chunk-data, i.e. of a chunk header, the CRLF after chunk-data 
+	 * or the trailer.
+	 * 
+	 * @param b		the byte
+	 * @throws HTTPXProtocolViolationException	if the body is malformed or exceeds a limit
+	 */
+	public void update(int b) throws HTTPXProtocolViolationException{
+		if (b != 10) {
+			if (b != 13) {
+				if (line.length() >= maxLineLength) {
+					throw new HTTPXProtocolViolationException("Chunk header or trailer line exceeds " + maxLineLength + " characters.");
+				}
+				line.append((char)b);
+			}
+			return;
+		}
+		
+		//end of line
+		switch (state) {
+		case CHUNK_SIZE:
+			remaining = parseSize();
+			length += remaining;
+			state = remaining == 0 ? TRAILER : CHUNK_DATA;
+			break;
+		case CHUNK_END:
+			if (line.length() != 0) {
+				throw new HTTPXProtocolViolationException("Missing CRLF after chunk-data.");
+			}
+			state = CHUNK_SIZE;
+			break;
+		case TRAILER:
+			if (line.length() == 0) {
+				state = DONE;
+			} else {
+				addTrailer(line.toString());
+			}
+			break;
+		}
+		line.setLength(0);
+	}
+	
+	/**
+	 * Reports chunk-data read by the caller.
+	 * 
+	 * @param count		the number of bytes, at most <code>getRemaining()</code>
+	 */
+	public void consumed(long count){
+		remaining -= count;
+		if (remaining == 0 && state == CHUNK_DATA) {
+			state = CHUNK_END;
+		}
+	}
+	
+	/* Parses the chunk-size of the current line, chunk extensions are ignored */
+	private long parseSize() throws HTTPXProtocolViolationException{
+		int end = line.indexOf(";");
+		if (end == -1) {
+			end = line.length();
+		}
+		int begin = 0;
+		while (begin < end && line.charAt(begin) <= ' ') {
+			begin++;
+		}
+		while (end > begin && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (begin == end) {
+			throw new HTTPXProtocolViolationException("Malformed chunk size: " + line);
+		}
+		
+		long size = 0;
+		for (int i = begin; i < end; i++) {
+			int digit = Character.digit(line.charAt(i), 16);
+			if (digit == -1) {
+				throw new HTTPXProtocolViolationException("Malformed chunk size: " + line);
+			}
+			if (size > (Long.MAX_VALUE - length - digit) >> 4) {
+				throw new HTTPXProtocolViolationException("Chunk size too big: " + line);
+			}
+			size = (size << 4) + digit;
+		}
+		return size;
+	}
+	
+	private void addTrailer(String field) throws HTTPXProtocolViolationException{
+		if (trailers == null) {
+			trailers = new LinkedHashMap<String, String>();
+		}
+		int separator = field.indexOf(':');
+		if (separator <= 0) {
+			throw new HTTPXProtocolViolationException("Malformed trailer field: " + field);
+		}
+		if (trailers.size() == maxTrailerCount) {
+			throw new HTTPXProtocolViolationException("Trailer has more than " + maxTrailerCount + " fields.");
+		}
+		trailers.put(field.substring(0, separator).trim(), field.substring(separator + 1).trim());
+	}
+	
+	/**
+	 * Returns <code>true</code> while chunk-data is expected next.
+	 * 
+	 * @return	<code>true</code> if the next bytes are chunk-data
+	 */
+	public boolean isData(){
+		return state == CHUNK_DATA;
+	}
+	
+	/**
+	 * Returns the number of bytes left in the current chunk-data.
+	 * 
+	 * @return	the number of bytes, 0 outside of chunk-data
+	 */
+	public long getRemaining(){
+		return state == CHUNK_DATA ? remaining : 0;
+	}
+	
+	/**
+	 * Returns the sum of the chunk sizes announced so far, including the current chunk.
+	 * 
+	 * @return	the length of the decoded body so far
+	 */
+	public long getLength(){
+		return length;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the last chunk and the trailer have been parsed.
+	 * 
+	 * @return	<code>true</code> if the body is complete
+	 */
+	public boolean isComplete(){
+		return state == DONE;
+	}
+	
+	/**
+	 * Returns the header fields of the trailer. The map is empty until the body is complete.
+	 * 
+	 * @return	the trailer fields
+	 */
+	public Map<String, String> getTrailers(){
+		if (trailers == null || state != DONE) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(trailers);
+	}
+}
@@ -51,6 +51,7 @@ public interface HTTPXConstants {
 		
 	/* Charsets */
 	final static String ISO_8859_1		= "ISO-8859-1";
+	final static String UTF_8			= "UTF-8";
 	final static String DEFAULT_CHARSET			= ISO_8859_1;
 		
 	/* Delimiters */
@@ -73,6 +74,8 @@ public interface HTTPXConstants {
 	final static String ACCEPT			= "Accept";
 	final static String TRANSFER_ENCODING = "Transfer-Encoding";
 	final static String UNIQUE_ID 		= "Unique-ID";
+	final static String EXCHANGE_ID		= "Exchange-ID";
+	final static String CONNECTION		= "Connection";
 	
 	/*Media Range for Accept Header*/
 	final static String ALL_MEDIA_TYPES = "*/*";
@@ -84,6 +87,7 @@ public interface HTTPXConstants {
 	final static String TYPE_APP_URLENCODED		= "application/x-www-form-urlencoded";
 	final static String TYPE_APP_XML			= "application/xml";
 	final static String TYPE_APP_OCTET			= "application/octet-stream";
+	final static String TYPE_APP_JSON			= "application/json";
 	final static String TYPE_AUDIO_MPEG			= "audio/mpeg";
 	
 	final static String TYPE_ALL_SUPPORTED		= TYPE_TXT_PLAIN + ","
@@ -92,6 +96,10 @@ public interface HTTPXConstants {
 												+ TYPE_APP_URLENCODED + ","
 												+ TYPE_APP_XML;
 	
+	/* Connection tokens */
+	final static String CLOSE					= "close";
+	final static String KEEP_ALIVE				= "keep-alive";
+	
 	/* Transfer encoding type */
 	final static String CHUNKED					= "chunked";
 	final static int MAX_CHUNK_SIZE				= 2048;
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+import java.nio.ByteBuffer;
+
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * Incremental parser for the head of an HTTP message, i.e. the start line and the header fields 
+ * up to the empty line. The parser is fed with arbitrary slices of bytes and keeps its state between 
+ * the calls, so it can be driven from a blocking stream as well as from a non-blocking channel 
+ * where the head arrives in several parts. Only the bytes of the head are consumed, the caller 
+ * learns from the return value of <code>parse</code> where the body starts.
+ * <p>
+ * The size of a line, of the whole head and the number of header fields are limited. The defaults 
+ * can be set with the system properties <code>restac.http.maxLineLength</code>, 
+ * <code>restac.http.maxHeadSize</code> and <code>restac.http.maxHeaderCount</code>.
+ * </p>
+ * Bytes are decoded as ISO-8859-1. Lines may end with CRLF or LF, empty lines before the start 
+ * line are ignored and folded header lines are joined with the previous field.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXHeadParser {
+
+	public final static int DEFAULT_MAX_LINE_LENGTH = Integer.getInteger("restac.http.maxLineLength", 8192).intValue();
+	
+	public final static int DEFAULT_MAX_HEAD_SIZE = Integer.getInteger("restac.http.maxHeadSize", 65536).intValue();
+	
+	public final static int DEFAULT_MAX_HEADER_COUNT = Integer.getInteger("restac.http.maxHeaderCount", 100).intValue();
+	
+	private final static int START_LINE = 0;
+	
+	private final static int HEADER_LINE = 1;
+	
+	private final static int DONE = 2;
+	
+	private final int maxLineLength;
+	
+	private final int maxHeadSize;
+	
+	private final int maxHeaderCount;
+	
+	private int state = START_LINE;
+	
+	/* the current line without the line terminator */
+	private char[] line = new char[256];
+	
+	private int length;
+	
+	/* number of bytes of the head consumed so far */
+	private int headSize;
+	
+	private String startLine;
+	
+	private String[] names = new String[16];
+	
+	private String[] values = new String[16];
+	
+	private int headerCount;
+	
+	/* scratch buffer for direct byte buffers */
+	private byte[] scratch;
+	
+	/**
+	 * Constructs a new <code>HTTPXHeadParser</code> with the default limits.
+	 */
+	public HTTPXHeadParser() {
+		this(DEFAULT_MAX_LINE_LENGTH, DEFAULT_MAX_HEAD_SIZE, DEFAULT_MAX_HEADER_COUNT);
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXHeadParser</code> with the specified limits.
+	 * 
+	 * @param maxLineLength		the maximum length of the start line and of a header line
+	 * @param maxHeadSize		the maximum size of the whole head in bytes
+	 * @param maxHeaderCount	the maximum number of header fields
+	 */
+	public HTTPXHeadParser(int maxLineLength, int maxHeadSize, int maxHeaderCount) {
+		this.maxLineLength = maxLineLength;
+		this.maxHeadSize = maxHeadSize;
+		this.maxHeaderCount = maxHeaderCount;
+	}
+	
+	/**
+	 * Parses the specified bytes. Parsing stops at the end of the head, the remaining bytes 
+	 * belong to the body and are not consumed.
+	 * 
+	 * @param bytes			the bytes
+	 * @param offset		the offset of the first byte
+	 * @param len			the number of bytes
+	 * @return				the number of bytes consumed
+	 * @throws HTTPXProtocolViolationException	if the head is malformed or exceeds a limit
+	 */
+	public int parse(byte[] bytes, int offset, int len) throws HTTPXProtocolViolationException{
+		int i = offset;
+		int end = offset + len;
+		
+		while (i < end && state != DONE) {
+			int c = bytes[i++] & 0xff;
+			if (++headSize > maxHeadSize) {
+				throw new HTTPXProtocolViolationException("Message head exceeds " + maxHeadSize + " bytes.");
+			}
+			
+			if (c == 10) {
+				completeLine();
+			} else if (c != 13) {
+				if (length == line.length) {
+					if (length >= maxLineLength) {
+						throw new HTTPXProtocolViolationException("Line of message head exceeds " + maxLineLength + " characters.");
+					}
+					char[] tmp = new char[Math.min(length * 2, maxLineLength)];
+					System.arraycopy(line, 0, tmp, 0, length);
+					line = tmp;
+				}
+				line[length++] = (char)c;
+			}
+		}
+		return i - offset;
+	}
+	
+	/**
+	 * Parses the remaining bytes of the specified buffer. The position of the buffer is moved 
+	 * behind the consumed bytes, so it points to the first byte of the body once the head is complete.
+	 * 
+	 * @param buffer		the buffer
+	 * @return				<code>true</code> if the head is complete
+	 * @throws HTTPXProtocolViolationException	if the head is malformed or exceeds a limit
+	 */
+	public boolean parse(ByteBuffer buffer) throws HTTPXProtocolViolationException{
+		if (buffer.hasArray()) {
+			int consumed = parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.position() + consumed);
+		} else {
+			if (scratch == null) {
+				scratch = new byte[512];
+			}
+			while (state != DONE && buffer.hasRemaining()) {
+				int position = buffer.position();
+				int len = Math.min(scratch.length, buffer.remaining());
+				buffer.get(scratch, 0, len);
+				buffer.position(position + parse(scratch, 0, len));
+			}
+		}
+		return state == DONE;
+	}
+	
+	/**
+	 * Signals the end of the input. An unterminated last line is taken as it is and the head is 
+	 * complete if a start line was read.
+	 * 
+	 * @return	<code>false</code> if no start line was read at all
+	 * @throws HTTPXProtocolViolationException	if the last line is malformed
+	 */
+	public boolean finish() throws HTTPXProtocolViolationException{
+		if (state != DONE) {
+			if (length > 0) {
+				completeLine();
+			}
+			if (startLine == null) {
+				return false;
+			}
+			state = DONE;
+		}
+		return true;
+	}
+	
+	private void completeLine() throws HTTPXProtocolViolationException{
+		if (state == START_LINE) {
+			//ignore empty lines before the start line
+			if (length > 0) {
+				startLine = new String(line, 0, length);
+				state = HEADER_LINE;
+			}
+		} else if (length == 0) {
+			state = DONE;
+		} else if (line[0] == ' ' || line[0] == '\t') {
+			//continuation of the previous field
+			if (headerCount == 0) {
+				throw new HTTPXProtocolViolationException("Message head starts with a continuation line.");
+			}
+			String value = trim(0, length);
+			if (value.length() > 0) {
+				values[headerCount - 1] = values[headerCount - 1].length() == 0 ? value : values[headerCount - 1] + ' ' + value;
+			}
+		} else {
+			int separator = -1;
+			for (int i = 0; i < length; i++) {
+				if (line[i] == ':') {
+					separator = i;
+					break;
+				}
+			}
+			if (separator <= 0) {
+				throw new HTTPXProtocolViolationException("Malformed header line: " + new String(line, 0, length));
+			}
+			if (headerCount == maxHeaderCount) {
+				throw new HTTPXProtocolViolationException("Message head has more than " + maxHeaderCount + " header fields.");
+			}
+			if (headerCount == names.length) {
+				String[] tmp = new String[headerCount * 2];
+				System.arraycopy(names, 0, tmp, 0, headerCount);
+				names = tmp;
+				tmp = new String[headerCount * 2];
+				System.arraycopy(values, 0, tmp, 0, headerCount);
+				values = tmp;
+			}
+			names[headerCount] = trim(0, separator);
+			values[headerCount] = trim(separator + 1, length);
+			headerCount++;
+		}
+		length = 0;
+	}
+	
+	/* Returns the characters of the current line between begin and end without surrounding white space */
+	private String trim(int begin, int end){
+		while (begin < end && line[begin] <= ' ') {
+			begin++;
+		}
+		while (end > begin && line[end - 1] <= ' ') {
+			end--;
+		}
+		return new String(line, begin, end - begin);
+	}
+	
+	/**
+	 * Resets the parser so it can be used for the next message.
+	 */
+	public void reset(){
+		state = START_LINE;
+		length = 0;
+		headSize = 0;
+		startLine = null;
+		for (int i = 0; i < headerCount; i++) {
+			names[i] = null;
+			values[i] = null;
+		}
+		headerCount = 0;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the empty line at the end of the head has been parsed.
+	 * 
+	 * @return	<code>true</code> if the head is complete
+	 */
+	public boolean isComplete(){
+		return state == DONE;
+	}
+	
+	/**
+	 * Returns the number of bytes of the head consumed so far.
+	 * 
+	 * @return	the size of the head
+	 */
+	public int getHeadSize(){
+		return headSize;
+	}
+	
+	/**
+	 * Returns the request line or status line.
+	 * 
+	 * @return	the start line or <code>null</code> if it has not been parsed yet
+	 */
+	public String getStartLine(){
+		return startLine;
+	}
+	
+	/**
+	 * Returns the number of header fields parsed so far.
+	 * 
+	 * @return	the number of header fields
+	 */
+	public int getHeaderCount(){
+		return headerCount;
+	}
+	
+	/**
+	 * Returns the name of the header field with the specified index.
+	 * 
+	 * @param index	the index
+	 * @return		the name
+	 */
+	public String getHeaderName(int index){
+		return names[index];
+	}
+	
+	/**
+	 * Returns the value of the header field with the specified index.
+	 * 
+	 * @param index	the index
+	 * @return		the value
+	 */
+	public String getHeaderValue(int index){
+		return values[index];
+	}
+}
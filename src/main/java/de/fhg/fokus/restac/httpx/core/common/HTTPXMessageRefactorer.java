@@ -25,18 +25,23 @@
 
 package de.fhg.fokus.restac.httpx.core.common;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 
 import org.apache.log4j.Logger;
 
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXEntityTooLargeException;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
 
 /**
@@ -48,7 +53,15 @@ import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViol
 public class HTTPXMessageRefactorer {
 
 	private final static Logger LOGGER = Logger.getLogger(HTTPXMessageRefactorer.class);
-	private final static int BUFFER_SIZE = 512;
+	private final static int BUFFER_SIZE = 8192;
+	
+	private final static int HEAD_BUFFER_SIZE = 2048;
+	
+	/** The system property for the maximum size of a request body in bytes. */
+	public final static String MAX_BODY_SIZE_PROPERTY = "restac.http.maxBodySize";
+	
+	/** The maximum size of a request body if the system property is not set. */
+	public final static int DEFAULT_MAX_BODY_SIZE = 16777216;
 	
 	/***
 	 * Parses the status line of a HTTP response from an <code>InputStream</code> and creates
@@ -59,58 +72,91 @@ public class HTTPXMessageRefactorer {
 	 * @throws HTTPXProtocolViolationException	if status line doesn't conform with the syntax
 	 */
 	public HTTPXStatusMessage createStatusMessageFromStream(InputStream stream) throws HTTPXProtocolViolationException{
-		HTTPXStatusMessage statusMessage = new HTTPXStatusMessage();
+		HTTPXHeadParser parser = new HTTPXHeadParser();
 		
-		int currentCharacter = -1;
-		int previousCharacter = -1;
-//		StringWriter sw = new StringWriter();
-		StringBuilder statusLine = new StringBuilder();
-//		String statusLine = null;
-				
 		try {
-			while((currentCharacter = stream.read()) != -1) {
-				if(previousCharacter == 13 && currentCharacter == 10)
-					break;
-				if(currentCharacter != 13 && currentCharacter != 10){
-					statusLine.append((char)currentCharacter);
-				}
-				previousCharacter = currentCharacter;
-			}
+			readHead(stream, parser);
 		}
 		catch(IOException e) {
 			LOGGER.error(e);
 		}
 		
-		if (statusLine.length() != 0) 			// is not empty?
-		{
-			// split status line at trailing white spaces
-			String[] words = statusLine.toString().split("\\s", 3);
+		HTTPXStatusMessage statusMessage = createStatusMessage(parser);
+		statusMessage.setInputStream(stream);
+		
+		return statusMessage;
+	}
+	
+	/**
+	 * Creates a <code>HTTPXStatusMessage</code> from the status line and the header fields of 
+	 * a parsed head. The body of the message is not set.
+	 * 
+	 * @param parser	the parser which has read the head
+	 * @return			the <code>HTTPXStatusMessage</code>, empty if no status line was read
+	 * @throws HTTPXProtocolViolationException	if status line doesn't conform with the syntax
+	 */
+	public HTTPXStatusMessage createStatusMessage(HTTPXHeadParser parser) throws HTTPXProtocolViolationException{
+		HTTPXStatusMessage statusMessage = new HTTPXStatusMessage();
+		String statusLine = parser.getStartLine();
+		
+		if (statusLine != null) {
+			// split status line at the first two white spaces
+			int first = statusLine.indexOf(' ');
+			int second = first == -1 ? -1 : statusLine.indexOf(' ', first + 1);
 			// does status line contain three elements (http-version, status-code, reason-phrase)?
-			if (words.length < 3) {
-				LOGGER.error("The Statusline doesn't contain 3 Elements (http-version, status-code, reason-phrase) " + statusLine.toString());
+			if (second == -1) {
+				LOGGER.error("The Statusline doesn't contain 3 Elements (http-version, status-code, reason-phrase) " + statusLine);
 				throw new HTTPXProtocolViolationException("Status line does not conform with the required syntax: HTTP/Version SP Status-Code SP Reason-Phrase");
 			}
 			
 			//split protocol and protocolversion
-			String[] tmp = words[0].split("/");
-			if (tmp.length == 2) {
-				statusMessage.setProtocol(tmp[0]);
-				statusMessage.setVersion(tmp[1]);
+			int slash = statusLine.indexOf('/');
+			if (slash > 0 && slash < first - 1) {
+				statusMessage.setProtocol(statusLine.substring(0, slash));
+				statusMessage.setVersion(statusLine.substring(slash + 1, first));
 			} else {
-				LOGGER.error("The Statusline doesn't contain the Protocol and/or the Protocolversion (e.g. HTTP/1.1" + words[0]);
+				LOGGER.error("The Statusline doesn't contain the Protocol and/or the Protocolversion (e.g. HTTP/1.1" + statusLine.substring(0, first));
 				throw new HTTPXProtocolViolationException("Status line does not conform with the required syntax: HTTP/Version SP Status-Code SP Reason-Phrase");
 			}
 			
-			statusMessage.setStatusCode(Integer.parseInt(words[1]));
-			statusMessage.setReasonPhrase(words[2]);
+			try {
+				statusMessage.setStatusCode(Integer.parseInt(statusLine.substring(first + 1, second)));
+			} catch (NumberFormatException e) {
+				throw new HTTPXProtocolViolationException("Malformed status code: " + statusLine.substring(first + 1, second));
+			}
+			statusMessage.setReasonPhrase(statusLine.substring(second + 1));
 		}
 		
-		this.parseHeader(stream, statusMessage);			//parse the header
-		statusMessage.setInputStream(stream);
+		this.copyHeader(parser, statusMessage);
 		
 		return statusMessage;
 	}
 	
+	/**
+	 * Parses an HTTP response directly from a byte array, e.g. the buffer of a received datagram.
+	 * The bytes after the head are copied into the body of the message, so the array may be 
+	 * reused afterwards.
+	 * 
+	 * @param data		the array
+	 * @param offset	the offset of the response
+	 * @param length	the length of the response
+	 * @return			the <code>HTTPXStatusMessage</code>, empty if no status line was found
+	 * @throws HTTPXProtocolViolationException	if the head is malformed
+	 */
+	public HTTPXStatusMessage createStatusMessage(byte[] data, int offset, int length) throws HTTPXProtocolViolationException {
+		HTTPXHeadParser parser = new HTTPXHeadParser();
+		int consumed = parser.parse(data, offset, length);
+		parser.finish();
+		
+		HTTPXStatusMessage statusMessage = createStatusMessage(parser);
+		if (parser.getStartLine() != null) {
+			byte[] body = new byte[length - consumed];
+			System.arraycopy(data, offset + consumed, body, 0, body.length);
+			statusMessage.setInputStream(new ByteArrayInputStream(body));
+		}
+		return statusMessage;
+	}
+	
 	/***
 	 * Returns a <code>InputStream</code> containing the serialized form of the HTTP response.
 	 * <pre>
@@ -159,35 +205,7 @@ public class HTTPXMessageRefactorer {
 		
 		serializedForm = toByte(message);
 		
-		final OutputStream pipeOut = new PipedOutputStream();
-		InputStream pipeIn = new PipedInputStream();
-		
-		//write status line and header
-		try {
-			((PipedInputStream)pipeIn).connect((PipedOutputStream)pipeOut);
-			pipeOut.write(serializedForm);
-			pipeOut.flush();
-		} catch (IOException e) {
-			LOGGER.error(e);
-			e.printStackTrace();
-		}
-		
-		if (message.getInputStream() != null) {
-			new Thread(new Runnable(){
-				public void run() {
-					writeBody(message.getInputStream(), pipeOut);
-				}//run
-			}).start();
-		}else {
-			try {
-				pipeOut.close();
-			} catch (IOException e) {
-				LOGGER.error(e);
-				e.printStackTrace();
-			}
-		}
-		
-		return pipeIn;
+		return toStream(serializedForm, message.getInputStream());
 	}
 	
 	/**
@@ -242,48 +260,224 @@ public class HTTPXMessageRefactorer {
 		return serializedForm;
 	}
 	
-	private void writeBody(InputStream messageInStream, OutputStream pipeOut){
-		InputStream bufIn = new BufferedInputStream(messageInStream);
-		OutputStream bufOut = new BufferedOutputStream(pipeOut);
+	/**
+	 * Writes the serialized form of the HTTP response directly to the specified stream: the head 
+	 * and then the body, which is read from the stream of the message and closed afterwards.
+	 * No thread or pipe is involved, the body is copied straight from the message to the stream.
+	 * 
+	 * @param message		the <code>HTTPXStatusMessage</code>
+	 * @param out			the stream, e.g. the one of the socket
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(HTTPXStatusMessage message, OutputStream out) throws IOException{
+		writeTo(toByte(message), message.getInputStream(), out);
+	}
+	
+	/**
+	 * Writes the serialized form of the HTTP request directly to the specified stream: the head 
+	 * and then the body, which is read from the stream of the message and closed afterwards.
+	 * 
+	 * @param message		the <code>HTTPXActionMessage</code>
+	 * @param out			the stream, e.g. the one of the socket
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(HTTPXActionMessage message, OutputStream out) throws IOException{
+		writeTo(toByte(message), message.getInputStream(), out);
+	}
+	
+	/**
+	 * Writes the serialized form of the HTTP response to the specified channel. The head and the 
+	 * first part of the body are written with one gathering write if the channel supports it.
+	 * The channel must be in blocking mode.
+	 * 
+	 * @param message		the <code>HTTPXStatusMessage</code>
+	 * @param channel		the channel
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(HTTPXStatusMessage message, WritableByteChannel channel) throws IOException{
+		writeTo(toByte(message), message.getInputStream(), channel);
+	}
+	
+	/**
+	 * Writes the serialized form of the HTTP request to the specified channel. The head and the 
+	 * first part of the body are written with one gathering write if the channel supports it.
+	 * The channel must be in blocking mode.
+	 * 
+	 * @param message		the <code>HTTPXActionMessage</code>
+	 * @param channel		the channel
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(HTTPXActionMessage message, WritableByteChannel channel) throws IOException{
+		writeTo(toByte(message), message.getInputStream(), channel);
+	}
+	
+	private void writeTo(byte[] head, InputStream body, OutputStream out) throws IOException{
+		out.write(head);
+		if (body instanceof HTTPXWritableBody) {
+			try {
+				((HTTPXWritableBody)body).writeTo(out);
+			} finally {
+				body.close();
+			}
+		} else if (body != null) {
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int readBytes;
+				while ((readBytes = body.read(buffer)) != -1) {
+					out.write(buffer, 0, readBytes);
+				}
+			} finally {
+				body.close();
+			}
+		}
+		out.flush();
+	}
+	
+	private void writeTo(byte[] head, InputStream body, WritableByteChannel channel) throws IOException{
+		ByteBuffer headBuffer = ByteBuffer.wrap(head);
+		if (body == null) {
+			writeFully(channel, headBuffer);
+			return;
+		}
+		if (body instanceof HTTPXWritableBody) {
+			try {
+				((HTTPXWritableBody)body).writeTo(channel, headBuffer);
+			} finally {
+				body.close();
+			}
+			return;
+		}
 		
 		try {
-			int readBytes = 0;
 			byte[] buffer = new byte[BUFFER_SIZE];
-			//write the content
-			while ((readBytes = bufIn.read(buffer)) != -1) {
-				bufOut.write(buffer, 0, readBytes);
-//					LOGGER.debug("Readbytes: " + readBytes);
-			}
-			bufOut.flush();
-		} catch (Exception e) {
-			LOGGER.error(e);
-			e.printStackTrace();
-		}
-		finally{
-			if (bufOut!= null) {
-				try {
-					bufOut.close();
-				} catch (IOException e) {
-					LOGGER.error(e);
+			int readBytes = body.read(buffer);
+			ByteBuffer bodyBuffer = ByteBuffer.wrap(buffer, 0, Math.max(readBytes, 0));
+			
+			if (channel instanceof GatheringByteChannel) {
+				ByteBuffer[] buffers = new ByteBuffer[] {headBuffer, bodyBuffer};
+				while (bodyBuffer.hasRemaining() || headBuffer.hasRemaining()) {
+					((GatheringByteChannel)channel).write(buffers);
 				}
+			} else {
+				writeFully(channel, headBuffer);
+				writeFully(channel, bodyBuffer);
 			}
-			if (bufIn != null) {
-				try {
-					bufIn.close();
-				} catch (IOException e) {
-					LOGGER.error(e);
+			
+			while (readBytes != -1) {
+				readBytes = body.read(buffer);
+				if (readBytes > 0) {
+					writeFully(channel, ByteBuffer.wrap(buffer, 0, readBytes));
 				}
 			}
-			if (pipeOut != null) {
-				try {
-					pipeOut.close();
-				} catch (IOException e) {
-					LOGGER.error(e);
-				}
+		} finally {
+			body.close();
+		}
+	}
+	
+	private void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException{
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+	
+	/* Returns a stream with the head followed by the body */
+	private InputStream toStream(byte[] head, InputStream body){
+		if (body == null) {
+			return new ByteArrayInputStream(head);
+		}
+		return new SequenceInputStream(new ByteArrayInputStream(head), body);
+	}
+	
+	
+	/**
+	 * Returns a view of the body of the specified message which ends with the body, so the 
+	 * stream can be used for further messages afterwards. The body is framed by chunked transfer 
+	 * encoding or the <code>Content-Length</code> header. A request without both has no body 
+	 * (RFC 2616, section 4.4), the body of such a response is delimited by the end of the stream.
+	 * 
+	 * @param message							the message whose head has been parsed from the stream
+	 * @param stream							the stream positioned at the beginning of the body
+	 * @return									the view of the body
+	 * @throws HTTPXProtocolViolationException	if the <code>Content-Length</code> is malformed
+	 */
+	public InputStream createBodyStream(HTTPXAbstractMessage message, InputStream stream) throws HTTPXProtocolViolationException{
+		return createBodyStream(message, stream, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns a view of the body of the specified message like {@link #createBodyStream(HTTPXAbstractMessage, InputStream)}, 
+	 * but limits the size of the body. A larger <code>Content-Length</code> is rejected at once, 
+	 * reading a larger chunked body fails with an <code>IOException</code>.
+	 * 
+	 * @param message							the message whose head has been parsed from the stream
+	 * @param stream							the stream positioned at the beginning of the body
+	 * @param maxBodySize						the maximum size of the body in bytes
+	 * @return									the view of the body
+	 * @throws HTTPXEntityTooLargeException		if the <code>Content-Length</code> exceeds the maximum body size
+	 * @throws HTTPXProtocolViolationException	if the <code>Content-Length</code> is malformed
+	 */
+	public InputStream createBodyStream(HTTPXAbstractMessage message, InputStream stream, long maxBodySize) throws HTTPXProtocolViolationException{
+		String encoding = message.getHeaderIgnoreCase(HTTPXConstants.TRANSFER_ENCODING);
+		if (encoding != null && encoding.toLowerCase(Locale.ENGLISH).indexOf(HTTPXConstants.CHUNKED) > -1) {
+			return new ChunkedFramingInputStream(stream, maxBodySize);
+		}
+		
+		String length = message.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH);
+		if (length != null) {
+			long size = parseContentLength(length);
+			if (size > maxBodySize) {
+				throw new HTTPXEntityTooLargeException(HTTPXConstants.CONTENT_LENGTH + " exceeds the maximum body size: " + length);
+			}
+			return new BoundedInputStream(stream, size);
+		}
+		
+		if (message instanceof HTTPXActionMessage) {
+			return new BoundedInputStream(stream, 0);
+		}
+		return stream;
+	}
+	
+	/**
+	 * Parses the value of a <code>Content-Length</code> header, which consists of decimal digits 
+	 * only (RFC 2616, section 14.13). Signs, other characters and values beyond the range of 
+	 * <code>long</code> are rejected, so a body can't be taken for the next message.
+	 * 
+	 * @param length							the value of the header
+	 * @return									the length of the body
+	 * @throws HTTPXProtocolViolationException	if the value is malformed
+	 */
+	public static long parseContentLength(String length) throws HTTPXProtocolViolationException{
+		String digits = length.trim();
+		if (digits.length() == 0) {
+			throw new HTTPXProtocolViolationException("Malformed " + HTTPXConstants.CONTENT_LENGTH + " header: " + length);
+		}
+		long value = 0;
+		for (int i = 0; i < digits.length(); i++) {
+			char c = digits.charAt(i);
+			if (c < '0' || c > '9' || value > (Long.MAX_VALUE - (c - '0')) / 10) {
+				throw new HTTPXProtocolViolationException("Malformed " + HTTPXConstants.CONTENT_LENGTH + " header: " + length);
 			}
+			value = value * 10 + (c - '0');
 		}
+		return value;
 	}
 	
+	/**
+	 * Returns <code>true</code> if the body of the specified message is delimited by chunked
+	 * transfer encoding or a <code>Content-Length</code> header, or if the message has no body. 
+	 * Only then the connection can carry further messages after this one.
+	 * 
+	 * @param message	the message
+	 * @return			<code>true</code> if the end of the body can be found without closing the connection
+	 */
+	public boolean isSelfDelimited(HTTPXAbstractMessage message){
+		if (message.getInputStream() == null) {
+			return true;
+		}
+		String encoding = message.getHeaderIgnoreCase(HTTPXConstants.TRANSFER_ENCODING);
+		return (encoding != null && encoding.toLowerCase().indexOf(HTTPXConstants.CHUNKED) > -1)
+				|| message.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH) != null;
+	}
 	
 	/***
 	 * <p>
@@ -301,43 +495,127 @@ public class HTTPXMessageRefactorer {
 	 * 											and if the method in the request line is not supported. 
 	 */
 	public HTTPXActionMessage createActionMessageFromStream(InputStream stream) throws HTTPXProtocolViolationException {
-		HTTPXActionMessage actionMessage = new HTTPXActionMessage();
-		
-		int currentCharacter = -1;
-		int previousCharacter = -1;
-//		StringWriter sw = new StringWriter();
-		StringBuilder requestLine = new StringBuilder();
-//		String requestLine = null;
+		HTTPXHeadParser parser = new HTTPXHeadParser();
 		
 		try {
-			while((currentCharacter = stream.read()) != -1) {
-				if(previousCharacter == 13 && currentCharacter == 10)
-					break;
-				if(currentCharacter != 13 && currentCharacter != 10){
-//					sw.append((char)currentCharacter);
-					requestLine.append((char)currentCharacter);
-					
-				}
-				previousCharacter = currentCharacter;
-			}
-//			requestLine = sw.toString();
-//			requestLine = sb.toString();
+			readHead(stream, parser);
 		}
 		catch(IOException e) {
 			LOGGER.error(e);
 			e.printStackTrace();
 		}
 		
-//		 is not empty?
-		if (requestLine.length() != 0) {
+		HTTPXActionMessage actionMessage = createActionMessage(parser);
+		if (parser.getStartLine() != null) {
+			actionMessage.setInputStream(stream);
+		}
+		return actionMessage;
+	}
+	
+	/**
+	 * Parses an HTTP request directly from a byte array, e.g. the buffer of a received datagram.
+	 * The bytes after the head are copied into the body of the message, so the array may be 
+	 * reused afterwards.
+	 * 
+	 * @param data		the array
+	 * @param offset	the offset of the request
+	 * @param length	the length of the request
+	 * @return			the <code>HTTPXActionMessage</code>, empty if no request line was found
+	 * @throws HTTPXProtocolViolationException	if the head is malformed
+	 */
+	public HTTPXActionMessage createActionMessage(byte[] data, int offset, int length) throws HTTPXProtocolViolationException {
+		HTTPXHeadParser parser = new HTTPXHeadParser();
+		int consumed = parser.parse(data, offset, length);
+		parser.finish();
+		
+		HTTPXActionMessage actionMessage = createActionMessage(parser);
+		if (parser.getStartLine() != null) {
+			byte[] body = new byte[length - consumed];
+			System.arraycopy(data, offset + consumed, body, 0, body.length);
+			actionMessage.setInputStream(new ByteArrayInputStream(body));
+		}
+		return actionMessage;
+	}
+	
+	/**
+	 * Parses all HTTP requests of a byte array, e.g. of a datagram with several batched requests.
+	 * The body of a request is given by its <code>Content-Length</code>; a request without it 
+	 * takes all remaining bytes. The bodies are copied, so the array may be reused afterwards.
+	 * If a later request is malformed, the requests before it are returned and the rest of 
+	 * the array is dropped.
+	 * 
+	 * @param data		the array
+	 * @param offset	the offset of the first request
+	 * @param length	the length of all requests
+	 * @return			the requests, empty if there is no request line
+	 * @throws HTTPXProtocolViolationException	if the first request is malformed
+	 */
+	public List<HTTPXActionMessage> createActionMessages(byte[] data, int offset, int length) throws HTTPXProtocolViolationException {
+		List<HTTPXActionMessage> messages = new ArrayList<HTTPXActionMessage>();
+		int end = offset + length;
+		
+		while (offset < end) {
+			HTTPXActionMessage actionMessage;
+			int bodyLength;
+			try {
+				HTTPXHeadParser parser = new HTTPXHeadParser();
+				int consumed = parser.parse(data, offset, end - offset);
+				parser.finish();
+				
+				actionMessage = createActionMessage(parser);
+				if (parser.getStartLine() == null) {
+					//only empty lines left
+					break;
+				}
+				offset += consumed;
+				
+				bodyLength = end - offset;
+				String contentLength = actionMessage.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH);
+				if (contentLength != null) {
+					bodyLength = (int)Math.min(bodyLength, parseContentLength(contentLength));
+				}
+			} catch (HTTPXProtocolViolationException e) {
+				if (messages.isEmpty()) {
+					throw e;
+				}
+				LOGGER.warn("Dropped the last " + (end - offset) + " bytes after " + messages.size() + " batched requests: " + e.getMessage());
+				break;
+			}
+			byte[] body = new byte[bodyLength];
+			System.arraycopy(data, offset, body, 0, bodyLength);
+			actionMessage.setInputStream(new ByteArrayInputStream(body));
+			offset += bodyLength;
 			
-			// split request line at trailing white spaces
-			String[] words = requestLine.toString().split("\\s", 3); 
+			messages.add(actionMessage);
+		}
+		return messages;
+	}
+	
+	/**
+	 * Creates a <code>HTTPXActionMessage</code> from the request line and the header fields of 
+	 * a parsed head. The body of the message is not set.
+	 * 
+	 * @param parser	the parser which has read the head
+	 * @return			the <code>HTTPXActionMessage</code>, empty if no request line was read
+	 * @throws HTTPXProtocolViolationException	if the request line does not conform with the 
+	 * 											required syntax: 
+	 * 											Method SP Request-URI SP HTTP-Version
+	 */
+	public HTTPXActionMessage createActionMessage(HTTPXHeadParser parser) throws HTTPXProtocolViolationException {
+		HTTPXActionMessage actionMessage = new HTTPXActionMessage();
+		String requestLine = parser.getStartLine();
+		
+		if (requestLine != null) {
+			
+			// split request line at white spaces
+			int first = requestLine.indexOf(' ');
+			int second = first == -1 ? -1 : requestLine.indexOf(' ', first + 1);
 			// does request line contain three elements (method, uri, http-version)?
-			if (words.length < 3) {
-				LOGGER.error("The Statusline doesn't contain 3 Elements (http-version, status-code, reason-phrase)" + requestLine.toString());
+			if (second == -1) {
+				LOGGER.error("The Statusline doesn't contain 3 Elements (http-version, status-code, reason-phrase)" + requestLine);
 				throw new HTTPXProtocolViolationException("Request line does not conform with the required syntax: Method SP Request-URI SP HTTP-Version");
 			}
+			String[] words = new String[] {requestLine.substring(0, first), requestLine.substring(first + 1, second), requestLine.substring(second + 1)};
 			
 			// set method
 			String method = words[0];
@@ -423,8 +701,7 @@ public class HTTPXMessageRefactorer {
 			
 //			actionMessage.setProtocol(words[2]);						// set protocol
 			
-			this.parseHeader(stream, actionMessage);
-			actionMessage.setInputStream(stream);
+			this.copyHeader(parser, actionMessage);
 		}
 		return actionMessage;
 	}
@@ -507,33 +784,8 @@ public class HTTPXMessageRefactorer {
 //		}
 		
 		serializedForm = toByte(message);
-		InputStream pipeIn = new PipedInputStream();
-		final OutputStream pipeOut = new PipedOutputStream();
-		try {
-			((PipedInputStream)pipeIn).connect((PipedOutputStream)pipeOut);
-			pipeOut.write(serializedForm);
-			pipeOut.flush();
-		} catch (IOException e) {
-			LOGGER.error(e);
-		}
-		
-		if (message.getInputStream() != null) {
-			//create new Thread
-			new Thread(new Runnable(){
-				public void run(){
-					writeBody(message.getInputStream(), pipeOut);
-				}
-			}).start();
-		}else {
-			try {
-				pipeOut.close();
-			} catch (IOException e) {
-				LOGGER.error(e);
-				e.printStackTrace();
-			}
-		}
 		
-		return pipeIn;
+		return toStream(serializedForm, message.getInputStream());
 	}
 	
 	/**
@@ -616,50 +868,57 @@ public class HTTPXMessageRefactorer {
 	}
 	
 	/**
-	 * Parses the header fields of an HTTP message from and <code>InputStream</code> and adds theme to the map of headers.
+	 * Reads the head of an HTTP message from an <code>InputStream</code> into the parser. If the 
+	 * stream supports marks it is read block by block and reset behind the head, otherwise it is 
+	 * read byte by byte so that no byte of the body is consumed.
 	 * 
 	 * @param stream					the <code>InputStream</code>
-	 * @param message					the <code>HTTPXAbstractMessage</code>
+	 * @param parser					the parser
+	 * @throws IOException				if the stream can't be read
+	 * @throws HTTPXProtocolViolationException	if the head is malformed or exceeds a limit
 	 */
-	private void parseHeader(InputStream stream, HTTPXAbstractMessage message){
-		int currentCharacter = -1;
-		int previousCharacter = -1;
-		StringBuilder sb = new StringBuilder();
-		String headerLine = null;
-		int crlfCount = 0;
-		
-		try {
-			currentCharacter = stream.read();
-			while(true) { 									//while end of headers not reached
-				while(currentCharacter != -1 && !(previousCharacter == 13 && currentCharacter == 10)) { //read header line till CRLF
-					if(currentCharacter != 13 && currentCharacter != 10) {
-						sb.append((char)currentCharacter);
-						crlfCount = 0;
+	private void readHead(InputStream stream, HTTPXHeadParser parser) throws IOException, HTTPXProtocolViolationException{
+		if (stream.markSupported()) {
+			byte[] buffer = new byte[HEAD_BUFFER_SIZE];
+			while (!parser.isComplete()) {
+				stream.mark(buffer.length);
+				int readBytes = stream.read(buffer);
+				if (readBytes == -1) {
+					parser.finish();
+					return;
+				}
+				int consumed = parser.parse(buffer, 0, readBytes);
+				if (consumed < readBytes) {
+					//give back the beginning of the body
+					stream.reset();
+					while (consumed > 0) {
+						consumed -= stream.skip(consumed);
 					}
-					previousCharacter = currentCharacter;
-					currentCharacter = stream.read();
 				}
-				crlfCount++; 							//increase CRLF counter after end of header line was reached
-				if(crlfCount == 2) 						//break if end of headers reached
-					break;
-				
-				//parse headerLine
-				headerLine = sb.toString(); 			
-				int sep_index = headerLine.indexOf(HTTPXConstants.HEADER_NAME_SEPARATOR);
-				if(sep_index > 0) 
-					message.setHeader(headerLine.substring(0, sep_index).trim(), headerLine.substring(sep_index +1).trim());
-				else
+			}
+		} else {
+			byte[] buffer = new byte[1];
+			while (!parser.isComplete()) {
+				int currentCharacter = stream.read();
+				if (currentCharacter == -1) {
+					parser.finish();
 					return;
-				
-				//Clear StringBuilder
-				sb = new StringBuilder();
-				previousCharacter = currentCharacter;
-				currentCharacter = stream.read();
+				}
+				buffer[0] = (byte)currentCharacter;
+				parser.parse(buffer, 0, 1);
 			}
 		}
-		catch(IOException e) {
-			LOGGER.error(e);
-			e.printStackTrace();
+	}
+	
+	/**
+	 * Adds the header fields of a parsed head to the map of headers.
+	 * 
+	 * @param parser					the parser
+	 * @param message					the <code>HTTPXAbstractMessage</code>
+	 */
+	private void copyHeader(HTTPXHeadParser parser, HTTPXAbstractMessage message){
+		for (int i = 0; i < parser.getHeaderCount(); i++) {
+			message.setHeader(parser.getHeaderName(i), parser.getHeaderValue(i));
 		}
 	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Body of a message that can write itself to the transport. The <code>HTTPXMessageRefactorer</code> 
+ * hands such a body the stream or channel of the connection instead of copying it through an 
+ * intermediate buffer. Implementations are still <code>InputStream</code>s, so they can be 
+ * attached to a message like any other body.
+ * 
+ * @author Murat Ates
+ */
+public interface HTTPXWritableBody {
+
+	/**
+	 * Writes the body to the specified stream and closes the body afterwards. The stream is not 
+	 * closed.
+	 * 
+	 * @param out			the stream, e.g. the one of the socket
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(OutputStream out) throws IOException;
+	
+	/**
+	 * Writes the body to the specified channel and closes the body afterwards. If a head is given, 
+	 * it is written in front of the body, with one gathering write together with the first part 
+	 * of the body if the channel supports it. The channel must be in blocking mode.
+	 * 
+	 * @param channel		the channel
+	 * @param head			the serialized head of the message or <code>null</code>
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void writeTo(WritableByteChannel channel, ByteBuffer head) throws IOException;
+}
@@ -28,6 +28,7 @@ package de.fhg.fokus.restac.httpx.core.dispatcher;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 
@@ -36,7 +37,6 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXManagedActionMessageDispatcherInfo;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
-import de.fhg.fokus.restac.httpx.core.common.Path;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler;
@@ -56,13 +56,13 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	private final static Logger LOGGER = Logger.getLogger(HTTPXActionMessageDispatcherImpl.class);
 	
 	/* Handle registered <code>HTTPXActionMessageHandler</code> and <code>HTTPXActionMessageFilter</code> */
-	private List<Tuple> registration;
+	private HTTPXRegistrationTable<Tuple> registration;
 	
 	/**
 	 * memorise registered inbound <code>HTTPXManagedActionMessageDispatcher</code>,
 	 * in order to forward registered <code>HTTPXActionMessageHandler</code> objects.
 	 */
-	private List<HTTPXManagedActionMessageDispatcher> manageDispatcherList = new ArrayList<HTTPXManagedActionMessageDispatcher>();
+	private List<HTTPXManagedActionMessageDispatcher> manageDispatcherList = new CopyOnWriteArrayList<HTTPXManagedActionMessageDispatcher>();
 	
 	/**
 	 * Inner Class for efficient handling a <code>HTTPXActionMessageFilter</code> and the 
@@ -103,7 +103,7 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	 *
 	 */
 	public HTTPXActionMessageDispatcherImpl() {
-		registration = new ArrayList<Tuple>();
+		registration = new HTTPXRegistrationTable<Tuple>();
 	}
 
 	/* (non-Javadoc)
@@ -111,7 +111,7 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	 */
 	public void addActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler) {
 		if (filter != null && handler != null){
-			registration.add(new Tuple(filter, handler));
+			registration.add(filter, handler, new Tuple(filter, handler));
 			
 			for (HTTPXManagedActionMessageDispatcher dispatcher : manageDispatcherList) {
 				//forward the registration
@@ -125,7 +125,7 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	 */
 	public void deleteActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler) {
 		if (filter != null && handler != null) {
-			registration.remove(new Tuple(filter, handler));
+			registration.remove(filter, handler);
 		
 			for (HTTPXManagedActionMessageDispatcher dispatcher : manageDispatcherList) {
 				//forward the unregistration
@@ -150,29 +150,13 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	 */
 	public HTTPXStatusMessageHandle deliverAsynchronous(HTTPXActionMessage message)throws IOException {
 		HTTPXStatusMessageHandle stHandle = null;
-		boolean bFound = false;
 		
-		Path tmpPath = new Path(message.getPath().getString());
-		do{
-			for (Tuple element : registration) {
-				if ( (element.handler instanceof HTTPXAsynActionMessageHandler) &&
-					 (element.filter.doesPass(message.getProtocol(), message.getHost(), message.getPort(), tmpPath, message.getQueryAsString()))
-					){
-					LOGGER.debug("Async handler was found " + element.handler);
-					stHandle = ((HTTPXAsynActionMessageHandler)element.handler).handleAsyn(message);
-					bFound = true;
-					break;
-				}
-			}
-			if (!bFound) {
-				String strTmp = tmpPath.getString();
-				tmpPath.removeLastToken();
-				//check wheter path is root
-				if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-					break;
-				}
-			}
-		} while(!bFound);
+		Tuple element = lookup(message, HTTPXAsynActionMessageHandler.class);
+		boolean bFound = element != null;
+		if (bFound) {
+			LOGGER.debug("Async handler was found " + element.handler);
+			stHandle = ((HTTPXAsynActionMessageHandler)element.handler).handleAsyn(message);
+		}
 		
 		if (!bFound) {
 			LOGGER.info("No Handler was found");
@@ -188,28 +172,12 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 		//if no handler was found
 		HTTPXStatusMessage status = new HTTPXStatusMessage(HTTPStatus.NOT_FOUND.getCode(), HTTPStatus.NOT_FOUND.getMessage(), 
 															message.getProtocol(), null, null);
-		boolean bFound = false;
-		Path tmpPath = new Path(message.getPath().getString());
-		do {
-			for (Tuple element : registration) {
-				if ( element.handler instanceof HTTPXSynActionMessageHandler	&& 
-					 element.filter.doesPass(message.getProtocol(), message.getHost(), message.getPort(), tmpPath, message.getQueryAsString())
-					){
-					LOGGER.debug("Sync handler was found " + element.handler);
-					status = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(message);
-					bFound = true;
-					break;
-				}
-			}
-			if (!bFound) {
-				String strTmp = tmpPath.getString();
-				tmpPath.removeLastToken();
-				//check wheter path is root
-				if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-					break;
-				}
-			}
-		} while (!bFound);
+		Tuple element = lookup(message, HTTPXSynActionMessageHandler.class);
+		boolean bFound = element != null;
+		if (bFound) {
+			LOGGER.debug("Sync handler was found " + element.handler);
+			status = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(message);
+		}
 		
 		if (!bFound) {
 			LOGGER.info("No Handler was found");
@@ -222,36 +190,31 @@ public class HTTPXActionMessageDispatcherImpl implements HTTPXActionMessageDispa
 	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher#deliverPlain(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage)
 	 */
 	public void deliverPlain(HTTPXActionMessage message) throws IOException{
-		boolean bFound = false;
-		
-		Path tmpPath = new Path(message.getPath().getString());
-		do {
-			for (Tuple element : registration) {
-				if ( (element.handler instanceof HTTPXPlainActionMessageHandler) &&
-					 (element.filter.doesPass(message.getProtocol(), message.getHost(), message.getPort(), tmpPath, message.getQueryAsString()))
-					){
-					LOGGER.debug("Plain handler was found");
-					LOGGER.debug(element.handler);
-					((HTTPXPlainActionMessageHandler)element.handler).handlePlain(message);
-					bFound = true;
-					break;
-				}
-			}
-			if (!bFound) {
-				String strTmp = tmpPath.getString();
-				tmpPath.removeLastToken();
-				//check wheter path is root
-				if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-					break;
-				}
-			}
-		} while (!bFound);
+		Tuple element = lookup(message, HTTPXPlainActionMessageHandler.class);
+		boolean bFound = element != null;
+		if (bFound) {
+			LOGGER.debug("Plain handler was found");
+			LOGGER.debug(element.handler);
+			((HTTPXPlainActionMessageHandler)element.handler).handlePlain(message);
+		}
 		
 		if (!bFound) {
 			LOGGER.info("No Handler was found");
 		}		
 	}
 
+	/**
+	 * Returns the registration responsible for the specified message, searching from the complete 
+	 * path of the message up to the root path.
+	 * 
+	 * @param message		the message
+	 * @param handlerType	the accepted type of handlers
+	 * @return				the registration or <code>null</code> if no handler was found
+	 */
+	private Tuple lookup(HTTPXActionMessage message, Class<?> handlerType){
+		return registration.lookup(message.getProtocol(), message.getHost(), message.getPort(), message.getPath(), message.getQueryAsString(), handlerType);
+	}
+	
 	/**
 	 * (non-Javadoc)
 	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher#getManagedDispatcherList()
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of byte arrays of a fixed size, e.g. for receiving datagrams. If the pool is empty a new 
+ * array is allocated, so <code>acquire</code> never blocks. At most <code>capacity</code> arrays 
+ * are kept, further released arrays are left to the garbage collector.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXBufferPool {
+
+	private final int bufferSize;
+	
+	private final int capacity;
+	
+	private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+	
+	/* number of arrays in the queue, size() of the queue is not constant time */
+	private final AtomicInteger available = new AtomicInteger();
+	
+	/**
+	 * Constructs a new <code>HTTPXBufferPool</code> with the specified attributes.
+	 * 
+	 * @param bufferSize	the size of the arrays
+	 * @param capacity		the maximum number of arrays kept in the pool
+	 */
+	public HTTPXBufferPool(int bufferSize, int capacity) {
+		this.bufferSize = bufferSize;
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Returns an array from the pool or a new one if the pool is empty.
+	 * 
+	 * @return	an array of <code>getBufferSize()</code> bytes
+	 */
+	public byte[] acquire(){
+		byte[] buffer = buffers.poll();
+		if (buffer == null) {
+			return new byte[bufferSize];
+		}
+		available.decrementAndGet();
+		return buffer;
+	}
+	
+	/**
+	 * Gives an array back to the pool. The array must not be used afterwards.
+	 * 
+	 * @param buffer	the array
+	 */
+	public void release(byte[] buffer){
+		if (buffer == null || buffer.length != bufferSize) {
+			return;
+		}
+		if (available.incrementAndGet() <= capacity) {
+			buffers.offer(buffer);
+		} else {
+			available.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Returns the size of the arrays.
+	 * 
+	 * @return	the size in bytes
+	 */
+	public int getBufferSize(){
+		return bufferSize;
+	}
+	
+	/**
+	 * Returns the number of arrays currently kept in the pool.
+	 * 
+	 * @return	the number of pooled arrays
+	 */
+	public int getAvailable(){
+		return available.get();
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Coalesces small outgoing messages to the same destination into one datagram. The first
+ * message to a destination opens a batch which is sent when the next message doesn't fit 
+ * any more, when <code>flush</code> is called or at the latest when the batch window has 
+ * elapsed. The messages must be self-delimited, the receivers parse them one after another.
+ * <p>
+ * The window in ms and the maximum size of a batch datagram are set with the system properties 
+ * <code>restac.udp.batchWindow</code> and <code>restac.udp.batchSize</code>; a window of 
+ * <code>0</code> switches batching off.
+ * </p>
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXDatagramBatcher {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXDatagramBatcher.class);
+	
+	public final static String WINDOW_PROPERTY = "restac.udp.batchWindow";
+	public final static String SIZE_PROPERTY = "restac.udp.batchSize";
+	
+	public final static int DEFAULT_WINDOW = 0;
+	public final static int DEFAULT_SIZE = 1400;
+	
+	private final HTTPXDatagramExchange.Transport transport;
+	
+	private final long window;
+	
+	private final int batchSize;
+	
+	/* open batches by destination */
+	private final Map<String, Batch> batches = new HashMap<String, Batch>();
+	
+	private Timer timer;
+	
+	private long messages;
+	private long datagrams;
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramBatcher</code> configured by the system properties.
+	 * 
+	 * @param name			the name of the timer thread
+	 * @param transport		the transport which sends the datagrams
+	 */
+	public HTTPXDatagramBatcher(String name, HTTPXDatagramExchange.Transport transport) {
+		this(name, transport, Integer.getInteger(WINDOW_PROPERTY, DEFAULT_WINDOW).intValue(),
+				Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramBatcher</code> with the specified attributes.
+	 * 
+	 * @param name			the name of the timer thread
+	 * @param transport		the transport which sends the datagrams
+	 * @param window		the maximum time in ms a message waits for others, <code>0</code> to switch off
+	 * @param batchSize		the maximum size of a batch datagram
+	 */
+	public HTTPXDatagramBatcher(String name, HTTPXDatagramExchange.Transport transport, long window, int batchSize) {
+		this.transport = transport;
+		this.window = window;
+		this.batchSize = batchSize;
+		if (window > 0) {
+			timer = new Timer(name, true);
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if messages are batched.
+	 * 
+	 * @return <code>true</code> if batching is switched on
+	 */
+	public boolean isEnabled() {
+		return window > 0;
+	}
+	
+	/**
+	 * Returns the maximum size of a batch datagram, larger messages are not batched.
+	 * 
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Adds the specified serialized message to the batch of its destination. A full batch 
+	 * is sent before.
+	 * 
+	 * @param message		the self-delimited message, not larger than the batch size
+	 * @param address		the address of the receiver
+	 * @param port			the port of the receiver
+	 * @throws IOException	if a full batch can't be sent
+	 */
+	public void add(byte[] message, InetAddress address, int port) throws IOException {
+		String key = address.getHostAddress() + ":" + port;
+		Batch full = null;
+		
+		synchronized (batches) {
+			messages++;
+			Batch batch = batches.get(key);
+			if (batch != null && batch.buffer.size() + message.length > batchSize) {
+				batches.remove(key);
+				full = batch;
+				batch = null;
+			}
+			if (batch == null) {
+				batch = new Batch(key, address, port);
+				batches.put(key, batch);
+				timer.schedule(batch, window);
+			}
+			batch.buffer.write(message, 0, message.length);
+		}
+		if (full != null) {
+			send(full);
+		}
+	}
+	
+	/**
+	 * Sends the open batch to the specified destination, e.g. before a large message which 
+	 * isn't batched, so the order of the messages is kept.
+	 * 
+	 * @param address		the address of the receiver
+	 * @param port			the port of the receiver
+	 * @throws IOException	if the batch can't be sent
+	 */
+	public void flush(InetAddress address, int port) throws IOException {
+		Batch batch;
+		synchronized (batches) {
+			batch = batches.remove(address.getHostAddress() + ":" + port);
+		}
+		if (batch != null) {
+			send(batch);
+		}
+	}
+	
+	/**
+	 * Sends all open batches.
+	 * 
+	 * @throws IOException	if a batch can't be sent
+	 */
+	public void flush() throws IOException {
+		List<Batch> open;
+		synchronized (batches) {
+			open = new ArrayList<Batch>(batches.values());
+			batches.clear();
+		}
+		for (Batch batch : open) {
+			send(batch);
+		}
+	}
+	
+	/**
+	 * Sends all open batches and stops the timer.
+	 */
+	public void shutdown() {
+		try {
+			flush();
+		} catch (IOException e) {
+			LOGGER.error(e);
+		}
+		if (timer != null) {
+			timer.cancel();
+		}
+	}
+	
+	/**
+	 * Returns the number of batched messages.
+	 * 
+	 * @return the number of messages
+	 */
+	public long getMessageCount() {
+		synchronized (batches) {
+			return messages;
+		}
+	}
+	
+	/**
+	 * Returns the number of sent batch datagrams.
+	 * 
+	 * @return the number of datagrams
+	 */
+	public long getDatagramCount() {
+		synchronized (batches) {
+			return datagrams;
+		}
+	}
+	
+	private void send(Batch batch) throws IOException {
+		batch.cancel();
+		synchronized (batches) {
+			datagrams++;
+		}
+		transport.send(batch.buffer.toByteArray(), batch.address, batch.port);
+	}
+	
+	/**
+	 * The messages to one destination, sent by the timer when the window has elapsed.
+	 */
+	private class Batch extends TimerTask {
+		
+		private final String key;
+		private final InetAddress address;
+		private final int port;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(batchSize);
+		
+		private Batch(String key, InetAddress address, int port) {
+			this.key = key;
+			this.address = address;
+			this.port = port;
+		}
+		
+		@Override
+		public void run() {
+			synchronized (batches) {
+				//already sent because it was full or flushed
+				if (batches.get(key) != this) {
+					return;
+				}
+				batches.remove(key);
+			}
+			try {
+				send(this);
+			} catch (IOException e) {
+				LOGGER.error(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.rmi.server.UID;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPStatus;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandler;
+
+/**
+ * Request/response exchanges over a datagram transport. A request which expects a response
+ * carries an <code>Exchange-ID</code> header, the response carries the same header. A 
+ * <code>Unique-ID</code> of the messages is left to the handlers, e.g. for correlating the 
+ * asynchronous requests of the TCP server, and is echoed in the response if the handler 
+ * did not set one.
+ * <p>
+ * On the client side the request is sent again if no response has arrived within the 
+ * retransmission timeout, which grows by the backoff factor with every retransmission. 
+ * After the last retransmission a synchronous call fails with an <code>IOException</code>
+ * and an asynchronous one is answered with <code>408 Request Timeout</code>. Handlers of 
+ * responses are called by the workers of the <code>HTTPXDatagramPipeline</code>, never by the 
+ * timer thread, so a slow handler does not delay the retransmissions of other requests.
+ * </p><p>
+ * On the server side the response to every request is kept for some time. A retransmitted
+ * request is answered with the kept response and is not passed to the handler again; while
+ * the handler is still working on the request, retransmissions are ignored.
+ * </p>
+ * The timing is set with the system properties <code>restac.udp.retransmitTimeout</code> (ms),
+ * <code>restac.udp.maxRetransmits</code>, <code>restac.udp.backoffFactor</code> and
+ * <code>restac.udp.dedupTimeout</code> (ms).
+ * 
+ * @author Murat Ates
+ * @see HTTPXPendingResponseTable
+ */
+public class HTTPXDatagramExchange {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXDatagramExchange.class);
+	
+	public final static String RETRANSMIT_TIMEOUT_PROPERTY = "restac.udp.retransmitTimeout";
+	public final static String MAX_RETRANSMITS_PROPERTY = "restac.udp.maxRetransmits";
+	public final static String BACKOFF_FACTOR_PROPERTY = "restac.udp.backoffFactor";
+	public final static String DEDUP_TIMEOUT_PROPERTY = "restac.udp.dedupTimeout";
+	
+	public final static int DEFAULT_RETRANSMIT_TIMEOUT = 250;
+	public final static int DEFAULT_MAX_RETRANSMITS = 4;
+	public final static int DEFAULT_BACKOFF_FACTOR = 2;
+	public final static int DEFAULT_DEDUP_TIMEOUT = 30000;
+	
+	/**
+	 * Sends the datagrams of an exchange.
+	 */
+	public interface Transport{
+		
+		/**
+		 * Sends one datagram.
+		 * 
+		 * @param datagram		the datagram
+		 * @param address		the address of the receiver
+		 * @param port			the port of the receiver
+		 * @throws IOException	if the datagram can't be sent
+		 */
+		public void send(byte[] datagram, InetAddress address, int port) throws IOException;
+	}
+	
+	private final String protocol;
+	
+	private final Transport transport;
+	
+	private final HTTPXDatagramFragmenter fragmenter;
+	
+	private final HTTPXDatagramPipeline pipeline;
+	
+	private final int retransmitTimeout;
+	private final int maxRetransmits;
+	private final int backoffFactor;
+	private final int dedupTimeout;
+	
+	/* requests sent by this peer, by Unique-ID */
+	private final HTTPXPendingResponseTable<Request> requests;
+	
+	/* requests received by this peer, by sender and Unique-ID */
+	private final HTTPXPendingResponseTable<Response> responses;
+	
+	private final AtomicLong retransmitted = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramExchange</code> configured by the system properties.
+	 * 
+	 * @param name			the prefix of the thread names
+	 * @param protocol		the protocol of the messages, e.g. <code>HTTPU</code>
+	 * @param transport		the transport which sends the datagrams
+	 * @param fragmenter	the fragmenter which splits large messages
+	 * @param pipeline		the pipeline whose workers call the handlers of responses
+	 */
+	public HTTPXDatagramExchange(String name, String protocol, Transport transport, HTTPXDatagramFragmenter fragmenter, HTTPXDatagramPipeline pipeline) {
+		this.protocol = protocol;
+		this.transport = transport;
+		this.fragmenter = fragmenter;
+		this.pipeline = pipeline;
+		this.retransmitTimeout = Integer.getInteger(RETRANSMIT_TIMEOUT_PROPERTY, DEFAULT_RETRANSMIT_TIMEOUT).intValue();
+		this.maxRetransmits = Integer.getInteger(MAX_RETRANSMITS_PROPERTY, DEFAULT_MAX_RETRANSMITS).intValue();
+		this.backoffFactor = Math.max(1, Integer.getInteger(BACKOFF_FACTOR_PROPERTY, DEFAULT_BACKOFF_FACTOR).intValue());
+		this.dedupTimeout = Integer.getInteger(DEDUP_TIMEOUT_PROPERTY, DEFAULT_DEDUP_TIMEOUT).intValue();
+		
+		this.requests = new HTTPXPendingResponseTable<Request>(name + "-retransmitter", new HTTPXPendingResponseTable.ExpiryHandler<Request>() {
+			public void expired(String id, Request request) {
+				retransmit(id, request);
+			}
+		}, retransmitTimeout);
+		this.responses = new HTTPXPendingResponseTable<Response>(name + "-dedup", new HTTPXPendingResponseTable.ExpiryHandler<Response>() {
+			public void expired(String id, Response response) {
+				//nothing to do, the response is forgotten
+			}
+		}, dedupTimeout);
+	}
+	
+	/**
+	 * Returns <code>true</code> if the specified datagram is a response, i.e. starts with 
+	 * the protocol of this exchange.
+	 * 
+	 * @param data		the array with the datagram
+	 * @param offset	the offset of the datagram
+	 * @param length	the length of the datagram
+	 * @return			<code>true</code> if the datagram starts with a status line
+	 */
+	public boolean isResponse(byte[] data, int offset, int length) {
+		if (length <= protocol.length()) {
+			return false;
+		}
+		for (int i = 0; i < protocol.length(); i++) {
+			if (data[offset + i] != protocol.charAt(i)) {
+				return false;
+			}
+		}
+		return data[offset + protocol.length()] == '/';
+	}
+	
+	/**
+	 * Sends the specified request and waits for the response.
+	 * 
+	 * @param message		the request
+	 * @return				the response
+	 * @throws IOException	if the request can't be sent or there is no response after the 
+	 * 						last retransmission
+	 */
+	public HTTPXStatusMessage sendSynchronous(HTTPXActionMessage message) throws IOException {
+		Request request = send(message);
+		
+		HTTPXStatusMessage response;
+		try {
+			response = request.await();
+		} catch (InterruptedException e) {
+			requests.remove(request.id);
+			throw new InterruptedIOException("Interrupted while waiting for the response of " + request.id);
+		}
+		if (response == null) {
+			throw new IOException("No " + protocol + " response for " + request.id + " after " + maxRetransmits + " retransmissions");
+		}
+		return response;
+	}
+	
+	/**
+	 * Sends the specified request. The response is passed to the handler added to the 
+	 * returned handle, even if it has arrived before.
+	 * 
+	 * @param message		the request
+	 * @return				the handle of the response
+	 * @throws IOException	if the request can't be sent
+	 */
+	public HTTPXStatusMessageHandle sendAsynchronous(HTTPXActionMessage message) throws IOException {
+		return send(message);
+	}
+	
+	/**
+	 * Passes a received response to the waiting request.
+	 * 
+	 * @param response	the response
+	 * @return			<code>false</code> if no request is waiting for the response, e.g. 
+	 * 					because it is a duplicate
+	 */
+	public boolean handleResponse(HTTPXStatusMessage response) {
+		String uid = response.getHeaderIgnoreCase(HTTPXConstants.EXCHANGE_ID);
+		if (uid == null) {
+			LOGGER.debug("There is no " + HTTPXConstants.EXCHANGE_ID + "-Header in the response");
+			return false;
+		}
+		Request request = requests.complete(uid.trim());
+		if (request == null) {
+			LOGGER.debug("There is no request for the " + HTTPXConstants.EXCHANGE_ID + "-Header : " + uid);
+			return false;
+		}
+		request.complete(response);
+		return true;
+	}
+	
+	/**
+	 * Registers a received request which expects a response. If the request was received
+	 * before it is a retransmission: it is answered with the kept response, if any, and 
+	 * <code>false</code> is returned.
+	 * 
+	 * @param message		the request with an <code>Exchange-ID</code> header
+	 * @param address		the address of the sender
+	 * @param port			the port of the sender
+	 * @return				<code>true</code> if the request is new and must be handled
+	 * @throws IOException	if the kept response can't be sent
+	 */
+	public boolean acceptRequest(HTTPXActionMessage message, InetAddress address, int port) throws IOException {
+		String key = key(message, address, port);
+		Response existing = responses.putIfAbsent(key, new Response(), dedupTimeout);
+		if (existing == null) {
+			return true;
+		}
+		duplicates.incrementAndGet();
+		byte[] response = existing.get();
+		if (response != null) {
+			LOGGER.debug("Retransmitted request " + key + ", sending the response again");
+			sendDatagrams(response, address, port);
+		} else {
+			LOGGER.debug("Retransmitted request " + key + " is still handled");
+		}
+		return false;
+	}
+	
+	/**
+	 * Sends the response to a request registered with <code>acceptRequest</code> and keeps 
+	 * it for retransmitted requests.
+	 * 
+	 * @param message		the request
+	 * @param response		the response
+	 * @param address		the address of the sender of the request
+	 * @param port			the port of the sender of the request
+	 * @throws IOException	if the response can't be sent
+	 */
+	public void sendResponse(HTTPXActionMessage message, HTTPXStatusMessage response, InetAddress address, int port) throws IOException {
+		response.setProtocol(protocol);
+		response.setHeader(HTTPXConstants.EXCHANGE_ID, message.getHeaderIgnoreCase(HTTPXConstants.EXCHANGE_ID));
+		if (response.getHeaderIgnoreCase(HTTPXConstants.UNIQUE_ID) == null && message.getHeaderIgnoreCase(HTTPXConstants.UNIQUE_ID) != null) {
+			response.setHeader(HTTPXConstants.UNIQUE_ID, message.getHeaderIgnoreCase(HTTPXConstants.UNIQUE_ID));
+		}
+		if (response.getInputStream() == null && response.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH) == null) {
+			response.setHeader(HTTPXConstants.CONTENT_LENGTH, "0");
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new HTTPXMessageRefactorer().writeTo(response, out);
+		byte[] data = out.toByteArray();
+		
+		Response kept = responses.get(key(message, address, port));
+		if (kept != null) {
+			kept.set(data);
+		}
+		sendDatagrams(data, address, port);
+	}
+	
+	/**
+	 * Sends a response without body to a request registered with <code>acceptRequest</code>,
+	 * e.g. <code>404 Not Found</code> if there is no handler.
+	 * 
+	 * @param message		the request
+	 * @param status		the status of the response
+	 * @param address		the address of the sender of the request
+	 * @param port			the port of the sender of the request
+	 * @throws IOException	if the response can't be sent
+	 */
+	public void sendResponse(HTTPXActionMessage message, HTTPStatus status, InetAddress address, int port) throws IOException {
+		sendResponse(message, new HTTPXStatusMessage(status.getCode(), status.getMessage(), protocol, null, null), address, port);
+	}
+	
+	/**
+	 * Answers a request registered with <code>acceptRequest</code> whose handler has failed 
+	 * with <code>500 Internal Server Error</code>, unless a response was already sent. The 
+	 * error is kept like any other response, so retransmissions of the request get it as well 
+	 * instead of being ignored until the request expires.
+	 * 
+	 * @param message		the request
+	 * @param address		the address of the sender of the request
+	 * @param port			the port of the sender of the request
+	 * @throws IOException	if the response can't be sent
+	 */
+	public void failRequest(HTTPXActionMessage message, InetAddress address, int port) throws IOException {
+		Response kept = responses.get(key(message, address, port));
+		if (kept != null && kept.get() == null) {
+			sendResponse(message, HTTPStatus.INTERNAL_ERROR, address, port);
+		}
+	}
+	
+	/**
+	 * Fails all waiting requests and stops the timers.
+	 */
+	public void shutdown() {
+		requests.shutdown();
+		responses.shutdown();
+		for (Request request : requests.clear()) {
+			request.complete(null);
+		}
+		responses.clear();
+	}
+	
+	/**
+	 * Returns the table of the requests waiting for a response.
+	 * 
+	 * @return the table of the sent requests
+	 */
+	public HTTPXPendingResponseTable<?> getPendingRequests() {
+		return requests;
+	}
+	
+	/**
+	 * Returns the number of retransmitted requests.
+	 * 
+	 * @return the number of retransmissions
+	 */
+	public long getRetransmitCount() {
+		return retransmitted.get();
+	}
+	
+	/**
+	 * Returns the number of received requests which were retransmissions.
+	 * 
+	 * @return the number of duplicate requests
+	 */
+	public long getDuplicateCount() {
+		return duplicates.get();
+	}
+	
+	private Request send(HTTPXActionMessage message) throws IOException {
+		String uid = new UID().toString();
+		message.setHeader(HTTPXConstants.EXCHANGE_ID, uid);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new HTTPXMessageRefactorer().writeTo(message, out);
+		
+		Request request = new Request(uid, message.getHeaderIgnoreCase(HTTPXConstants.UNIQUE_ID), 
+				fragmenter.fragment(out.toByteArray(), protocol), InetAddress.getByName(message.getHost()), message.getPort());
+		
+		//register before sending, the response may be faster than this thread
+		requests.put(uid, request, request.timeout);
+		try {
+			request.send();
+		} catch (IOException e) {
+			requests.remove(uid);
+			throw e;
+		}
+		return request;
+	}
+	
+	/* Called by the timer if the response to a request is overdue */
+	private void retransmit(final String id, final Request request) {
+		if (request.retransmits >= maxRetransmits) {
+			//the handler of the response may block, so it is called by a worker
+			boolean accepted = pipeline.execute(new Runnable() {
+				public void run() {
+					LOGGER.debug("No " + protocol + " response for " + id);
+					request.complete(null);
+				}
+			});
+			if (!accepted) {
+				//all workers busy, try again with the next tick of the timer
+				requests.put(id, request, 1);
+			}
+			return;
+		}
+		request.retransmits++;
+		request.timeout *= backoffFactor;
+		retransmitted.incrementAndGet();
+		
+		requests.put(id, request, request.timeout);
+		try {
+			LOGGER.debug("Retransmission " + request.retransmits + " of " + id);
+			request.send();
+		} catch (IOException e) {
+			LOGGER.debug(e);
+		}
+	}
+	
+	private void sendDatagrams(byte[] message, InetAddress address, int port) throws IOException {
+		for (byte[] datagram : fragmenter.fragment(message, protocol)) {
+			transport.send(datagram, address, port);
+		}
+	}
+	
+	private String key(HTTPXActionMessage message, InetAddress address, int port) {
+		return address.getHostAddress() + ":" + port + " " + message.getHeaderIgnoreCase(HTTPXConstants.EXCHANGE_ID).trim();
+	}
+	
+	/**
+	 * A sent request waiting for its response, also the handle of an asynchronous request.
+	 */
+	private class Request implements HTTPXStatusMessageHandle {
+		
+		private final String id;
+		
+		/* the Unique-ID of the request, if any, for the 408 response */
+		private final String uniqueId;
+		
+		private final List<byte[]> datagrams;
+		private final InetAddress address;
+		private final int port;
+		
+		/* changed by the timer thread only */
+		private int retransmits;
+		private long timeout = retransmitTimeout;
+		
+		private boolean done;
+		private HTTPXStatusMessage response;
+		private HTTPXStatusMessageHandler handler;
+		
+		private Request(String id, String uniqueId, List<byte[]> datagrams, InetAddress address, int port) {
+			this.id = id;
+			this.uniqueId = uniqueId;
+			this.datagrams = datagrams;
+			this.address = address;
+			this.port = port;
+		}
+		
+		private void send() throws IOException {
+			for (byte[] datagram : datagrams) {
+				transport.send(datagram, address, port);
+			}
+		}
+		
+		/* the response or null if there was none in time */
+		private void complete(HTTPXStatusMessage response) {
+			HTTPXStatusMessageHandler handler;
+			synchronized (this) {
+				if (done) {
+					return;
+				}
+				done = true;
+				this.response = response;
+				handler = this.handler;
+				notifyAll();
+			}
+			deliver(handler);
+		}
+		
+		private synchronized HTTPXStatusMessage await() throws InterruptedException {
+			while (!done) {
+				wait();
+			}
+			return response;
+		}
+		
+		public void addStatusMessageHandler(HTTPXStatusMessageHandler handler) {
+			boolean deliver;
+			synchronized (this) {
+				this.handler = handler;
+				deliver = done;
+			}
+			if (deliver) {
+				deliver(handler);
+			}
+		}
+
+		public synchronized HTTPXStatusMessageHandler getStatusMessageHandler() {
+			return handler;
+		}
+		
+		private void deliver(HTTPXStatusMessageHandler handler) {
+			if (handler == null) {
+				return;
+			}
+			HTTPXStatusMessage message = response;
+			if (message == null) {
+				message = new HTTPXStatusMessage(HTTPStatus.REQUEST_TIMEOUT.getCode(), HTTPStatus.REQUEST_TIMEOUT.getMessage(), protocol, null, null);
+				message.setHeader(HTTPXConstants.EXCHANGE_ID, id);
+				if (uniqueId != null) {
+					message.setHeader(HTTPXConstants.UNIQUE_ID, uniqueId);
+				}
+			}
+			try {
+				handler.handle(message);
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * The response to a received request, <code>null</code> while the handler is working.
+	 */
+	private static class Response {
+		
+		private volatile byte[] data;
+		
+		private byte[] get() {
+			return data;
+		}
+		
+		private void set(byte[] data) {
+			this.data = data;
+		}
+	}
+}
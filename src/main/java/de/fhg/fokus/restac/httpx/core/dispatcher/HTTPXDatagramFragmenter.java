@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.rmi.server.UID;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXHeadParser;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * Splits serialized HTTPU and HTTPMU messages which don't fit into one datagram and 
+ * reassembles them on the receiving side. Every fragment is a datagram of its own with 
+ * a small head:
+ * <pre>
+ * FRAGMENT * HTTPU/1.1
+ * Fragment: &lt;message id&gt; &lt;index&gt;/&lt;count&gt;
+ * Content-Length: &lt;length of the payload&gt;
+ * </pre>
+ * followed by the next bytes of the serialized message. A fragment whose payload differs 
+ * from its <code>Content-Length</code> is rejected. Fragments of a message are kept until all 
+ * of them have arrived. The reassembly memory is bounded by the size of a single message, 
+ * by the sum of all incomplete messages and by their number, since every incomplete message 
+ * holds a table of its fragments; incomplete messages are discarded after a timeout.
+ * <p>
+ * Splitting is switched on with the system property <code>restac.udp.fragmentation</code>,
+ * reassembly is always done. The limits are set with <code>restac.udp.fragmentSize</code>,
+ * <code>restac.udp.maxMessageSize</code>, <code>restac.udp.maxReassemblyBytes</code>,
+ * <code>restac.udp.maxIncompleteMessages</code> and <code>restac.udp.reassemblyTimeout</code> (ms).
+ * </p>
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXDatagramFragmenter {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXDatagramFragmenter.class);
+	
+	public final static String FRAGMENTATION_PROPERTY = "restac.udp.fragmentation";
+	public final static String FRAGMENT_SIZE_PROPERTY = "restac.udp.fragmentSize";
+	public final static String MAX_MESSAGE_SIZE_PROPERTY = "restac.udp.maxMessageSize";
+	public final static String MAX_REASSEMBLY_BYTES_PROPERTY = "restac.udp.maxReassemblyBytes";
+	public final static String MAX_INCOMPLETE_MESSAGES_PROPERTY = "restac.udp.maxIncompleteMessages";
+	public final static String REASSEMBLY_TIMEOUT_PROPERTY = "restac.udp.reassemblyTimeout";
+	
+	/* fits into an ethernet frame together with the IP and UDP headers */
+	public final static int DEFAULT_FRAGMENT_SIZE = 1400;
+	public final static int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024;
+	public final static int DEFAULT_MAX_REASSEMBLY_BYTES = 1024 * 1024;
+	public final static int DEFAULT_MAX_INCOMPLETE_MESSAGES = 64;
+	public final static int DEFAULT_REASSEMBLY_TIMEOUT = 5000;
+	
+	/** The method of a fragment datagram */
+	public final static String FRAGMENT = "FRAGMENT";
+	
+	/** The header with the message id, the index and the number of fragments */
+	public final static String FRAGMENT_HEADER = "Fragment";
+	
+	private final static byte[] FRAGMENT_PREFIX = (FRAGMENT + " ").getBytes();
+	
+	/* room for the head of a fragment */
+	private final static int MAX_FRAGMENT_HEAD_SIZE = 128;
+	
+	private final boolean enabled;
+	private final int fragmentSize;
+	private final int maxMessageSize;
+	private final int maxReassemblyBytes;
+	private final int maxIncompleteMessages;
+	private final long timeout;
+	
+	/* incomplete messages by sender and message id, the oldest first */
+	private final Map<String, Message> messages = new LinkedHashMap<String, Message>();
+	
+	/* sum of the payload bytes of all incomplete messages */
+	private int reassemblyBytes;
+	
+	private long completed;
+	private long discarded;
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramFragmenter</code> configured by the system properties.
+	 */
+	public HTTPXDatagramFragmenter() {
+		this(Boolean.getBoolean(FRAGMENTATION_PROPERTY), 
+				Integer.getInteger(FRAGMENT_SIZE_PROPERTY, DEFAULT_FRAGMENT_SIZE).intValue(),
+				Integer.getInteger(MAX_MESSAGE_SIZE_PROPERTY, DEFAULT_MAX_MESSAGE_SIZE).intValue(),
+				Integer.getInteger(MAX_REASSEMBLY_BYTES_PROPERTY, DEFAULT_MAX_REASSEMBLY_BYTES).intValue(),
+				Integer.getInteger(MAX_INCOMPLETE_MESSAGES_PROPERTY, DEFAULT_MAX_INCOMPLETE_MESSAGES).intValue(),
+				Integer.getInteger(REASSEMBLY_TIMEOUT_PROPERTY, DEFAULT_REASSEMBLY_TIMEOUT).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramFragmenter</code> with the specified attributes.
+	 * 
+	 * @param enabled				<code>true</code> if outgoing messages are split
+	 * @param fragmentSize			the maximum size of a fragment datagram
+	 * @param maxMessageSize		the maximum size of a reassembled message
+	 * @param maxReassemblyBytes	the maximum number of bytes kept for incomplete messages
+	 * @param maxIncompleteMessages	the maximum number of incomplete messages
+	 * @param timeout				the time in ms to wait for the missing fragments of a message
+	 */
+	public HTTPXDatagramFragmenter(boolean enabled, int fragmentSize, int maxMessageSize, int maxReassemblyBytes, int maxIncompleteMessages, long timeout) {
+		this.enabled = enabled;
+		this.fragmentSize = Math.max(fragmentSize, 2 * MAX_FRAGMENT_HEAD_SIZE);
+		this.maxMessageSize = maxMessageSize;
+		this.maxReassemblyBytes = maxReassemblyBytes;
+		this.maxIncompleteMessages = maxIncompleteMessages;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Splits the specified serialized message into fragment datagrams. If splitting is 
+	 * switched off or the message fits into one fragment the message itself is returned.
+	 * 
+	 * @param message	the serialized message
+	 * @param protocol	the protocol of the message, <code>HTTPU</code> or <code>HTTPMU</code>
+	 * @return			the datagrams to send
+	 */
+	public List<byte[]> fragment(byte[] message, String protocol) {
+		List<byte[]> datagrams = new ArrayList<byte[]>();
+		
+		if (!enabled || message.length <= fragmentSize) {
+			datagrams.add(message);
+			return datagrams;
+		}
+		
+		String id = new UID().toString();
+		int payloadSize = fragmentSize - MAX_FRAGMENT_HEAD_SIZE;
+		int count = (message.length + payloadSize - 1) / payloadSize;
+		
+		for (int index = 0; index < count; index++) {
+			int offset = index * payloadSize;
+			int length = Math.min(payloadSize, message.length - offset);
+			
+			byte[] head = toBytes(FRAGMENT + " * " + protocol + "/1.1" + HTTPXConstants.CRLF
+					+ FRAGMENT_HEADER + ": " + id + " " + index + "/" + count + HTTPXConstants.CRLF
+					+ HTTPXConstants.CONTENT_LENGTH + ": " + length + HTTPXConstants.CRLF
+					+ HTTPXConstants.CRLF);
+			
+			byte[] datagram = new byte[head.length + length];
+			System.arraycopy(head, 0, datagram, 0, head.length);
+			System.arraycopy(message, offset, datagram, head.length, length);
+			datagrams.add(datagram);
+		}
+		LOGGER.debug("Message of " + message.length + " bytes split into " + count + " fragments");
+		return datagrams;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the specified datagram is a fragment.
+	 * 
+	 * @param data		the array with the datagram
+	 * @param offset	the offset of the datagram
+	 * @param length	the length of the datagram
+	 * @return			<code>true</code> if the datagram starts with the method <code>FRAGMENT</code>
+	 */
+	public static boolean isFragment(byte[] data, int offset, int length) {
+		if (length < FRAGMENT_PREFIX.length) {
+			return false;
+		}
+		for (int i = 0; i < FRAGMENT_PREFIX.length; i++) {
+			if (data[offset + i] != FRAGMENT_PREFIX[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the specified fragment. If it was the last missing fragment the reassembled message
+	 * is returned. The payload is copied, so the array may be reused afterwards.
+	 * 
+	 * @param data		the array with the fragment datagram
+	 * @param offset	the offset of the datagram
+	 * @param length	the length of the datagram
+	 * @param address	the address of the sender
+	 * @param port		the port of the sender
+	 * @return			the serialized message or <code>null</code> if fragments are still missing
+	 * @throws HTTPXProtocolViolationException	if the fragment is malformed or its payload does not 
+	 * 											match its <code>Content-Length</code>
+	 */
+	public byte[] reassemble(byte[] data, int offset, int length, InetAddress address, int port) throws HTTPXProtocolViolationException {
+		HTTPXHeadParser parser = new HTTPXHeadParser();
+		int headSize = parser.parse(data, offset, length);
+		if (!parser.isComplete()) {
+			throw new HTTPXProtocolViolationException("Incomplete fragment head");
+		}
+		
+		String value = null;
+		String contentLength = null;
+		for (int i = 0; i < parser.getHeaderCount(); i++) {
+			if (FRAGMENT_HEADER.equalsIgnoreCase(parser.getHeaderName(i))) {
+				value = parser.getHeaderValue(i);
+			} else if (HTTPXConstants.CONTENT_LENGTH.equalsIgnoreCase(parser.getHeaderName(i))) {
+				contentLength = parser.getHeaderValue(i);
+			}
+		}
+		
+		String id;
+		int index;
+		int count;
+		try {
+			int space = value.lastIndexOf(' ');
+			int slash = value.indexOf('/', space);
+			id = value.substring(0, space).trim();
+			index = Integer.parseInt(value.substring(space + 1, slash));
+			count = Integer.parseInt(value.substring(slash + 1));
+		} catch (RuntimeException e) {
+			throw new HTTPXProtocolViolationException("Malformed " + FRAGMENT_HEADER + " header: " + value);
+		}
+		int payloadLength = length - headSize;
+		if (contentLength == null || !contentLength.trim().equals(String.valueOf(payloadLength))) {
+			throw new HTTPXProtocolViolationException("Fragment payload of " + payloadLength + " bytes does not match Content-Length: " + contentLength);
+		}
+		//a fragment carries at least MAX_FRAGMENT_HEAD_SIZE payload bytes, except the last one
+		if (count < 1 || index < 0 || index >= count || count > maxMessageSize / MAX_FRAGMENT_HEAD_SIZE || id.length() == 0) {
+			throw new HTTPXProtocolViolationException("Invalid " + FRAGMENT_HEADER + " header: " + value);
+		}
+		
+		String key = address.getHostAddress() + ":" + port + " " + id;
+		long now = System.currentTimeMillis();
+		
+		synchronized (messages) {
+			expire(now);
+			
+			Message message = messages.get(key);
+			if (message == null) {
+				if (messages.size() >= maxIncompleteMessages) {
+					LOGGER.debug("Too many incomplete messages, message " + id + " from " + address + " discarded");
+					discarded++;
+					return null;
+				}
+				message = new Message(count, now);
+				messages.put(key, message);
+			} else if (message.parts.length != count) {
+				throw new HTTPXProtocolViolationException("Fragment count of message " + id + " changed");
+			}
+			if (message.parts[index] != null) {
+				//duplicate
+				return null;
+			}
+			if (message.size + payloadLength > maxMessageSize || reassemblyBytes + payloadLength > maxReassemblyBytes) {
+				LOGGER.debug("Reassembly limit reached, message " + id + " from " + address + " discarded");
+				remove(key);
+				discarded++;
+				return null;
+			}
+			
+			byte[] part = new byte[payloadLength];
+			System.arraycopy(data, offset + headSize, part, 0, payloadLength);
+			message.parts[index] = part;
+			message.size += payloadLength;
+			message.received++;
+			reassemblyBytes += payloadLength;
+			
+			if (message.received < count) {
+				return null;
+			}
+			remove(key);
+			completed++;
+			
+			byte[] result = new byte[message.size];
+			int pos = 0;
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(message.parts[i], 0, result, pos, message.parts[i].length);
+				pos += message.parts[i].length;
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Discards all incomplete messages older than the timeout. Must be called with the lock held.
+	 */
+	private void expire(long now) {
+		for (Iterator<Message> iter = messages.values().iterator(); iter.hasNext();) {
+			Message message = iter.next();
+			if (now - message.created < timeout) {
+				//insertion order, all following messages are younger
+				return;
+			}
+			iter.remove();
+			reassemblyBytes -= message.size;
+			discarded++;
+		}
+	}
+	
+	/**
+	 * Removes an incomplete message. Must be called with the lock held.
+	 */
+	private void remove(String key) {
+		Message message = messages.remove(key);
+		if (message != null) {
+			reassemblyBytes -= message.size;
+		}
+	}
+	
+	private static byte[] toBytes(String s) {
+		try {
+			return s.getBytes(HTTPXConstants.DEFAULT_CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if outgoing messages are split.
+	 * 
+	 * @return <code>true</code> if fragmentation is switched on
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Returns the number of messages which are waiting for fragments.
+	 * 
+	 * @return the number of incomplete messages
+	 */
+	public int getIncompleteCount() {
+		synchronized (messages) {
+			return messages.size();
+		}
+	}
+	
+	/**
+	 * Returns the number of bytes kept for incomplete messages.
+	 * 
+	 * @return the number of buffered bytes
+	 */
+	public int getReassemblyBytes() {
+		synchronized (messages) {
+			return reassemblyBytes;
+		}
+	}
+	
+	/**
+	 * Returns the number of reassembled messages.
+	 * 
+	 * @return the number of completed messages
+	 */
+	public long getCompletedCount() {
+		synchronized (messages) {
+			return completed;
+		}
+	}
+	
+	/**
+	 * Returns the number of incomplete messages discarded because of a timeout or a limit.
+	 * 
+	 * @return the number of discarded messages
+	 */
+	public long getDiscardedCount() {
+		synchronized (messages) {
+			return discarded;
+		}
+	}
+	
+	/**
+	 * The fragments of one message received so far.
+	 */
+	private static class Message {
+		
+		final byte[][] parts;
+		final long created;
+		int received;
+		int size;
+		
+		Message(int count, long created) {
+			this.parts = new byte[count][];
+			this.created = created;
+		}
+	}
+}
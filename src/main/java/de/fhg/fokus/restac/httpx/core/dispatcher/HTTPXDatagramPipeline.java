@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Receive pipeline of the UDP dispatchers. The receiving thread takes the buffers for the 
+ * datagrams from a <code>HTTPXBufferPool</code> and passes every received datagram to a bounded 
+ * <code>HTTPXWorkerPool</code>. The worker hands the bytes to the <code>DatagramHandler</code> 
+ * and gives the buffer back to the pool afterwards. If all workers are busy and the queue is full 
+ * the datagram is dropped, as the network would do, and counted.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXDatagramPipeline {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXDatagramPipeline.class);
+	
+	public final static String BUFFER_SIZE_PROPERTY = "restac.udp.receiveBufferSize";
+	
+	/* larger than a fragment of HTTPXDatagramFragmenter, so fragments are never truncated */
+	public final static int DEFAULT_BUFFER_SIZE = 8192;
+	
+	/**
+	 * Processes the received datagrams.
+	 */
+	public interface DatagramHandler{
+		
+		/**
+		 * Called on a worker for every received datagram. The array belongs to the pool and 
+		 * must not be used after the method has returned.
+		 * 
+		 * @param data		the array with the datagram
+		 * @param offset	the offset of the datagram
+		 * @param length	the length of the datagram
+		 * @param address	the address of the sender
+		 * @param port		the port of the sender
+		 */
+		public void handleDatagram(byte[] data, int offset, int length, InetAddress address, int port);
+	}
+	
+	private final HTTPXBufferPool buffers;
+	
+	private final HTTPXWorkerPool workers;
+	
+	private final DatagramHandler handler;
+	
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramPipeline</code> with the specified attributes, the 
+	 * size of the receive buffers is given by the system property <code>restac.udp.receiveBufferSize</code>.
+	 * 
+	 * @param name			the prefix of the thread names
+	 * @param handler		the handler of the datagrams
+	 */
+	public HTTPXDatagramPipeline(String name, DatagramHandler handler) {
+		this(name, Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE).intValue(), handler);
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramPipeline</code> with the specified attributes, the 
+	 * number of workers and the queue size are given by the system properties of 
+	 * <code>HTTPXWorkerPool</code>.
+	 * 
+	 * @param name			the prefix of the thread names
+	 * @param bufferSize	the size of the receive buffers
+	 * @param handler		the handler of the datagrams
+	 */
+	public HTTPXDatagramPipeline(String name, int bufferSize, DatagramHandler handler) {
+		this.handler = handler;
+		this.workers = new HTTPXWorkerPool(name);
+		//enough buffers for the queue, the workers and the receiving thread
+		this.buffers = new HTTPXBufferPool(bufferSize, 
+				Integer.getInteger(HTTPXWorkerPool.QUEUE_SIZE_PROPERTY, HTTPXWorkerPool.DEFAULT_QUEUE_SIZE).intValue() 
+				+ Integer.getInteger(HTTPXWorkerPool.WORKERS_PROPERTY, HTTPXWorkerPool.DEFAULT_WORKERS).intValue() + 1);
+	}
+	
+	/**
+	 * Returns the size of the receive buffers.
+	 * 
+	 * @return	the buffer size
+	 */
+	public int getBufferSize(){
+		return buffers.getBufferSize();
+	}
+	
+	/**
+	 * Returns a packet for receiving with a buffer from the pool.
+	 * 
+	 * @return	the packet
+	 */
+	public DatagramPacket createPacket(){
+		byte[] buffer = buffers.acquire();
+		return new DatagramPacket(buffer, buffer.length);
+	}
+	
+	/**
+	 * Returns a buffer from the pool, e.g. to copy a datagram from a channel into.
+	 * 
+	 * @return	the buffer
+	 */
+	public byte[] acquireBuffer(){
+		return buffers.acquire();
+	}
+	
+	/**
+	 * Passes a received packet to the workers. The buffer of the packet is given back to the 
+	 * pool once it has been handled or dropped.
+	 * 
+	 * @param packet	the packet created by <code>createPacket</code>
+	 * @return			<code>false</code> if the datagram was dropped
+	 */
+	public boolean submit(DatagramPacket packet){
+		return submit(packet.getData(), packet.getOffset(), packet.getLength(), packet.getAddress(), packet.getPort());
+	}
+	
+	/**
+	 * Passes a received datagram to the workers. The buffer is given back to the pool once 
+	 * it has been handled or dropped.
+	 * 
+	 * @param buffer	the buffer from the pool
+	 * @param offset	the offset of the datagram
+	 * @param length	the length of the datagram
+	 * @param address	the address of the sender
+	 * @param port		the port of the sender
+	 * @return			<code>false</code> if the datagram was dropped
+	 */
+	public boolean submit(final byte[] buffer, final int offset, final int length, final InetAddress address, final int port){
+		received.incrementAndGet();
+		boolean accepted = workers.execute(new Runnable() {
+			public void run() {
+				try {
+					handler.handleDatagram(buffer, offset, length, address, port);
+				} catch (RuntimeException e) {
+					LOGGER.error(e);
+					e.printStackTrace();
+				} finally {
+					buffers.release(buffer);
+				}
+			}
+		});
+		if (!accepted) {
+			dropped.incrementAndGet();
+			LOGGER.debug("All workers busy, datagram from " + address + " dropped");
+			buffers.release(buffer);
+		}
+		return accepted;
+	}
+	
+	/**
+	 * Runs a task on the workers of this pipeline, e.g. to call a handler outside of a timer thread.
+	 * 
+	 * @param task	the task
+	 * @return		<code>false</code> if all workers are busy and the queue is full
+	 */
+	public boolean execute(Runnable task){
+		return workers.execute(task);
+	}
+	
+	/**
+	 * Gives the buffer of a packet which was not submitted back to the pool.
+	 * 
+	 * @param packet	the packet created by <code>createPacket</code>
+	 */
+	public void recycle(DatagramPacket packet){
+		buffers.release(packet.getData());
+	}
+	
+	/**
+	 * Gives a buffer which was not submitted back to the pool.
+	 * 
+	 * @param buffer	the buffer from <code>acquireBuffer</code>
+	 */
+	public void recycle(byte[] buffer){
+		buffers.release(buffer);
+	}
+	
+	/**
+	 * Stops the workers, datagrams already queued are still handled.
+	 */
+	public void shutdown(){
+		workers.shutdown();
+	}
+	
+	/**
+	 * Returns the number of datagrams received.
+	 * 
+	 * @return	the number of received datagrams
+	 */
+	public long getReceivedCount(){
+		return received.get();
+	}
+	
+	/**
+	 * Returns the number of datagrams dropped because all workers were busy.
+	 * 
+	 * @return	the number of dropped datagrams
+	 */
+	public long getDroppedCount(){
+		return dropped.get();
+	}
+	
+	/**
+	 * Returns the number of datagrams waiting for a worker.
+	 * 
+	 * @return	the queue depth
+	 */
+	public int getQueueSize(){
+		return workers.getQueueSize();
+	}
+	
+	/**
+	 * Returns the number of workers currently handling a datagram.
+	 * 
+	 * @return	the number of busy workers
+	 */
+	public int getActiveCount(){
+		return workers.getActiveCount();
+	}
+}
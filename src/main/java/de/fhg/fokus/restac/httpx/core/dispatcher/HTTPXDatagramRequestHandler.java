@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPStatus;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXPlainActionMessageHandler;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandler;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXSynActionMessageHandler;
+
+/**
+ * Parses the unicast datagrams received by a <code>UDPUManagedActionMessageDispatcher</code> 
+ * or a <code>NIOUDPUManagedActionMessageDispatcher</code> and passes them to the responsible 
+ * handler, run by the workers of the pipeline. Fragments are reassembled first, responses 
+ * are passed to the exchange and requests with an <code>Exchange-ID</code> are answered 
+ * through the exchange.
+ * 
+ * @author Murat Ates
+ */
+class HTTPXDatagramRequestHandler implements HTTPXDatagramPipeline.DatagramHandler {
+	
+	private final static Logger LOGGER = Logger.getLogger(HTTPXDatagramRequestHandler.class);
+	
+	/** The dispatcher whose registered handlers receive the requests */
+	private final HTTPXManagedActionMessageDispatcher dispatcher;
+	
+	/** Reassembles incoming fragments */
+	private final HTTPXDatagramFragmenter fragmenter;
+	
+	/** Request/response exchanges, set once the dispatcher is started */
+	private volatile HTTPXDatagramExchange exchange;
+	
+	/**
+	 * Constructs a new <code>HTTPXDatagramRequestHandler</code> with the specified attributes.
+	 * 
+	 * @param dispatcher	the dispatcher whose registered handlers receive the requests
+	 * @param fragmenter	the fragmenter of the dispatcher
+	 */
+	HTTPXDatagramRequestHandler(HTTPXManagedActionMessageDispatcher dispatcher, HTTPXDatagramFragmenter fragmenter) {
+		this.dispatcher = dispatcher;
+		this.fragmenter = fragmenter;
+	}
+	
+	/**
+	 * Sets the exchange which answers the requests. The exchange needs the pipeline and the
+	 * pipeline needs this handler, so the exchange is set after both are constructed.
+	 * 
+	 * @param exchange	the exchange of the dispatcher
+	 */
+	void setExchange(HTTPXDatagramExchange exchange) {
+		this.exchange = exchange;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXDatagramPipeline.DatagramHandler#handleDatagram(byte[], int, int, java.net.InetAddress, int)
+	 */
+	public void handleDatagram(byte[] data, int offset, int length, InetAddress address, int port) {
+		LOGGER.debug("new " + HTTPXConstants.HTTPU + " package received");
+		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+		HTTPXActionMessage request = null;
+		
+		try {
+			if (HTTPXDatagramFragmenter.isFragment(data, offset, length)) {
+				data = fragmenter.reassemble(data, offset, length, address, port);
+				if (data == null) {
+					//fragments are still missing
+					return;
+				}
+				offset = 0;
+				length = data.length;
+			}
+			if (exchange.isResponse(data, offset, length)) {
+				HTTPXStatusMessage response = refactorer.createStatusMessage(data, offset, length);
+				LOGGER.debug(HTTPXConstants.HTTPU + " Response:\r\n" + response.toString());
+				exchange.handleResponse(response);
+				return;
+			}
+			//parse straight from the buffer of the packet
+			request = refactorer.createActionMessage(data, offset, length);
+		} catch (HTTPXProtocolViolationException e) {
+			LOGGER.error(e);
+			e.printStackTrace();
+			return;
+		}
+		if (request.getMethod() == null) {
+			LOGGER.debug("Empty " + HTTPXConstants.HTTPU + " package ignored");
+			return;
+		}
+		request.setPort(port);
+		request.setHost(address.getHostName());
+		
+		LOGGER.debug(HTTPXConstants.HTTPU + " Request:\r\n" + request.toString());
+
+		try {
+			if (request.getHeaderIgnoreCase(HTTPXConstants.EXCHANGE_ID) != null) {
+				//the sender waits for a response
+				handleRequest(request, address, port);
+				return;
+			}
+			HTTPXManagedActionMessageDispatcher.Tuple element = dispatcher.lookup(request, HTTPXPlainActionMessageHandler.class);
+			if (element != null) {
+				LOGGER.debug("void Handler was found : " + element.handler);
+				((HTTPXPlainActionMessageHandler)element.handler).handlePlain(request);
+			}
+		} catch (IOException e) {
+			LOGGER.error(e);
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Passes a request with an <code>Exchange-ID</code> to a synchronous or asynchronous 
+	 * handler and sends back the response. Retransmissions of the request are answered 
+	 * by the exchange, with <code>500 Internal Server Error</code> if the handler has failed.
+	 */
+	private void handleRequest(final HTTPXActionMessage request, final InetAddress address, final int port) throws IOException {
+		final HTTPXDatagramExchange exchange = this.exchange;
+		if (!exchange.acceptRequest(request, address, port)) {
+			return;
+		}
+		
+		try {
+			HTTPXManagedActionMessageDispatcher.Tuple element = dispatcher.lookup(request, HTTPXSynActionMessageHandler.class, HTTPXAsynActionMessageHandler.class);
+			if (element == null) {
+				LOGGER.debug("no handler was found");
+				exchange.sendResponse(request, HTTPStatus.NOT_FOUND, address, port);
+			} else if (element.handler instanceof HTTPXSynActionMessageHandler) {
+				LOGGER.debug("synchronous Handler was found: " + element.handler);
+				
+				HTTPXStatusMessage response = null;
+				try {
+					response = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(request);
+				} catch (HTTPXProtocolViolationException e) {
+					LOGGER.error(e);
+					exchange.sendResponse(request, HTTPStatus.BAD_REQUEST, address, port);
+					return;
+				}
+				if (response == null) {
+					exchange.sendResponse(request, HTTPStatus.INTERNAL_ERROR, address, port);
+				} else {
+					exchange.sendResponse(request, response, address, port);
+				}
+			} else {
+				LOGGER.debug("asynchronous Handler was found");
+				
+				HTTPXStatusMessageHandle handle = ((HTTPXAsynActionMessageHandler)element.handler).handleAsyn(request);
+				if (handle == null) {
+					exchange.sendResponse(request, HTTPStatus.INTERNAL_ERROR, address, port);
+					return;
+				}
+				handle.addStatusMessageHandler(new HTTPXStatusMessageHandler() {
+					public void handle(HTTPXStatusMessage response) throws IOException {
+						exchange.sendResponse(request, response, address, port);
+					}
+				});
+			}
+		} catch (IOException e) {
+			LOGGER.error(e);
+			exchange.failRequest(request, address, port);
+		} catch (RuntimeException e) {
+			LOGGER.error(e);
+			e.printStackTrace();
+			exchange.failRequest(request, address, port);
+		}
+	}
+	
+}
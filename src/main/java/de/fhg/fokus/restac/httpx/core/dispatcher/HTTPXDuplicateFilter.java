@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+
+/**
+ * Suppresses copies of a message which are received again within a short time window, 
+ * e.g. discovery announcements which are sent several times on purpose. A message is 
+ * identified by a 64 bit hash of the source address, the request line, the values of some 
+ * key headers and the body, so messages which differ only in their body are never merged. A 
+ * body which cannot be read again (its stream does not support <code>mark</code>) is never 
+ * suppressed. The hashes are kept in a bounded cache, the oldest first.
+ * <p>
+ * The window in ms, the size of the cache and the key headers (comma separated) are set with 
+ * the system properties <code>restac.udp.dedupWindow</code>, <code>restac.udp.dedupCacheSize</code> 
+ * and <code>restac.udp.dedupHeaders</code>; a window of <code>0</code>, the default, switches 
+ * the filter off.
+ * </p>
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXDuplicateFilter {
+
+	public final static String WINDOW_PROPERTY = "restac.udp.dedupWindow";
+	public final static String CACHE_SIZE_PROPERTY = "restac.udp.dedupCacheSize";
+	public final static String HEADERS_PROPERTY = "restac.udp.dedupHeaders";
+	
+	public final static int DEFAULT_WINDOW = 0;
+	public final static int DEFAULT_CACHE_SIZE = 4096;
+	public final static String DEFAULT_HEADERS = "Host,NT,NTS,USN,ST,MAN,Unique-ID,Exchange-ID";
+	
+	private final static long FNV_OFFSET = 0xcbf29ce484222325L;
+	private final static long FNV_PRIME = 0x100000001b3L;
+	
+	private final long window;
+	
+	private final int cacheSize;
+	
+	private final String[] headers;
+	
+	/* hash of a message -> time it was received first */
+	private final LinkedHashMap<Long, Long> seen = new LinkedHashMap<Long, Long>();
+	
+	private long duplicates;
+	
+	/**
+	 * Constructs a new <code>HTTPXDuplicateFilter</code> configured by the system properties.
+	 */
+	public HTTPXDuplicateFilter() {
+		this(Integer.getInteger(WINDOW_PROPERTY, DEFAULT_WINDOW).intValue(),
+				Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE).intValue(),
+				System.getProperty(HEADERS_PROPERTY, DEFAULT_HEADERS));
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXDuplicateFilter</code> with the specified attributes.
+	 * 
+	 * @param window		the time in ms in which a copy is suppressed, <code>0</code> to switch off
+	 * @param cacheSize		the maximum number of remembered messages
+	 * @param headers		the comma separated names of the key headers
+	 */
+	public HTTPXDuplicateFilter(long window, int cacheSize, String headers) {
+		this.window = window;
+		this.cacheSize = cacheSize;
+		
+		StringTokenizer tokenizer = new StringTokenizer(headers, ", ");
+		this.headers = new String[tokenizer.countTokens()];
+		for (int i = 0; i < this.headers.length; i++) {
+			this.headers[i] = tokenizer.nextToken();
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if the same message was received from the same source 
+	 * within the window. Otherwise the message is remembered.
+	 * 
+	 * @param request	the parsed message
+	 * @param source	the address of the sender
+	 * @return			<code>true</code> if the message is a copy
+	 */
+	public boolean isDuplicate(HTTPXActionMessage request, InetAddress source) {
+		if (window <= 0) {
+			return false;
+		}
+		
+		long hash = FNV_OFFSET;
+		hash = hash(hash, source.getHostAddress());
+		hash = hash(hash, request.getMethod());
+		hash = hash(hash, request.getPathAsString());
+		hash = hash(hash, request.getQueryAsString());
+		hash = hash(hash, request.getProtocol());
+		for (int i = 0; i < headers.length; i++) {
+			hash = hash(hash, request.getHeaderIgnoreCase(headers[i]));
+		}
+		InputStream body = request.getInputStream();
+		if (body != null) {
+			if (!body.markSupported()) {
+				return false;
+			}
+			try {
+				hash = hash(hash, body);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		Long key = Long.valueOf(hash);
+		long now = System.currentTimeMillis();
+		
+		synchronized (seen) {
+			//the oldest entries come first
+			for (Iterator<Long> iter = seen.values().iterator(); iter.hasNext();) {
+				if (now - iter.next().longValue() < window && seen.size() <= cacheSize) {
+					break;
+				}
+				iter.remove();
+			}
+			
+			if (seen.containsKey(key)) {
+				duplicates++;
+				return true;
+			}
+			seen.put(key, Long.valueOf(now));
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the number of suppressed copies.
+	 * 
+	 * @return the number of duplicates
+	 */
+	public long getDuplicateCount() {
+		synchronized (seen) {
+			return duplicates;
+		}
+	}
+	
+	/* FNV-1a over the characters of the value, a separator keeps "ab","c" apart from "a","bc" */
+	private static long hash(long hash, String value) {
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				hash ^= value.charAt(i);
+				hash *= FNV_PRIME;
+			}
+		}
+		hash ^= 0xff;
+		hash *= FNV_PRIME;
+		return hash;
+	}
+	
+	/* FNV-1a over the bytes of the body, which is reset to be read by the handler */
+	private static long hash(long hash, InputStream body) throws IOException {
+		byte[] buffer = new byte[512];
+		body.mark(Integer.MAX_VALUE);
+		try {
+			int n;
+			while ((n = body.read(buffer)) != -1) {
+				for (int i = 0; i < n; i++) {
+					hash ^= buffer[i] & 0xff;
+					hash *= FNV_PRIME;
+				}
+			}
+		} finally {
+			body.reset();
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A single selector thread. Channels are registered together with a 
+ * <code>HTTPXSelectionHandler</code> which is called on this thread whenever the
+ * channel becomes ready. Tasks submitted with <code>execute</code> are run on the 
+ * same thread between two selections, which is the only safe way for other threads
+ * to change interest operations of a registered channel.
+ * 
+ * @author Murat Ates
+ * @see HTTPXEventLoopGroup
+ */
+public class HTTPXEventLoop implements Runnable {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXEventLoop.class);
+	
+	/** The selector of this loop */
+	private Selector selector;
+	
+	/* Tasks to run on the loop thread */
+	private Queue<Runnable> tasks;
+	
+	private Thread thread;
+	
+	private volatile boolean running;
+	
+	private String name;
+	
+	/**
+	 * Constructs a new <code>HTTPXEventLoop</code> with the specified thread name.
+	 * 
+	 * @param name			the name of the loop thread
+	 * @throws IOException	if the selector can't be opened
+	 */
+	public HTTPXEventLoop(String name) throws IOException {
+		this.name = name;
+		this.selector = Selector.open();
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+	}
+	
+	/**
+	 * Starts the loop thread.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this);
+			thread.setName(name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Stops the loop thread and closes all channels which are still registered.
+	 */
+	public synchronized void shutdown() {
+		running = false;
+		selector.wakeup();
+		thread = null;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the current thread is the loop thread.
+	 * 
+	 * @return <code>true</code> if called on the loop thread
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+	
+	/**
+	 * Runs the specified task on the loop thread. If called on the loop thread the
+	 * task is run immediately.
+	 * 
+	 * @param task	the task
+	 */
+	public void execute(Runnable task) {
+		if (inEventLoop()) {
+			task.run();
+		} else {
+			tasks.add(task);
+			selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Registers the specified channel with the specified interest operations. The
+	 * registration itself is done on the loop thread.
+	 * 
+	 * @param channel	the channel, must be in non-blocking mode
+	 * @param ops		the interest operations
+	 * @param handler	the handler to call for ready operations
+	 */
+	public void register(final SelectableChannel channel, final int ops, final HTTPXSelectionHandler handler) {
+		execute(new Runnable() {
+			public void run() {
+				try {
+					channel.register(selector, ops, handler);
+				} catch (ClosedChannelException e) {
+					LOGGER.debug("Channel was closed before registration");
+				}
+			}
+		});
+	}
+	
+	public void run() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				LOGGER.error(e);
+				continue;
+			}
+			
+			runTasks();
+			
+			for (Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext();) {
+				SelectionKey key = iter.next();
+				iter.remove();
+				
+				if (!key.isValid()) {
+					continue;
+				}
+				try {
+					((HTTPXSelectionHandler)key.attachment()).handleSelection(key);
+				} catch (IOException e) {
+					LOGGER.debug(e);
+					if (!isConnectionless(key)) {
+						close(key);
+					}
+				} catch (RuntimeException e) {
+					LOGGER.error(e);
+					e.printStackTrace();
+					if (!isConnectionless(key)) {
+						close(key);
+					}
+				}
+			}
+		}
+		
+		runTasks();
+		for (SelectionKey key : selector.keys()) {
+			close(key);
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			LOGGER.error(e);
+		}
+	}
+	
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if the channel of the specified key is an open datagram 
+	 * channel. A failed receive or send only loses the one datagram, so such a channel 
+	 * stays registered and is closed only by its dispatcher or on shutdown of the loop.
+	 * 
+	 * @param key	the key
+	 * @return		<code>true</code> if the channel must not be closed on an error
+	 */
+	private static boolean isConnectionless(SelectionKey key) {
+		return key.channel() instanceof DatagramChannel && key.channel().isOpen();
+	}
+	
+	/**
+	 * Cancels the specified key and closes its channel.
+	 * 
+	 * @param key	the key
+	 */
+	public static void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			LOGGER.error(e);
+		}
+	}
+}
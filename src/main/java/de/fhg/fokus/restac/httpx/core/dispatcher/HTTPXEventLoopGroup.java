@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A fixed set of <code>HTTPXEventLoop</code>s. Channels are spread over the loops in 
+ * round robin order. All non-blocking dispatchers share the default group, so the 
+ * number of selector threads doesn't grow with the number of sockets or dispatchers.
+ * <p>
+ * The size of the default group can be set with the system property 
+ * <code>restac.nio.eventLoops</code>.
+ * </p>
+ * 
+ * @author Murat Ates
+ * @see HTTPXEventLoop
+ */
+public class HTTPXEventLoopGroup {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXEventLoopGroup.class);
+	
+	public final static String EVENT_LOOPS_PROPERTY = "restac.nio.eventLoops";
+	
+	private final static int DEFAULT_EVENT_LOOPS = Math.min(4, Runtime.getRuntime().availableProcessors());
+	
+	private static HTTPXEventLoopGroup defaultGroup;
+	
+	private HTTPXEventLoop[] loops;
+	
+	private AtomicInteger index;
+	
+	/**
+	 * Constructs and starts a new <code>HTTPXEventLoopGroup</code> with the specified number of loops.
+	 * 
+	 * @param size			the number of event loops
+	 * @param name			the prefix of the loop thread names
+	 * @throws IOException	if a selector can't be opened
+	 */
+	public HTTPXEventLoopGroup(int size, String name) throws IOException {
+		loops = new HTTPXEventLoop[Math.max(1, size)];
+		index = new AtomicInteger();
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new HTTPXEventLoop(name + "-" + i);
+			loops[i].start();
+		}
+	}
+	
+	/**
+	 * Returns the event loop group shared by all non-blocking dispatchers.
+	 * 
+	 * @return				the default group
+	 * @throws IOException	if a selector can't be opened
+	 */
+	public static synchronized HTTPXEventLoopGroup getDefault() throws IOException {
+		if (defaultGroup == null) {
+			int size = Integer.getInteger(EVENT_LOOPS_PROPERTY, DEFAULT_EVENT_LOOPS).intValue();
+			defaultGroup = new HTTPXEventLoopGroup(size, "HTTPXEventLoop");
+			LOGGER.info("Started " + size + " event loop(s)");
+		}
+		return defaultGroup;
+	}
+	
+	/**
+	 * Returns the next event loop in round robin order.
+	 * 
+	 * @return the event loop
+	 */
+	public HTTPXEventLoop next() {
+		return loops[(index.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+	
+	/**
+	 * Returns the number of event loops of this group.
+	 * 
+	 * @return the number of event loops
+	 */
+	public int size() {
+		return loops.length;
+	}
+	
+	/**
+	 * Stops all event loops of this group.
+	 */
+	public void shutdown() {
+		for (int i = 0; i < loops.length; i++) {
+			loops[i].shutdown();
+		}
+	}
+}
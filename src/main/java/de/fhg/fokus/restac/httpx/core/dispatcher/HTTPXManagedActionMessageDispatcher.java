@@ -26,13 +26,16 @@
 package de.fhg.fokus.restac.httpx.core.dispatcher;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 
+import de.fhg.fokus.restac.httpx.core.common.HTTPStatus;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXManagedActionMessageDispatcherInfo;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler;
@@ -56,10 +59,37 @@ import de.fhg.fokus.restac.httpx.core.dispatcher.server.TCPServerManagedActionMe
  */
 public abstract class HTTPXManagedActionMessageDispatcher implements HTTPXActionMessageDispatcher, HTTPXSynActionMessageHandler, HTTPXAsynActionMessageHandler, HTTPXPlainActionMessageHandler, HTTPXManagedActionMessageDispatcherInfo{
 	
-	/* <code>List</code> with all registered <code>HTTTPXActionMessageHandler</code>,
-	 * <code>HTTPXActionMessageFilter</code>
+	/* Pre-serialized "503 Service Unavailable", sent without any further work if the 
+	 * workers of an inbound dispatcher are overloaded
 	 */
-	protected List<Tuple> registration;
+	protected final static byte[] SERVICE_UNAVAILABLE_RESPONSE;
+	
+	/* Pre-serialized "408 Request Timeout", sent if the response of an asynchronous 
+	 * handler does not arrive in time
+	 */
+	protected final static byte[] REQUEST_TIMEOUT_RESPONSE;
+	
+	static {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(HTTPXConstants.CONTENT_LENGTH, "0");
+		headers.put(HTTPXConstants.CONNECTION, HTTPXConstants.CLOSE);
+		SERVICE_UNAVAILABLE_RESPONSE = new HTTPXMessageRefactorer().toByte(new HTTPXStatusMessage(HTTPStatus.SERVICE_UNAVAILABLE.getCode(), 
+				HTTPStatus.SERVICE_UNAVAILABLE.getMessage(), HTTPXConstants.HTTP, headers, null));
+		REQUEST_TIMEOUT_RESPONSE = new HTTPXMessageRefactorer().toByte(new HTTPXStatusMessage(HTTPStatus.REQUEST_TIMEOUT.getCode(), 
+				HTTPStatus.REQUEST_TIMEOUT.getMessage(), HTTPXConstants.HTTP, headers, null));
+	}
+	
+	/* Table with all registered <code>HTTTPXActionMessageHandler</code>,
+	 * <code>HTTPXActionMessageFilter</code>, read by the request threads without locking
+	 */
+	protected final HTTPXRegistrationTable<Tuple> registrationTable = new HTTPXRegistrationTable<Tuple>();
+	
+	/* Unmodifiable snapshot of the registrations in the order of registration, kept for 
+	 * subclasses which read the former <code>List</code>. A new snapshot is published with 
+	 * every change, so a reader holding one never sees it change; registrations are changed 
+	 * with <code>addActionMessageHandler</code> and <code>deleteActionMessageHandler</code>
+	 */
+	protected volatile List<Tuple> registration = registrationTable.values();
 	
 	/**
 	 * Inner Class to handle efficient a <code>HTTPXActionMessageFilter</code> and the 
@@ -68,8 +98,8 @@ public abstract class HTTPXManagedActionMessageDispatcher implements HTTPXAction
 	 * @author Murat Ates 
 	 */
 	protected class Tuple{
-		public HTTPXActionMessageFilter filter;
-		public HTTPXActionMessageHandler handler;
+		public final HTTPXActionMessageFilter filter;
+		public final HTTPXActionMessageHandler handler;
 		
 		protected Tuple(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler){
 			this.filter = filter;
@@ -83,7 +113,6 @@ public abstract class HTTPXManagedActionMessageDispatcher implements HTTPXAction
 	 * @param dispatcher	the proxy dispatcher 
 	 */
 	public HTTPXManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
-		registration = new ArrayList<Tuple>();
 	}
 
 	/**
@@ -102,9 +131,10 @@ public abstract class HTTPXManagedActionMessageDispatcher implements HTTPXAction
 	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher#addActionMessageHandler(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter, de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler)
 	 */
 	public void addActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler){
-		synchronized (registration) {
-			if (filter != null && handler != null) {
-				registration.add(new Tuple(filter, handler));
+		if (filter != null && handler != null) {
+			synchronized (registrationTable) {
+				registrationTable.add(filter, handler, new Tuple(filter, handler));
+				registration = registrationTable.values();
 			}
 		}
 	}
@@ -113,17 +143,39 @@ public abstract class HTTPXManagedActionMessageDispatcher implements HTTPXAction
 	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher#deleteActionMessageHandler(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter, de.fhg.fokus.restac.httpx.core.communication.HTTPXActionMessageHandler)
 	 */
 	public void deleteActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler){
-		synchronized (registration) {
-			for (ListIterator<Tuple> iter = registration.listIterator(); iter.hasNext();) {
-				Tuple element = iter.next();
-				if (element.filter.equals(filter) && element.handler.equals(handler)) {
-					iter.remove();
-					break;
-				}
-			}
+		removeRegistration(filter, handler);
+	}
+	
+	/**
+	 * Removes the first registration with an equal filter and handler and publishes the new 
+	 * snapshot of the registrations.
+	 * 
+	 * @param filter	the filter of the registration
+	 * @param handler	the handler of the registration
+	 * @return			the removed registration or <code>null</code> if there is none
+	 */
+	protected Tuple removeRegistration(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler){
+		synchronized (registrationTable) {
+			Tuple removed = registrationTable.remove(filter, handler);
+			registration = registrationTable.values();
+			return removed;
 		}
 	}
 	
+	/**
+	 * Returns the registration responsible for the specified request. The first registration whose
+	 * filter passes and whose handler is an instance of one of the specified handler types is chosen.
+	 * If there is none for the complete path, the last path segment is removed and the search starts
+	 * again until the root path is reached.
+	 * 
+	 * @param request		the request
+	 * @param handlerTypes	the accepted types of handlers
+	 * @return				the registration or <code>null</code> if no handler was found
+	 */
+	protected Tuple lookup(HTTPXActionMessage request, Class<?>... handlerTypes){
+		return registrationTable.lookup(request.getProtocol(), request.getHost(), request.getPort(), request.getPath(), request.getQueryAsString(), handlerTypes);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher#deliverAsynchronous(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage)
 	 */
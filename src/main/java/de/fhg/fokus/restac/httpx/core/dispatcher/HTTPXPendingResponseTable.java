@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Correlates asynchronous responses with the waiting requests by their <code>Unique-ID</code>.
+ * <p>
+ * The entries are kept in a concurrent hash map, so putting, completing and the number of 
+ * pending entries do not depend on the number of outstanding requests. Every entry has a 
+ * deadline. A hashed timer wheel, advanced by one daemon thread per table, finds the expired 
+ * entries and passes them to the <code>ExpiryHandler</code>, e.g. to answer with 
+ * <code>408 Request Timeout</code> and to free the connection. The handler runs on the thread 
+ * of the wheel and must not block. Completed and removed entries are unlinked from their 
+ * slot at once, so the wheel never holds on to a request which is no longer waiting.
+ * </p>
+ * IDs are compared ignoring case. The default timeout of the inbound dispatchers can be set 
+ * with the system property <code>restac.server.asyncTimeout</code> in milliseconds.
+ * 
+ * @author Murat Ates
+ *
+ * @param <T> the type of the waiting requests, e.g. the connection to answer on
+ */
+public class HTTPXPendingResponseTable<T> {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXPendingResponseTable.class);
+	
+	public final static String TIMEOUT_PROPERTY = "restac.server.asyncTimeout";
+	
+	public final static int DEFAULT_TIMEOUT = 60000;
+	
+	private final static int TICK = 100;
+	
+	private final static int WHEEL_SIZE = 512;
+	
+	/**
+	 * Callback for entries whose response did not arrive in time.
+	 * 
+	 * @param <T> the type of the waiting requests
+	 */
+	public interface ExpiryHandler<T>{
+		
+		/**
+		 * Called on the thread of the timer wheel once an entry has expired. The entry 
+		 * has already been removed from the table. The method must not block, e.g. on 
+		 * writing to a connection, since all other expiries of the table wait for it; such 
+		 * work is handed to a worker.
+		 * 
+		 * @param id		the ID of the entry
+		 * @param value		the waiting request
+		 */
+		public void expired(String id, T value);
+	}
+	
+	private static class Entry<T>{
+		private final String id;
+		private final T value;
+		
+		/* remaining turns of the wheel */
+		private long rounds;
+		
+		/* index of the slot which holds the entry, -1 if it is in none, guarded by wheel */
+		private int slot = -1;
+		
+		private Entry(String id, T value){
+			this.id = id;
+			this.value = value;
+		}
+	}
+	
+	private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<String, Entry<T>>();
+	
+	private final List<Set<Entry<T>>> wheel = new ArrayList<Set<Entry<T>>>(WHEEL_SIZE);
+	
+	/* number of ticks done, guarded by wheel */
+	private long tick;
+	
+	private final ExpiryHandler<T> expiryHandler;
+	
+	private final int timeout;
+	
+	private final Thread reaper;
+	
+	private volatile boolean running = true;
+	
+	private final AtomicInteger maxPending = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+	
+	/**
+	 * Constructs a new <code>HTTPXPendingResponseTable</code> with the timeout given by the 
+	 * system property.
+	 * 
+	 * @param name				the name of the reaper thread
+	 * @param expiryHandler		the callback for expired entries
+	 */
+	public HTTPXPendingResponseTable(String name, ExpiryHandler<T> expiryHandler) {
+		this(name, expiryHandler, Integer.getInteger(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXPendingResponseTable</code> with the specified attributes.
+	 * 
+	 * @param name				the name of the reaper thread
+	 * @param expiryHandler		the callback for expired entries
+	 * @param timeout			the default timeout in milliseconds
+	 */
+	public HTTPXPendingResponseTable(String name, ExpiryHandler<T> expiryHandler, int timeout) {
+		this.expiryHandler = expiryHandler;
+		this.timeout = timeout;
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			wheel.add(new LinkedHashSet<Entry<T>>());
+		}
+		
+		reaper = new Thread(new Runnable() {
+			public void run() {
+				reap();
+			}
+		});
+		reaper.setName(name);
+		reaper.setDaemon(true);
+		reaper.start();
+	}
+	
+	/**
+	 * Adds an entry with the default timeout. An entry with the same ID is replaced.
+	 * 
+	 * @param id		the ID
+	 * @param value		the waiting request
+	 */
+	public void put(String id, T value){
+		put(id, value, timeout);
+	}
+	
+	/**
+	 * Adds an entry with the specified timeout. An entry with the same ID is replaced.
+	 * 
+	 * @param id		the ID
+	 * @param value		the waiting request
+	 * @param timeout	the timeout in milliseconds
+	 */
+	public void put(String id, T value, long timeout){
+		Entry<T> entry = new Entry<T>(key(id), value);
+		Entry<T> replaced = entries.put(entry.id, entry);
+		if (replaced != null) {
+			unlink(replaced);
+		}
+		schedule(entry, timeout);
+	}
+	
+	/**
+	 * Adds an entry with the specified timeout unless there is already an entry with the 
+	 * same ID, e.g. to detect a request which is retransmitted.
+	 * 
+	 * @param id		the ID
+	 * @param value		the waiting request
+	 * @param timeout	the timeout in milliseconds
+	 * @return			the value of the existing entry or <code>null</code> if the entry was added
+	 */
+	public T putIfAbsent(String id, T value, long timeout){
+		Entry<T> entry = new Entry<T>(key(id), value);
+		Entry<T> existing = entries.putIfAbsent(entry.id, entry);
+		if (existing != null) {
+			return existing.value;
+		}
+		schedule(entry, timeout);
+		return null;
+	}
+	
+	/**
+	 * Returns the value of the entry with the specified ID without removing it.
+	 * 
+	 * @param id		the ID
+	 * @return			the waiting request or <code>null</code> if there is none
+	 */
+	public T get(String id){
+		Entry<T> entry = entries.get(key(id));
+		return entry == null ? null : entry.value;
+	}
+	
+	/* Puts a new entry into the slot of its deadline */
+	private void schedule(Entry<T> entry, long timeout){
+		int pending = entries.size();
+		while (true) {
+			int max = maxPending.get();
+			if (pending <= max || maxPending.compareAndSet(max, pending)) {
+				break;
+			}
+		}
+		
+		long ticks = Math.max(1, (timeout + TICK - 1) / TICK);
+		synchronized (wheel) {
+			//it may have been completed already by another thread
+			if (entries.get(entry.id) != entry) {
+				return;
+			}
+			entry.rounds = (ticks - 1) / WHEEL_SIZE;
+			entry.slot = (int)((tick + ticks) % WHEEL_SIZE);
+			wheel.get(entry.slot).add(entry);
+		}
+	}
+	
+	/* Removes an entry which is no longer in the table from its slot */
+	private void unlink(Entry<T> entry){
+		synchronized (wheel) {
+			if (entry.slot >= 0) {
+				wheel.get(entry.slot).remove(entry);
+				entry.slot = -1;
+			}
+		}
+	}
+	
+	/* IDs are compared ignoring case */
+	private static String key(String id){
+		return id.toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * Removes the entry with the specified ID because its response has arrived.
+	 * 
+	 * @param id		the ID
+	 * @return			the waiting request or <code>null</code> if there is none, e.g. 
+	 * 					because it has already expired
+	 */
+	public T complete(String id){
+		T value = remove(id);
+		if (value != null) {
+			completed.incrementAndGet();
+		}
+		return value;
+	}
+	
+	/**
+	 * Removes the entry with the specified ID without counting it as completed, e.g. because 
+	 * the handler failed before it could answer.
+	 * 
+	 * @param id		the ID
+	 * @return			the waiting request or <code>null</code> if there is none
+	 */
+	public T remove(String id){
+		Entry<T> entry = entries.remove(key(id));
+		if (entry == null) {
+			return null;
+		}
+		unlink(entry);
+		return entry.value;
+	}
+	
+	/**
+	 * Returns the waiting requests and empties the table without calling the 
+	 * <code>ExpiryHandler</code>.
+	 * 
+	 * @return	the waiting requests
+	 */
+	public List<T> clear(){
+		List<T> result = new ArrayList<T>();
+		for (Iterator<Entry<T>> iter = entries.values().iterator(); iter.hasNext();) {
+			Entry<T> entry = iter.next();
+			iter.remove();
+			unlink(entry);
+			result.add(entry.value);
+		}
+		return result;
+	}
+	
+	/**
+	 * Stops the timer wheel. Pending entries do not expire any more.
+	 */
+	public void shutdown(){
+		running = false;
+		reaper.interrupt();
+	}
+	
+	/**
+	 * Returns the number of entries waiting for a response.
+	 * 
+	 * @return	the number of pending entries
+	 */
+	public int getPendingCount(){
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the highest number of entries which have been pending at the same time.
+	 * 
+	 * @return	the maximum number of pending entries
+	 */
+	public int getMaxPendingCount(){
+		return maxPending.get();
+	}
+	
+	/**
+	 * Returns the number of entries whose response has arrived.
+	 * 
+	 * @return	the number of completed entries
+	 */
+	public long getCompletedCount(){
+		return completed.get();
+	}
+	
+	/**
+	 * Returns the number of entries which have expired.
+	 * 
+	 * @return	the number of expired entries
+	 */
+	public long getExpiredCount(){
+		return expired.get();
+	}
+	
+	private void reap(){
+		long next = System.currentTimeMillis() + TICK;
+		while (running) {
+			try {
+				long wait = next - System.currentTimeMillis();
+				if (wait > 0) {
+					Thread.sleep(wait);
+				}
+			} catch (InterruptedException e) {
+				continue;
+			}
+			next += TICK;
+			
+			List<Entry<T>> due = new ArrayList<Entry<T>>();
+			synchronized (wheel) {
+				tick++;
+				Set<Entry<T>> slot = wheel.get((int)(tick % WHEEL_SIZE));
+				for (Iterator<Entry<T>> iter = slot.iterator(); iter.hasNext();) {
+					Entry<T> entry = iter.next();
+					if (entry.rounds > 0) {
+						entry.rounds--;
+					} else {
+						iter.remove();
+						entry.slot = -1;
+						due.add(entry);
+					}
+				}
+			}
+			
+			for (Entry<T> entry : due) {
+				//only if it is neither completed nor replaced
+				if (entries.remove(entry.id, entry)) {
+					expired.incrementAndGet();
+					LOGGER.debug("No response for " + entry.id + " in time");
+					try {
+						expiryHandler.expired(entry.id, entry.value);
+					} catch (RuntimeException e) {
+						LOGGER.error(e);
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+}
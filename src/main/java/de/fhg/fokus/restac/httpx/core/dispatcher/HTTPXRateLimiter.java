@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token bucket per source address. Every source may send a burst of messages, after that 
+ * only as many messages per second as the rate allows. Messages above the limit are 
+ * rejected before they are parsed, so a single noisy peer can't occupy the workers. A 
+ * message sent in fragments counts once, after it is reassembled.
+ * <p>
+ * The rate in messages per second and the burst are set with the system properties 
+ * <code>restac.udp.rateLimit</code> and <code>restac.udp.rateBurst</code>; a rate of 
+ * <code>0</code>, the default, switches the limit off. Only the most recently active 
+ * sources are tracked.
+ * </p>
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXRateLimiter {
+
+	public final static String RATE_PROPERTY = "restac.udp.rateLimit";
+	public final static String BURST_PROPERTY = "restac.udp.rateBurst";
+	
+	public final static int DEFAULT_RATE = 0;
+	public final static int DEFAULT_BURST = 400;
+	
+	/* number of sources with a bucket, the least recently active one is dropped */
+	private final static int MAX_SOURCES = 4096;
+	
+	private final double rate;
+	private final double burst;
+	
+	private final Map<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+			return size() > MAX_SOURCES;
+		}
+	};
+	
+	private long limited;
+	
+	/**
+	 * Constructs a new <code>HTTPXRateLimiter</code> configured by the system properties.
+	 */
+	public HTTPXRateLimiter() {
+		this(Integer.getInteger(RATE_PROPERTY, DEFAULT_RATE).intValue(), 
+				Integer.getInteger(BURST_PROPERTY, DEFAULT_BURST).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXRateLimiter</code> with the specified attributes.
+	 * 
+	 * @param rate	the messages per second and source, <code>0</code> for no limit
+	 * @param burst	the number of messages a source may send at once
+	 */
+	public HTTPXRateLimiter(int rate, int burst) {
+		this.rate = rate;
+		this.burst = Math.max(1, burst);
+	}
+	
+	/**
+	 * Takes a token from the bucket of the specified source.
+	 * 
+	 * @param source	the address of the sender
+	 * @return			<code>false</code> if the source has exceeded its rate
+	 */
+	public synchronized boolean tryAcquire(InetAddress source) {
+		if (rate <= 0) {
+			return true;
+		}
+		long now = System.nanoTime();
+		String key = source.getHostAddress();
+		
+		Bucket bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new Bucket(burst, now);
+			buckets.put(key, bucket);
+		} else {
+			bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.last) * rate / 1e9);
+			bucket.last = now;
+		}
+		
+		if (bucket.tokens < 1) {
+			limited++;
+			return false;
+		}
+		bucket.tokens--;
+		return true;
+	}
+	
+	/**
+	 * Returns the number of rejected messages.
+	 * 
+	 * @return the number of messages above the limit
+	 */
+	public synchronized long getLimitedCount() {
+		return limited;
+	}
+	
+	private static class Bucket {
+		double tokens;
+		long last;
+		
+		Bucket(double tokens, long last) {
+			this.tokens = tokens;
+			this.last = last;
+		}
+	}
+}
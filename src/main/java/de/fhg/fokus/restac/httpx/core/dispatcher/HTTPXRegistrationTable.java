@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
+import de.fhg.fokus.restac.httpx.core.common.Path;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler;
+
+/**
+ * Table of registered <code>HTTPXActionMessageFilter</code> and <code>HTTPXActionMessageHandler</code> 
+ * pairs which may be changed while requests are dispatched.
+ * <p>
+ * The registrations and their <code>HTTPXRouteIndex</code> form an immutable snapshot. Adding or 
+ * removing a registration copies the snapshot, changes the copy and publishes it with a single 
+ * volatile write. Lookups read the current snapshot without any locking and never see a 
+ * half-done change, changes are serialized among themselves.
+ * </p>
+ * 
+ * @author Murat Ates
+ *
+ * @param <T> the type of the registrations
+ */
+public class HTTPXRegistrationTable<T> {
+
+	private static class Entry<T>{
+		private final HTTPXActionMessageFilter filter;
+		private final HTTPXActionMessageHandler handler;
+		private final T value;
+		
+		private Entry(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler, T value){
+			this.filter = filter;
+			this.handler = handler;
+			this.value = value;
+		}
+	}
+	
+	private static class Snapshot<T>{
+		private final List<Entry<T>> entries;
+		private final List<T> values;
+		private final HTTPXRouteIndex<T> index;
+		
+		private Snapshot(List<Entry<T>> entries){
+			this.entries = entries;
+			List<T> values = new ArrayList<T>(entries.size());
+			this.index = new HTTPXRouteIndex<T>();
+			for (Entry<T> entry : entries) {
+				values.add(entry.value);
+				index.add(entry.filter, entry.handler, entry.value);
+			}
+			this.values = Collections.unmodifiableList(values);
+		}
+	}
+	
+	private volatile Snapshot<T> snapshot = new Snapshot<T>(new ArrayList<Entry<T>>(0));
+	
+	/**
+	 * Adds a registration.
+	 * 
+	 * @param filter	the filter of the registration
+	 * @param handler	the handler of the registration
+	 * @param value		the registration which is returned by <code>lookup</code>
+	 */
+	public synchronized void add(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler, T value){
+		List<Entry<T>> entries = new ArrayList<Entry<T>>(snapshot.entries.size() + 1);
+		entries.addAll(snapshot.entries);
+		entries.add(new Entry<T>(filter, handler, value));
+		snapshot = new Snapshot<T>(entries);
+	}
+	
+	/**
+	 * Removes the first registration with an equal filter and handler.
+	 * 
+	 * @param filter	the filter of the registration
+	 * @param handler	the handler of the registration
+	 * @return			the removed registration or <code>null</code> if there is none
+	 */
+	public synchronized T remove(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler){
+		List<Entry<T>> entries = new ArrayList<Entry<T>>(snapshot.entries);
+		for (int i = 0; i < entries.size(); i++) {
+			Entry<T> entry = entries.get(i);
+			if (entry.filter.equals(filter) && entry.handler.equals(handler)) {
+				entries.remove(i);
+				snapshot = new Snapshot<T>(entries);
+				return entry.value;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the registration responsible for a request.
+	 * 
+	 * @param protocol		the protocol of the request
+	 * @param host			the host of the request
+	 * @param port			the port of the request
+	 * @param path			the path of the request
+	 * @param query			the query of the request
+	 * @param handlerTypes	the accepted types of handlers
+	 * @return				the registration or <code>null</code> if no handler was found
+	 * 
+	 * @see HTTPXRouteIndex#lookup(String, String, int, Path, String, Class...)
+	 */
+	public T lookup(String protocol, String host, int port, Path path, String query, Class<?>... handlerTypes){
+		return snapshot.index.lookup(protocol, host, port, path, query, handlerTypes);
+	}
+	
+	/**
+	 * Returns the registrations in the order of registration. The list is an unmodifiable 
+	 * snapshot and is not affected by later changes.
+	 * 
+	 * @return	the registrations
+	 */
+	public List<T> values(){
+		return snapshot.values;
+	}
+	
+	/**
+	 * Returns the number of registrations.
+	 * 
+	 * @return	the number of registrations
+	 */
+	public int size(){
+		return snapshot.entries.size();
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXAttributeActionMessageFilter;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
+import de.fhg.fokus.restac.httpx.core.common.Path;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler;
+
+/**
+ * Index of registered handlers which finds the handler responsible for a request in one pass 
+ * over the path of the request.
+ * <p>
+ * Filters implementing <code>HTTPXAttributeActionMessageFilter</code> are stored in a trie of 
+ * path segments per protocol, the host, port and query are compared per entry. The lookup walks 
+ * down the trie along the segments of the request and then checks the reached nodes from the 
+ * deepest to the root. Filters without a path pass for the complete path of the request. Other 
+ * filters are asked with <code>doesPass</code> for every prefix of the path.
+ * </p>
+ * The result is the same as searching the registrations in the order of registration for the 
+ * complete path first, then for the path without the last segment and so on up to the root path.
+ * The index is not synchronized.
+ * 
+ * @author Murat Ates
+ *
+ * @param <T> the type of the registrations
+ */
+public class HTTPXRouteIndex<T> {
+
+	/* roots of the tries of filters with a protocol, by lower case protocol */
+	private final Map<String, Node<T>> protocols = new HashMap<String, Node<T>>();
+	
+	/* root of the trie of filters without a protocol */
+	private final Node<T> anyProtocol = new Node<T>();
+	
+	/* filters which can't be indexed */
+	private final List<Entry<T>> others = new ArrayList<Entry<T>>();
+	
+	/* order of registration */
+	private long sequence;
+	
+	private int size;
+	
+	private static class Entry<T>{
+		private final long sequence;
+		private final HTTPXActionMessageFilter filter;
+		private final HTTPXActionMessageHandler handler;
+		private final T value;
+		
+		private String host;
+		private int port;
+		private String query;
+		
+		private Entry(long sequence, HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler, T value){
+			this.sequence = sequence;
+			this.filter = filter;
+			this.handler = handler;
+			this.value = value;
+		}
+		
+		private boolean accepts(Class<?>[] handlerTypes){
+			for (int i = 0; i < handlerTypes.length; i++) {
+				if (handlerTypes[i].isInstance(handler)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		private boolean passes(String host, int port, String query){
+			return (this.host == null || this.host.equalsIgnoreCase(host))
+				&& (this.port == 0 || this.port == port)
+				&& (this.query == null || this.query.equalsIgnoreCase(query));
+		}
+	}
+	
+	private static class Node<T>{
+		private Map<String, Node<T>> children;
+		
+		/* entries whose path ends at this node */
+		private final List<Entry<T>> entries = new ArrayList<Entry<T>>(2);
+		
+		/* entries without a path, only used at the roots */
+		private final List<Entry<T>> anyPath = new ArrayList<Entry<T>>(2);
+		
+		@SuppressWarnings("unchecked")
+		private static <T> Node<T>[] newArray(int length){
+			return (Node<T>[])new Node<?>[length];
+		}
+		
+		private Node<T> child(String segment, boolean create){
+			Node<T> child = children == null ? null : children.get(segment);
+			if (child == null && create) {
+				if (children == null) {
+					children = new HashMap<String, Node<T>>();
+				}
+				child = new Node<T>();
+				children.put(segment, child);
+			}
+			return child;
+		}
+		
+		private boolean remove(T value){
+			if (remove(entries, value) || remove(anyPath, value)) {
+				return true;
+			}
+			if (children != null) {
+				for (Node<T> child : children.values()) {
+					if (child.remove(value)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		
+		private static <T> boolean remove(List<Entry<T>> list, T value){
+			for (Iterator<Entry<T>> iter = list.iterator(); iter.hasNext();) {
+				if (iter.next().value == value) {
+					iter.remove();
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Adds a registration to the index.
+	 * 
+	 * @param filter	the filter of the registration
+	 * @param handler	the handler of the registration
+	 * @param value		the registration which is returned by <code>lookup</code>
+	 */
+	public void add(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler, T value){
+		Entry<T> entry = new Entry<T>(sequence++, filter, handler, value);
+		size++;
+		
+		if (!(filter instanceof HTTPXAttributeActionMessageFilter)) {
+			others.add(entry);
+			return;
+		}
+		
+		HTTPXAttributeActionMessageFilter attributes = (HTTPXAttributeActionMessageFilter)filter;
+		entry.host = attributes.getHost();
+		entry.port = attributes.getPort();
+		entry.query = attributes.getQuery();
+		
+		Node<T> node = anyProtocol;
+		if (attributes.getProtocol() != null) {
+			String protocol = attributes.getProtocol().toLowerCase(Locale.ENGLISH);
+			node = protocols.get(protocol);
+			if (node == null) {
+				node = new Node<T>();
+				protocols.put(protocol, node);
+			}
+		}
+		
+		String path = attributes.getPath();
+		if (path == null) {
+			node.anyPath.add(entry);
+		} else if (path.startsWith("/")) {
+			if (path.length() > 1) {
+				//the same segments as a Path with this string representation
+				String[] segments = path.substring(1).split("/", -1);
+				for (int i = 0; i < segments.length; i++) {
+					node = node.child(segments[i].toLowerCase(Locale.ENGLISH), true);
+				}
+			}
+			node.entries.add(entry);
+		} else {
+			//never equals the string representation of a Path, but keep it for remove
+			others.add(entry);
+		}
+	}
+	
+	/**
+	 * Removes a registration from the index.
+	 * 
+	 * @param value		the registration
+	 * @return			<code>true</code> if the registration was found
+	 */
+	public boolean remove(T value){
+		boolean removed = anyProtocol.remove(value) || Node.remove(others, value);
+		for (Iterator<Node<T>> iter = protocols.values().iterator(); !removed && iter.hasNext();) {
+			removed = iter.next().remove(value);
+		}
+		if (removed) {
+			size--;
+		}
+		return removed;
+	}
+	
+	/**
+	 * Returns the number of registrations.
+	 * 
+	 * @return	the number of registrations
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the registration responsible for a request. The first registration whose filter 
+	 * passes and whose handler is an instance of one of the specified handler types is chosen.
+	 * If there is none for the complete path, the last path segment is removed and so on until 
+	 * the root path is reached.
+	 * 
+	 * @param protocol		the protocol of the request
+	 * @param host			the host of the request
+	 * @param port			the port of the request
+	 * @param path			the path of the request
+	 * @param query			the query of the request
+	 * @param handlerTypes	the accepted types of handlers
+	 * @return				the registration or <code>null</code> if no handler was found
+	 */
+	@SuppressWarnings("unchecked")
+	public T lookup(String protocol, String host, int port, Path path, String query, Class<?>... handlerTypes){
+		List<String> tokens = (List<String>)path.getTokens();
+		int depth = tokens == null ? 0 : tokens.size();
+		
+		Node<T> root = protocol == null ? null : protocols.get(protocol.toLowerCase(Locale.ENGLISH));
+		Node<T>[] specific = Node.newArray(depth + 1);
+		Node<T>[] any = Node.newArray(depth + 1);
+		
+		//walk down along the segments of the path
+		specific[0] = root;
+		any[0] = anyProtocol;
+		for (int i = 0; i < depth; i++) {
+			String segment = tokens.get(i).toLowerCase(Locale.ENGLISH);
+			specific[i + 1] = specific[i] == null ? null : specific[i].child(segment, false);
+			any[i + 1] = any[i] == null ? null : any[i].child(segment, false);
+			if (specific[i + 1] == null && any[i + 1] == null) {
+				break;
+			}
+		}
+		
+		//and check the nodes from the deepest to the root
+		for (int d = depth; d >= 0; d--) {
+			Entry<T> found = null;
+			if (specific[d] != null) {
+				found = first(specific[d].entries, found, host, port, query, handlerTypes);
+			}
+			if (any[d] != null) {
+				found = first(any[d].entries, found, host, port, query, handlerTypes);
+			}
+			if (d == depth) {
+				if (root != null) {
+					found = first(root.anyPath, found, host, port, query, handlerTypes);
+				}
+				found = first(anyProtocol.anyPath, found, host, port, query, handlerTypes);
+			}
+			if (!others.isEmpty()) {
+				Path prefix = new Path(new ArrayList<String>(tokens == null ? new ArrayList<String>(0) : tokens.subList(0, d)));
+				for (Entry<T> entry : others) {
+					if (found != null && entry.sequence > found.sequence) {
+						break;
+					}
+					if (entry.accepts(handlerTypes) && entry.filter.doesPass(protocol, host, port, prefix, query)) {
+						found = entry;
+						break;
+					}
+				}
+			}
+			if (found != null) {
+				return found.value;
+			}
+		}
+		return null;
+	}
+	
+	/* Returns the first matching entry of the list if it was registered before the found one */
+	private Entry<T> first(List<Entry<T>> entries, Entry<T> found, String host, int port, String query, Class<?>[] handlerTypes){
+		for (Entry<T> entry : entries) {
+			if (found != null && entry.sequence > found.sequence) {
+				break;
+			}
+			if (entry.accepts(handlerTypes) && entry.passes(host, port, query)) {
+				return entry;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Fixed number of threads with a bounded queue which run the handlers of inbound requests.
+ * If all threads are busy and the queue is full, a task is rejected immediately instead of 
+ * being queued or getting a thread of its own, so the caller can answer with 
+ * <code>503 Service Unavailable</code>.
+ * <p>
+ * The defaults for the inbound dispatchers can be set with the system properties 
+ * <code>restac.server.workers</code> and <code>restac.server.queueSize</code>.
+ * </p>
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXWorkerPool {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXWorkerPool.class);
+	
+	public final static String WORKERS_PROPERTY = "restac.server.workers";
+	public final static String QUEUE_SIZE_PROPERTY = "restac.server.queueSize";
+	
+	public final static int DEFAULT_WORKERS = 32;
+	public final static int DEFAULT_QUEUE_SIZE = 256;
+	
+	private ThreadPoolExecutor executor;
+	
+	private AtomicLong rejected;
+	
+	/**
+	 * Constructs a new <code>HTTPXWorkerPool</code> with the number of threads and the queue size 
+	 * given by the system properties.
+	 * 
+	 * @param name	the prefix of the thread names
+	 */
+	public HTTPXWorkerPool(String name) {
+		this(name, Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS).intValue(), 
+				Integer.getInteger(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXWorkerPool</code> with the specified attributes.
+	 * 
+	 * @param name		the prefix of the thread names
+	 * @param workers	the number of threads
+	 * @param queueSize	the maximum number of waiting tasks
+	 */
+	public HTTPXWorkerPool(final String name, int workers, int queueSize) {
+		workers = Math.max(1, workers);
+		rejected = new AtomicLong();
+		executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+			private AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName(name + "-" + count.incrementAndGet());
+				return t;
+			}
+		}, new ThreadPoolExecutor.AbortPolicy());
+		LOGGER.debug(name + ": " + workers + " worker(s), queue size " + queueSize);
+	}
+	
+	/**
+	 * Runs the specified task on one of the workers.
+	 * 
+	 * @param task	the task
+	 * @return		<code>false</code> if the task was rejected because the queue is full
+	 * 				or the pool is shut down
+	 */
+	public boolean execute(Runnable task) {
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the number of threads of this pool.
+	 * 
+	 * @return the number of workers
+	 */
+	public int getWorkerCount() {
+		return executor.getMaximumPoolSize();
+	}
+	
+	/**
+	 * Returns the number of tasks waiting for a worker.
+	 * 
+	 * @return the number of waiting tasks
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Returns the number of workers currently running a task.
+	 * 
+	 * @return the number of busy workers
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * Returns the number of tasks rejected so far.
+	 * 
+	 * @return the number of rejected tasks
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+	
+	/**
+	 * Stops accepting tasks, tasks already queued are still run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
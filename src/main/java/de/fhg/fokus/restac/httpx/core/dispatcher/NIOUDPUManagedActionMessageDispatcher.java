@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilterImpl;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
+
+/**
+ * Non-blocking alternative to the <code>UDPUManagedActionMessageDispatcher</code>. The
+ * <code>DatagramChannel</code> is registered at an event loop of the default 
+ * <code>HTTPXEventLoopGroup</code>, the same loops which serve the 
+ * <code>NIOServerManagedActionMessageDispatcher</code>, so no thread is blocked per socket. 
+ * On every wakeup all datagrams which are ready are received into a direct buffer, 
+ * copied into a pooled buffer and handed to the workers of a <code>HTTPXDatagramPipeline</code>.
+ * <p>
+ * The dispatcher is selected by using it instead of the 
+ * <code>UDPUManagedActionMessageDispatcher</code> in the <code>transceiver.properties</code>.
+ * </p>
+ * 
+ * @author Murat Ates
+ * @see HTTPXEventLoopGroup
+ */
+public class NIOUDPUManagedActionMessageDispatcher extends HTTPXManagedActionMessageDispatcher implements HTTPXSelectionHandler {
+
+	private final static Logger LOGGER = Logger.getLogger(NIOUDPUManagedActionMessageDispatcher.class);
+	private final static int DEFAULT_PORT = 1111;
+	
+	/* Upper bound of datagrams received per wakeup, so other channels of the loop aren't starved */
+	private final static int MAX_DATAGRAMS_PER_WAKEUP = 256;
+	
+	/** The channel for the HTTPU communication */
+	private DatagramChannel channel;
+	
+	private int port = DEFAULT_PORT;
+	
+	/* Receive buffer, only used on the event loop thread */
+	private ByteBuffer receiveBuffer;
+	
+	/** Pools the receive buffers and hands the datagrams to a bounded set of workers */
+	private HTTPXDatagramPipeline pipeline;
+	
+	/** Splits large outgoing messages and reassembles incoming fragments */
+	private final HTTPXDatagramFragmenter fragmenter = new HTTPXDatagramFragmenter();
+	
+	/** Parses the received datagrams and passes them to the registered handlers */
+	private final HTTPXDatagramRequestHandler requestHandler = new HTTPXDatagramRequestHandler(this, fragmenter);
+	
+	/** Request/response exchanges with retransmission */
+	private HTTPXDatagramExchange exchange;
+	
+	/**
+	 * Constructs a new <code>NIOUDPUManagedActionMessageDispatcher</code> with the specified attributes.
+	 * 
+	 * @param dispatcher	the proxy dispatcher.
+	 */
+	public NIOUDPUManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
+		super(dispatcher);
+		
+		//register the handler on the Proxydispatcher
+		dispatcher.addActionMessageHandler(new HTTPXActionMessageFilterImpl(HTTPXConstants.HTTPU, null, 0, null, null), this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.communication.common.HTTPXManagedActionMessageDispatcher#start()
+	 */
+	@Override
+	public void start() {
+		LOGGER.info("Start: " + this.getClass().toString());
+		
+		HTTPXEventLoopGroup group;
+		try {
+			group = HTTPXEventLoopGroup.getDefault();
+			channel = open(port);
+		} catch (IOException e) {
+			LOGGER.error(e);
+			e.printStackTrace();
+			return;
+		}
+		port = channel.socket().getLocalPort();
+		pipeline = new HTTPXDatagramPipeline(NIOUDPUManagedActionMessageDispatcher.class.getSimpleName(), requestHandler);
+		exchange = new HTTPXDatagramExchange(NIOUDPUManagedActionMessageDispatcher.class.getSimpleName(), 
+				HTTPXConstants.HTTPU, new HTTPXDatagramExchange.Transport() {
+			public void send(byte[] datagram, InetAddress address, int port) throws IOException {
+				//a non-blocking channel sends the whole datagram or nothing, a lost request is retransmitted
+				try {
+					if (channel.send(ByteBuffer.wrap(datagram), new InetSocketAddress(address, port)) == 0) {
+						LOGGER.debug(HTTPXConstants.HTTPU + " package was dropped, the send buffer is full");
+					}
+				} catch (IOException e) {
+					if (!channel.isOpen()) {
+						throw e;
+					}
+					LOGGER.debug(HTTPXConstants.HTTPU + " package to " + address + ":" + port + " was dropped: " + e);
+				}
+			}
+		}, fragmenter, pipeline);
+		requestHandler.setExchange(exchange);
+		receiveBuffer = ByteBuffer.allocateDirect(pipeline.getBufferSize());
+		
+		group.next().register(channel, SelectionKey.OP_READ, this);
+		LOGGER.info("new " + HTTPXConstants.HTTPU + "-Channel on Port: " + port);
+	}
+	
+	/**
+	 * Opens a non-blocking channel on the specified port, or on a random port if the
+	 * specified one is in use.
+	 * 
+	 * @param port			the preferred port
+	 * @return				the bound channel
+	 * @throws IOException	if no channel can be opened
+	 */
+	private DatagramChannel open(int port) throws IOException {
+		DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			// random port
+			channel.close();
+			channel = DatagramChannel.open();
+			channel.socket().bind(new InetSocketAddress(0));
+		}
+		channel.configureBlocking(false);
+		return channel;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.communication.common.HTTPXManagedActionMessageDispatcher#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		LOGGER.info("Shutdown: " + this.getClass().toString());
+		
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.error(HTTPXConstants.HTTPU + " Channel closed !");
+			}
+		}
+		if (pipeline != null) {
+			pipeline.shutdown();
+		}
+		if (exchange != null) {
+			exchange.shutdown();
+		}
+	}
+	
+	/**
+	 * Returns the receive pipeline of this dispatcher, e.g. to read the counters of
+	 * received and dropped datagrams.
+	 * 
+	 * @return the receive pipeline or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramPipeline getDatagramPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Returns the fragmenter of this dispatcher, e.g. to read the counters of the reassembly.
+	 * 
+	 * @return the fragmenter
+	 */
+	public HTTPXDatagramFragmenter getFragmenter() {
+		return fragmenter;
+	}
+	
+	/**
+	 * Returns the request/response exchanges of this dispatcher, e.g. to read the counters
+	 * of retransmissions.
+	 * 
+	 * @return the exchanges or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramExchange getExchange() {
+		return exchange;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXSynActionMessageHandler#handleSyn(de.fhg.fokus.restac.httpx.communication.common.HTTPXActionMessage)
+	 */
+	public HTTPXStatusMessage handleSyn(HTTPXActionMessage request) throws HTTPXProtocolViolationException, IOException {
+		if (exchange == null) {
+			throw new IOException(HTTPXConstants.HTTPU + " dispatcher is not started");
+		}
+		return exchange.sendSynchronous(request);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler#handleAsyn(de.fhg.fokus.restac.httpx.communication.common.HTTPXActionMessage)
+	 */
+	public HTTPXStatusMessageHandle handleAsyn(HTTPXActionMessage request) {
+		HTTPXStatusMessageHandle stMsgHandle = null;
+		if (exchange == null) {
+			LOGGER.error(HTTPXConstants.HTTPU + " dispatcher is not started");
+			return null;
+		}
+		try {
+			stMsgHandle = exchange.sendAsynchronous(request);
+		} catch (IOException e) {
+			LOGGER.debug(e);
+			e.printStackTrace();
+		}
+		return stMsgHandle;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXPlainActionMessageHandler#handlePlain(de.fhg.fokus.restac.httpx.communication.common.HTTPXActionMessage)
+	 */
+	public void handlePlain(HTTPXActionMessage request) throws IOException {
+		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		refactorer.writeTo(request, out);
+		
+		InetSocketAddress address = new InetSocketAddress(request.getHost(), request.getPort());
+		
+		//split into fragments if it is too large
+		for (byte[] datagram : fragmenter.fragment(out.toByteArray(), HTTPXConstants.HTTPU)) {
+			//a non-blocking channel sends the whole datagram or nothing
+			if (channel.send(ByteBuffer.wrap(datagram), address) == 0) {
+				LOGGER.debug(HTTPXConstants.HTTPU + " package was dropped, the send buffer is full");
+				return;
+			}
+		}
+		LOGGER.debug(HTTPXConstants.HTTPU + " package is send out");
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXSelectionHandler#handleSelection(java.nio.channels.SelectionKey)
+	 */
+	public void handleSelection(SelectionKey key) throws IOException {
+		InetSocketAddress address;
+		
+		for (int i = 0; i < MAX_DATAGRAMS_PER_WAKEUP; i++) {
+			receiveBuffer.clear();
+			try {
+				address = (InetSocketAddress)channel.receive(receiveBuffer);
+			} catch (IOException e) {
+				if (!channel.isOpen()) {
+					throw e;
+				}
+				//e.g. an ICMP error of an earlier send, only this datagram is lost
+				LOGGER.debug(HTTPXConstants.HTTPU + " package was dropped: " + e);
+				continue;
+			}
+			if (address == null) {
+				//no more datagrams ready
+				return;
+			}
+			receiveBuffer.flip();
+			
+			byte[] buffer = pipeline.acquireBuffer();
+			int length = receiveBuffer.remaining();
+			receiveBuffer.get(buffer, 0, length);
+			pipeline.submit(buffer, 0, length, address.getAddress(), address.getPort());
+		}
+	}
+	
+	public String getInetAddress() {
+		return channel.socket().getLocalAddress().toString();
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getProtocol() {
+		return HTTPXConstants.HTTPU;
+	}
+}
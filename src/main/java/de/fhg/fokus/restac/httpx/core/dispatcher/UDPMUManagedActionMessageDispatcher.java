@@ -26,26 +26,32 @@
  */
 package de.fhg.fokus.restac.httpx.core.dispatcher;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilterImpl;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXAttributeActionMessageFilter;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
-import de.fhg.fokus.restac.httpx.core.common.Path;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXPlainActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
 
@@ -73,9 +79,30 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 	private int port = DEFAULT_MULTICASTSOCKET_PORT;
 	private boolean listening;
 	
+	/** Pools the receive buffers and hands the datagrams to a bounded set of workers */
+	private HTTPXDatagramPipeline pipeline;
+	
+	/** Splits large outgoing messages and reassembles incoming fragments */
+	private final HTTPXDatagramFragmenter fragmenter = new HTTPXDatagramFragmenter();
+	
+	/** Limits the reassembled messages per source before they are parsed */
+	private final HTTPXRateLimiter rateLimiter = new HTTPXRateLimiter();
+	
+	/** Suppresses copies of messages sent several times */
+	private final HTTPXDuplicateFilter duplicateFilter = new HTTPXDuplicateFilter();
+	
+	/** Coalesces small outgoing messages to the same group */
+	private HTTPXDatagramBatcher batcher;
+	
+	/** The joined multicast groups with the number of references to each of them */
+	private final Map<String, Integer> groups = new LinkedHashMap<String, Integer>();
+	
 	public UDPMUManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
 		super(dispatcher);
 		
+		//the default group is always joined
+		groups.put(mCastGroup, Integer.valueOf(1));
+		
 		//register the handler on the Proxydispatcher
 		dispatcher.addActionMessageHandler(new HTTPXActionMessageFilterImpl(HTTPXConstants.HTTPMU, null, 0, null, null), this);
 	}
@@ -86,9 +113,22 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 		LOGGER.info("Start: " + this.getClass().toString());
 		try {
 			multicastSocket = new MulticastSocket(port);
-			multicastSocket.joinGroup(InetAddress.getByName(mCastGroup));
+			synchronized (groups) {
+				for (String group : groups.keySet()) {
+					multicastSocket.joinGroup(InetAddress.getByName(group));
+					LOGGER.debug("Join Multicastgroup: " + group);
+				}
+			}
 			multicastSocket.setTimeToLive(15);
 			
+			batcher = new HTTPXDatagramBatcher(UDPMUManagedActionMessageDispatcher.class.getSimpleName() + "-batcher", 
+					new HTTPXDatagramExchange.Transport() {
+				public void send(byte[] datagram, InetAddress address, int port) throws IOException {
+					multicastSocket.send(new DatagramPacket(datagram, datagram.length, address, port));
+				}
+			});
+			
+			pipeline = new HTTPXDatagramPipeline(UDPMUManagedActionMessageDispatcher.class.getSimpleName(), new ConnectionHandler());
 			new Thread(this).start();
 			LOGGER.info("new " + HTTPXConstants.HTTPMU + "-Socket on Port: " + port);
 		} catch (IOException e) {
@@ -102,9 +142,16 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 		LOGGER.debug("Shutdown: " + this.getClass().toString());
 		
 		listening = false;
+		if (batcher != null) {
+			batcher.shutdown();
+		}
 		try {
 			if (multicastSocket != null) {
-				multicastSocket.leaveGroup(InetAddress.getByName(mCastGroup));
+				synchronized (groups) {
+					for (String group : groups.keySet()) {
+						multicastSocket.leaveGroup(InetAddress.getByName(group));
+					}
+				}
 			}
 		} catch (Exception e) {
 			LOGGER.error(e);
@@ -114,6 +161,235 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 			if (multicastSocket != null) {
 				multicastSocket.close();
 			}
+			if (pipeline != null) {
+				pipeline.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the receive pipeline of this dispatcher, e.g. to read the counters of
+	 * received and dropped datagrams.
+	 * 
+	 * @return the receive pipeline or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramPipeline getDatagramPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Returns the fragmenter of this dispatcher, e.g. to read the counters of the reassembly.
+	 * 
+	 * @return the fragmenter
+	 */
+	public HTTPXDatagramFragmenter getFragmenter() {
+		return fragmenter;
+	}
+	
+	/**
+	 * Sends all messages waiting in a batch immediately.
+	 * 
+	 * @throws IOException	if a batch can't be sent
+	 */
+	public void flush() throws IOException {
+		if (batcher != null) {
+			batcher.flush();
+		}
+	}
+	
+	/**
+	 * Returns the outbound batcher of this dispatcher, e.g. to read the number of batched messages.
+	 * 
+	 * @return the batcher or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramBatcher getBatcher() {
+		return batcher;
+	}
+	
+	/**
+	 * Returns the rate limiter of this dispatcher, e.g. to read the number of rejected messages.
+	 * 
+	 * @return the rate limiter
+	 */
+	public HTTPXRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Returns the duplicate filter of this dispatcher, e.g. to read the number of suppressed copies.
+	 * 
+	 * @return the duplicate filter
+	 */
+	public HTTPXDuplicateFilter getDuplicateFilter() {
+		return duplicateFilter;
+	}
+	
+	/**
+	 * Registers the specified handler. If the host of the filter is a multicast group, the 
+	 * group is joined as long as a handler is registered for it.
+	 * 
+	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXManagedActionMessageDispatcher#addActionMessageHandler(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter, de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler)
+	 */
+	@Override
+	public void addActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler) {
+		super.addActionMessageHandler(filter, handler);
+		
+		String group = getFilterGroup(filter);
+		if (group != null && handler != null) {
+			try {
+				joinGroup(group);
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Removes the specified handler and leaves the group of its filter if no other handler 
+	 * is registered for it.
+	 * 
+	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXManagedActionMessageDispatcher#deleteActionMessageHandler(de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter, de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXActionMessageHandler)
+	 */
+	@Override
+	public void deleteActionMessageHandler(HTTPXActionMessageFilter filter, HTTPXActionMessageHandler handler) {
+		Tuple removed = removeRegistration(filter, handler);
+		
+		String group = getFilterGroup(filter);
+		if (group != null && removed != null) {
+			try {
+				leaveGroup(group);
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Joins the specified multicast group. The group is left when <code>leaveGroup</code> 
+	 * has been called as many times as this method.
+	 * 
+	 * @param group			the address of the group
+	 * @throws IOException	if the group can't be joined
+	 */
+	public void joinGroup(String group) throws IOException {
+		group = InetAddress.getByName(group).getHostAddress();
+		synchronized (groups) {
+			Integer count = groups.get(group);
+			if (count == null && multicastSocket != null) {
+				multicastSocket.joinGroup(InetAddress.getByName(group));
+				LOGGER.debug("Join Multicastgroup: " + group);
+			}
+			groups.put(group, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+		}
+	}
+	
+	/**
+	 * Drops one reference to the specified multicast group and leaves the group if it 
+	 * was the last one.
+	 * 
+	 * @param group			the address of the group
+	 * @throws IOException	if the group can't be left
+	 */
+	public void leaveGroup(String group) throws IOException {
+		group = InetAddress.getByName(group).getHostAddress();
+		synchronized (groups) {
+			Integer count = groups.get(group);
+			if (count == null) {
+				return;
+			}
+			if (count.intValue() > 1) {
+				groups.put(group, Integer.valueOf(count.intValue() - 1));
+				return;
+			}
+			groups.remove(group);
+			if (multicastSocket != null) {
+				multicastSocket.leaveGroup(InetAddress.getByName(group));
+				LOGGER.debug("Leave Multicastgroup: " + group);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the joined multicast groups.
+	 * 
+	 * @return the addresses of the groups
+	 */
+	public Set<String> getGroups() {
+		synchronized (groups) {
+			return new HashSet<String>(groups.keySet());
+		}
+	}
+	
+	/**
+	 * Returns the normalized address of the joined group named by the specified host.
+	 * 
+	 * @param host	a host name or address
+	 * @return		the address of the group or <code>null</code> if the host isn't a joined group
+	 */
+	private String getJoinedGroup(String host) {
+		String group = toGroup(host);
+		if (group != null) {
+			synchronized (groups) {
+				if (groups.containsKey(group)) {
+					return group;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/* the body of the message as array */
+	private static byte[] readBody(HTTPXActionMessage message) throws IOException {
+		InputStream in = message.getInputStream();
+		if (in == null) {
+			return new byte[0];
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int readBytes;
+		while ((readBytes = in.read(buffer)) != -1) {
+			body.write(buffer, 0, readBytes);
+		}
+		return body.toByteArray();
+	}
+	
+	/* the host of the Host header without the port, or null */
+	private static String getHostHeader(HTTPXActionMessage request) {
+		String host = request.getHeaderIgnoreCase(HTTPXConstants.HOST);
+		if (host == null) {
+			return null;
+		}
+		host = host.trim();
+		if (host.startsWith("[")) {
+			//IPv6 literal
+			int end = host.indexOf(']');
+			return end == -1 ? null : host.substring(1, end);
+		}
+		int colon = host.indexOf(':');
+		return colon == -1 ? host : host.substring(0, colon);
+	}
+	
+	/* the multicast group of the filter or null */
+	private String getFilterGroup(HTTPXActionMessageFilter filter) {
+		if (filter instanceof HTTPXAttributeActionMessageFilter) {
+			return toGroup(((HTTPXAttributeActionMessageFilter)filter).getHost());
+		}
+		return null;
+	}
+	
+	/* the address of the multicast group or null if the host is no literal multicast address */
+	private static String toGroup(String host) {
+		if (host == null || host.length() == 0 || !Character.isDigit(host.charAt(0)) && host.indexOf(':') == -1) {
+			//no name lookups for host names
+			return null;
+		}
+		try {
+			InetAddress address = InetAddress.getByName(host);
+			return address.isMulticastAddress() ? address.getHostAddress() : null;
+		} catch (UnknownHostException e) {
+			return null;
 		}
 	}
 	
@@ -139,7 +415,6 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 	public void handlePlain(HTTPXActionMessage request) throws IOException{
 		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
 		DatagramPacket datagramPacket;
-		byte[] data = new byte[0];
 //		InputStream in = refactorer.toStream(request);
 		
 		try {
@@ -154,41 +429,47 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 //				e.printStackTrace();
 //			}
 //			data = sb.toString().getBytes(HTTPXConstants.DEFAULT_CHARSET);
-			data = refactorer.toByte(request);
-			
-			String tmpGroup = null;
 			String tmpHost = request.getHost();
 			
 			// if no host is quoted as multicast group,
-			// take the default (DEFAULT_MCASTGROUP) group
-			tmpGroup = tmpHost.equals("") ? DEFAULT_MCASTGROUP : tmpHost;
+			// take the default group
+			String tmpGroup = tmpHost == null || tmpHost.equals("") ? mCastGroup : tmpHost;
 			
+			// sending to a group needs no membership, the joined groups are left untouched
 			InetAddress ia = InetAddress.getByName(tmpGroup);
 			
-			// last group is not the same like this group;
-			// leave old group and join to the new one
-			if (! tmpGroup.equals(mCastGroup)) {
-				ia = InetAddress.getByName(tmpGroup);
-				// leave old group
-				multicastSocket.leaveGroup(InetAddress.getByName(mCastGroup));
-				LOGGER.debug("Leave old Multicastgroup: " + mCastGroup);
-				
-				// join new group
-				multicastSocket.joinGroup(ia);
-				mCastGroup = tmpGroup;
-				LOGGER.debug("Join new Multicastgroup: " + tmpGroup);
+			// tell the receivers the group, they can't see it on the socket
+			if (request.getHeaderIgnoreCase(HTTPXConstants.HOST) == null) {
+				request.setHeader(HTTPXConstants.HOST, ia.getHostAddress() + ":" + request.getPort());
 			}
-			//last group is the same group
-			else {
-				//do nothing
-				
-//				ia = InetAddress.getByName(mCastGroup);
-//				multicastSocket.leaveGroup(ia);
+			
+			// batched messages must be self-delimited
+			boolean batch = batcher.isEnabled() && request.getHeaderIgnoreCase(HTTPXConstants.TRANSFER_ENCODING) == null;
+			if (batch && request.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH) == null) {
+				byte[] body = readBody(request);
+				request.setHeader(HTTPXConstants.CONTENT_LENGTH, String.valueOf(body.length));
+				request.setInputStream(new ByteArrayInputStream(body));
+			}
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			refactorer.writeTo(request, out);
+			byte[] message = out.toByteArray();
+			
+			if (batch && message.length <= batcher.getBatchSize()) {
+				batcher.add(message, ia, request.getPort());
+				LOGGER.debug(HTTPXConstants.HTTPMU + " package is batched.");
+				return;
+			}
+			if (batcher.isEnabled()) {
+				//keep the order of the messages to this group
+				batcher.flush(ia, request.getPort());
 			}
 			
-			datagramPacket = new DatagramPacket(data, data.length, ia, request.getPort());
-			//Send the package
-			multicastSocket.send(datagramPacket);
+			//Send the package, split into fragments if it is too large
+			for (byte[] datagram : fragmenter.fragment(message, HTTPXConstants.HTTPMU)) {
+				datagramPacket = new DatagramPacket(datagram, datagram.length, ia, request.getPort());
+				multicastSocket.send(datagramPacket);
+			}
 			LOGGER.debug(HTTPXConstants.HTTPMU + " package is send.");
 		} catch (UnsupportedEncodingException e) {
 			LOGGER.error(e);
@@ -201,75 +482,88 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 		DatagramPacket datagramPacket;
 		
 		while (listening) {
+			//the buffer comes from the pool and goes back after the packet is handled
+			datagramPacket = pipeline.createPacket();
 			try {
-				datagramPacket = new DatagramPacket(new byte[HTTPXConstants.UDP_PACKET_LENGTH], HTTPXConstants.UDP_PACKET_LENGTH);
 				multicastSocket.receive(datagramPacket);
 				
-				new Thread(new ConnectionHandler(datagramPacket));
+				pipeline.submit(datagramPacket);
 			}catch (IOException e) {
+				pipeline.recycle(datagramPacket);
 				LOGGER.debug(HTTPXConstants.HTTPMU + "-Server socket was closed.");
 				listening = false;
 			}
 		}
 	}//run
 
-	private class ConnectionHandler implements Runnable{
-		private DatagramPacket packet;
-				
-		public ConnectionHandler(DatagramPacket packet) {
-			LOGGER.debug(HTTPXConstants.HTTPMU + " package received");
-			this.packet = packet;
-			
-			//Start the Thread
-			Thread t = new Thread(this);
-//			t.setName(UDPMUManagedActionMessageDispatcher.class.toString() + ": " + this.getClass().toString());
-			t.start();
-		}
+	/**
+	 * Parses the received datagrams and passes them to the responsible handler, run by the 
+	 * workers of the pipeline.
+	 */
+	private class ConnectionHandler implements HTTPXDatagramPipeline.DatagramHandler{
 
-		public void run() {
+		public void handleDatagram(byte[] data, int offset, int length, InetAddress address, int port) {
+			LOGGER.debug("new " + HTTPXConstants.HTTPMU + " package received");
 			HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
-			HTTPXActionMessage request = null;
+			List<HTTPXActionMessage> requests = null;
 			
 			try {
-				request = refactorer.createActionMessageFromStream(toStream(packet.getData(), packet.getLength()));
+				if (HTTPXDatagramFragmenter.isFragment(data, offset, length)) {
+					data = fragmenter.reassemble(data, offset, length, address, port);
+					if (data == null) {
+						//fragments are still missing
+						return;
+					}
+					offset = 0;
+					length = data.length;
+				}
+				if (!rateLimiter.tryAcquire(address)) {
+					LOGGER.debug("Rate limit exceeded, " + HTTPXConstants.HTTPMU + " package from " + address + " dropped");
+					return;
+				}
+				//parse straight from the buffer of the packet, it may carry a batch of requests
+				requests = refactorer.createActionMessages(data, offset, length);
 			} catch (HTTPXProtocolViolationException e) {
 				LOGGER.error(e);
 				e.printStackTrace();
-			} catch (IOException e){
-				LOGGER.error(e);
-				e.printStackTrace();
+				return;
+			}
+			if (requests.isEmpty()) {
+				LOGGER.debug("Empty " + HTTPXConstants.HTTPMU + " package ignored");
+				return;
+			}
+			for (HTTPXActionMessage request : requests) {
+				handleRequest(request, address, port);
+			}
+		}
+		
+		private void handleRequest(HTTPXActionMessage request, InetAddress address, int port) {
+			if (duplicateFilter.isDuplicate(request, address)) {
+				LOGGER.debug("Duplicate " + HTTPXConstants.HTTPMU + " package ignored");
+				return;
 			}
 			//TODO: overwrite port and host with socket-information
-			request.setPort(packet.getPort());
-			request.setHost(packet.getAddress().getHostAddress());
+			request.setPort(port);
+			request.setHost(address.getHostAddress());
 
 			//			LOGGER.debug(HTTPXConstants.HTTPMU + " Request:\r\n" + request.toString());
 			
-			boolean bFound = false;
-			Path tmpPath = new Path(request.getPath().getString());
 			try {
-				do {
-					for (Tuple element : registration) {	
-						if ( (element.handler instanceof HTTPXPlainActionMessageHandler) &&
-							  element.filter.doesPass(request.getProtocol(), request.getHost(), request.getPort(), tmpPath, request.getQueryAsString())
-							){
-							LOGGER.debug("plain Handler was found: " + element.handler);
-							((HTTPXPlainActionMessageHandler)element.handler).handlePlain(request);
-							bFound = true;
-							break;
-						}
-					}//for
-					if (!bFound) {
-						String strTmp = tmpPath.getString();
-						tmpPath.removeLastToken();
-						//check wheter path is root
-						if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-							break;
-						}
-					}
-				} while (!bFound);
+				Tuple element = null;
 				
-				if (! bFound) {
+				//handlers registered for the addressed group come first
+				String group = getJoinedGroup(getHostHeader(request));
+				if (group != null) {
+					element = registrationTable.lookup(request.getProtocol(), group, UDPMUManagedActionMessageDispatcher.this.port, 
+							request.getPath(), request.getQueryAsString(), HTTPXPlainActionMessageHandler.class);
+				}
+				if (element == null) {
+					element = lookup(request, HTTPXPlainActionMessageHandler.class);
+				}
+				if (element != null) {
+					LOGGER.debug("plain Handler was found: " + element.handler);
+					((HTTPXPlainActionMessageHandler)element.handler).handlePlain(request);
+				} else {
 					LOGGER.debug("no handler was found");
 				}
 			} catch (IOException e) {
@@ -278,28 +572,6 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 			}
 		}
 		
-		/**
-		 * Convert UDP-Data into a <code>InputStream</code>. 
-		 * 
-		 * @param data			the UDP packet
-		 * @param len			the length of the data
-		 * @return				the <code>InputStream</code>
-		 * @throws IOException	
-		 */
-		private InputStream toStream(byte[] data, int len) throws IOException{
-			try {
-				OutputStream out = new PipedOutputStream();
-				InputStream in = new PipedInputStream((PipedOutputStream)out, len);
-				out.write(data,0,len);
-//				out.flush();
-				out.close();
-				return in;
-				}
-			catch (IOException e) {
-				LOGGER.error("An error occured while building an inputstream out of the request's Datagram buffer data",e);
-				throw new IOException(e.getMessage());
-			}
-		}
 	}//ConnectionHanlder class
 
 	public String getInetAddress() {
@@ -325,8 +597,8 @@ public class UDPMUManagedActionMessageDispatcher extends HTTPXManagedActionMessa
 	
 	public void setGroup(String group){
 		try {
-			multicastSocket.leaveGroup(InetAddress.getByName(this.mCastGroup));
-			multicastSocket.joinGroup(InetAddress.getByName(group));
+			joinGroup(group);
+			leaveGroup(this.mCastGroup);
 		} catch (IOException e) {
 			LOGGER.error(e);
 			e.printStackTrace();
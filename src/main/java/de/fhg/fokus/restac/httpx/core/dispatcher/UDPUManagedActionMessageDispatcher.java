@@ -26,11 +26,8 @@
  */
 package de.fhg.fokus.restac.httpx.core.dispatcher;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -44,9 +41,7 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilterImpl;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
-import de.fhg.fokus.restac.httpx.core.common.Path;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
-import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXPlainActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
 
 /**
@@ -64,6 +59,18 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 	
 	private boolean listening;
 	
+	/** Pools the receive buffers and hands the datagrams to a bounded set of workers */
+	private HTTPXDatagramPipeline pipeline;
+	
+	/** Splits large outgoing messages and reassembles incoming fragments */
+	private final HTTPXDatagramFragmenter fragmenter = new HTTPXDatagramFragmenter();
+	
+	/** Parses the received datagrams and passes them to the registered handlers */
+	private final HTTPXDatagramRequestHandler requestHandler = new HTTPXDatagramRequestHandler(this, fragmenter);
+	
+	/** Request/response exchanges with retransmission */
+	private HTTPXDatagramExchange exchange;
+	
 	
 	/**
 	 * @param dispatcher
@@ -98,6 +105,14 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 		}
 		if (datagramSocket != null) {
 			port = datagramSocket.getLocalPort();
+			pipeline = new HTTPXDatagramPipeline(UDPUManagedActionMessageDispatcher.class.getSimpleName(), requestHandler);
+			exchange = new HTTPXDatagramExchange(UDPUManagedActionMessageDispatcher.class.getSimpleName(), 
+					HTTPXConstants.HTTPU, new HTTPXDatagramExchange.Transport() {
+				public void send(byte[] datagram, InetAddress address, int port) throws IOException {
+					datagramSocket.send(new DatagramPacket(datagram, datagram.length, address, port));
+				}
+			}, fragmenter, pipeline);
+			requestHandler.setExchange(exchange);
 			new Thread(this).start();
 			LOGGER.info("new " + HTTPXConstants.HTTPU + "-Socket on Port: " + port);
 		}
@@ -118,22 +133,70 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 				LOGGER.error(HTTPXConstants.HTTPU + " Socket closed !");
 			}
 		}
+		if (pipeline != null) {
+			pipeline.shutdown();
+		}
+		if (exchange != null) {
+			exchange.shutdown();
+		}
+	}
+	
+	/**
+	 * Returns the receive pipeline of this dispatcher, e.g. to read the counters of
+	 * received and dropped datagrams.
+	 * 
+	 * @return the receive pipeline or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramPipeline getDatagramPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Returns the fragmenter of this dispatcher, e.g. to read the counters of the reassembly.
+	 * 
+	 * @return the fragmenter
+	 */
+	public HTTPXDatagramFragmenter getFragmenter() {
+		return fragmenter;
+	}
+	
+	/**
+	 * Returns the request/response exchanges of this dispatcher, e.g. to read the counters
+	 * of retransmissions.
+	 * 
+	 * @return the exchanges or <code>null</code> if the dispatcher is not started
+	 */
+	public HTTPXDatagramExchange getExchange() {
+		return exchange;
 	}
 
 	
 	/* (non-Javadoc)
 	 * @see de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXSynActionMessageHandler#handleSyn(de.fhg.fokus.restac.httpx.communication.common.HTTPXActionMessage)
 	 */
-	public HTTPXStatusMessage handleSyn(HTTPXActionMessage request)	throws HTTPXProtocolViolationException {
-		return null;
+	public HTTPXStatusMessage handleSyn(HTTPXActionMessage request)	throws HTTPXProtocolViolationException, IOException {
+		if (exchange == null) {
+			throw new IOException(HTTPXConstants.HTTPU + " dispatcher is not started");
+		}
+		return exchange.sendSynchronous(request);
 	}
 
 	/* (non-Javadoc)
 	 * @see de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler#handleAsyn(de.fhg.fokus.restac.httpx.communication.common.HTTPXActionMessage)
 	 */
 	public HTTPXStatusMessageHandle handleAsyn(HTTPXActionMessage request) {
-		// TODO Auto-generated method stub
-		return null;
+		HTTPXStatusMessageHandle stMsgHandle = null;
+		if (exchange == null) {
+			LOGGER.error(HTTPXConstants.HTTPU + " dispatcher is not started");
+			return null;
+		}
+		try {
+			stMsgHandle = exchange.sendAsynchronous(request);
+		} catch (IOException e) {
+			LOGGER.debug(e);
+			e.printStackTrace();
+		}
+		return stMsgHandle;
 	}
 
 	/* (non-Javadoc)
@@ -143,7 +206,6 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
 		InetAddress ia;
 		DatagramPacket datagramPacket = null;
-		byte[] data = new byte[0];
 //		InputStream in = refactorer.toStream(request);
 		
 		try {
@@ -159,13 +221,15 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 //			}
 //			
 //			data = sb.toString().getBytes(HTTPXConstants.DEFAULT_CHARSET);
-			data = refactorer.toByte(request);
-			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			refactorer.writeTo(request, out);
 			ia = InetAddress.getByName(request.getHost());
-			datagramPacket = new DatagramPacket(data, data.length, ia, request.getPort());
 			
-			//Send the package
-			datagramSocket.send(datagramPacket);
+			//Send the package, split into fragments if it is too large
+			for (byte[] datagram : fragmenter.fragment(out.toByteArray(), HTTPXConstants.HTTPU)) {
+				datagramPacket = new DatagramPacket(datagram, datagram.length, ia, request.getPort());
+				datagramSocket.send(datagramPacket);
+			}
 			LOGGER.debug(HTTPXConstants.HTTPU + " package is send out");
 		} catch (UnsupportedEncodingException e) {
 			LOGGER.error(e);
@@ -185,98 +249,19 @@ public class UDPUManagedActionMessageDispatcher extends	HTTPXManagedActionMessag
 		DatagramPacket datagramPacket;
 		listening = true;
 		while (listening) {
+			//the buffer comes from the pool and goes back after the packet is handled
+			datagramPacket = pipeline.createPacket();
 			try {
-				datagramPacket = new DatagramPacket(new byte[HTTPXConstants.UDP_PACKET_LENGTH], HTTPXConstants.UDP_PACKET_LENGTH);
 				datagramSocket.receive(datagramPacket);
 				
-				new Thread(new ConnectionHandler(datagramPacket));
+				pipeline.submit(datagramPacket);
 			} catch (IOException e) {
+				pipeline.recycle(datagramPacket);
 				LOGGER.debug(HTTPXConstants.HTTPU + "-Server Socket was closed.");
 			}
 		}
 	}
 
-	private class ConnectionHandler implements Runnable{
-		private DatagramPacket packet;
-		
-		public ConnectionHandler(DatagramPacket packet) {
-			LOGGER.debug("new " + HTTPXConstants.HTTPU + " package received");
-			this.packet = packet;
-			
-			//Start the Thread
-			new Thread(this).start();
-		}
-
-		public void run() {
-			HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
-			HTTPXActionMessage request = null;
-			try {
-				request = refactorer.createActionMessageFromStream(this.toStream(packet.getData(), packet.getLength()));
-			} catch (HTTPXProtocolViolationException e) {
-				LOGGER.error(e);
-				e.printStackTrace();
-			} catch (IOException e){
-				LOGGER.error(e);
-				e.printStackTrace();
-			}
-			request.setPort(packet.getPort());
-			request.setHost(packet.getAddress().getHostName());
-			
-			LOGGER.debug(HTTPXConstants.HTTPU + " Request:\r\n" + request.toString());
-
-			boolean bFound = false;
-			Path tmpPath = new Path(request.getPath().getString());
-			try {
-				do {
-					for (Tuple element : registration) {
-						if ( (element.handler instanceof HTTPXPlainActionMessageHandler) &&
-							  element.filter.doesPass(request.getProtocol(), request.getHost(), request.getPort(), tmpPath, request.getQueryAsString())
-							){
-							LOGGER.debug("void Handler was found : " + element.handler);
-							((HTTPXPlainActionMessageHandler)element.handler).handlePlain(request);
-							bFound = true;
-							break;
-						}
-					}//for
-					if (!bFound) {
-						String strTmp = tmpPath.getString();
-						tmpPath.removeLastToken();
-						//check wheter path is root
-						if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-							break;
-						}
-					}
-				} while (!bFound);
-			}catch (IOException e) {
-					LOGGER.error(e);
-					e.printStackTrace();
-				}
-		}
-		
-		/**
-		 * Convert the UDP-Data into a <code>InputStream<\code>. 
-		 * 
-		 * @param data			the UDP packet
-		 * @param len			the length of the data
-		 * @return				the <code>InputStream<\code>
-		 * @throws IOException
-		 */
-		private InputStream toStream(byte[] data, int len) throws IOException{
-			try {
-				OutputStream out = new PipedOutputStream();
-				InputStream in = new PipedInputStream((PipedOutputStream)out,len);
-				out.write(data,0,len);
-//				out.flush();
-				out.close();
-				return in;
-				}
-			catch (IOException e) {
-				LOGGER.error("An error occured while building an inputstream out of the request's Datagram buffer data",e);
-				throw new IOException(e.getMessage());
-			}
-		}
-	}//ConnectionHandler
-
 	public String getInetAddress() {
 		return datagramSocket.getLocalAddress().toString();
 	}
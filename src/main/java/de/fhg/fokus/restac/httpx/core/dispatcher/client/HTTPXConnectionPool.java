@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Pool of persistent TCP connections, kept per route (host and port). A connection is leased 
+ * for one request and released as soon as the response body has been consumed; if the server 
+ * keeps the connection open it is used for the next request to the same route.
+ * <p>
+ * The number of connections is limited per route and in total. Connections idle for longer than
+ * the idle timeout are closed, and a connection which has been idle for a while is checked for 
+ * having been closed by the server before it is leased again. The check reads from the socket, 
+ * so it is done outside of the lock of the pool.
+ * </p>
+ * <p>
+ * A connection whose response body is dropped without being read to the end or closed would be 
+ * leased forever. The body is therefore attached to its connection with {@link Connection#attach(Object)}; 
+ * once the body has been garbage collected, the connection is closed and its slot is given to 
+ * the next request waiting for one.
+ * </p>
+ * The limits can be set with the system properties <code>restac.client.maxConnectionsPerRoute</code>,
+ * <code>restac.client.maxConnections</code>, <code>restac.client.idleTimeout</code> (ms) and
+ * <code>restac.client.connectTimeout</code> (ms).
+ * 
+ * @author Murat Ates
+ * @see TCPClientManagedActionMessageDispatcher
+ */
+public class HTTPXConnectionPool {
+
+	private final static Logger LOGGER = Logger.getLogger(HTTPXConnectionPool.class);
+	
+	public final static String MAX_PER_ROUTE_PROPERTY = "restac.client.maxConnectionsPerRoute";
+	public final static String MAX_TOTAL_PROPERTY = "restac.client.maxConnections";
+	public final static String IDLE_TIMEOUT_PROPERTY = "restac.client.idleTimeout";
+	public final static String CONNECT_TIMEOUT_PROPERTY = "restac.client.connectTimeout";
+	
+	private final static int DEFAULT_MAX_PER_ROUTE = 8;
+	private final static int DEFAULT_MAX_TOTAL = 64;
+	
+	/* shorter than the keep-alive timeout of the server, so the server rarely closes first */
+	private final static int DEFAULT_IDLE_TIMEOUT = 10000;
+	private final static int DEFAULT_CONNECT_TIMEOUT = 10000;
+	
+	/* Connections idle for longer are checked before they are leased again */
+	private final static int STALE_CHECK_THRESHOLD = 2000;
+	
+	private int maxPerRoute;
+	private int maxTotal;
+	private int idleTimeout;
+	private int connectTimeout;
+	
+	/* idle connections per route, most recently used first */
+	private Map<String, LinkedList<Connection>> idle;
+	
+	/* number of open connections per route, leased or idle */
+	private Map<String, Integer> open;
+	
+	/* connections currently leased */
+	private Set<Connection> leased;
+	
+	private int total;
+	
+	/**
+	 * Constructs a new <code>HTTPXConnectionPool</code> with the limits given by the system properties.
+	 */
+	public HTTPXConnectionPool() {
+		this(Integer.getInteger(MAX_PER_ROUTE_PROPERTY, DEFAULT_MAX_PER_ROUTE).intValue(),
+				Integer.getInteger(MAX_TOTAL_PROPERTY, DEFAULT_MAX_TOTAL).intValue(),
+				Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT).intValue(),
+				Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT).intValue());
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXConnectionPool</code> with the specified limits.
+	 * 
+	 * @param maxPerRoute		the maximum number of connections to one host and port
+	 * @param maxTotal			the maximum number of connections
+	 * @param idleTimeout		milliseconds after which an idle connection is closed
+	 * @param connectTimeout	milliseconds to wait for a connection to be established or 
+	 * 							released by another request
+	 */
+	public HTTPXConnectionPool(int maxPerRoute, int maxTotal, int idleTimeout, int connectTimeout) {
+		this.maxPerRoute = Math.max(1, maxPerRoute);
+		this.maxTotal = Math.max(1, maxTotal);
+		this.idleTimeout = idleTimeout;
+		this.connectTimeout = connectTimeout;
+		this.idle = new HashMap<String, LinkedList<Connection>>();
+		this.open = new HashMap<String, Integer>();
+		this.leased = new HashSet<Connection>();
+	}
+	
+	/**
+	 * Returns a connection to the specified host and port, either an idle one or a new one. Waits
+	 * if the limits are reached until another connection is released.
+	 * 
+	 * @param host			the host
+	 * @param port			the port
+	 * @return				the connection
+	 * @throws IOException	if no connection can be established
+	 */
+	public Connection lease(String host, int port) throws IOException {
+		String route = host + ":" + port;
+		long deadline = System.currentTimeMillis() + connectTimeout;
+		
+		while (true) {
+			Connection connection;
+			synchronized (this) {
+				connection = reserve(route, deadline);
+			}
+			if (connection == null) {
+				break;
+			}
+			//the probe reads from the socket, so it is done outside of the lock
+			if (!connection.isStale()) {
+				LOGGER.debug("Reusing connection to " + route);
+				return connection;
+			}
+			LOGGER.debug("Stale connection to " + route + " closed");
+			synchronized (this) {
+				connection.leased = false;
+				leased.remove(connection);
+				discard(connection);
+			}
+		}
+		
+		//connect outside of the lock
+		try {
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress(InetAddress.getByName(host), port), connectTimeout);
+			socket.setTcpNoDelay(true);
+			LOGGER.debug("New connection to " + route);
+			Connection connection = new Connection(route, socket);
+			synchronized (this) {
+				leased.add(connection);
+			}
+			return connection;
+		} catch (IOException e) {
+			synchronized (this) {
+				decrement(route);
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Takes an idle connection of the route, which still has to be checked for being stale, or 
+	 * reserves the slot for a new connection. Waits if the limits are reached. Must be called 
+	 * with the lock held.
+	 * 
+	 * @return				the idle connection or <code>null</code> if a new one may be established
+	 * @throws IOException	if no slot is free before the deadline
+	 */
+	private Connection reserve(String route, long deadline) throws IOException {
+		while (true) {
+			closeIdle(System.currentTimeMillis());
+			
+			Connection connection = pollIdle(route);
+			if (connection != null) {
+				connection.reused = true;
+				connection.leased = true;
+				leased.add(connection);
+				return connection;
+			}
+			
+			if (count(route) < maxPerRoute || closeLeaked(route)) {
+				if (total >= maxTotal) {
+					//make room by closing the least recently used idle connection of another route
+					closeOldestIdle();
+				}
+				if (total < maxTotal || closeLeaked(null)) {
+					open.put(route, Integer.valueOf(count(route) + 1));
+					total++;
+					return null;
+				}
+			}
+			
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				throw new IOException("Timeout waiting for a connection to " + route);
+			}
+			try {
+				wait(wait);
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted waiting for a connection to " + route);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the leased connections of the route (of all routes if <code>null</code>) whose 
+	 * response body has been garbage collected without being consumed. Must be called with 
+	 * the lock held.
+	 * 
+	 * @return	<code>true</code> if a connection was closed
+	 */
+	private boolean closeLeaked(String route) {
+		boolean closed = false;
+		for (Iterator<Connection> iter = leased.iterator(); iter.hasNext();) {
+			Connection connection = iter.next();
+			if ((route == null || route.equals(connection.route)) 
+					&& connection.owner != null && connection.owner.get() == null) {
+				LOGGER.warn("Response body from " + connection.route + " was neither read nor closed, connection closed");
+				iter.remove();
+				connection.leased = false;
+				discard(connection);
+				closed = true;
+			}
+		}
+		return closed;
+	}
+	
+	/**
+	 * Gives back a leased connection. If it is reusable it is kept for the next request to the
+	 * same route, else it is closed.
+	 * 
+	 * @param connection	the connection
+	 * @param reusable		<code>true</code> if the response has been read completely and 
+	 * 						the server keeps the connection open
+	 */
+	public synchronized void release(Connection connection, boolean reusable) {
+		if (!connection.leased) {
+			return;
+		}
+		connection.leased = false;
+		connection.owner = null;
+		leased.remove(connection);
+		
+		if (reusable && !connection.socket.isClosed()) {
+			connection.lastUsed = System.currentTimeMillis();
+			LinkedList<Connection> list = idle.get(connection.route);
+			if (list == null) {
+				list = new LinkedList<Connection>();
+				idle.put(connection.route, list);
+			}
+			list.addFirst(connection);
+		} else {
+			discard(connection);
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Closes all idle connections.
+	 */
+	public synchronized void shutdown() {
+		for (LinkedList<Connection> list : idle.values()) {
+			for (Connection connection : list) {
+				discard(connection);
+			}
+		}
+		idle.clear();
+		notifyAll();
+	}
+	
+	/**
+	 * Returns the number of open connections, leased or idle.
+	 * 
+	 * @return the number of open connections
+	 */
+	public synchronized int getOpenCount() {
+		return total;
+	}
+	
+	private Connection pollIdle(String route) {
+		LinkedList<Connection> list = idle.get(route);
+		if (list == null || list.isEmpty()) {
+			return null;
+		}
+		return list.removeFirst();
+	}
+	
+	private void closeIdle(long now) {
+		for (Iterator<LinkedList<Connection>> iter = idle.values().iterator(); iter.hasNext();) {
+			LinkedList<Connection> list = iter.next();
+			//the oldest connections are at the end
+			while (!list.isEmpty() && now - list.getLast().lastUsed > idleTimeout) {
+				discard(list.removeLast());
+			}
+			if (list.isEmpty()) {
+				iter.remove();
+			}
+		}
+	}
+	
+	private void closeOldestIdle() {
+		LinkedList<Connection> oldest = null;
+		for (LinkedList<Connection> list : idle.values()) {
+			if (!list.isEmpty() && (oldest == null || list.getLast().lastUsed < oldest.getLast().lastUsed)) {
+				oldest = list;
+			}
+		}
+		if (oldest != null) {
+			discard(oldest.removeLast());
+		}
+	}
+	
+	private int count(String route) {
+		Integer count = open.get(route);
+		return count == null ? 0 : count.intValue();
+	}
+	
+	private void decrement(String route) {
+		int count = count(route) - 1;
+		if (count <= 0) {
+			open.remove(route);
+		} else {
+			open.put(route, Integer.valueOf(count));
+		}
+		total--;
+		notifyAll();
+	}
+	
+	private void discard(Connection connection) {
+		try {
+			connection.socket.close();
+		} catch (IOException e) {
+			LOGGER.debug(e);
+		}
+		decrement(connection.route);
+	}
+	
+	/**
+	 * A pooled connection with buffered streams which are kept for the whole life of the socket.
+	 * 
+	 * @author Murat Ates
+	 */
+	public class Connection {
+		private String route;
+		private Socket socket;
+		private InputStream in;
+		private OutputStream out;
+		private long lastUsed;
+		private boolean leased = true;
+		private boolean reused;
+		private WeakReference<Object> owner;
+		
+		private Connection(String route, Socket socket) throws IOException {
+			this.route = route;
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+			this.lastUsed = System.currentTimeMillis();
+		}
+		
+		public InputStream getInputStream() {
+			return in;
+		}
+		
+		public OutputStream getOutputStream() {
+			return out;
+		}
+		
+		/**
+		 * Returns <code>true</code> if the connection has been used for an earlier request.
+		 * 
+		 * @return <code>true</code> if the connection was taken from the pool
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+		
+		/**
+		 * Attaches the object which gives the connection back, e.g. the view of the response 
+		 * body. If it is garbage collected while the connection is still leased, the pool closes 
+		 * the connection.
+		 * 
+		 * @param owner	the object responsible for releasing the connection
+		 */
+		public void attach(Object owner) {
+			synchronized (HTTPXConnectionPool.this) {
+				if (leased) {
+					this.owner = new WeakReference<Object>(owner);
+				}
+			}
+		}
+		
+		/**
+		 * Gives the connection back to the pool.
+		 * 
+		 * @param reusable	<code>true</code> if the connection can be used for further requests
+		 */
+		public void release(boolean reusable) {
+			HTTPXConnectionPool.this.release(this, reusable);
+		}
+		
+		/* An idle connection is stale if the server has closed it or sent unexpected data */
+		private boolean isStale() {
+			if (socket.isClosed() || socket.isInputShutdown()) {
+				return true;
+			}
+			if (System.currentTimeMillis() - lastUsed < STALE_CHECK_THRESHOLD) {
+				return false;
+			}
+			try {
+				int timeout = socket.getSoTimeout();
+				socket.setSoTimeout(1);
+				try {
+					//either the end of the stream or unexpected data
+					in.read();
+					return true;
+				} catch (SocketTimeoutException e) {
+					return false;
+				} finally {
+					socket.setSoTimeout(timeout);
+				}
+			} catch (IOException e) {
+				return true;
+			}
+		}
+	}
+}
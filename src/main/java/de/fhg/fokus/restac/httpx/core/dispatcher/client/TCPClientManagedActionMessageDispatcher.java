@@ -25,15 +25,17 @@
 
 package de.fhg.fokus.restac.httpx.core.dispatcher.client;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.InetAddress;
-import java.net.Socket;
 
 import org.apache.log4j.Logger;
 
+import de.fhg.fokus.restac.httpx.core.common.BoundedInputStream;
+import de.fhg.fokus.restac.httpx.core.common.ChunkedFramingInputStream;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilterImpl;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
@@ -46,16 +48,25 @@ import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher;
 import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXManagedActionMessageDispatcher;
 
 /**
- * TODO: Documentation
+ * Sends requests over TCP. Connections are taken from a <code>HTTPXConnectionPool</code> and 
+ * given back as soon as the body of the response has been read completely or the response 
+ * stream has been closed, so the caller must do one of both. Small bodies with a 
+ * <code>Content-Length</code> are read at once and the connection is given back immediately.
  * 
  * @author Murat Ates
- *
+ * @see HTTPXConnectionPool
  */
 
 public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionMessageDispatcher{
 	
 	private final static Logger LOGGER = Logger.getLogger(TCPClientManagedActionMessageDispatcher.class);
 	
+	/* Bodies up to this length are read before the response is returned */
+	private final static int BUFFER_THRESHOLD = 8192;
+	
+	/* The connections of this dispatcher */
+	private HTTPXConnectionPool pool;
+	
 	/**
 	 * Constructs a new <code>TCPClientManagedActionMessageDispatcher</code> with the specified attributes.
 	 * 
@@ -63,6 +74,7 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 	 */
 	public TCPClientManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
 		super(dispatcher);
+		pool = new HTTPXConnectionPool();
 		
 		//register the handler on the Proxydispatcher
 		dispatcher.addActionMessageHandler(new HTTPXActionMessageFilterImpl(HTTPXConstants.HTTP, null, 0, null, null), this);
@@ -77,64 +89,45 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 	@Override
 	public void shutdown() {
 		LOGGER.info("Shutdown : " + this.getClass().toString());
+		pool.shutdown();
 	}
 
 	public HTTPXStatusMessage handleSyn(HTTPXActionMessage message) throws HTTPXProtocolViolationException, IOException {
-		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
-		HTTPXStatusMessage response = null;
-		Socket socket = null;
-		
-		try {
-			socket = sendRequest(message, socket);
-			
-			//Receive the Response
-			InputStream in = socket.getInputStream();
+		while (true) {
+			HTTPXConnectionPool.Connection connection = sendRequest(message);
 			
 			LOGGER.debug("receive the response");
 			try {
-				response = refactorer.createStatusMessageFromStream(in);
+				HTTPXStatusMessage response = receiveResponse(message, connection);
+				if (response != null) {
+					return response;
+				}
+				connection.release(false);
+				//a pooled connection closed by the server, a request without body can be sent again
+				if (!connection.isReused() || message.getInputStream() != null) {
+					throw new IOException("Connection closed before the response");
+				}
+				LOGGER.debug("Pooled connection was closed, retrying");
 			} catch (HTTPXProtocolViolationException e) {
-//				LOGGER.error(e);
+				connection.release(false);
+				throw e;
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+				connection.release(false);
 				throw e;
 			}
-		} catch (IOException e) {
-			LOGGER.error(e);
-			e.printStackTrace();
-			
-			if (socket != null) {
-				try {
-					socket.close();
-				} catch (IOException e1) {
-					LOGGER.error(e);
-					e1.printStackTrace();
-				}
-			}
-			throw e;
-		}
-		finally {
-			// Can't close the socket, the reference
-			// of the socket inputStream is assigned 
-			// to the response
-//			try {
-//				if (socket != null)
-//					socket.close();
-//			} catch (IOException e) {
-//				LOGGER.error(e); 
-//			}
 		}
-		
-		return response;
 	}
 	
 	public HTTPXStatusMessageHandle handleAsyn(HTTPXActionMessage message){
 		HTTPXStatusMessageHandle stMsgHandle = null;
-		Socket socket = null;
 		try {
-			socket = sendRequest(message, socket);
+			HTTPXConnectionPool.Connection connection = sendRequest(message);
 			
 			//create a new StatusMessageHandle
 			stMsgHandle = new HTTPXStatusMessageHandleImpl();
-			new ConnectionHandler(socket, stMsgHandle);
+			new ConnectionHandler(message, connection, stMsgHandle);
 		} catch (IOException e) {
 			LOGGER.debug(e);
 			e.printStackTrace();
@@ -148,11 +141,13 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 	
 //	 Process the asynchronous message handling
 	class ConnectionHandler implements Runnable{
-		private Socket socket;
+		private HTTPXActionMessage request;
+		private HTTPXConnectionPool.Connection connection;
 		private HTTPXStatusMessageHandle handle;
 		
-		private ConnectionHandler(Socket socket, HTTPXStatusMessageHandle handle){
-			this.socket = socket;
+		private ConnectionHandler(HTTPXActionMessage request, HTTPXConnectionPool.Connection connection, HTTPXStatusMessageHandle handle){
+			this.request = request;
+			this.connection = connection;
 			this.handle = handle;
 			
 			//start the Thread
@@ -161,12 +156,13 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 
 		public void run() {
 			HTTPXStatusMessage response = null;
-			HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
 			
 			try {
-				InputStream in = socket.getInputStream();
 				try {
-					response = refactorer.createStatusMessageFromStream(in);
+					response = receiveResponse(request, connection);
+					if (response == null) {
+						throw new IOException("Connection closed before the response");
+					}
 				} catch (HTTPXProtocolViolationException e) {
 					LOGGER.debug(e);
 					e.printStackTrace();
@@ -177,12 +173,15 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 				LOGGER.debug(e);
 				e.printStackTrace();
 			} finally{
-				if (socket != null) {
+				if (response == null) {
+					connection.release(false);
+				} else if (response.getInputStream() != null) {
+					//skip what the handler didn't read and give back the connection
 					try {
-						socket.close();
+						response.getInputStream().close();
 					} catch (IOException e) 	{
 						LOGGER.debug(e);
-						e.printStackTrace();
+						connection.release(false);
 					}
 				}
 			}
@@ -205,36 +204,181 @@ public class TCPClientManagedActionMessageDispatcher extends HTTPXManagedActionM
 	}
 	
 	/**
-	 * Initialize the socket and send out the request.
+	 * Leases a connection and sends out the request. A request without body is sent again on a
+	 * new connection if a pooled connection turns out to be closed by the server.
 	 * 
 	 * @param message	the <code>HTTPXActionMessage</code>
-	 * @param socket	
-	 * @return			the initialized socket.
+	 * @return			the connection the request was sent on
 	 * @throws IOException
 	 */
-	private Socket sendRequest(HTTPXActionMessage message, Socket socket) throws IOException{
+	private HTTPXConnectionPool.Connection sendRequest(HTTPXActionMessage message) throws IOException{
+		while (true) {
+			HTTPXConnectionPool.Connection connection = pool.lease(message.getHost(), message.getPort());
+			try {
+				writeRequest(message, connection.getOutputStream());
+				return connection;
+			} catch (IOException e) {
+				connection.release(false);
+				if (!connection.isReused() || message.getInputStream() != null) {
+					throw e;
+				}
+				LOGGER.debug("Pooled connection was closed, retrying: " + e);
+			}
+		}
+	}
+	
+	private void writeRequest(HTTPXActionMessage message, OutputStream out) throws IOException{
 		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
-		OutputStream out = null;
-		InputStream inStreamMessage = null;
-		InetAddress host = InetAddress.getByName(message.getHost());
 		
-		socket = new Socket(host, message.getPort());
-		out = new BufferedOutputStream(socket.getOutputStream());
-		inStreamMessage = refactorer.toStream(message);
+		//write the head and the body without an intermediate pipe
+		refactorer.writeTo(message, out);
+		LOGGER.debug("send out the request");
+	}
+	
+	/**
+	 * Reads the head of the response and attaches a view of the body which gives back the 
+	 * connection once the body has been consumed.
+	 * 
+	 * @param request		the request
+	 * @param connection	the connection the request was sent on
+	 * @return				the response or <code>null</code> if the connection was closed before the response
+	 * @throws HTTPXProtocolViolationException	if the response is malformed
+	 * @throws IOException						if the response can't be read
+	 */
+	private HTTPXStatusMessage receiveResponse(HTTPXActionMessage request, HTTPXConnectionPool.Connection connection) throws HTTPXProtocolViolationException, IOException{
+		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+		InputStream in = connection.getInputStream();
+		
+		HTTPXStatusMessage response = refactorer.createStatusMessageFromStream(in);
+		if (response.getStatusCode() == 0) {
+			return null;
+		}
 		
-		byte[] buffer = new byte[1024];
-		int readBytes;
+		boolean reusable = isKeepAlive(response);
+		int code = response.getStatusCode();
+		if (HTTPXConstants.HEAD.equalsIgnoreCase(request.getMethod()) || code / 100 == 1 || code == 204 || code == 304) {
+			//no body
+			response.setInputStream(new BoundedInputStream(in, 0));
+			connection.release(reusable);
+			return response;
+		}
 		
-		//shift the stream
-		while ((readBytes = inStreamMessage.read(buffer)) != -1) {
-			out.write(buffer, 0, readBytes);
+		InputStream body = refactorer.createBodyStream(response, in);
+		if (body == in) {
+			//the body ends with the connection
+			reusable = false;
+		}
+		
+		if (body instanceof BoundedInputStream && ((BoundedInputStream)body).getRemaining() <= BUFFER_THRESHOLD) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream((int)((BoundedInputStream)body).getRemaining());
+			byte[] bytes = new byte[1024];
+			int readBytes;
+			while ((readBytes = body.read(bytes)) != -1) {
+				buffer.write(bytes, 0, readBytes);
+			}
+			response.setInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+			connection.release(reusable);
+		} else {
+			response.setInputStream(new ReleasingInputStream(body, connection, reusable));
+		}
+		return response;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the server keeps the connection open after the response.
+	 * 
+	 * @param response	the response
+	 * @return			<code>true</code> if the connection can be used again
+	 */
+	private boolean isKeepAlive(HTTPXStatusMessage response){
+		String connection = response.getHeaderIgnoreCase(HTTPXConstants.CONNECTION);
+		if (connection != null) {
+			connection = connection.toLowerCase();
+			if (connection.indexOf(HTTPXConstants.CLOSE) > -1) {
+				return false;
+			}
+			if (connection.indexOf(HTTPXConstants.KEEP_ALIVE) > -1) {
+				return true;
+			}
+		}
+		return !"1.0".equals(response.getVersion());
+	}
+	
+	/**
+	 * View of a response body which gives back the connection to the pool as soon as the body 
+	 * has been read completely or the view is closed. The view is attached to the connection, so 
+	 * the pool reclaims the connection if the view is dropped without either.
+	 * 
+	 * @author Murat Ates
+	 */
+	private static class ReleasingInputStream extends FilterInputStream{
+		private HTTPXConnectionPool.Connection connection;
+		private boolean reusable;
+		private boolean released;
+		
+		private ReleasingInputStream(InputStream body, HTTPXConnectionPool.Connection connection, boolean reusable){
+			super(body);
+			this.connection = connection;
+			this.reusable = reusable;
+			connection.attach(this);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			try {
+				int b = in.read();
+				checkComplete(b == -1);
+				return b;
+			} catch (IOException e) {
+				release(false);
+				throw e;
+			}
 		}
-		//flush the stream
-		out.flush();
-		LOGGER.debug("send out the request");
 		
-		//return the initialized socket
-		return socket;
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int readBytes = in.read(b, off, len);
+				checkComplete(readBytes == -1);
+				return readBytes;
+			} catch (IOException e) {
+				release(false);
+				throw e;
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (released) {
+				return;
+			}
+			try {
+				if (reusable) {
+					//skips the rest of the body
+					in.close();
+				}
+				release(reusable);
+			} catch (IOException e) {
+				release(false);
+				throw e;
+			}
+		}
+		
+		/* Gives back the connection if the end of the body is reached */
+		private void checkComplete(boolean end){
+			if (end 
+					|| (in instanceof BoundedInputStream && ((BoundedInputStream)in).getRemaining() == 0)
+					|| (in instanceof ChunkedFramingInputStream && ((ChunkedFramingInputStream)in).isComplete())) {
+				release(reusable);
+			}
+		}
+		
+		private void release(boolean reusable){
+			if (!released) {
+				released = true;
+				connection.release(reusable);
+			}
+		}
 	}
 	
 }//TCPClientManagedActionMessageDispatcher
@@ -0,0 +1,564 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.core.dispatcher.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.server.UID;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPStatus;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXChunkParser;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXHeadParser;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandler;
+import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXSynActionMessageHandler;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXEventLoop;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXEventLoopGroup;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXManagedActionMessageDispatcher;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXPendingResponseTable;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXSelectionHandler;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXWorkerPool;
+
+/**
+ * Non-blocking alternative to the <code>TCPServerManagedActionMessageDispatcher</code>. 
+ * Connections are accepted and read by the event loops of the default 
+ * <code>HTTPXEventLoopGroup</code>; the bytes of a request are collected until the head 
+ * and the body (framed by <code>Content-Length</code> or chunked transfer encoding) are complete. 
+ * Only then the request is handed to a <code>HTTPXWorkerPool</code> which calls the registered
+ * <code>HTTPXSynActionMessageHandler</code> or <code>HTTPXAsynActionMessageHandler</code>. 
+ * So the number of threads doesn't depend on the number of connections. If the workers are
+ * overloaded the request is answered with a pre-serialized <code>503 Service Unavailable</code>.
+ * <p>
+ * The size of a request body is limited by the system property <code>restac.http.maxBodySize</code> 
+ * (16 MB by default), larger requests are answered with <code>413 Request Entity Too Large</code>.
+ * </p>
+ * <p>
+ * The dispatcher is selected by using it instead of the 
+ * <code>TCPServerManagedActionMessageDispatcher</code> in the <code>transceiver.properties</code>.
+ * </p>
+ * 
+ * @author Murat Ates
+ * @see HTTPXEventLoopGroup
+ */
+public class NIOServerManagedActionMessageDispatcher extends HTTPXManagedActionMessageDispatcher implements HTTPXSelectionHandler, HTTPXStatusMessageHandler{
+
+	private final static Logger LOGGER = Logger.getLogger(NIOServerManagedActionMessageDispatcher.class);
+	private final static int DEFAULT_PORT = 2048;
+	
+	private final static int READ_BUFFER_SIZE = 4096;
+	
+	public final static int DEFAULT_MAX_BODY_SIZE = Integer.getInteger(HTTPXMessageRefactorer.MAX_BODY_SIZE_PROPERTY, HTTPXMessageRefactorer.DEFAULT_MAX_BODY_SIZE).intValue();
+	
+	/* at most the head and the body of one request are collected */
+	private final static long MAX_REQUEST_SIZE = (long)HTTPXHeadParser.DEFAULT_MAX_HEAD_SIZE + DEFAULT_MAX_BODY_SIZE;
+	
+	/** The channel for the TCP communication */
+	private ServerSocketChannel srvChannel;
+	
+	/** The Port for the TCP communication */
+	private int port = DEFAULT_PORT;
+	
+	private HTTPXEventLoopGroup group;
+	
+	/* Threads which call the handlers */
+	private HTTPXWorkerPool workers;
+	
+	/* Connections waiting for the response of an asynchronous handler, by Unique-ID */
+	private HTTPXPendingResponseTable<Connection> pending;
+	
+	/**
+	 *  Constructs a new <code>NIOServerManagedActionMessageDispatcher</code> with the specified attributes.
+	 * 
+	 * @param dispatcher	the proxy dispatcher.
+	 */
+	public NIOServerManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
+		super(dispatcher);
+		//do nothing with the dispatcher !
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.HTTPXManagedActionMessageDispatcher#start()
+	 */
+	@Override
+	public void start() {
+		LOGGER.info("Start: " + this.getClass().toString());
+		
+		try {
+			group = HTTPXEventLoopGroup.getDefault();
+		} catch (IOException e) {
+			LOGGER.error(e);
+			e.printStackTrace();
+			return;
+		}
+		workers = new HTTPXWorkerPool(NIOServerManagedActionMessageDispatcher.class.getSimpleName());
+		pending = new HTTPXPendingResponseTable<Connection>(NIOServerManagedActionMessageDispatcher.class.getSimpleName() + "-reaper", 
+				new HTTPXPendingResponseTable.ExpiryHandler<Connection>() {
+			public void expired(String id, Connection connection) {
+				//answer with "408 Request Timeout", the connection is closed afterwards
+				connection.send(REQUEST_TIMEOUT_RESPONSE);
+			}
+		});
+		
+		while (srvChannel == null) {
+			ServerSocketChannel channel = null;
+			try {
+				channel = ServerSocketChannel.open();
+				channel.socket().bind(new InetSocketAddress(port));
+				channel.configureBlocking(false);
+				port = channel.socket().getLocalPort();
+				LOGGER.info("new TCP-Channel on Port: " + port);
+				srvChannel = channel;
+				group.next().register(srvChannel, SelectionKey.OP_ACCEPT, this);
+			} catch (IOException e) {
+				if (channel != null) {
+					try {
+						channel.close();
+					} catch (IOException e1) {
+						LOGGER.error(e1);
+					}
+				}
+				port = 0;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.HTTPXManagedActionMessageDispatcher#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		LOGGER.info("Shutdown: " + this.getClass().toString());
+		
+		if (srvChannel != null) {
+			try {
+				srvChannel.close();
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+			}
+		}
+		if (workers != null) {
+			workers.shutdown();
+		}
+		if (pending != null) {
+			pending.shutdown();
+			for (Connection connection : pending.clear()) {
+				connection.close();
+			}
+		}
+	}
+	
+	public HTTPXStatusMessage handleSyn(HTTPXActionMessage request) throws HTTPXProtocolViolationException, IOException{
+		LOGGER.debug("No Effect");
+		return null;
+	}
+
+	public HTTPXStatusMessageHandle handleAsyn(HTTPXActionMessage request) throws IOException{
+		LOGGER.debug("No Effect");
+		return null;
+	}
+	
+	public void handlePlain(HTTPXActionMessage request) {
+		LOGGER.debug("No Effect");
+	}
+	
+	public void handle(HTTPXStatusMessage message) throws IOException{
+		String uid = message.getHeader(HTTPXConstants.UNIQUE_ID);
+		
+		if (uid != null && !uid.equals("")) {
+			Connection connection = pending.complete(uid);
+			if (connection != null) {
+				LOGGER.debug("ID with corresponding Connection was found");
+				connection.send(message);
+			} else {
+				LOGGER.debug("There is no connection for the " + HTTPXConstants.UNIQUE_ID + "-Header : " + uid);
+			}
+		} else {
+			LOGGER.debug("There is no " + HTTPXConstants.UNIQUE_ID + "-Header in the message");
+			LOGGER.debug("No connection to send out");
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXSelectionHandler#handleSelection(java.nio.channels.SelectionKey)
+	 */
+	public void handleSelection(SelectionKey key) throws IOException {
+		SocketChannel channel;
+		while ((channel = srvChannel.accept()) != null) {
+			LOGGER.debug("new tcp-channel accepted");
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			
+			HTTPXEventLoop loop = group.next();
+			loop.register(channel, SelectionKey.OP_READ, new Connection(channel, loop));
+		}
+	}
+	
+	/**
+	 * Serializes the specified response into a byte array.
+	 * 
+	 * @param response		the response
+	 * @return				the serialized response
+	 * @throws IOException	if the body of the response can't be read
+	 */
+	private byte[] serialize(HTTPXStatusMessage response) throws IOException{
+		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		refactorer.writeTo(response, out);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * State of one accepted connection. All methods except <code>send</code> are 
+	 * called on the event loop thread of the connection.
+	 * 
+	 * @author Murat Ates
+	 *
+	 */
+	private class Connection implements HTTPXSelectionHandler, Runnable{
+		
+		private SocketChannel channel;
+		private HTTPXEventLoop loop;
+		private SelectionKey key;
+		
+		private ByteBuffer readBuffer;
+		
+		/* the bytes of the request received so far */
+		private byte[] data;
+		private int count;
+		
+		/* position up to which the data has been scanned */
+		private int scan;
+		
+		/* parses the head as it arrives */
+		private final HTTPXHeadParser headParser = new HTTPXHeadParser();
+		
+		private int headEnd = -1;
+		private int bodyEnd = -1;
+		
+		/* follows the chunks of a body with chunked transfer encoding, null otherwise */
+		private HTTPXChunkParser chunkParser;
+		
+		/* set if the request was rejected because of its size */
+		private boolean tooLarge;
+		
+		private HTTPXActionMessage request;
+		
+		private ByteBuffer writeBuffer;
+		
+		public Connection(SocketChannel channel, HTTPXEventLoop loop){
+			this.channel = channel;
+			this.loop = loop;
+			this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			this.data = new byte[READ_BUFFER_SIZE];
+		}
+		
+		public void handleSelection(SelectionKey key) throws IOException {
+			this.key = key;
+			if (key.isReadable()) {
+				read();
+			} else if (key.isWritable()) {
+				write();
+			}
+		}
+		
+		private void read() throws IOException{
+			int readBytes;
+			try {
+				while ((readBytes = channel.read(readBuffer)) > 0) {
+					readBuffer.flip();
+					append(readBuffer);
+					readBuffer.clear();
+				}
+				
+				if (parse()) {
+					//the request is complete, stop reading until the response is sent
+					key.interestOps(0);
+					if (!workers.execute(this)) {
+						LOGGER.warn("All workers busy, rejecting request");
+						writeBuffer = ByteBuffer.wrap(SERVICE_UNAVAILABLE_RESPONSE);
+						write();
+					}
+					return;
+				}
+			} catch (HTTPXProtocolViolationException e) {
+				LOGGER.error(e);
+				key.interestOps(0);
+				HTTPStatus status = tooLarge ? HTTPStatus.ENTITY_TOO_LARGE : HTTPStatus.BAD_REQUEST;
+				send(new HTTPXStatusMessage(status.getCode(), status.getMessage(), HTTPXConstants.HTTP, null, null));
+				return;
+			}
+			
+			if (readBytes == -1) {
+				LOGGER.debug("Connection closed by peer before the request was complete");
+				close();
+			}
+		}
+		
+		private void append(ByteBuffer buffer) throws HTTPXProtocolViolationException{
+			int length = buffer.remaining();
+			if (count + length > MAX_REQUEST_SIZE) {
+				throw tooLarge("Request exceeds " + MAX_REQUEST_SIZE + " bytes");
+			}
+			if (count + length > data.length) {
+				byte[] tmp = new byte[Math.max(data.length * 2, count + length)];
+				System.arraycopy(data, 0, tmp, 0, count);
+				data = tmp;
+			}
+			buffer.get(data, count, length);
+			count += length;
+		}
+		
+		/**
+		 * Scans the received bytes for the end of the head and the body.
+		 * 
+		 * @return <code>true</code> if the request is complete
+		 * @throws HTTPXProtocolViolationException if the request is malformed
+		 */
+		private boolean parse() throws HTTPXProtocolViolationException{
+			if (headEnd == -1) {
+				//only the bytes received since the last call are parsed
+				scan += headParser.parse(data, scan, count - scan);
+				if (!headParser.isComplete()) {
+					return false;
+				}
+				headEnd = scan;
+				
+				HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+				request = refactorer.createActionMessage(headParser);
+				
+				String encoding = request.getHeader(HTTPXConstants.TRANSFER_ENCODING);
+				String length = request.getHeader(HTTPXConstants.CONTENT_LENGTH);
+				if (encoding != null && encoding.toLowerCase().indexOf(HTTPXConstants.CHUNKED) > -1) {
+					chunkParser = new HTTPXChunkParser();
+				} else if (length != null) {
+					bodyEnd = headEnd + parseContentLength(length);
+				} else {
+					bodyEnd = headEnd;
+				}
+			}
+			
+			if (chunkParser != null) {
+				return scanChunks();
+			}
+			return count >= bodyEnd;
+		}
+		
+		/**
+		 * Parses the non-negative <code>Content-Length</code>, only decimal digits are allowed.
+		 * 
+		 * @return the length of the body
+		 * @throws HTTPXProtocolViolationException if the length is malformed or exceeds the maximum body size
+		 */
+		private int parseContentLength(String length) throws HTTPXProtocolViolationException{
+			long value = HTTPXMessageRefactorer.parseContentLength(length);
+			if (value > DEFAULT_MAX_BODY_SIZE) {
+				throw tooLarge(HTTPXConstants.CONTENT_LENGTH + " exceeds the maximum body size: " + length);
+			}
+			return (int)value;
+		}
+		
+		private HTTPXProtocolViolationException tooLarge(String message){
+			tooLarge = true;
+			return new HTTPXProtocolViolationException(message);
+		}
+		
+		/**
+		 * Advances the chunk parser over the bytes received since the last call.
+		 * 
+		 * @return <code>true</code> if the last chunk and the trailer have been received
+		 * @throws HTTPXProtocolViolationException if the body is malformed or too large
+		 */
+		private boolean scanChunks() throws HTTPXProtocolViolationException{
+			scan += chunkParser.parse(data, scan, count - scan);
+			if (chunkParser.getLength() > DEFAULT_MAX_BODY_SIZE) {
+				throw tooLarge("Chunked body exceeds the maximum body size");
+			}
+			if (chunkParser.isComplete()) {
+				bodyEnd = scan;
+				return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * Calls the handler for the complete request on a worker thread.
+		 */
+		public void run() {
+			HTTPXStatusMessage response = new HTTPXStatusMessage(HTTPStatus.NOT_FOUND.getCode(), HTTPStatus.NOT_FOUND.getMessage(), HTTPXConstants.HTTP, null, null);
+			
+			try {
+				Socket socket = channel.socket();
+				
+//				TODO: overwrite port and host with the socket information 
+				request.setPort(socket.getLocalPort());
+				request.setHost(socket.getInetAddress().getHostName());
+				request.setInputStream(new ByteArrayInputStream(data, headEnd, bodyEnd - headEnd));
+				
+				LOGGER.debug("Request:\r\n" + request.toString());
+				
+				Tuple element = lookup(request, HTTPXSynActionMessageHandler.class, HTTPXAsynActionMessageHandler.class);
+				if (element == null) {
+					LOGGER.debug("no handler was found");
+				} else if (element.handler instanceof HTTPXSynActionMessageHandler) {
+					LOGGER.debug("synchronous Handler was found: " + element.handler);
+					
+					response = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(request);
+					if (response == null) {
+						response = new HTTPXStatusMessage(HTTPStatus.INTERNAL_ERROR.getCode(), HTTPStatus.INTERNAL_ERROR.getMessage(), HTTPXConstants.HTTP, null, null);
+					}
+				} else {
+					LOGGER.debug("asynchronous Handler was found");
+					//create a unique-ID
+					String uid = new UID().toString();
+					request.setHeader(HTTPXConstants.UNIQUE_ID, uid);
+					
+					//register the connection before the handler may answer
+					pending.put(uid, this);
+					
+					try {
+						HTTPXStatusMessageHandle statusMsgHdle = ((HTTPXAsynActionMessageHandler)element.handler).handleAsyn(request);
+						//register the handler
+						statusMsgHdle.addStatusMessageHandler(NIOServerManagedActionMessageDispatcher.this);
+					} catch (Exception e) {
+						pending.remove(uid);
+						throw e;
+					}
+					return;
+				}
+			} catch (Exception e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+				//create a "400 Bad Request"
+				response = new HTTPXStatusMessage(HTTPStatus.BAD_REQUEST.getCode(), HTTPStatus.BAD_REQUEST.getMessage(), HTTPXConstants.HTTP, null, null);
+			}
+			
+			send(response);
+		}
+		
+		/**
+		 * Serializes the specified response and passes it to the event loop for writing.
+		 * May be called on any thread.
+		 * 
+		 * @param response	the response
+		 */
+		public void send(HTTPXStatusMessage response){
+			byte[] bytes;
+			//the connection is closed after the response
+			response.setHeader(HTTPXConstants.CONNECTION, HTTPXConstants.CLOSE);
+			try {
+				bytes = serialize(response);
+			} catch (IOException e) {
+				LOGGER.error(e);
+				e.printStackTrace();
+				close();
+				return;
+			}
+			send(bytes);
+		}
+		
+		/**
+		 * Passes the specified serialized response to the event loop for writing.
+		 * May be called on any thread.
+		 * 
+		 * @param bytes	the serialized response
+		 */
+		public void send(final byte[] bytes){
+			loop.execute(new Runnable() {
+				public void run() {
+					writeBuffer = ByteBuffer.wrap(bytes);
+					try {
+						write();
+					} catch (IOException e) {
+						LOGGER.debug(e);
+						close();
+					}
+				}
+			});
+		}
+		
+		private void write() throws IOException{
+			channel.write(writeBuffer);
+			if (writeBuffer.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+			} else {
+				close();
+			}
+		}
+		
+		public void close(){
+			if (key != null) {
+				HTTPXEventLoop.close(key);
+			} else {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					LOGGER.error(e);
+				}
+			}
+		}
+	}//Connection
+
+	/**
+	 * Returns the table of requests waiting for the response of an asynchronous handler, 
+	 * e.g. to monitor the number of pending requests.
+	 * 
+	 * @return	the table or <code>null</code> if the dispatcher has not been started
+	 */
+	public HTTPXPendingResponseTable<?> getPendingResponses() {
+		return pending;
+	}
+
+	public String getInetAddress() {
+		return this.srvChannel.socket().getInetAddress().getHostAddress();
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	public String getProtocol() {
+		return HTTPXConstants.HTTP;
+	}
+}
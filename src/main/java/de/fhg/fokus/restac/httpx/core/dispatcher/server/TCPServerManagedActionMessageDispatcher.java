@@ -25,6 +25,7 @@
 
 package de.fhg.fokus.restac.httpx.core.dispatcher.server;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,10 +33,9 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.rmi.server.UID;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -44,7 +44,7 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
-import de.fhg.fokus.restac.httpx.core.common.Path;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXEntityTooLargeException;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXAsynActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHandle;
@@ -52,6 +52,8 @@ import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXStatusMessageHa
 import de.fhg.fokus.restac.httpx.core.communication.handler.HTTPXSynActionMessageHandler;
 import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher;
 import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXManagedActionMessageDispatcher;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXPendingResponseTable;
+import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXWorkerPool;
 
 /**
  * TODO: Documentation
@@ -64,6 +66,15 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	private final static Logger LOGGER = Logger.getLogger(TCPServerManagedActionMessageDispatcher.class);
 	private final static int DEFAULT_PORT = 2048;
 	
+	public final static String KEEP_ALIVE_TIMEOUT_PROPERTY = "restac.server.keepAliveTimeout";
+	public final static String MAX_KEEP_ALIVE_REQUESTS_PROPERTY = "restac.server.maxKeepAliveRequests";
+	public final static String MAX_IDLE_CONNECTIONS_PROPERTY = "restac.server.maxIdleConnections";
+	public final static String READ_TIMEOUT_PROPERTY = "restac.server.readTimeout";
+	
+	private final static int DEFAULT_KEEP_ALIVE_TIMEOUT = 15000;
+	private final static int DEFAULT_MAX_KEEP_ALIVE_REQUESTS = 100;
+	private final static int DEFAULT_READ_TIMEOUT = 30000;
+	
 	/** The Serversocket for the TCP communication */
 	private ServerSocket srvSocket;
 	
@@ -72,19 +83,29 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	
 	private boolean listening;
 	
-	/* List of MessageID's */
-	private List<MessageID> mapID;
+	/* Threads which handle the accepted connections */
+	private HTTPXWorkerPool workers;
 	
-	/* save the id, socket tupel, to find the corresponding socket */
-	class MessageID{
-		private String id;
-		private Socket socket;
-		
-		private MessageID(String id, Socket socket){
-			this.id = id;
-			this.socket = socket;
-		}
-	}
+	/* Milliseconds a persistent connection may be idle */
+	private int keepAliveTimeout;
+	
+	/* Maximum number of requests on one persistent connection */
+	private int maxKeepAliveRequests;
+	
+	/* Milliseconds a started request may stall, also the wait for the first request */
+	private int readTimeout;
+	
+	/* Maximum size of a request body in bytes */
+	private int maxBodySize;
+	
+	/* Maximum number of persistent connections idly holding a worker, by default half of the workers */
+	private int maxIdleConnections;
+	
+	/* Number of persistent connections currently waiting for their next request */
+	private AtomicInteger idleConnections = new AtomicInteger();
+	
+	/* Sockets waiting for the response of an asynchronous handler, by Unique-ID */
+	private HTTPXPendingResponseTable<Socket> pending;
 	
 	/**
 	 *  Constructs a new <code>TCPServerManagedActionMessageDispatcher</code> with the specified attributes.
@@ -93,7 +114,10 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	 */
 	public TCPServerManagedActionMessageDispatcher(HTTPXActionMessageDispatcher dispatcher) {
 		super(dispatcher);
-		mapID = new ArrayList<MessageID>();
+		keepAliveTimeout = Integer.getInteger(KEEP_ALIVE_TIMEOUT_PROPERTY, DEFAULT_KEEP_ALIVE_TIMEOUT).intValue();
+		maxKeepAliveRequests = Integer.getInteger(MAX_KEEP_ALIVE_REQUESTS_PROPERTY, DEFAULT_MAX_KEEP_ALIVE_REQUESTS).intValue();
+		readTimeout = Integer.getInteger(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT).intValue();
+		maxBodySize = Integer.getInteger(HTTPXMessageRefactorer.MAX_BODY_SIZE_PROPERTY, HTTPXMessageRefactorer.DEFAULT_MAX_BODY_SIZE).intValue();
 		
 		//do nothing with the dispatcher !
 	}
@@ -105,6 +129,24 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	public void start() {
 		LOGGER.info("Start: " + this.getClass().toString());
 		
+		workers = new HTTPXWorkerPool(TCPServerManagedActionMessageDispatcher.class.getSimpleName());
+		maxIdleConnections = Integer.getInteger(MAX_IDLE_CONNECTIONS_PROPERTY, workers.getWorkerCount() / 2).intValue();
+		pending = new HTTPXPendingResponseTable<Socket>(TCPServerManagedActionMessageDispatcher.class.getSimpleName() + "-reaper", 
+				new HTTPXPendingResponseTable.ExpiryHandler<Socket>() {
+			public void expired(String id, final Socket socket) {
+				//the write may block on a slow peer, so it is done by a worker and not by the timer wheel
+				boolean accepted = workers.execute(new Runnable() {
+					public void run() {
+						sendAndClose(socket, REQUEST_TIMEOUT_RESPONSE);
+					}
+				});
+				if (!accepted) {
+					LOGGER.warn("All workers busy, closing timed out connection without response");
+					sendAndClose(socket, null);
+				}
+			}
+		});
+		
 		while (srvSocket == null) {
 			try {
 				srvSocket = new ServerSocket(port);//ServerSocket(port, -1, InetAddress.getLocalHost());
@@ -136,6 +178,19 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 				e.printStackTrace();
 			}
 		}
+		if (workers != null) {
+			workers.shutdown();
+		}
+		if (pending != null) {
+			pending.shutdown();
+			for (Socket socket : pending.clear()) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					LOGGER.error(e);
+				}
+			}
+		}
 	}
 	
 	public HTTPXStatusMessage handleSyn(HTTPXActionMessage request) throws HTTPXProtocolViolationException, IOException{
@@ -156,27 +211,66 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 		String uid = message.getHeader(HTTPXConstants.UNIQUE_ID);
 		
 		if (uid != null && !uid.equals("")) {
-			for (ListIterator<MessageID> iter = mapID.listIterator(); iter.hasNext();) {
-				MessageID element = iter.next();
-				if (element.id.equalsIgnoreCase(uid)) {
-					LOGGER.debug("ID with corresponding Socket was found");
-					try {
-						sendResponse(element.socket, message);
-					} finally{
-						iter.remove();
-						element.socket.close();
-					}
-					break;
+			Socket socket = pending.complete(uid);
+			if (socket != null) {
+				LOGGER.debug("ID with corresponding Socket was found");
+				message.setHeader(HTTPXConstants.CONNECTION, HTTPXConstants.CLOSE);
+				try {
+					sendResponse(socket, message);
+				} finally{
+					socket.close();
 				}
+			} else {
+				LOGGER.debug("There is no socket for the " + HTTPXConstants.UNIQUE_ID + "-Header : " + uid);
 			}
-			LOGGER.debug("There is no socket for the " + HTTPXConstants.UNIQUE_ID + "-Header : " + uid);
-			
 		} else {
 			LOGGER.debug("There is no " + HTTPXConstants.UNIQUE_ID + "-Header in the message");
 			LOGGER.debug("No socket to send out");
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if the client wants to keep the connection open. HTTP/1.1 
+	 * connections are persistent unless the request contains <code>Connection: close</code>, 
+	 * HTTP/1.0 connections only if it contains <code>Connection: keep-alive</code>.
+	 * 
+	 * @param request	the request
+	 * @return			<code>true</code> if the connection should be kept open
+	 */
+	private boolean isKeepAlive(HTTPXActionMessage request){
+		String connection = request.getHeaderIgnoreCase(HTTPXConstants.CONNECTION);
+		if (connection != null) {
+			connection = connection.toLowerCase();
+			if (connection.indexOf(HTTPXConstants.CLOSE) > -1) {
+				return false;
+			}
+			if (connection.indexOf(HTTPXConstants.KEEP_ALIVE) > -1) {
+				return true;
+			}
+		}
+		return !"1.0".equals(request.getVersion());
+	}
+	
+	/**
+	 * Reserves one of the slots for persistent connections waiting for their next request. 
+	 * A connection without a slot is closed after the response, so idle connections never 
+	 * hold more than <code>maxIdleConnections</code> workers.
+	 * 
+	 * @return	<code>true</code> if a slot was reserved
+	 */
+	private boolean reserveIdleConnection(){
+		while (true) {
+			int idle = idleConnections.get();
+			if (idle >= maxIdleConnections) {
+				LOGGER.debug("Too many idle persistent connections, closing connection after the response");
+				return false;
+			}
+			if (idleConnections.compareAndSet(idle, idle + 1)) {
+				return true;
+			}
+		}
+	}
+	
 	/**
 	 * Send out the response.
 	 * 
@@ -187,23 +281,54 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	private void sendResponse(Socket socket, HTTPXStatusMessage response) throws IOException{
 		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
 		
-		InputStream in = refactorer.toStream(response);
 		OutputStream out = new BufferedOutputStream(socket.getOutputStream()); 
 
-		byte[] buffer = new byte[1024];
-		int readBytes;
-		while ((readBytes = in.read(buffer)) != -1) {
-			out.write(buffer, 0, readBytes);
+		//write the head and the body without an intermediate pipe
+		refactorer.writeTo(response, out);
+	}
+	
+	/**
+	 * Answers with the pre-serialized "503 Service Unavailable" and closes the socket.
+	 * 
+	 * @param socket	the socket
+	 */
+	private void reject(Socket socket){
+		LOGGER.warn("All workers busy, rejecting connection from " + socket.getInetAddress().getHostAddress());
+		sendAndClose(socket, SERVICE_UNAVAILABLE_RESPONSE);
+	}
+	
+	/**
+	 * Writes a pre-serialized response, if any, and closes the socket.
+	 * 
+	 * @param socket	the socket
+	 * @param response	the serialized response or <code>null</code> to close the socket only
+	 */
+	private void sendAndClose(Socket socket, byte[] response){
+		try {
+			if (response != null) {
+				OutputStream out = socket.getOutputStream();
+				out.write(response);
+				out.flush();
+			}
+		} catch (IOException e) {
+			LOGGER.debug(e);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				LOGGER.error(e);
+			}
 		}
-		//flush the stream
-		out.flush();
 	}
 	
 	public void run() {
 		listening = true;
 		while (listening) {
 			try {
-				new ConnectionHandler(srvSocket.accept());
+				Socket socket = srvSocket.accept();
+				if (!workers.execute(new ConnectionHandler(socket))) {
+					reject(socket);
+				}
 			} catch (IOException e) {
 				LOGGER.debug(HTTPXConstants.HTTP + "-Server Socket was closed.");
 			}
@@ -211,7 +336,7 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 	}
 	
 	/**
-	 * Inner class to handle the request.
+	 * Inner class to handle the request, run by one of the workers.
 	 * 
 	 * @author Murat Ates
 	 *
@@ -222,100 +347,112 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 		public ConnectionHandler(Socket socket){
 			LOGGER.debug("new tcp-socket accepted");
 			this.socket = socket;
-			
-			//Start the Thread
-			Thread t = new Thread(this);
-			t.setName(TCPServerManagedActionMessageDispatcher.class.toString() + ": " + this.getClass().toString());
-			t.start();
 		}
 
 		public void run() {
 			HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
-			HTTPXActionMessage request = null;
-			HTTPXStatusMessage response = new HTTPXStatusMessage(HTTPStatus.NOT_FOUND.getCode(), HTTPStatus.NOT_FOUND.getMessage(), HTTPXConstants.HTTP, null, null);
-			boolean bFound = false;
-			boolean bError = false;
+			boolean bClose = true;
+			boolean idle = false;
 			
 			try {
-				request = refactorer.createActionMessageFromStream(socket.getInputStream());
-
-//				TODO: overwrite port and host with the socket information 
-				request.setPort(socket.getLocalPort());
-				request.setHost(socket.getInetAddress().getHostName());
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+				socket.setSoTimeout(readTimeout);
 				
-				LOGGER.debug("Request:\r\n" + request.toString());
-				
-				Path tmpPath = new Path(request.getPath().getString());
-				do {
-					for (Tuple element : registration) {		
-						if (element.filter.doesPass(request.getProtocol(), request.getHost(), request.getPort(), tmpPath, request.getQueryAsString()))
-						{	
-							if(element.handler instanceof HTTPXSynActionMessageHandler){
-								LOGGER.debug("synchronous Handler was found: " + element.handler);
-
-								response = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(request);
-								//send the response
-								TCPServerManagedActionMessageDispatcher.this.sendResponse(socket, response);									
-								
-								bFound = true;
-								break;
-								
-							} else if (element.handler instanceof HTTPXAsynActionMessageHandler) {
-								LOGGER.debug("asynchronous Handler was found");
-								//create a unique-ID
-								String uid = new UID().toString();
-								request.setHeader(HTTPXConstants.UNIQUE_ID, uid );
-								
-								HTTPXStatusMessageHandle statusMsgHdle;
-
+				int served = 0;
+				boolean keepAlive = true;
+				while (keepAlive && awaitRequest(in)) {
+					if (idle) {
+						//the request has started, the handler reads the body with the read timeout
+						idle = false;
+						idleConnections.decrementAndGet();
+						socket.setSoTimeout(readTimeout);
+					}
+					HTTPXActionMessage request = null;
+					HTTPXStatusMessage response = new HTTPXStatusMessage(HTTPStatus.NOT_FOUND.getCode(), HTTPStatus.NOT_FOUND.getMessage(), HTTPXConstants.HTTP, null, null);
+					served++;
+					
+					try {
+						request = refactorer.createActionMessageFromStream(in);
+						//the handler may read the body only, the rest is skipped before the next request
+						request.setInputStream(refactorer.createBodyStream(request, in, maxBodySize));
+						keepAlive = served < maxKeepAliveRequests && isKeepAlive(request);
+	
+//						TODO: overwrite port and host with the socket information 
+						request.setPort(socket.getLocalPort());
+						request.setHost(socket.getInetAddress().getHostName());
+						
+						LOGGER.debug("Request:\r\n" + request.toString());
+						
+						Tuple element = lookup(request, HTTPXSynActionMessageHandler.class, HTTPXAsynActionMessageHandler.class);
+						if (element == null) {
+							LOGGER.debug("no handler was found");
+						} else if(element.handler instanceof HTTPXSynActionMessageHandler){
+							LOGGER.debug("synchronous Handler was found: " + element.handler);
+	
+							response = ((HTTPXSynActionMessageHandler)element.handler).handleSyn(request);
+							if (response == null) {
+								response = new HTTPXStatusMessage(HTTPStatus.INTERNAL_ERROR.getCode(), HTTPStatus.INTERNAL_ERROR.getMessage(), HTTPXConstants.HTTP, null, null);
+							}
+						} else {
+							LOGGER.debug("asynchronous Handler was found");
+							//create a unique-ID
+							String uid = new UID().toString();
+							request.setHeader(HTTPXConstants.UNIQUE_ID, uid );
+							
+							HTTPXStatusMessageHandle statusMsgHdle;
+							
+							//register the socket before the handler may answer, it is closed after the response
+							pending.put(uid, socket);
+							try {
 								statusMsgHdle = ((HTTPXAsynActionMessageHandler)element.handler).handleAsyn(request);
 								//register the handler
 								statusMsgHdle.addStatusMessageHandler(TCPServerManagedActionMessageDispatcher.this);
-								mapID.add(new MessageID(uid, socket));
-								bFound = true;
-								break;
+							} catch (Exception e) {
+								pending.remove(uid);
+								throw e;
 							}
+							bClose = false;
+							return;
 						}
-					}//for
+					} catch (HTTPXEntityTooLargeException e) {
+						LOGGER.debug(e);
+						//the body is not read, the connection can't be used any further
+						response = new HTTPXStatusMessage(HTTPStatus.ENTITY_TOO_LARGE.getCode(), HTTPStatus.ENTITY_TOO_LARGE.getMessage(), HTTPXConstants.HTTP, null, null);
+						keepAlive = false;
+					} catch (Exception e) {
+						LOGGER.error(e);
+						e.printStackTrace();
+						//create a "400 Bad Request", the framing of the connection is lost
+						response = new HTTPXStatusMessage(HTTPStatus.BAD_REQUEST.getCode(), HTTPStatus.BAD_REQUEST.getMessage(), HTTPXConstants.HTTP, null, null);
+						keepAlive = false;
+					}
 					
-					//TODO: change for a better alternative
-					if (!bFound) {
-						String strTmp = tmpPath.getString();
-						tmpPath.removeLastToken();
-						//check wheter path is root
-						if (strTmp.equalsIgnoreCase(tmpPath.getString())) {
-							break;
-						}
+					//without a length the end of the response body is the end of the connection
+					if (response.getInputStream() == null && response.getHeaderIgnoreCase(HTTPXConstants.CONTENT_LENGTH) == null) {
+						response.setHeader(HTTPXConstants.CONTENT_LENGTH, "0");
+					} else if (!refactorer.isSelfDelimited(response)) {
+						keepAlive = false;
 					}
-				} while (!bFound);
-				
-//			} catch (HTTPXProtocolViolationException e) {
-//				LOGGER.error(e);
-//				e.printStackTrace();
-//				//create a "400 Bad Request"
-//				response = new HTTPXStatusMessage(HTTPStatus.BAD_REQUEST.getCode(), HTTPStatus.BAD_REQUEST.getMessage(), HTTPXConstants.HTTP, null, null);
-//			} catch (IOException e) {
-//				LOGGER.error(e);
-//				e.printStackTrace();
-//				//create a "400 Bad Request"
-//				response = new HTTPXStatusMessage(HTTPStatus.BAD_REQUEST.getCode(), HTTPStatus.BAD_REQUEST.getMessage(), HTTPXConstants.HTTP, null, null);
-			} catch (Exception e) {
-				LOGGER.error(e);
-				e.printStackTrace();
-				//create a "400 Bad Request"
-				response = new HTTPXStatusMessage(HTTPStatus.BAD_REQUEST.getCode(), HTTPStatus.BAD_REQUEST.getMessage(), HTTPXConstants.HTTP, null, null);
-				bError = true;
-			}
-				
-			if (!bFound || bError) {
-				LOGGER.debug("no handler was found");
-				try {
-					//send a "404 Not Found" / "400 Bad Request" response
+					if (keepAlive) {
+						idle = keepAlive = reserveIdleConnection();
+					}
+					response.setHeader(HTTPXConstants.CONNECTION, keepAlive ? HTTPXConstants.KEEP_ALIVE : HTTPXConstants.CLOSE);
+					
+					//send the response
 					TCPServerManagedActionMessageDispatcher.this.sendResponse(socket, response);
-				} catch (IOException e) {
-					LOGGER.error(e);
-					e.printStackTrace();
-				} finally {
+					
+					if (keepAlive) {
+						request.getInputStream().close();
+						socket.setSoTimeout(keepAliveTimeout);
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.debug(e);
+			} finally {
+				if (idle) {
+					idleConnections.decrementAndGet();
+				}
+				if (bClose) {
 					try {
 						socket.close();
 					} catch (IOException e) {
@@ -324,11 +461,47 @@ public class TCPServerManagedActionMessageDispatcher extends HTTPXManagedActionM
 					}
 				}
 			}
-				
 		}//run
 		
+		/**
+		 * Waits for the first byte of the next request, empty lines before a request are ignored.
+		 * 
+		 * @param in	the input stream of the connection
+		 * @return		<code>false</code> if the connection was closed or has been idle for too long
+		 */
+		private boolean awaitRequest(InputStream in){
+			try {
+				while (true) {
+					in.mark(1);
+					int b = in.read();
+					if (b == -1) {
+						return false;
+					}
+					if (b != 13 && b != 10) {
+						in.reset();
+						return true;
+					}
+				}
+			} catch (SocketTimeoutException e) {
+				LOGGER.debug("Idle connection timed out");
+			} catch (IOException e) {
+				LOGGER.debug(e);
+			}
+			return false;
+		}
+		
 	}//ConnectionHandler
 
+	/**
+	 * Returns the table of requests waiting for the response of an asynchronous handler, 
+	 * e.g. to monitor the number of pending requests.
+	 * 
+	 * @return	the table or <code>null</code> if the dispatcher has not been started
+	 */
+	public HTTPXPendingResponseTable<Socket> getPendingResponses() {
+		return pending;
+	}
+
 	public String getInetAddress() {
 		return this.srvSocket.getInetAddress().getHostAddress();
 	}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.demo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXHeadParser;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXMessageRefactorer;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * Measures the throughput of the HTTP head parsing. Three variants are compared:
+ * <ul>
+ * <li>the former approach which reads byte by byte into a <code>StringBuilder</code> and splits 
+ * the lines with regular expressions,</li>
+ * <li><code>HTTPXMessageRefactorer.createActionMessageFromStream</code> on a buffered stream and</li>
+ * <li><code>HTTPXHeadParser</code> fed with small slices as it happens on a non-blocking channel.</li>
+ * </ul>
+ * Usage: <code>HeadParserBenchmark [iterations]</code>
+ * 
+ * @author Murat Ates
+ */
+public class HeadParserBenchmark {
+
+	private final static byte[] REQUEST = ("GET /restac/resources/switch/state?format=xml&verbose=true HTTP/1.1\r\n" +
+			"Host: localhost:2048\r\n" +
+			"User-Agent: RESTAC/1.0\r\n" +
+			"Accept: text/xml, application/x-www-form-urlencoded;q=0.8, */*;q=0.1\r\n" +
+			"Accept-Encoding: identity\r\n" +
+			"Accept-Language: de-DE, en;q=0.5\r\n" +
+			"Cache-Control: no-cache\r\n" +
+			"Connection: keep-alive\r\n" +
+			"Content-Length: 0\r\n" +
+			"\r\n").getBytes();
+	
+	private final static int SLICE = 16;
+	
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		
+		//warm up
+		run("legacy", iterations / 10, 0, false);
+		run("refactorer", iterations / 10, 1, false);
+		run("incremental", iterations / 10, 2, false);
+		
+		run("legacy", iterations, 0, true);
+		run("refactorer", iterations, 1, true);
+		run("incremental", iterations, 2, true);
+	}
+	
+	private static void run(String name, int iterations, int variant, boolean print) throws Exception {
+		HTTPXMessageRefactorer refactorer = new HTTPXMessageRefactorer();
+		HTTPXHeadParser parser = new HTTPXHeadParser();
+		int headers = 0;
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			switch (variant) {
+			case 0:
+				headers += legacyParse(new ByteArrayInputStream(REQUEST)).size();
+				break;
+			case 1:
+				headers += refactorer.createActionMessageFromStream(new BufferedInputStream(new ByteArrayInputStream(REQUEST))).getHeaders().size();
+				break;
+			default:
+				parser.reset();
+				for (int offset = 0; offset < REQUEST.length && !parser.isComplete(); offset += SLICE) {
+					parser.parse(REQUEST, offset, Math.min(SLICE, REQUEST.length - offset));
+				}
+				headers += parser.getHeaderCount();
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		
+		if (print) {
+			double seconds = nanos / 1e9;
+			System.out.println(name + ": " + (long)(iterations / seconds) + " heads/s, " 
+					+ (long)(iterations * (double)REQUEST.length / seconds / (1024 * 1024)) + " MB/s (" + headers / iterations + " headers)");
+		}
+	}
+	
+	/* The former parsing algorithm, one read() per byte */
+	private static Map<String, String> legacyParse(InputStream stream) throws IOException, HTTPXProtocolViolationException {
+		Map<String, String> headers = new HashMap<String, String>();
+		int currentCharacter;
+		int previousCharacter = -1;
+		StringBuilder requestLine = new StringBuilder();
+		while ((currentCharacter = stream.read()) != -1) {
+			if (previousCharacter == 13 && currentCharacter == 10)
+				break;
+			if (currentCharacter != 13 && currentCharacter != 10)
+				requestLine.append((char)currentCharacter);
+			previousCharacter = currentCharacter;
+		}
+		String[] words = requestLine.toString().split("\\s", 3);
+		if (words.length < 3) {
+			throw new HTTPXProtocolViolationException("Malformed request line");
+		}
+		words[2].split("/");
+		
+		StringBuilder sb = new StringBuilder();
+		int crlfCount = 0;
+		currentCharacter = stream.read();
+		while (true) {
+			while (currentCharacter != -1 && !(previousCharacter == 13 && currentCharacter == 10)) {
+				if (currentCharacter != 13 && currentCharacter != 10) {
+					sb.append((char)currentCharacter);
+					crlfCount = 0;
+				}
+				previousCharacter = currentCharacter;
+				currentCharacter = stream.read();
+			}
+			if (++crlfCount == 2)
+				break;
+			String headerLine = sb.toString();
+			int separator = headerLine.indexOf(':');
+			if (separator <= 0)
+				break;
+			headers.put(headerLine.substring(0, separator).trim(), headerLine.substring(separator + 1).trim());
+			sb = new StringBuilder();
+			previousCharacter = currentCharacter;
+			currentCharacter = stream.read();
+		}
+		return headers;
+	}
+}
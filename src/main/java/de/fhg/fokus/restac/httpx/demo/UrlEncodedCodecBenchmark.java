@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.demo;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.UrlEncodedConverter;
+
+/**
+ * Measures the throughput of the <code>application/x-www-form-urlencoded</code> codec. The former 
+ * implementation, which concatenates strings while encoding and splits the body into strings 
+ * while decoding, is compared with <code>UrlEncodedConverter</code>. The content resembles the 
+ * parameters of a wrapped method call with an array argument.
+ * <p>
+ * Usage: <code>UrlEncodedCodecBenchmark [iterations] [array length]</code>
+ * 
+ * @author Murat Ates
+ */
+public class UrlEncodedCodecBenchmark {
+	
+	private final static String CHARSET = HTTPXConstants.DEFAULT_CHARSET;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		
+		Map<String, String> content = new LinkedHashMap<String, String>();
+		content.put("a.name", "temperature sensor #3");
+		content.put("a.unit", "\u00b0C");
+		content.put("a.enabled", "true");
+		for (int i = 0; i < length; i++) {
+			content.put("a.values[" + i + "]", Double.toString(i * 0.25 - 7));
+		}
+		
+		//both implementations must agree
+		byte[] legacy = legacyEncode(content, CHARSET);
+		byte[] current = UrlEncodedConverter.contentToByteArray(content, CHARSET);
+		if (!new String(legacy, CHARSET).equals(new String(current, CHARSET))
+				|| !legacyDecode(current, CHARSET).equals(UrlEncodedConverter.byteArrayToContent(legacy, CHARSET))) {
+			throw new IllegalStateException("Implementations differ");
+		}
+		System.out.println("Body of " + current.length + " bytes with " + content.size() + " fields");
+		
+		//warm up
+		run("legacy", content, iterations / 10, true, false);
+		run("single-pass", content, iterations / 10, false, false);
+		
+		run("legacy", content, iterations, true, true);
+		run("single-pass", content, iterations, false, true);
+	}
+	
+	private static void run(String name, Map<String, String> content, int iterations, boolean legacy, boolean print) throws Exception {
+		byte[] body = UrlEncodedConverter.contentToByteArray(content, CHARSET);
+		int size = 0;
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			size += (legacy ? legacyEncode(content, CHARSET) : UrlEncodedConverter.contentToByteArray(content, CHARSET)).length;
+		}
+		long encodeNanos = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			size += (legacy ? legacyDecode(body, CHARSET) : UrlEncodedConverter.byteArrayToContent(body, CHARSET)).size();
+		}
+		long decodeNanos = System.nanoTime() - start;
+		
+		if (print) {
+			System.out.println(name + ": encode " + (long)(iterations / (encodeNanos / 1e9)) + " bodies/s, decode " 
+					+ (long)(iterations / (decodeNanos / 1e9)) + " bodies/s (" + size / iterations + ")");
+		}
+	}
+	
+	/* The former encoder */
+	private static byte[] legacyEncode(Map<String, String> content, String charset) throws UnsupportedEncodingException {
+		String urlEncoded = "";
+		final Iterator<String> iterator = content.keySet().iterator();
+		while(iterator.hasNext()) {
+			String name = iterator.next();
+			String value = content.get(name);
+			urlEncoded += URLEncoder.encode(name, charset);
+			if(value != null)
+				urlEncoded += "=" + URLEncoder.encode(value, charset);
+			if(iterator.hasNext()) urlEncoded += "&";
+		}
+		return urlEncoded.getBytes(charset);
+	}
+	
+	/* The former decoder */
+	private static Map<String, String> legacyDecode(byte[] body, String charset) throws UnsupportedEncodingException {
+		String[] fields = new String(body, charset).split("&");
+		Map<String, String> m = new HashMap<String, String>();
+		for(int i=0; i<fields.length; i++) {
+			int idx = fields[i].indexOf('=');
+			if (idx!=-1) {
+				m.put(URLDecoder.decode(fields[i].substring(0, idx).trim(), HTTPXConstants.DEFAULT_CHARSET), 
+						URLDecoder.decode(fields[i].substring(idx+1).trim(), HTTPXConstants.DEFAULT_CHARSET));
+			}
+			else {
+				m.put(URLDecoder.decode(fields[i], HTTPXConstants.DEFAULT_CHARSET), null);
+			}
+		}
+		return m;
+	}
+}
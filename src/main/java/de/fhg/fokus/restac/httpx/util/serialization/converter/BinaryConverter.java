@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+
+/**
+ * Compact binary codec for <code>application/octet-stream</code> content. The content is a list of 
+ * values, e.g. the arguments of a wrapped method call or its result. Primitives and their wrappers, 
+ * strings, arrays of those and name-value maps are written as a type tag followed by the value: 
+ * numbers in their big-endian machine representation, arrays as length and elements in one block. 
+ * Nothing is formatted or escaped, so a <code>double[]</code> is copied into the content in a 
+ * single bulk operation.
+ * <p>
+ * Layout: <code>version(1) count(4) { tag(1) value }*</code>, strings are 
+ * <code>length(4) bytes</code> in the given charset, a length of -1 denotes null.
+ * 
+ * @author Murat Ates
+ */
+public class BinaryConverter extends ContentConverter {
+	
+	private final static Logger LOGGER = Logger.getLogger(BinaryConverter.class);
+	
+	/** The version of the layout, written as the first byte of the content. */
+	public final static byte VERSION = 1;
+	
+	private final static byte TAG_NULL			= 0;
+	private final static byte TAG_BOOLEAN		= 1;
+	private final static byte TAG_BYTE			= 2;
+	private final static byte TAG_CHAR			= 3;
+	private final static byte TAG_SHORT			= 4;
+	private final static byte TAG_INT			= 5;
+	private final static byte TAG_LONG			= 6;
+	private final static byte TAG_FLOAT			= 7;
+	private final static byte TAG_DOUBLE		= 8;
+	private final static byte TAG_STRING		= 9;
+	private final static byte TAG_MAP			= 10;
+	
+	/* arrays are tagged with the tag of their component type plus TAG_ARRAY */
+	private final static byte TAG_ARRAY			= 16;
+	
+	private final static Map<Class<?>, Byte> TAGS = new HashMap<Class<?>, Byte>();
+	
+	static {
+		TAGS.put(Boolean.class, new Byte(TAG_BOOLEAN));
+		TAGS.put(Byte.class, new Byte(TAG_BYTE));
+		TAGS.put(Character.class, new Byte(TAG_CHAR));
+		TAGS.put(Short.class, new Byte(TAG_SHORT));
+		TAGS.put(Integer.class, new Byte(TAG_INT));
+		TAGS.put(Long.class, new Byte(TAG_LONG));
+		TAGS.put(Float.class, new Byte(TAG_FLOAT));
+		TAGS.put(Double.class, new Byte(TAG_DOUBLE));
+		TAGS.put(String.class, new Byte(TAG_STRING));
+		TAGS.put(boolean[].class, new Byte((byte)(TAG_ARRAY + TAG_BOOLEAN)));
+		TAGS.put(byte[].class, new Byte((byte)(TAG_ARRAY + TAG_BYTE)));
+		TAGS.put(char[].class, new Byte((byte)(TAG_ARRAY + TAG_CHAR)));
+		TAGS.put(short[].class, new Byte((byte)(TAG_ARRAY + TAG_SHORT)));
+		TAGS.put(int[].class, new Byte((byte)(TAG_ARRAY + TAG_INT)));
+		TAGS.put(long[].class, new Byte((byte)(TAG_ARRAY + TAG_LONG)));
+		TAGS.put(float[].class, new Byte((byte)(TAG_ARRAY + TAG_FLOAT)));
+		TAGS.put(double[].class, new Byte((byte)(TAG_ARRAY + TAG_DOUBLE)));
+		TAGS.put(String[].class, new Byte((byte)(TAG_ARRAY + TAG_STRING)));
+	}
+	
+	/**
+	 * Checks whether values of the given type are written in their binary form. Primitive types 
+	 * count as their wrappers. Other objects have to be passed as name-value map.
+	 * 
+	 * @param type - the type of a value
+	 * 
+	 * @return true if the type has a binary form
+	 */
+	static public boolean isEncodable(Class<?> type) {
+		if (type.isPrimitive())
+			return type != Void.TYPE;
+		return TAGS.containsKey(type);
+	}
+	
+	static public Object[] byteArrayToContent(byte[] body, String charset) throws ContentConvertingException {
+		return byteArrayToContent(body, 0, body.length, charset);
+	}
+	
+	/**
+	 * Decodes the values in the given part of the array. 
+	 * 
+	 * @param body - the array
+	 * @param off - start of the content
+	 * @param len - length of the content
+	 * @param charset - charset of the strings
+	 * 
+	 * @return the values, primitives as their wrappers and maps as <code>Map&lt;String, String&gt;</code>
+	 * 
+	 * @throws ContentConvertingException if the content is truncated or malformed
+	 */
+	static public Object[] byteArrayToContent(byte[] body, int off, int len, String charset) throws ContentConvertingException {
+		ByteBuffer in = ByteBuffer.wrap(body, off, len);
+		Charset cs = toCharset(charset);
+		
+		try {
+			byte version = in.get();
+			if (version != VERSION)
+				throw new ContentConvertingException("Binary content of version " + version + " is not supported.");
+			
+			Object[] values = new Object[checkLength(in, in.getInt(), 1)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readValue(in, cs);
+			
+			if (in.hasRemaining())
+				LOGGER.warn(in.remaining() + " bytes after the last value of binary content are ignored.");
+			return values;
+		} catch (BufferUnderflowException e) {
+			throw new ContentConvertingException("Binary content is truncated.");
+		}
+	}
+	
+	/**
+	 * Serializes the values into a byte array.
+	 * 
+	 * @param values - the values to be serialized
+	 * @param charset - charset for the strings
+	 * 
+	 * @return byte array containing the serialized values
+	 * 
+	 * @throws ContentConvertingException if a value has no binary form
+	 */
+	static public byte[] contentToByteArray(Object[] values, String charset) throws ContentConvertingException {
+		Encoder encoder = new Encoder(toCharset(charset));
+		encoder.writeContent(values);
+		
+		byte[] result = new byte[encoder.count];
+		System.arraycopy(encoder.buf, 0, result, 0, encoder.count);
+		return result;
+	}
+	
+	/**
+	 * Serializes the values directly into the given stream.
+	 * 
+	 * @param values - the values to be serialized
+	 * @param charset - charset for the strings
+	 * @param out - the stream to write to
+	 * 
+	 * @throws ContentConvertingException if a value has no binary form
+	 * @throws IOException if writing to the stream failed
+	 */
+	static public void write(Object[] values, String charset, OutputStream out) throws ContentConvertingException, IOException {
+		Encoder encoder = new Encoder(toCharset(charset));
+		encoder.writeContent(values);
+		out.write(encoder.buf, 0, encoder.count);
+	}
+	
+	private static Object readValue(ByteBuffer in, Charset cs) throws ContentConvertingException {
+		byte tag = in.get();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_BOOLEAN:
+			return Boolean.valueOf(in.get() != 0);
+		case TAG_BYTE:
+			return new Byte(in.get());
+		case TAG_CHAR:
+			return new Character(in.getChar());
+		case TAG_SHORT:
+			return new Short(in.getShort());
+		case TAG_INT:
+			return new Integer(in.getInt());
+		case TAG_LONG:
+			return new Long(in.getLong());
+		case TAG_FLOAT:
+			return new Float(in.getFloat());
+		case TAG_DOUBLE:
+			return new Double(in.getDouble());
+		case TAG_STRING:
+			return readString(in, cs);
+		case TAG_MAP: {
+			int size = checkLength(in, in.getInt(), 8);
+			Map<String, String> map = new HashMap<String, String>();
+			for (int i = 0; i < size; i++)
+				map.put(readString(in, cs), readString(in, cs));
+			return map;
+		}
+		case TAG_ARRAY + TAG_BOOLEAN: {
+			boolean[] a = new boolean[checkLength(in, in.getInt(), 1)];
+			for (int i = 0; i < a.length; i++)
+				a[i] = in.get() != 0;
+			return a;
+		}
+		case TAG_ARRAY + TAG_BYTE: {
+			byte[] a = new byte[checkLength(in, in.getInt(), 1)];
+			in.get(a);
+			return a;
+		}
+		case TAG_ARRAY + TAG_CHAR: {
+			char[] a = new char[checkLength(in, in.getInt(), 2)];
+			in.asCharBuffer().get(a);
+			in.position(in.position() + a.length * 2);
+			return a;
+		}
+		case TAG_ARRAY + TAG_SHORT: {
+			short[] a = new short[checkLength(in, in.getInt(), 2)];
+			in.asShortBuffer().get(a);
+			in.position(in.position() + a.length * 2);
+			return a;
+		}
+		case TAG_ARRAY + TAG_INT: {
+			int[] a = new int[checkLength(in, in.getInt(), 4)];
+			in.asIntBuffer().get(a);
+			in.position(in.position() + a.length * 4);
+			return a;
+		}
+		case TAG_ARRAY + TAG_LONG: {
+			long[] a = new long[checkLength(in, in.getInt(), 8)];
+			in.asLongBuffer().get(a);
+			in.position(in.position() + a.length * 8);
+			return a;
+		}
+		case TAG_ARRAY + TAG_FLOAT: {
+			float[] a = new float[checkLength(in, in.getInt(), 4)];
+			in.asFloatBuffer().get(a);
+			in.position(in.position() + a.length * 4);
+			return a;
+		}
+		case TAG_ARRAY + TAG_DOUBLE: {
+			double[] a = new double[checkLength(in, in.getInt(), 8)];
+			in.asDoubleBuffer().get(a);
+			in.position(in.position() + a.length * 8);
+			return a;
+		}
+		case TAG_ARRAY + TAG_STRING: {
+			String[] a = new String[checkLength(in, in.getInt(), 4)];
+			for (int i = 0; i < a.length; i++)
+				a[i] = readString(in, cs);
+			return a;
+		}
+		default:
+			throw new ContentConvertingException("Unknown type tag " + tag + " in binary content.");
+		}
+	}
+	
+	private static String readString(ByteBuffer in, Charset cs) throws ContentConvertingException {
+		int length = in.getInt();
+		if (length == -1)
+			return null;
+		checkLength(in, length, 1);
+		
+		String s = new String(in.array(), in.arrayOffset() + in.position(), length, cs);
+		in.position(in.position() + length);
+		return s;
+	}
+	
+	/* rejects lengths which cannot fit into the rest of the content before anything is allocated */
+	private static int checkLength(ByteBuffer in, int length, int elementSize) throws ContentConvertingException {
+		if (length < 0 || (long)length * elementSize > in.remaining())
+			throw new ContentConvertingException("Invalid length " + length + " in binary content.");
+		return length;
+	}
+	
+	private static Charset toCharset(String charset) throws ContentConvertingException {
+		try {
+			return Charset.forName(charset);
+		} catch (IllegalArgumentException e) {
+			throw new ContentConvertingException("Charset '" + charset + "' is not supported.");
+		}
+	}
+	
+	/**
+	 * Writes values into a growing array.
+	 */
+	private static class Encoder {
+		
+		private final Charset cs;
+		
+		private byte[] buf = new byte[256];
+		
+		private int count = 0;
+		
+		private Encoder(Charset cs) {
+			this.cs = cs;
+		}
+		
+		private void writeContent(Object[] values) throws ContentConvertingException {
+			ensure(5);
+			buf[count++] = VERSION;
+			putInt(values.length);
+			for (int i = 0; i < values.length; i++)
+				writeValue(values[i]);
+		}
+		
+		private void writeValue(Object value) throws ContentConvertingException {
+			if (value == null) {
+				ensure(1);
+				buf[count++] = TAG_NULL;
+				return;
+			}
+			
+			Byte tag = TAGS.get(value.getClass());
+			if (tag == null) {
+				if (value instanceof Map) {
+					writeMap((Map<?, ?>)value);
+					return;
+				}
+				throw new ContentConvertingException("Objects of type '" + value.getClass().getName() + "' have no binary form.");
+			}
+			
+			ensure(9);
+			buf[count++] = tag.byteValue();
+			switch (tag.byteValue()) {
+			case TAG_BOOLEAN:
+				buf[count++] = (byte)(((Boolean)value).booleanValue() ? 1 : 0);
+				break;
+			case TAG_BYTE:
+				buf[count++] = ((Byte)value).byteValue();
+				break;
+			case TAG_CHAR:
+				wrap(2).putChar(((Character)value).charValue());
+				break;
+			case TAG_SHORT:
+				wrap(2).putShort(((Short)value).shortValue());
+				break;
+			case TAG_INT:
+				putInt(((Integer)value).intValue());
+				break;
+			case TAG_LONG:
+				wrap(8).putLong(((Long)value).longValue());
+				break;
+			case TAG_FLOAT:
+				wrap(4).putFloat(((Float)value).floatValue());
+				break;
+			case TAG_DOUBLE:
+				wrap(8).putDouble(((Double)value).doubleValue());
+				break;
+			case TAG_STRING:
+				writeString((String)value);
+				break;
+			case TAG_ARRAY + TAG_BOOLEAN: {
+				boolean[] a = (boolean[])value;
+				putInt(a.length);
+				ensure(a.length);
+				for (int i = 0; i < a.length; i++)
+					buf[count++] = (byte)(a[i] ? 1 : 0);
+				break;
+			}
+			case TAG_ARRAY + TAG_BYTE: {
+				byte[] a = (byte[])value;
+				putInt(a.length);
+				ensure(a.length);
+				System.arraycopy(a, 0, buf, count, a.length);
+				count += a.length;
+				break;
+			}
+			case TAG_ARRAY + TAG_CHAR: {
+				char[] a = (char[])value;
+				putInt(a.length);
+				wrap(a.length * 2).asCharBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_SHORT: {
+				short[] a = (short[])value;
+				putInt(a.length);
+				wrap(a.length * 2).asShortBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_INT: {
+				int[] a = (int[])value;
+				putInt(a.length);
+				wrap(a.length * 4).asIntBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_LONG: {
+				long[] a = (long[])value;
+				putInt(a.length);
+				wrap(a.length * 8).asLongBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_FLOAT: {
+				float[] a = (float[])value;
+				putInt(a.length);
+				wrap(a.length * 4).asFloatBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_DOUBLE: {
+				double[] a = (double[])value;
+				putInt(a.length);
+				wrap(a.length * 8).asDoubleBuffer().put(a);
+				break;
+			}
+			case TAG_ARRAY + TAG_STRING: {
+				String[] a = (String[])value;
+				putInt(a.length);
+				for (int i = 0; i < a.length; i++)
+					writeString(a[i]);
+				break;
+			}
+			}
+		}
+		
+		private void writeMap(Map<?, ?> map) {
+			ensure(5);
+			buf[count++] = TAG_MAP;
+			putInt(map.size());
+			for (Iterator<? extends Map.Entry<?, ?>> iter = map.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<?, ?> entry = iter.next();
+				writeString(entry.getKey() == null ? null : entry.getKey().toString());
+				writeString(entry.getValue() == null ? null : entry.getValue().toString());
+			}
+		}
+		
+		private void writeString(String s) {
+			if (s == null) {
+				putInt(-1);
+				return;
+			}
+			byte[] bytes = s.getBytes(cs);
+			putInt(bytes.length);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, count, bytes.length);
+			count += bytes.length;
+		}
+		
+		private void putInt(int v) {
+			ensure(4);
+			buf[count++] = (byte)(v >>> 24);
+			buf[count++] = (byte)(v >>> 16);
+			buf[count++] = (byte)(v >>> 8);
+			buf[count++] = (byte)v;
+		}
+		
+		/* reserves the next length bytes and returns a big-endian view on them */
+		private ByteBuffer wrap(int length) {
+			ensure(length);
+			ByteBuffer view = ByteBuffer.wrap(buf, count, length);
+			count += length;
+			return view.slice();
+		}
+		
+		private void ensure(int length) {
+			if (count + length > buf.length) {
+				int size = buf.length * 2;
+				if (size < count + length)
+					size = count + length;
+				byte[] grown = new byte[size];
+				System.arraycopy(buf, 0, grown, 0, count);
+				buf = grown;
+			}
+		}
+	}
+}
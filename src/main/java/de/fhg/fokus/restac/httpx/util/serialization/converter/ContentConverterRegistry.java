@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+
+/**
+ * Central registry of the content readers and writers, keyed by media type. Instead of trying 
+ * the constructor of each reader, the reader for a stream is looked up by its content type.
+ * <p>
+ * Every writer is registered with a quality between 0 and 1 telling how cheap the encoding is 
+ * for the server. {@link #negotiate(String, Object, String[])} uses it to choose among the media 
+ * types the client names explicitly with the same q-value, so a server picks the cheapest of 
+ * them. Media types only matched by a wildcard keep the order the resource offers them in. 
+ * The result is cached per pair of <code>Accept</code> header and resource, since a client 
+ * sends the same header with every request.
+ * 
+ * @author Murat Ates
+ */
+public class ContentConverterRegistry {
+	
+	private final static Logger LOGGER = Logger.getLogger(ContentConverterRegistry.class);
+	
+	/** The system property for the number of cached negotiation results. */
+	public final static String CACHE_SIZE_PROPERTY = "restac.negotiation.cacheSize";
+	
+	/** The number of cached negotiation results if the system property is not set. */
+	public final static int DEFAULT_CACHE_SIZE = Integer.getInteger(CACHE_SIZE_PROPERTY, 256).intValue();
+	
+	/* cached result of a negotiation without acceptable media type */
+	private final static String NONE = "";
+	
+	/** The singleton instance of <code>ContentConverterRegistry</code>. */
+	private static ContentConverterRegistry instance = new ContentConverterRegistry();
+	
+	/** The registered reader factories. */
+	private Map<String, ContentReaderFactory> readers;
+	
+	/** The registered writer factories. */
+	private Map<String, ContentWriterFactory> writers;
+	
+	/** The qualities of the registered writers. */
+	private Map<String, Float> qualities;
+	
+	/** The media types which are only selected if the client names them explicitly. */
+	private Set<String> explicitOnly;
+	
+	/** The negotiated media types, the least recently used one is dropped first. */
+	private Map<NegotiationKey, String> negotiated;
+	
+	/**
+	 * Constructs a new empty <code>ContentConverterRegistry</code>.
+	 */
+	private ContentConverterRegistry() {
+		readers = Collections.synchronizedMap(new HashMap<String, ContentReaderFactory>());
+		writers = Collections.synchronizedMap(new HashMap<String, ContentWriterFactory>());
+		qualities = Collections.synchronizedMap(new HashMap<String, Float>());
+		explicitOnly = Collections.synchronizedSet(new HashSet<String>());
+		negotiated = Collections.synchronizedMap(new LinkedHashMap<NegotiationKey, String>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<NegotiationKey, String> eldest) {
+				return size() > DEFAULT_CACHE_SIZE;
+			}
+		});
+	}
+	
+	/**
+	 * Returns the singleton instance of <code>ContentConverterRegistry</code>.
+	 * 
+	 * @return the singleton instance
+	 */
+	public static ContentConverterRegistry getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Registers the reader factory for a media type.
+	 * 
+	 * @param mediaType - the media type, without parameters
+	 * @param factory - the factory creating readers for the media type
+	 */
+	public void addReader(String mediaType, ContentReaderFactory factory) {
+		readers.put(normalize(mediaType), factory);
+	}
+	
+	/**
+	 * Registers the writer factory for a media type.
+	 * 
+	 * @param mediaType - the media type, without parameters
+	 * @param quality - how cheap the encoding is for the server, between 0 and 1
+	 * @param factory - the factory creating writers for the media type
+	 */
+	public void addWriter(String mediaType, float quality, ContentWriterFactory factory) {
+		addWriter(mediaType, quality, false, factory);
+	}
+	
+	/**
+	 * Registers the writer factory for a media type which may be restricted to clients naming 
+	 * it explicitly in their <code>Accept</code> header, e.g. <code>application/octet-stream</code> 
+	 * which no client matching <code>*&#47;*</code> expects.
+	 * 
+	 * @param mediaType - the media type, without parameters
+	 * @param quality - how cheap the encoding is for the server, between 0 and 1
+	 * @param explicit - true if the media type is not selected by a wildcard media range
+	 * @param factory - the factory creating writers for the media type
+	 */
+	public void addWriter(String mediaType, float quality, boolean explicit, ContentWriterFactory factory) {
+		String type = normalize(mediaType);
+		writers.put(type, factory);
+		qualities.put(type, new Float(quality));
+		if (explicit)
+			explicitOnly.add(type);
+		else
+			explicitOnly.remove(type);
+		negotiated.clear();
+	}
+	
+	/**
+	 * Checks whether a reader for the media type is registered.
+	 * 
+	 * @param mediaType - the media type
+	 * 
+	 * @return true if content of the media type can be read
+	 */
+	public boolean isReadable(String mediaType) {
+		return mediaType != null && readers.containsKey(normalize(mediaType));
+	}
+	
+	/**
+	 * Checks whether a writer for the media type is registered.
+	 * 
+	 * @param mediaType - the media type
+	 * 
+	 * @return true if content of the media type can be written
+	 */
+	public boolean isWritable(String mediaType) {
+		return mediaType != null && writers.containsKey(normalize(mediaType));
+	}
+	
+	/**
+	 * Creates the reader for the content type of the given stream.
+	 * 
+	 * @param in - httpx input stream from which to read
+	 * 
+	 * @return the content reader or null if the stream has no content type or no reader is registered for it
+	 * 
+	 * @throws ContentConvertingException if the reader does not support the stream
+	 */
+	public ContentReader getReader(HTTPXInputStream in) throws ContentConvertingException {
+		if (in == null || in.getContentType() == null)
+			return null;
+		ContentReaderFactory factory = readers.get(normalize(in.getContentType()));
+		return factory != null ? factory.createReader(in) : null;
+	}
+	
+	/**
+	 * Creates the writer for the content type of the given stream.
+	 * 
+	 * @param out - httpx output stream to write to
+	 * 
+	 * @return the content writer or null if the stream has no content type or no writer is registered for it
+	 * 
+	 * @throws ContentConvertingException if the writer does not support the stream
+	 */
+	public ContentWriter getWriter(HTTPXOutputStream out) throws ContentConvertingException {
+		if (out == null || out.getContentType() == null)
+			return null;
+		ContentWriterFactory factory = writers.get(normalize(out.getContentType()));
+		return factory != null ? factory.createWriter(out) : null;
+	}
+	
+	/**
+	 * Selects the media type of a response. Each offered media type with a registered writer is 
+	 * rated by the q-value the <code>Accept</code> header gives it, the most specific media 
+	 * range decides. The highest q-value wins; on a tie a media type named explicitly beats one 
+	 * matched by a wildcard, among explicit ones the quality of the writer decides and otherwise 
+	 * the one offered first. Media types registered as explicit only are never matched by a 
+	 * wildcard. Without <code>Accept</code> header the first offered type is selected.
+	 * <p>
+	 * The result is cached for the pair of <code>Accept</code> header and resource, so a 
+	 * resource must always offer the same media types for a key.
+	 * 
+	 * @param accept - the value of the <code>Accept</code> header, may be null
+	 * @param resource - the key of the resource, e.g. its class
+	 * @param offered - the media types the resource can respond with, in order of its preference
+	 * 
+	 * @return the selected media type or null if the client accepts none of the offered types
+	 */
+	public String negotiate(String accept, Object resource, String[] offered) {
+		if (accept == null)
+			return offered.length > 0 ? offered[0] : null;
+		
+		NegotiationKey key = new NegotiationKey(accept, resource);
+		String type = negotiated.get(key);
+		if (type == null) {
+			type = select(parseAccept(accept), offered);
+			negotiated.put(key, type);
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Negotiated '" + type + "' for '" + accept + "'.");
+		}
+		return type != NONE ? type : null;
+	}
+	
+	private String select(List<MediaRange> ranges, String[] offered) {
+		String best = NONE;
+		float bestRating = 0;
+		boolean bestExplicit = false;
+		float bestQuality = 0;
+		for (int i = 0; i < offered.length; i++) {
+			String type = normalize(offered[i]);
+			Float quality = qualities.get(type);
+			if (quality == null)
+				continue;
+			
+			MediaRange range = getRange(ranges, type);
+			if (range == null)
+				continue;
+			boolean explicit = range.type.equals(type);
+			if (!explicit && explicitOnly.contains(type))
+				continue;
+			
+			float rating = range.quality;
+			if (rating <= 0 || rating < bestRating)
+				continue;
+			if (rating == bestRating) {
+				if (!explicit || (bestExplicit && quality.floatValue() <= bestQuality))
+					continue;
+			}
+			best = offered[i];
+			bestRating = rating;
+			bestExplicit = explicit;
+			bestQuality = quality.floatValue();
+		}
+		return best;
+	}
+	
+	/* the most specific media range matching the type, null if none matches */
+	private static MediaRange getRange(List<MediaRange> ranges, String type) {
+		int slash = type.indexOf('/');
+		String major = slash != -1 ? type.substring(0, slash) : type;
+		
+		MediaRange match = null;
+		int specificity = -1;
+		for (int i = 0; i < ranges.size(); i++) {
+			MediaRange range = ranges.get(i);
+			int s;
+			if (range.type.equals(type))
+				s = 2;
+			else if (range.type.equals(major + "/*"))
+				s = 1;
+			else if (range.type.equals(HTTPXConstants.ALL_MEDIA_TYPES))
+				s = 0;
+			else
+				continue;
+			
+			if (s > specificity) {
+				specificity = s;
+				match = range;
+			}
+		}
+		return match;
+	}
+	
+	private static List<MediaRange> parseAccept(String accept) {
+		List<MediaRange> ranges = new ArrayList<MediaRange>();
+		String[] elements = accept.split(",");
+		for (int i = 0; i < elements.length; i++) {
+			String[] params = elements[i].split(";");
+			String type = normalize(params[0]);
+			if (type.length() == 0)
+				continue;
+			
+			float quality = 1;
+			for (int j = 1; j < params.length; j++) {
+				String param = params[j].trim();
+				if (param.startsWith("q=") || param.startsWith("Q=")) {
+					try {
+						quality = Float.parseFloat(param.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			ranges.add(new MediaRange(type, quality));
+		}
+		return ranges;
+	}
+	
+	/* the media type in lower case without parameters */
+	private static String normalize(String mediaType) {
+		int semicolon = mediaType.indexOf(';');
+		if (semicolon != -1)
+			mediaType = mediaType.substring(0, semicolon);
+		return mediaType.trim().toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * Registers the converters of this package.
+	 */
+	static {
+		ContentConverterRegistry registry = ContentConverterRegistry.getInstance();
+		
+		registry.addReader(HTTPXConstants.TYPE_TXT_PLAIN, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new TextPlainContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_TXT_PLAIN, 0.8f, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new TextPlainContentWriter(out);
+			}
+		});
+		
+		registry.addReader(HTTPXConstants.TYPE_TXT_XML, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new TextXmlContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_TXT_XML, 0.5f, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new TextXmlContentWriter(out);
+			}
+		});
+		
+		registry.addReader(HTTPXConstants.TYPE_HTML_XML, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new HtmlXmlContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_HTML_XML, 0.5f, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new HtmlXmlContentWriter(out);
+			}
+		});
+		
+		registry.addReader(HTTPXConstants.TYPE_APP_URLENCODED, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new UrlEncodedContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_APP_URLENCODED, 0.8f, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new UrlEncodedContentWriter(out);
+			}
+		});
+		
+		registry.addReader(HTTPXConstants.TYPE_APP_JSON, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new JsonContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_APP_JSON, 0.9f, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new JsonContentWriter(out);
+			}
+		});
+		
+		registry.addReader(HTTPXConstants.TYPE_APP_OCTET, new ContentReaderFactory() {
+			public ContentReader createReader(HTTPXInputStream in) throws ContentConvertingException {
+				return new BinaryContentReader(in);
+			}
+		});
+		registry.addWriter(HTTPXConstants.TYPE_APP_OCTET, 1.0f, true, new ContentWriterFactory() {
+			public ContentWriter createWriter(HTTPXOutputStream out) throws ContentConvertingException {
+				return new BinaryContentWriter(out);
+			}
+		});
+	}
+	
+	/**
+	 * A media range of an <code>Accept</code> header.
+	 */
+	private static class MediaRange {
+		
+		private final String type;
+		
+		private final float quality;
+		
+		private MediaRange(String type, float quality) {
+			this.type = type;
+			this.quality = quality;
+		}
+	}
+	
+	/**
+	 * The key of a cached negotiation result.
+	 */
+	private static class NegotiationKey {
+		
+		private final String accept;
+		
+		private final Object resource;
+		
+		private NegotiationKey(String accept, Object resource) {
+			this.accept = accept;
+			this.resource = resource;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return accept.hashCode() * 31 + (resource != null ? resource.hashCode() : 0);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NegotiationKey))
+				return false;
+			NegotiationKey other = (NegotiationKey)obj;
+			return accept.equals(other.accept) && 
+				(resource != null ? resource.equals(other.resource) : other.resource == null);
+		}
+	}
+}
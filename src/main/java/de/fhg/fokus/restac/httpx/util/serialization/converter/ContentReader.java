@@ -42,7 +42,7 @@ public abstract class ContentReader {
 	 */
 	protected ContentReader(HTTPXInputStream in, String myContentType) throws ContentConvertingException {
 		
-		if(in.getContentType() == null || !in.getContentType().equals(myContentType) ||
+		if(in.getContentType() == null || !in.getContentType().trim().equalsIgnoreCase(myContentType) ||
 				in.getContentCharset() == null) {
 			throw new ContentConvertingException("Output stream has either not an appropriate content type or charset equals null.");			
 		}
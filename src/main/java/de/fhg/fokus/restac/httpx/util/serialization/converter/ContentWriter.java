@@ -41,7 +41,7 @@ public abstract class ContentWriter {
 	 */
 	protected ContentWriter(HTTPXOutputStream out, String myContentType) throws ContentConvertingException {
 		
-		if(out.getContentType() == null || !out.getContentType().equals(myContentType) ||
+		if(out.getContentType() == null || !out.getContentType().trim().equalsIgnoreCase(myContentType) ||
 				out.getContentCharset() == null) {
 			throw new ContentConvertingException("Output stream has either not an appropriate content type or charset equals null.");			
 		}
@@ -23,20 +23,16 @@
 
 package de.fhg.fokus.restac.httpx.util.serialization.converter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -44,7 +40,6 @@ import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
-import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 
 public class HtmlXmlConverter extends ContentConverter {
@@ -52,53 +47,48 @@ public class HtmlXmlConverter extends ContentConverter {
 	private final static Logger LOGGER = Logger.getLogger(HtmlXmlConverter.class);
 	
 	private static final String XML_VERSION        = "1.0";
-	private static final String XML_ENCODING       = HTTPXConstants.DEFAULT_CHARSET;
 	
+	/**
+	 * Parses the body into a DOM tree. The bytes are handed to the parser directly, the document 
+	 * builder is reused per thread.
+	 * 
+	 * @see HtmlXmlStreamContentReader for reading big documents without building a tree
+	 */
 	static public Document byteArrayToContent(byte[] body, String charset) throws ContentConvertingException {
 
 		Document document = null;
-		DocumentBuilder dBuilder = null;
-		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-		
-		try {
-			dBuilder = dbFactory.newDocumentBuilder();
-		}
-		catch(ParserConfigurationException e) {}
 		
 		try  {
-			try {
-				document = dBuilder.parse(new InputSource(new StringReader(new String(body, charset))));
-			}
-			catch(UnsupportedEncodingException e) {
-				LOGGER.warn("Unsupported Content-Encoding: '" + charset + "'. Using charset: '" + Charset.defaultCharset().displayName() + "' instead.");
-				document = dBuilder.parse(new InputSource(new StringReader(new String(body))));
-			}
+			DocumentBuilder dBuilder = XmlConverterSupport.getDocumentBuilder();
+			InputSource source = new InputSource(new ByteArrayInputStream(body));
+			if(Charset.isSupported(charset))
+				source.setEncoding(charset);
+			else
+				LOGGER.warn("Unsupported Content-Encoding: '" + charset + "'. Using the encoding of the XML declaration instead.");
+			document = dBuilder.parse(source);
 		}
 		catch(Exception e) {
-			throw new ContentConvertingException("Content of body is no valid XML.", null); 
+			throw new ContentConvertingException("Content of body is no valid XML.", null);
 		}
 		
 		return document;
 	}
 	
+	/**
+	 * Serializes the DOM tree directly into bytes of the given charset, the transformer is reused per thread.
+	 * 
+	 * @see HtmlXmlStreamContentWriter for writing big documents without buffering them
+	 */
 	static public byte[] contentToByteArray(Document document, String charset) throws IOException {
 		byte[] bytes = new byte[0];
 
 		try {
-			TransformerFactory tFactory = TransformerFactory.newInstance();
-			Transformer transformer = tFactory.newTransformer();
-			DOMSource source = new DOMSource(document);
-			StringWriter sw = new StringWriter();
-			StreamResult result = new StreamResult(sw);
+			Transformer transformer = XmlConverterSupport.getTransformer();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			transformer.setOutputProperty(OutputKeys.VERSION,XML_VERSION);
-			transformer.setOutputProperty(OutputKeys.ENCODING,XML_ENCODING ); //TODO: Use default charset or given charset here?
-			transformer.transform(source, result);
-			try {
-				bytes = sw.toString().getBytes(charset);
-			}
-			catch(UnsupportedEncodingException e) {
-				LOGGER.error(e);
-			}
+			transformer.setOutputProperty(OutputKeys.ENCODING,charset);
+			transformer.transform(new DOMSource(document), new StreamResult(out));
+			bytes = out.toByteArray();
 		}
 		catch(TransformerConfigurationException e) {
 			LOGGER.error(e);
@@ -106,7 +96,7 @@ public class HtmlXmlConverter extends ContentConverter {
 		catch(TransformerException e) {
 			LOGGER.error(e);
 		}
-		
+
 		return bytes;
 	}
 }
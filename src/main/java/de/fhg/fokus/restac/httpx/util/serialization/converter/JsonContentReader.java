@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
+
+/**
+ * Reads <code>application/json</code> content while it is received: the tokenizer returned by 
+ * getJsonReader() works on the body stream, the payload is never buffered as a whole. Chunk 
+ * boundaries have no meaning for the document, so read() and readBuffered() both decode the 
+ * complete document, see {@link JsonReader#readValue()}.
+ * 
+ * @author Murat Ates
+ */
+public class JsonContentReader extends ContentReader {
+	
+	protected static final String myContentType = HTTPXConstants.TYPE_APP_JSON;
+	
+	private JsonReader reader = null;
+	
+	public JsonContentReader(HTTPXInputStream in) throws ContentConvertingException {
+		super(in, myContentType);
+	}
+
+	@Override
+	public Object read() throws ContentConvertingException {
+		return readBuffered();
+	}
+
+	/**
+	 * @return the decoded document, null if there is no payload
+	 */
+	@Override
+	public Object readBuffered() throws ContentConvertingException {
+		JsonReader json = getJsonReader();
+		if (json == null)
+			return null;
+		
+		try {
+			return json.readValue();
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content of body is no valid JSON.", e);
+		}
+	}
+	
+	/**
+	 * Returns the tokenizer over the payload. Repeated calls return the same tokenizer.
+	 * 
+	 * @return the tokenizer, null if there is no payload
+	 * @throws ContentConvertingException if the charset of the payload is not supported
+	 */
+	public JsonReader getJsonReader() throws ContentConvertingException {
+		if (reader == null) {
+			InputStream body = in.getBodyStream();
+			if (body == null)
+				return null;
+			try {
+				reader = new JsonReader(body, in.getContentCharset());
+			} catch (IOException e) {
+				throw new ContentConvertingException("Content could not be processed: " + e);
+			}
+		}
+		return reader;
+	}
+	
+	/**
+	 * Closes the tokenizer and skips the rest of the payload.
+	 * 
+	 * @throws ContentConvertingException if the payload could not be skipped
+	 */
+	public void close() throws ContentConvertingException {
+		try {
+			if (reader != null)
+				reader.close();
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+}
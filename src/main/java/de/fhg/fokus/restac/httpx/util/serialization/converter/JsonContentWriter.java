@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.IOException;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+
+/**
+ * Writes <code>application/json</code> content straight into the httpx output stream. Objects 
+ * to be written are values as accepted by {@link JsonWriter#writeValue(Object)}; alternatively 
+ * the document can be written token by token to the writer returned by getJsonWriter().
+ * 
+ * @author Murat Ates
+ */
+public class JsonContentWriter extends ContentWriter {
+
+	protected static final String myContentType = HTTPXConstants.TYPE_APP_JSON;
+	
+	private JsonWriter writer = null;
+	
+	public JsonContentWriter(HTTPXOutputStream out) throws ContentConvertingException {
+		super(out, myContentType);
+	}
+
+	/**
+	 * Writes the object as the document into the stream, the stream stays open.
+	 */
+	public void write(Object obj) throws ContentConvertingException {
+		try {
+			getJsonWriter().writeValue(obj);
+			writer.flush();
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+
+	/**
+	 * Writes the object as the document into the stream and completes the payload.
+	 */
+	public void writeBuffered(Object obj) throws ContentConvertingException {
+		write(obj);
+		close();
+	}
+	
+	/**
+	 * Returns a writer on the stream for producing the document token by token. Call close() 
+	 * when the document is complete.
+	 * 
+	 * @return the writer
+	 * @throws ContentConvertingException if the charset of the stream is not supported
+	 */
+	public JsonWriter getJsonWriter() throws ContentConvertingException {
+		if (writer == null) {
+			try {
+				writer = new JsonWriter(out.getOutputStream(), out.getContentCharset());
+			} catch (IOException e) {
+				throw new ContentConvertingException("Content could not be processed: " + e);
+			}
+		}
+		return writer;
+	}
+	
+	/**
+	 * Flushes the writer and completes the payload.
+	 * 
+	 * @throws ContentConvertingException if the payload could not be completed
+	 */
+	public void close() throws ContentConvertingException {
+		try {
+			getJsonWriter().close();
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+}
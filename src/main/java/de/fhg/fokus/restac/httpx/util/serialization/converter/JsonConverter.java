@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+
+/**
+ * Codec for <code>application/json</code> content held in a byte array, built on 
+ * {@link JsonReader} and {@link JsonWriter}. See {@link JsonReader#readValue()} for the Java 
+ * types of decoded values and {@link JsonWriter#writeValue(Object)} for the types which can be 
+ * encoded.
+ * 
+ * @author Murat Ates
+ */
+public class JsonConverter extends ContentConverter {
+	
+	/**
+	 * Parses a JSON document.
+	 * 
+	 * @param array - the document
+	 * @param charset - charset of the document
+	 * 
+	 * @return the decoded value, null for an empty document
+	 * 
+	 * @throws ContentConvertingException if the document is malformed
+	 */
+	static public Object byteArrayToContent(byte[] array, String charset) throws ContentConvertingException {
+		try {
+			JsonReader reader = new JsonReader(new ByteArrayInputStream(array), charset);
+			Object value = reader.readValue();
+			if (reader.peek() != JsonReader.END_DOCUMENT)
+				throw new ContentConvertingException("Content of body is no valid JSON: more than one value.");
+			return value;
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content of body is no valid JSON.", e);
+		}
+	}
+	
+	/**
+	 * Serializes a value into a JSON document.
+	 * 
+	 * @param obj - the value
+	 * @param charset - charset of the document
+	 * 
+	 * @return the document
+	 * 
+	 * @throws IOException if the value has no JSON form
+	 */
+	static public byte[] contentToByteArray(Object obj, String charset) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonWriter writer = new JsonWriter(out, charset);
+		writer.writeValue(obj);
+		writer.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,612 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming tokenizer for JSON (RFC 4627). The document is read token by token from the 
+ * underlying stream, only the current token is held in memory. Callers either walk the 
+ * structure with beginArray(), hasNext(), nextName(), nextLong() etc., or decode a whole value 
+ * with readValue().
+ * <p>
+ * Syntax errors are reported as <code>IOException</code>s naming the position in the document. 
+ * Arrays and objects may be nested at most <code>restac.json.maxDepth</code> levels deep 
+ * (default 128), deeper documents are rejected as syntax errors before readValue() runs out of 
+ * stack.
+ * 
+ * @author Murat Ates
+ */
+public class JsonReader {
+	
+	/** The system property for the maximum nesting depth of arrays and objects. */
+	public final static String MAX_DEPTH_PROPERTY = "restac.json.maxDepth";
+	
+	/** The maximum nesting depth of arrays and objects if the system property is not set. */
+	public final static int DEFAULT_MAX_DEPTH = 128;
+	
+	/** Token types returned by peek(). */
+	public final static int BEGIN_ARRAY		= 1;
+	public final static int END_ARRAY		= 2;
+	public final static int BEGIN_OBJECT	= 3;
+	public final static int END_OBJECT		= 4;
+	public final static int NAME			= 5;
+	public final static int STRING			= 6;
+	public final static int NUMBER			= 7;
+	public final static int BOOLEAN			= 8;
+	public final static int NULL			= 9;
+	public final static int END_DOCUMENT	= 10;
+	
+	/* scopes on the stack */
+	private final static int EMPTY_ARRAY		= 1;
+	private final static int NONEMPTY_ARRAY		= 2;
+	private final static int EMPTY_OBJECT		= 3;
+	private final static int NONEMPTY_OBJECT	= 4;
+	private final static int DANGLING_NAME		= 5;
+	private final static int EMPTY_DOCUMENT		= 6;
+	private final static int NONEMPTY_DOCUMENT	= 7;
+	
+	private final Reader reader;
+	
+	private final char[] buf = new char[8192];
+	
+	private int pos = 0;
+	
+	private int limit = 0;
+	
+	/* number of characters before buf[0], for error messages */
+	private long offset = 0;
+	
+	private int[] stack = new int[32];
+	
+	private int stackSize = 0;
+	
+	/* the maximum nesting depth, given by the system property */
+	private final int maxDepth = Integer.getInteger(MAX_DEPTH_PROPERTY, DEFAULT_MAX_DEPTH).intValue();
+	
+	/* the token returned by the last peek() which has not been consumed yet, 0 if none */
+	private int peeked = 0;
+	
+	/* text of a peeked name, string or number, value of a peeked boolean */
+	private String peekedText;
+	
+	private boolean peekedBoolean;
+	
+	private final StringBuilder text = new StringBuilder();
+	
+	/**
+	 * Creates a reader for a JSON document in the given stream.
+	 * 
+	 * @param in - the stream
+	 * @param charset - the charset of the document
+	 * 
+	 * @throws IOException if the charset is not supported
+	 */
+	public JsonReader(InputStream in, String charset) throws IOException {
+		this(new InputStreamReader(in, charset));
+	}
+	
+	/**
+	 * Creates a reader for a JSON document.
+	 * 
+	 * @param reader - the source of the document
+	 */
+	public JsonReader(Reader reader) {
+		this.reader = reader;
+		stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+	
+	/**
+	 * Returns the type of the next token without consuming it.
+	 * 
+	 * @return one of the token types, END_DOCUMENT after the top-level value
+	 * 
+	 * @throws IOException if the document could not be read or is malformed
+	 */
+	public int peek() throws IOException {
+		if (peeked != 0)
+			return peeked;
+		
+		int c;
+		switch (stack[stackSize - 1]) {
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			c = nextNonWhitespace();
+			if (c == ']')
+				return peeked = END_ARRAY;
+			return peeked = peekValue(c);
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']')
+				return peeked = END_ARRAY;
+			if (c != ',')
+				throw syntaxError("Expected ',' or ']'");
+			return peeked = peekValue(nextNonWhitespace());
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			boolean empty = stack[stackSize - 1] == EMPTY_OBJECT;
+			stack[stackSize - 1] = DANGLING_NAME;
+			c = nextNonWhitespace();
+			if (c == '}')
+				return peeked = END_OBJECT;
+			if (!empty) {
+				if (c != ',')
+					throw syntaxError("Expected ',' or '}'");
+				c = nextNonWhitespace();
+			}
+			if (c != '"')
+				throw syntaxError("Expected name");
+			peekedText = readString();
+			return peeked = NAME;
+		case DANGLING_NAME:
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			if (nextNonWhitespace() != ':')
+				throw syntaxError("Expected ':'");
+			return peeked = peekValue(nextNonWhitespace());
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			c = nextNonWhitespace();
+			if (c == -1)
+				return peeked = END_DOCUMENT;
+			return peeked = peekValue(c);
+		default:
+			if (nextNonWhitespace() != -1)
+				throw syntaxError("Expected end of document");
+			return peeked = END_DOCUMENT;
+		}
+	}
+	
+	/**
+	 * Checks whether the current array or object has another element.
+	 * 
+	 * @return false at the end of the array, object or document
+	 * 
+	 * @throws IOException if the document could not be read or is malformed
+	 */
+	public boolean hasNext() throws IOException {
+		int p = peek();
+		return p != END_ARRAY && p != END_OBJECT && p != END_DOCUMENT;
+	}
+	
+	public void beginArray() throws IOException {
+		expect(BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+	
+	public void endArray() throws IOException {
+		expect(END_ARRAY);
+		stackSize--;
+	}
+	
+	public void beginObject() throws IOException {
+		expect(BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+	
+	public void endObject() throws IOException {
+		expect(END_OBJECT);
+		stackSize--;
+	}
+	
+	public String nextName() throws IOException {
+		expect(NAME);
+		return peekedText;
+	}
+	
+	/**
+	 * Consumes a string, a number is returned as its literal.
+	 * 
+	 * @return the string
+	 * 
+	 * @throws IOException if the next token is neither string nor number
+	 */
+	public String nextString() throws IOException {
+		if (peek() == NUMBER)
+			expect(NUMBER);
+		else
+			expect(STRING);
+		return peekedText;
+	}
+	
+	public boolean nextBoolean() throws IOException {
+		expect(BOOLEAN);
+		return peekedBoolean;
+	}
+	
+	public void nextNull() throws IOException {
+		expect(NULL);
+	}
+	
+	/**
+	 * Consumes a number, as <code>Long</code> if it is integral and in range, otherwise as 
+	 * <code>Double</code>.
+	 * 
+	 * @return the number
+	 * 
+	 * @throws IOException if the next token is no number
+	 */
+	public Number nextNumber() throws IOException {
+		expect(NUMBER);
+		String literal = peekedText;
+		try {
+			if (isIntegral(literal)) {
+				try {
+					return new Long(Long.parseLong(literal));
+				} catch (NumberFormatException e) {
+					// out of range
+				}
+			}
+			return new Double(Double.parseDouble(literal));
+		} catch (NumberFormatException e) {
+			throw syntaxError("Malformed number " + literal);
+		}
+	}
+	
+	/**
+	 * Consumes an integral number.
+	 * 
+	 * @return the number
+	 * 
+	 * @throws IOException if the next token is no number or not integral
+	 */
+	public long nextLong() throws IOException {
+		expect(NUMBER);
+		try {
+			return Long.parseLong(peekedText);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected an integral number but was " + peekedText);
+		}
+	}
+	
+	public double nextDouble() throws IOException {
+		expect(NUMBER);
+		try {
+			return Double.parseDouble(peekedText);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Malformed number " + peekedText);
+		}
+	}
+	
+	/**
+	 * Skips the next value including all nested values.
+	 * 
+	 * @throws IOException if the document could not be read or is malformed
+	 */
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch (peek()) {
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case END_ARRAY:
+				endArray();
+				depth--;
+				break;
+			case END_OBJECT:
+				endObject();
+				depth--;
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of document");
+			default:
+				peeked = 0;
+			}
+		} while (depth > 0);
+	}
+	
+	/**
+	 * Decodes the next value: objects as <code>Map&lt;String, Object&gt;</code>, numbers as in 
+	 * nextNumber(). Arrays become the most compact Java array for their elements: 
+	 * <code>long[]</code>, <code>double[]</code>, <code>boolean[]</code> or <code>String[]</code> 
+	 * if the elements have one type, <code>Object[]</code> otherwise.
+	 * 
+	 * @return the value, null for JSON null or an empty document
+	 * 
+	 * @throws IOException if the document could not be read or is malformed
+	 */
+	public Object readValue() throws IOException {
+		switch (peek()) {
+		case BEGIN_ARRAY:
+			return readArray();
+		case BEGIN_OBJECT: {
+			beginObject();
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			while (hasNext())
+				map.put(nextName(), readValue());
+			endObject();
+			return map;
+		}
+		case STRING:
+			return nextString();
+		case NUMBER:
+			return nextNumber();
+		case BOOLEAN:
+			return Boolean.valueOf(nextBoolean());
+		case NULL:
+			nextNull();
+			return null;
+		case END_DOCUMENT:
+			return null;
+		default:
+			throw syntaxError("Expected a value");
+		}
+	}
+	
+	/**
+	 * Decodes the elements of the next array each with readValue().
+	 * 
+	 * @return the elements
+	 * 
+	 * @throws IOException if the next value is no array or malformed
+	 */
+	public Object[] readValues() throws IOException {
+		beginArray();
+		List<Object> values = new ArrayList<Object>();
+		while (hasNext())
+			values.add(readValue());
+		endArray();
+		return values.toArray();
+	}
+	
+	/**
+	 * Closes the underlying stream.
+	 * 
+	 * @throws IOException if closing failed
+	 */
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	private Object readArray() throws IOException {
+		beginArray();
+		List<Object> values = new ArrayList<Object>();
+		boolean longs = true;
+		boolean doubles = true;
+		boolean booleans = true;
+		boolean strings = true;
+		while (hasNext()) {
+			Object value = readValue();
+			longs &= value instanceof Long;
+			doubles &= value instanceof Number;
+			booleans &= value instanceof Boolean;
+			strings &= value == null || value instanceof String;
+			values.add(value);
+		}
+		endArray();
+		
+		int n = values.size();
+		if (n == 0)
+			return new Object[0];
+		if (longs) {
+			long[] a = new long[n];
+			for (int i = 0; i < n; i++)
+				a[i] = ((Long)values.get(i)).longValue();
+			return a;
+		}
+		if (doubles) {
+			double[] a = new double[n];
+			for (int i = 0; i < n; i++)
+				a[i] = ((Number)values.get(i)).doubleValue();
+			return a;
+		}
+		if (booleans) {
+			boolean[] a = new boolean[n];
+			for (int i = 0; i < n; i++)
+				a[i] = ((Boolean)values.get(i)).booleanValue();
+			return a;
+		}
+		if (strings)
+			return values.toArray(new String[n]);
+		return values.toArray();
+	}
+	
+	private void expect(int token) throws IOException {
+		if (peek() != token)
+			throw syntaxError("Expected token " + token + " but was " + peeked);
+		peeked = 0;
+	}
+	
+	private void push(int scope) throws IOException {
+		if (stackSize > maxDepth)
+			throw syntaxError("Nesting deeper than " + maxDepth + " levels");
+		if (stackSize == stack.length) {
+			int[] grown = new int[stackSize * 2];
+			System.arraycopy(stack, 0, grown, 0, stackSize);
+			stack = grown;
+		}
+		stack[stackSize++] = scope;
+	}
+	
+	private int peekValue(int c) throws IOException {
+		switch (c) {
+		case '[':
+			return BEGIN_ARRAY;
+		case '{':
+			return BEGIN_OBJECT;
+		case '"':
+			peekedText = readString();
+			return STRING;
+		case 't':
+			readLiteral("rue");
+			peekedBoolean = true;
+			return BOOLEAN;
+		case 'f':
+			readLiteral("alse");
+			peekedBoolean = false;
+			return BOOLEAN;
+		case 'n':
+			readLiteral("ull");
+			return NULL;
+		case -1:
+			throw syntaxError("Unexpected end of document");
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				peekedText = readNumber((char)c);
+				return NUMBER;
+			}
+			throw syntaxError("Unexpected character '" + (char)c + "'");
+		}
+	}
+	
+	private void readLiteral(String rest) throws IOException {
+		for (int i = 0; i < rest.length(); i++) {
+			if (read() != rest.charAt(i))
+				throw syntaxError("Unexpected literal");
+		}
+	}
+	
+	private String readNumber(char first) throws IOException {
+		text.setLength(0);
+		text.append(first);
+		while (true) {
+			if (pos == limit && !fill())
+				break;
+			char c = buf[pos];
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+				text.append(c);
+				pos++;
+			} else {
+				break;
+			}
+		}
+		return text.toString();
+	}
+	
+	/* reads the rest of a string after the opening quote */
+	private String readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			// copy runs of plain characters in one go
+			int start = pos;
+			while (pos < limit) {
+				char c = buf[pos];
+				if (c == '"') {
+					text.append(buf, start, pos - start);
+					pos++;
+					return text.toString();
+				}
+				if (c == '\\' || c < 0x20)
+					break;
+				pos++;
+			}
+			text.append(buf, start, pos - start);
+			
+			if (pos == limit) {
+				if (!fill())
+					throw syntaxError("Unterminated string");
+				continue;
+			}
+			
+			char c = buf[pos++];
+			if (c < 0x20)
+				throw syntaxError("Unescaped control character in string");
+			text.append(readEscape());
+		}
+	}
+	
+	private char readEscape() throws IOException {
+		int c = read();
+		switch (c) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char)c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u': {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit == -1)
+					throw syntaxError("Malformed unicode escape");
+				value = (value << 4) | digit;
+			}
+			return (char)value;
+		}
+		default:
+			throw syntaxError("Invalid escape sequence");
+		}
+	}
+	
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				return c;
+		}
+	}
+	
+	private int read() throws IOException {
+		if (pos == limit && !fill())
+			return -1;
+		return buf[pos++];
+	}
+	
+	private boolean fill() throws IOException {
+		offset += limit;
+		pos = 0;
+		limit = 0;
+		int n = reader.read(buf, 0, buf.length);
+		if (n <= 0)
+			return false;
+		limit = n;
+		return true;
+	}
+	
+	private static boolean isIntegral(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E')
+				return false;
+		}
+		return true;
+	}
+	
+	private IOException syntaxError(String message) {
+		return new IOException(message + " at character " + (offset + pos) + " of JSON document.");
+	}
+}
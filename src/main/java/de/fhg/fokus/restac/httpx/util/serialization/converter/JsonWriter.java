@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Streaming writer for JSON (RFC 4627), the counterpart of {@link JsonReader}. Tokens are 
+ * written straight to the underlying stream; separators are inserted as needed. Whole values 
+ * of the common Java types are written with writeValue().
+ * 
+ * @author Murat Ates
+ */
+public class JsonWriter {
+	
+	/* scopes on the stack */
+	private final static int EMPTY_ARRAY		= 1;
+	private final static int NONEMPTY_ARRAY		= 2;
+	private final static int EMPTY_OBJECT		= 3;
+	private final static int NONEMPTY_OBJECT	= 4;
+	private final static int DANGLING_NAME		= 5;
+	private final static int EMPTY_DOCUMENT		= 6;
+	private final static int NONEMPTY_DOCUMENT	= 7;
+	
+	private final static char[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+	
+	private final Writer writer;
+	
+	private int[] stack = new int[32];
+	
+	private int stackSize = 0;
+	
+	/**
+	 * Creates a writer for a JSON document into the given stream.
+	 * 
+	 * @param out - the stream
+	 * @param charset - the charset of the document
+	 * 
+	 * @throws IOException if the charset is not supported
+	 */
+	public JsonWriter(OutputStream out, String charset) throws IOException {
+		this(new BufferedWriter(new OutputStreamWriter(out, charset)));
+	}
+	
+	/**
+	 * Creates a writer for a JSON document.
+	 * 
+	 * @param writer - the target of the document
+	 */
+	public JsonWriter(Writer writer) {
+		this.writer = writer;
+		push(EMPTY_DOCUMENT);
+	}
+	
+	public JsonWriter beginArray() throws IOException {
+		beforeValue();
+		push(EMPTY_ARRAY);
+		writer.write('[');
+		return this;
+	}
+	
+	public JsonWriter endArray() throws IOException {
+		return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+	}
+	
+	public JsonWriter beginObject() throws IOException {
+		beforeValue();
+		push(EMPTY_OBJECT);
+		writer.write('{');
+		return this;
+	}
+	
+	public JsonWriter endObject() throws IOException {
+		return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+	}
+	
+	/**
+	 * Writes the name of the next member of the current object.
+	 * 
+	 * @param name - the name
+	 * 
+	 * @return this writer
+	 * 
+	 * @throws IOException if writing failed
+	 */
+	public JsonWriter name(String name) throws IOException {
+		int scope = stack[stackSize - 1];
+		if (scope == NONEMPTY_OBJECT)
+			writer.write(',');
+		else if (scope != EMPTY_OBJECT)
+			throw new IllegalStateException("A name is only allowed within an object.");
+		stack[stackSize - 1] = DANGLING_NAME;
+		string(name);
+		return this;
+	}
+	
+	public JsonWriter value(String value) throws IOException {
+		if (value == null)
+			return nullValue();
+		beforeValue();
+		string(value);
+		return this;
+	}
+	
+	public JsonWriter value(long value) throws IOException {
+		beforeValue();
+		writer.write(Long.toString(value));
+		return this;
+	}
+	
+	/**
+	 * Writes a number. NaN and the infinities have no JSON form, they are written as strings 
+	 * which <code>Double.parseDouble</code> accepts.
+	 * 
+	 * @param value - the number
+	 * 
+	 * @return this writer
+	 * 
+	 * @throws IOException if writing failed
+	 */
+	public JsonWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return value(Double.toString(value));
+		beforeValue();
+		writer.write(Double.toString(value));
+		return this;
+	}
+	
+	public JsonWriter value(boolean value) throws IOException {
+		beforeValue();
+		writer.write(value ? "true" : "false");
+		return this;
+	}
+	
+	public JsonWriter nullValue() throws IOException {
+		beforeValue();
+		writer.write("null");
+		return this;
+	}
+	
+	/**
+	 * Writes a whole value: strings, characters, numbers, booleans, arrays of those (a 
+	 * <code>char[]</code> as string), <code>Object[]</code> and maps, whose keys become names.
+	 * 
+	 * @param value - the value, may be null
+	 * 
+	 * @return this writer
+	 * 
+	 * @throws IOException if writing failed or the value has no JSON form
+	 */
+	public JsonWriter writeValue(Object value) throws IOException {
+		if (value == null)
+			return nullValue();
+		if (value instanceof String)
+			return value((String)value);
+		if (value instanceof Character)
+			return value(value.toString());
+		if (value instanceof Boolean)
+			return value(((Boolean)value).booleanValue());
+		if (value instanceof Double || value instanceof Float)
+			return writeFloating((Number)value);
+		if (value instanceof Number)
+			return value(((Number)value).longValue());
+		if (value instanceof Map) {
+			beginObject();
+			for (Iterator<? extends Map.Entry<?, ?>> iter = ((Map<?, ?>)value).entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<?, ?> entry = iter.next();
+				name(String.valueOf(entry.getKey()));
+				writeValue(entry.getValue());
+			}
+			return endObject();
+		}
+		if (value instanceof char[])
+			return value(new String((char[])value));
+		if (value instanceof int[]) {
+			int[] a = (int[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof long[]) {
+			long[] a = (long[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof double[]) {
+			double[] a = (double[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof float[]) {
+			float[] a = (float[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				writeFloating(new Float(a[i]));
+			return endArray();
+		}
+		if (value instanceof short[]) {
+			short[] a = (short[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof byte[]) {
+			byte[] a = (byte[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof boolean[]) {
+			boolean[] a = (boolean[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				value(a[i]);
+			return endArray();
+		}
+		if (value instanceof Object[]) {
+			Object[] a = (Object[])value;
+			beginArray();
+			for (int i = 0; i < a.length; i++)
+				writeValue(a[i]);
+			return endArray();
+		}
+		throw new IOException("Objects of type '" + value.getClass().getName() + "' have no JSON form.");
+	}
+	
+	/**
+	 * Flushes the buffered output to the underlying stream.
+	 * 
+	 * @throws IOException if flushing failed
+	 */
+	public void flush() throws IOException {
+		writer.flush();
+	}
+	
+	/**
+	 * Flushes and closes the underlying stream.
+	 * 
+	 * @throws IOException if closing failed
+	 */
+	public void close() throws IOException {
+		writer.close();
+	}
+	
+	/* floats are written in their own shortest form, not the one of the widened double */
+	private JsonWriter writeFloating(Number value) throws IOException {
+		double d = value.doubleValue();
+		if (Double.isNaN(d) || Double.isInfinite(d))
+			return value(value.toString());
+		beforeValue();
+		writer.write(value.toString());
+		return this;
+	}
+	
+	private JsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+		int scope = stack[stackSize - 1];
+		if (scope != empty && scope != nonempty)
+			throw new IllegalStateException("Nesting problem: cannot close '" + bracket + "' here.");
+		stackSize--;
+		writer.write(bracket);
+		return this;
+	}
+	
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			int[] grown = new int[stackSize * 2];
+			System.arraycopy(stack, 0, grown, 0, stackSize);
+			stack = grown;
+		}
+		stack[stackSize++] = scope;
+	}
+	
+	private void beforeValue() throws IOException {
+		switch (stack[stackSize - 1]) {
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			break;
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			break;
+		case NONEMPTY_ARRAY:
+			writer.write(',');
+			break;
+		case DANGLING_NAME:
+			writer.write(':');
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			break;
+		case NONEMPTY_DOCUMENT:
+			throw new IllegalStateException("A JSON document has only one top-level value.");
+		default:
+			throw new IllegalStateException("A value within an object needs a name.");
+		}
+	}
+	
+	private void string(String value) throws IOException {
+		writer.write('"');
+		int start = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String escape;
+			if (c == '"')
+				escape = "\\\"";
+			else if (c == '\\')
+				escape = "\\\\";
+			else if (c == '\n')
+				escape = "\\n";
+			else if (c == '\r')
+				escape = "\\r";
+			else if (c == '\t')
+				escape = "\\t";
+			else if (c < 0x20 || c == 0x2028 || c == 0x2029)
+				escape = new String(new char[] {'\\', 'u', HEX[c >> 12], HEX[(c >> 8) & 0xf], HEX[(c >> 4) & 0xf], HEX[c & 0xf]});
+			else
+				continue;
+			
+			if (start < i)
+				writer.write(value, start, i - start);
+			writer.write(escape);
+			start = i + 1;
+		}
+		if (start < length)
+			writer.write(value, start, length - start);
+		writer.write('"');
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
+
+/**
+ * Streaming variant of {@link TextXmlContentReader}: the payload is parsed with StAX while it is 
+ * read from the httpx input stream, neither the bytes nor a DOM tree of the whole document are 
+ * held in memory. Chunk boundaries have no meaning for the document, so read() and readBuffered() 
+ * both return a reader over the complete payload.
+ * 
+ * @author Murat Ates
+ */
+public class TextXmlStreamContentReader extends ContentReader {
+	
+	protected static final String myContentType = HTTPXConstants.TYPE_TXT_XML;
+	
+	private XMLStreamReader reader = null;
+	
+	private InputStream body = null;
+	
+	public TextXmlStreamContentReader(HTTPXInputStream in) throws ContentConvertingException {
+		super(in, myContentType);
+	}
+	
+	protected TextXmlStreamContentReader(HTTPXInputStream in, String contentType) throws ContentConvertingException {
+		super(in, contentType);
+	}
+
+	/**
+	 * @return an <code>XMLStreamReader</code> over the payload, null if there is no payload
+	 * 
+	 * @see #getXMLStreamReader()
+	 */
+	@Override
+	public Object read() throws ContentConvertingException {
+		return getXMLStreamReader();
+	}
+
+	/**
+	 * @return an <code>XMLStreamReader</code> over the payload, null if there is no payload
+	 * 
+	 * @see #getXMLStreamReader()
+	 */
+	@Override
+	public Object readBuffered() throws ContentConvertingException {
+		return getXMLStreamReader();
+	}
+	
+	/**
+	 * Returns a StAX reader which parses the payload while it is received. The reader is 
+	 * positioned at the start of the document. Repeated calls return the same reader.
+	 * 
+	 * @return the reader, null if there is no payload
+	 * @throws ContentConvertingException if the payload could not be read
+	 */
+	public XMLStreamReader getXMLStreamReader() throws ContentConvertingException {
+		if (reader != null)
+			return reader;
+		
+		InputStream stream = openBody();
+		if (stream == null)
+			return null;
+		
+		try {
+			reader = XmlConverterSupport.getInputFactory().createXMLStreamReader(stream, in.getContentCharset());
+		} catch (XMLStreamException e) {
+			throw new ContentConvertingException("Content of body is no valid XML.", e);
+		}
+		return reader;
+	}
+	
+	/**
+	 * Parses the payload into a DOM tree straight from the stream, without buffering the bytes 
+	 * first.
+	 * 
+	 * @return the document, null if there is no payload
+	 * @throws ContentConvertingException if the payload is no valid XML
+	 */
+	public Document readDocument() throws ContentConvertingException {
+		InputStream stream = openBody();
+		if (stream == null)
+			return null;
+		
+		try {
+			InputSource source = new InputSource(stream);
+			source.setEncoding(in.getContentCharset());
+			return XmlConverterSupport.getDocumentBuilder().parse(source);
+		} catch (Exception e) {
+			throw new ContentConvertingException("Content of body is no valid XML.", e);
+		}
+	}
+	
+	/**
+	 * Closes the StAX reader and skips the rest of the payload.
+	 * 
+	 * @throws ContentConvertingException if the payload could not be skipped
+	 */
+	public void close() throws ContentConvertingException {
+		try {
+			if (reader != null)
+				reader.close();
+			if (body != null)
+				body.close();
+		} catch (XMLStreamException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+	
+	/* Returns the payload or null if it is empty */
+	private InputStream openBody() throws ContentConvertingException {
+		if (body == null) {
+			InputStream stream = in.getBodyStream();
+			if (stream == null)
+				return null;
+			body = new BufferedInputStream(stream);
+		}
+		
+		try {
+			body.mark(1);
+			if (body.read() == -1)
+				return null;
+			body.reset();
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+		return body;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Node;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+
+/**
+ * Streaming variant of {@link TextXmlContentWriter}: documents are serialized with StAX straight 
+ * into the httpx output stream, without a transformer and without buffering the serialized 
+ * document. Objects to be written may be DOM nodes (e.g. a <code>Document</code>) or an 
+ * <code>XMLStreamReader</code> whose events are copied. Alternatively the events can be written 
+ * to the writer returned by getXMLStreamWriter().
+ * 
+ * @author Murat Ates
+ */
+public class TextXmlStreamContentWriter extends ContentWriter {
+
+	protected static final String myContentType = HTTPXConstants.TYPE_TXT_XML;
+	
+	private static final String XML_VERSION = "1.0";
+	
+	private OutputStream stream = null;
+	
+	private XMLStreamWriter writer = null;
+	
+	public TextXmlStreamContentWriter(HTTPXOutputStream out) throws ContentConvertingException {
+		super(out, myContentType);
+	}
+	
+	protected TextXmlStreamContentWriter(HTTPXOutputStream out, String contentType) throws ContentConvertingException {
+		super(out, contentType);
+	}
+
+	/**
+	 * Writes the object as a complete document into the stream, the stream stays open.
+	 */
+	public void write(Object obj) throws ContentConvertingException {
+		try {
+			XMLStreamWriter documentWriter = XmlConverterSupport.getOutputFactory().createXMLStreamWriter(getStream(), out.getContentCharset());
+			documentWriter.writeStartDocument(out.getContentCharset(), XML_VERSION);
+			if (obj instanceof XMLStreamReader)
+				XmlConverterSupport.copy((XMLStreamReader)obj, documentWriter);
+			else if (obj instanceof Node)
+				XmlConverterSupport.write((Node)obj, documentWriter);
+			else if (obj != null)
+				throw new ContentConvertingException("Content Type not supported: " + obj.getClass().getName());
+			documentWriter.writeEndDocument();
+			documentWriter.close(); // leaves the stream open
+			getStream().flush();
+		} catch (XMLStreamException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+
+	/**
+	 * Writes the object as a complete document into the stream and completes the payload.
+	 */
+	public void writeBuffered(Object obj) throws ContentConvertingException  {
+		write(obj);
+		close();
+	}
+	
+	/**
+	 * Returns a StAX writer on the stream for producing a document event by event. Call close()
+	 * when the document is complete.
+	 * 
+	 * @return the writer
+	 * @throws ContentConvertingException if no writer could be created
+	 */
+	public XMLStreamWriter getXMLStreamWriter() throws ContentConvertingException {
+		if (writer == null) {
+			try {
+				writer = XmlConverterSupport.getOutputFactory().createXMLStreamWriter(getStream(), out.getContentCharset());
+			} catch (XMLStreamException e) {
+				throw new ContentConvertingException("Content could not be processed: " + e);
+			}
+		}
+		return writer;
+	}
+	
+	/**
+	 * Flushes the StAX writer and completes the payload.
+	 * 
+	 * @throws ContentConvertingException if the payload could not be completed
+	 */
+	public void close() throws ContentConvertingException {
+		try {
+			if (writer != null)
+				writer.close();
+			getStream().close();
+		} catch (XMLStreamException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		} catch (IOException e) {
+			throw new ContentConvertingException("Content could not be processed: " + e);
+		}
+	}
+	
+	private OutputStream getStream() {
+		if (stream == null)
+			stream = out.getOutputStream();
+		return stream;
+	}
+}
@@ -24,9 +24,8 @@
 package de.fhg.fokus.restac.httpx.util.serialization.converter;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,95 +33,352 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 
-import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 
 
 /**
+ * Codec for <code>application/x-www-form-urlencoded</code> content. Encoding and decoding work 
+ * in a single pass on bytes: fields are located in the body without splitting it into strings, 
+ * and a string is only created for the decoded name and value. The names of the fields repeat 
+ * from call to call (e.g. the parameters of a wrapped method), so each thread caches recently 
+ * decoded and encoded names.
+ * <p>
+ * Encoding follows <code>URLEncoder</code>, escaped octets are decoded with the given charset.
  */
 public class UrlEncodedConverter extends ContentConverter {
 	
 	private final static Logger LOGGER = Logger.getLogger(UrlEncodedConverter.class);
 	
-	static public Map<String, String> byteArrayToContent(byte[] body, String charset) throws ContentConvertingException {
-
-		String bodyString = null;
-
-		try {
-			bodyString = new String(body, charset);
-		}
-		catch(UnsupportedEncodingException e) {
-			LOGGER.warn("Unsupported Content-Encoding: '" + charset + "'. Using charset: '" + Charset.defaultCharset().displayName() + "' instead.");
-			bodyString = new String(body);
+	private final static byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+	
+	/* characters which URLEncoder leaves as they are */
+	private final static boolean[] UNRESERVED = new boolean[128];
+	
+	static {
+		for (int c = 'a'; c <= 'z'; c++)
+			UNRESERVED[c] = true;
+		for (int c = 'A'; c <= 'Z'; c++)
+			UNRESERVED[c] = true;
+		for (int c = '0'; c <= '9'; c++)
+			UNRESERVED[c] = true;
+		UNRESERVED['.'] = true;
+		UNRESERVED['-'] = true;
+		UNRESERVED['*'] = true;
+		UNRESERVED['_'] = true;
+	}
+	
+	private final static ThreadLocal<Codec> CODEC = new ThreadLocal<Codec>() {
+		@Override
+		protected Codec initialValue() {
+			return new Codec();
 		}
+	};
+	
+	static public Map<String, String> byteArrayToContent(byte[] body, String charset) throws ContentConvertingException {
+		return byteArrayToContent(body, 0, body.length, charset);
+	}
+	
+	/**
+	 * Decodes the fields of the given part of the array in one pass.
+	 * 
+	 * @param body - the array
+	 * @param off - start of the content
+	 * @param len - length of the content
+	 * @param charset - charset of the content
+	 * 
+	 * @return map of names and values, the value of a field without "=" is null
+	 * 
+	 * @throws ContentConvertingException if the content does not conform to the syntax
+	 */
+	static public Map<String, String> byteArrayToContent(byte[] body, int off, int len, String charset) throws ContentConvertingException {
 		
-		String[] fields = bodyString.split("&");
-		//don't allow body=null and body.length>0 and body==""
-		if (fields!=null && fields.length > 0 && !(fields.length==1 && fields[0].equals(""))){
-			Map<String, String> m = new HashMap<String, String>();
-			String name, value;
-			int idx;
-			for(int i=0; i<fields.length; i++) {
-				idx = fields[i].indexOf('=');
-				try {
-					if (idx!=-1) {
-						name= URLDecoder.decode(fields[i].substring(0, idx).trim(),HTTPXConstants.DEFAULT_CHARSET);
-						value=URLDecoder.decode(fields[i].substring(idx+1).trim(),HTTPXConstants.DEFAULT_CHARSET);
-						m.put(name, value);
-					}
-					else {
-						m.put(URLDecoder.decode(fields[i], HTTPXConstants.DEFAULT_CHARSET),null);
-					}
-				}catch(UnsupportedEncodingException e) {
-					throw new ContentConvertingException("Encoding must be " + HTTPXConstants.DEFAULT_CHARSET, e);
-				} 
-			}
+		Map<String, String> m = new HashMap<String, String>();
+		if (len == 0)
 			return m;
-		}
-		else if (bodyString.equals("")) return new HashMap<String, String>();
-		else throw new ContentConvertingException("URL encoding schema does not conform with the required syntax. parameter1=value1&parameter2=value&...");
 		
+		// like String.split, trailing empty fields are ignored
+		int end = off + len;
+		while (end > off && body[end - 1] == '&')
+			end--;
+		if (end == off)
+			throw new ContentConvertingException("URL encoding schema does not conform with the required syntax. parameter1=value1&parameter2=value&...");
+		
+		Codec codec = CODEC.get();
+		Charset cs = toCharset(charset);
+		
+		int pos = off;
+		while (true) {
+			int amp = pos;
+			int eq = -1;
+			while (amp < end && body[amp] != '&') {
+				if (eq == -1 && body[amp] == '=')
+					eq = amp;
+				amp++;
+			}
+			
+			if (eq != -1) {
+				// name and value are trimmed
+				int nameStart = pos;
+				int nameEnd = eq;
+				while (nameStart < nameEnd && (body[nameStart] & 0xff) <= ' ')
+					nameStart++;
+				while (nameEnd > nameStart && (body[nameEnd - 1] & 0xff) <= ' ')
+					nameEnd--;
+				int valueStart = eq + 1;
+				int valueEnd = amp;
+				while (valueStart < valueEnd && (body[valueStart] & 0xff) <= ' ')
+					valueStart++;
+				while (valueEnd > valueStart && (body[valueEnd - 1] & 0xff) <= ' ')
+					valueEnd--;
+				m.put(codec.decodeName(body, nameStart, nameEnd, cs), codec.decode(body, valueStart, valueEnd, cs));
+			}
+			else {
+				m.put(codec.decodeName(body, pos, amp, cs), null);
+			}
+			
+			if (amp >= end)
+				break;
+			pos = amp + 1;
+		}
+		return m;
 	}
 	
 	static public byte[] contentToByteArray(Map<String, String> content, String charset) throws IOException  {
 		
-		byte[] bytes = new byte[0];
+		if(content == null) return new byte[0];
+		
+		Codec codec = CODEC.get();
+		codec.encode(content, charset);
+		return codec.toByteArray();
+	}
+	
+	/**
+	 * Encodes the content and writes it to the stream with one write.
+	 * 
+	 * @param content - map of names and values, a null value yields a field without "="
+	 * @param charset - charset for the escaped octets
+	 * @param out - the stream
+	 * 
+	 * @throws IOException if the charset is not supported or the stream could not be written
+	 */
+	static public void write(Map<String, String> content, String charset, OutputStream out) throws IOException  {
+		
+		if(content == null) return;
+		
+		Codec codec = CODEC.get();
+		codec.encode(content, charset);
+		codec.writeTo(out);
+	}
+	
+	private static Charset toCharset(String charset) {
+		try {
+			return Charset.forName(charset);
+		}
+		catch(IllegalArgumentException e) {
+			LOGGER.warn("Unsupported Content-Encoding: '" + charset + "'. Using charset: '" + Charset.defaultCharset().displayName() + "' instead.");
+			return Charset.defaultCharset();
+		}
+	}
+	
+	private static int hexValue(byte b) {
+		if (b >= '0' && b <= '9')
+			return b - '0';
+		if (b >= 'A' && b <= 'F')
+			return b - 'A' + 10;
+		if (b >= 'a' && b <= 'f')
+			return b - 'a' + 10;
+		return -1;
+	}
+	
+	/* Buffers and name caches of one thread */
+	private static class Codec {
+		
+		private final static int CACHE_SIZE = 256;
+		
+		private final static int MAX_CACHED_LENGTH = 64;
+		
+		private final static int MAX_RETAINED_BUFFER = 65536;
 		
-		if(content == null) return bytes;
+		/* decoded names by their encoded bytes */
+		private final byte[][] encodedNames = new byte[CACHE_SIZE][];
+		private final String[] decodedNames = new String[CACHE_SIZE];
+		private final Charset[] decodedCharsets = new Charset[CACHE_SIZE];
 		
-		String urlEncoded = "";
-		if(content != null) {
-			final Iterator<String> iterator = content.keySet().iterator();
-			String name;
-			String value;
+		/* encoded names by the names */
+		private final String[] names = new String[CACHE_SIZE];
+		private final byte[][] nameBytes = new byte[CACHE_SIZE][];
+		private final String[] nameCharsets = new String[CACHE_SIZE];
+		
+		private byte[] scratch = new byte[256];
+		
+		private char[] chars = new char[256];
+		
+		private byte[] buffer = new byte[1024];
+		
+		private int count = 0;
+		
+		String decodeName(byte[] b, int from, int to, Charset cs) throws ContentConvertingException {
+			int len = to - from;
+			if (len > MAX_CACHED_LENGTH)
+				return decode(b, from, to, cs);
+			
+			int hash = 0;
+			for (int i = from; i < to; i++)
+				hash = 31 * hash + b[i];
+			int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+			
+			byte[] cached = encodedNames[slot];
+			if (cached != null && cached.length == len && decodedCharsets[slot] == cs) {
+				int i = 0;
+				while (i < len && cached[i] == b[from + i])
+					i++;
+				if (i == len)
+					return decodedNames[slot];
+			}
+			
+			String name = decode(b, from, to, cs);
+			byte[] key = new byte[len];
+			System.arraycopy(b, from, key, 0, len);
+			encodedNames[slot] = key;
+			decodedNames[slot] = name;
+			decodedCharsets[slot] = cs;
+			return name;
+		}
+		
+		String decode(byte[] b, int from, int to, Charset cs) throws ContentConvertingException {
+			int len = to - from;
+			boolean plain = true;
+			for (int i = from; i < to && plain; i++)
+				plain = b[i] > 0 && b[i] != '%' && b[i] != '+';
+			
+			if (plain) {
+				// US-ASCII without escapes
+				if (chars.length < len)
+					chars = new char[len];
+				for (int i = 0; i < len; i++)
+					chars[i] = (char)b[from + i];
+				return new String(chars, 0, len);
+			}
+			
+			if (scratch.length < len)
+				scratch = new byte[len];
+			int n = 0;
+			for (int i = from; i < to; i++) {
+				byte c = b[i];
+				if (c == '+') {
+					scratch[n++] = ' ';
+				}
+				else if (c == '%') {
+					int high = i + 2 < to ? hexValue(b[i + 1]) : -1;
+					int low = high != -1 ? hexValue(b[i + 2]) : -1;
+					if (low == -1)
+						throw new ContentConvertingException("Malformed escape sequence in URL encoded content at index " + (i - from) + ".");
+					scratch[n++] = (byte)((high << 4) | low);
+					i += 2;
+				}
+				else {
+					scratch[n++] = c;
+				}
+			}
+			return new String(scratch, 0, n, cs);
+		}
+		
+		void encode(Map<String, String> content, String charset) throws UnsupportedEncodingException {
+			if (!Charset.isSupported(charset))
+				throw new UnsupportedEncodingException(charset);
+			
+			if (buffer.length > MAX_RETAINED_BUFFER)
+				buffer = new byte[1024];
+			count = 0;
+			
+			final Iterator<Map.Entry<String, String>> iterator = content.entrySet().iterator();
 			while(iterator.hasNext()) {
-				name=iterator.next();
-				value = content.get(name);
-				urlEncoded += URLEncoder.encode(name,charset);
-
-				if(value != null) {
-					try {
-						value = URLEncoder.encode(value, charset);
-					}
-					catch(UnsupportedEncodingException e) {
-						
-					}
-					urlEncoded += "=" + value;
+				Map.Entry<String, String> field = iterator.next();
+				encodeName(field.getKey(), charset);
+				if(field.getValue() != null) {
+					ensure(1);
+					buffer[count++] = '=';
+					encode(field.getValue(), charset);
+				}
+				if(iterator.hasNext()) {
+					ensure(1);
+					buffer[count++] = '&';
 				}
-
-				if(iterator.hasNext()) urlEncoded += "&";
 			}
 		}
-		try {
-			bytes = urlEncoded.getBytes(charset);
+		
+		private void encodeName(String name, String charset) throws UnsupportedEncodingException {
+			if (name.length() > MAX_CACHED_LENGTH) {
+				encode(name, charset);
+				return;
+			}
+			
+			int slot = (name.hashCode() ^ (name.hashCode() >>> 16)) & (CACHE_SIZE - 1);
+			byte[] encoded = nameBytes[slot];
+			if (encoded == null || !name.equals(names[slot]) || !charset.equals(nameCharsets[slot])) {
+				int start = count;
+				encode(name, charset);
+				encoded = new byte[count - start];
+				System.arraycopy(buffer, start, encoded, 0, encoded.length);
+				names[slot] = name;
+				nameBytes[slot] = encoded;
+				nameCharsets[slot] = charset;
+				return;
+			}
+			ensure(encoded.length);
+			System.arraycopy(encoded, 0, buffer, count, encoded.length);
+			count += encoded.length;
 		}
-
-		catch(UnsupportedEncodingException e) {
-			LOGGER.error(e);
+		
+		private void encode(String s, String charset) throws UnsupportedEncodingException {
+			int len = s.length();
+			boolean ascii = true;
+			for (int i = 0; i < len && ascii; i++)
+				ascii = s.charAt(i) < 0x80;
+			
+			if (ascii) {
+				ensure(len * 3);
+				for (int i = 0; i < len; i++)
+					encodeByte((byte)s.charAt(i));
+			}
+			else {
+				byte[] bytes = s.getBytes(charset);
+				ensure(bytes.length * 3);
+				for (int i = 0; i < bytes.length; i++)
+					encodeByte(bytes[i]);
+			}
 		}
 		
-		return bytes;
+		private void encodeByte(byte b) {
+			if (b >= 0 && UNRESERVED[b]) {
+				buffer[count++] = b;
+			}
+			else if (b == ' ') {
+				buffer[count++] = '+';
+			}
+			else {
+				buffer[count++] = '%';
+				buffer[count++] = HEX[(b >> 4) & 0x0f];
+				buffer[count++] = HEX[b & 0x0f];
+			}
+		}
+		
+		private void ensure(int n) {
+			if (count + n > buffer.length) {
+				byte[] grown = new byte[Math.max(buffer.length * 2, count + n)];
+				System.arraycopy(buffer, 0, grown, 0, count);
+				buffer = grown;
+			}
+		}
+		
+		byte[] toByteArray() {
+			byte[] bytes = new byte[count];
+			System.arraycopy(buffer, 0, bytes, 0, count);
+			return bytes;
+		}
+		
+		void writeTo(OutputStream out) throws IOException {
+			out.write(buffer, 0, count);
+		}
 	}
-	
-
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.serialization.converter;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Shared XML machinery of the XML converters. The factories are expensive to look up, so each 
+ * thread keeps its own instances, and document builders and transformers are reused after a 
+ * reset. Besides, DOM trees and StAX readers can be streamed into a StAX writer.
+ * 
+ * @author Murat Ates
+ */
+public final class XmlConverterSupport {
+	
+	private final static ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>();
+	
+	private final static ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>();
+	
+	private final static ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			// do not resolve external entities of documents received from the network
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			return factory;
+		}
+	};
+	
+	private final static ThreadLocal<XMLOutputFactory> OUTPUT_FACTORY = new ThreadLocal<XMLOutputFactory>() {
+		@Override
+		protected XMLOutputFactory initialValue() {
+			return XMLOutputFactory.newInstance();
+		}
+	};
+	
+	private XmlConverterSupport() {
+	}
+	
+	/**
+	 * Returns the document builder of the current thread, reset for the next document.
+	 * 
+	 * @return									the document builder
+	 * @throws ParserConfigurationException	if no document builder is available
+	 */
+	public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		DocumentBuilder builder = DOCUMENT_BUILDER.get();
+		if (builder == null) {
+			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			DOCUMENT_BUILDER.set(builder);
+		} else {
+			builder.reset();
+		}
+		return builder;
+	}
+	
+	/**
+	 * Returns the transformer of the current thread, reset for the next document.
+	 * 
+	 * @return										the identity transformer
+	 * @throws TransformerConfigurationException	if no transformer is available
+	 */
+	public static Transformer getTransformer() throws TransformerConfigurationException {
+		Transformer transformer = TRANSFORMER.get();
+		if (transformer == null) {
+			transformer = TransformerFactory.newInstance().newTransformer();
+			TRANSFORMER.set(transformer);
+		} else {
+			transformer.reset();
+		}
+		return transformer;
+	}
+	
+	/**
+	 * Returns the StAX input factory of the current thread.
+	 * 
+	 * @return	the input factory
+	 */
+	public static XMLInputFactory getInputFactory() {
+		return INPUT_FACTORY.get();
+	}
+	
+	/**
+	 * Returns the StAX output factory of the current thread.
+	 * 
+	 * @return	the output factory
+	 */
+	public static XMLOutputFactory getOutputFactory() {
+		return OUTPUT_FACTORY.get();
+	}
+	
+	/**
+	 * Writes the specified node and its descendants as events to the specified writer. A document 
+	 * node is written without the XML declaration, which is up to the caller.
+	 * 
+	 * @param node					the node
+	 * @param writer				the writer
+	 * @throws XMLStreamException	if the node could not be written
+	 */
+	public static void write(Node node, XMLStreamWriter writer) throws XMLStreamException {
+		switch (node.getNodeType()) {
+		case Node.DOCUMENT_NODE:
+		case Node.DOCUMENT_FRAGMENT_NODE:
+			writeChildren(node, writer);
+			break;
+		case Node.ELEMENT_NODE:
+			if (node.getNamespaceURI() == null) {
+				writer.writeStartElement(node.getNodeName());
+			} else {
+				writer.writeStartElement(node.getPrefix() == null ? "" : node.getPrefix(), 
+						node.getLocalName(), node.getNamespaceURI());
+			}
+			writeAttributes(node.getAttributes(), writer);
+			writeChildren(node, writer);
+			writer.writeEndElement();
+			break;
+		case Node.TEXT_NODE:
+			writer.writeCharacters(node.getNodeValue());
+			break;
+		case Node.CDATA_SECTION_NODE:
+			writer.writeCData(node.getNodeValue());
+			break;
+		case Node.COMMENT_NODE:
+			writer.writeComment(node.getNodeValue());
+			break;
+		case Node.PROCESSING_INSTRUCTION_NODE:
+			writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+			break;
+		case Node.ENTITY_REFERENCE_NODE:
+			writer.writeEntityRef(node.getNodeName());
+			break;
+		}
+	}
+	
+	private static void writeChildren(Node node, XMLStreamWriter writer) throws XMLStreamException {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			write(child, writer);
+		}
+	}
+	
+	private static void writeAttributes(NamedNodeMap attributes, XMLStreamWriter writer) throws XMLStreamException {
+		if (attributes == null) {
+			return;
+		}
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Attr attribute = (Attr)attributes.item(i);
+			String name = attribute.getName();
+			if (name.equals("xmlns")) {
+				writer.writeDefaultNamespace(attribute.getValue());
+			} else if (name.startsWith("xmlns:")) {
+				writer.writeNamespace(name.substring(6), attribute.getValue());
+			} else if (attribute.getNamespaceURI() == null) {
+				writer.writeAttribute(name, attribute.getValue());
+			} else {
+				writer.writeAttribute(attribute.getPrefix() == null ? "" : attribute.getPrefix(), 
+						attribute.getNamespaceURI(), attribute.getLocalName(), attribute.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Copies the events of the specified reader, from its current position to the end of the 
+	 * document, to the specified writer. The XML declaration is not copied.
+	 * 
+	 * @param reader				the reader
+	 * @param writer				the writer
+	 * @throws XMLStreamException	if the events could not be read or written
+	 */
+	public static void copy(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+		int event = reader.getEventType();
+		while (true) {
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				String prefix = reader.getPrefix();
+				String namespace = reader.getNamespaceURI();
+				if (namespace == null) {
+					writer.writeStartElement(reader.getLocalName());
+				} else {
+					writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), namespace);
+				}
+				for (int i = 0; i < reader.getNamespaceCount(); i++) {
+					String namespacePrefix = reader.getNamespacePrefix(i);
+					if (namespacePrefix == null || namespacePrefix.length() == 0) {
+						writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+					} else {
+						writer.writeNamespace(namespacePrefix, reader.getNamespaceURI(i));
+					}
+				}
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					String attributeNamespace = reader.getAttributeNamespace(i);
+					if (attributeNamespace == null || attributeNamespace.length() == 0) {
+						writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+					} else {
+						String attributePrefix = reader.getAttributePrefix(i);
+						writer.writeAttribute(attributePrefix == null ? "" : attributePrefix, attributeNamespace, 
+								reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+					}
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				writer.writeEndElement();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.CDATA:
+				writer.writeCData(reader.getText());
+				break;
+			case XMLStreamConstants.COMMENT:
+				writer.writeComment(reader.getText());
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+				break;
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				writer.writeEntityRef(reader.getLocalName());
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				return;
+			}
+			if (!reader.hasNext()) {
+				return;
+			}
+			event = reader.next();
+		}
+	}
+}
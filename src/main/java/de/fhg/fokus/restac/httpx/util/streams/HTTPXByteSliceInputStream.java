@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody;
+
+/**
+ * Body made of slices of byte arrays or byte buffers. The slices are referenced, not copied, so 
+ * the length of the body is known without touching the content, and the transport can send the 
+ * head and all slices with one gathering write. As an <code>InputStream</code> the body yields 
+ * the slices one after another.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXByteSliceInputStream extends InputStream implements HTTPXWritableBody {
+	
+	private final static int TRANSFER_SIZE = 8192;
+	
+	private final List<ByteBuffer> slices = new ArrayList<ByteBuffer>();
+	
+	private long length = 0;
+	
+	/* index of the slice read next through the InputStream methods */
+	private int index = 0;
+	
+	/**
+	 * Constructs a new, empty <code>HTTPXByteSliceInputStream</code>.
+	 */
+	public HTTPXByteSliceInputStream() {
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXByteSliceInputStream</code> of the specified array.
+	 * 
+	 * @param array	the content, which is not copied
+	 */
+	public HTTPXByteSliceInputStream(byte[] array) {
+		add(array, 0, array.length);
+	}
+	
+	/**
+	 * Appends a slice of the specified array. The array is not copied and must not be modified 
+	 * until the body has been sent.
+	 * 
+	 * @param array	the array
+	 * @param off	the offset of the slice
+	 * @param len	the length of the slice
+	 */
+	public synchronized void add(byte[] array, int off, int len) {
+		if (len > 0) {
+			slices.add(ByteBuffer.wrap(array, off, len));
+			length += len;
+		}
+	}
+	
+	/**
+	 * Appends the remaining bytes of the specified buffer. The buffer is not copied, and its 
+	 * position is not changed.
+	 * 
+	 * @param buffer	the buffer
+	 */
+	public synchronized void add(ByteBuffer buffer) {
+		if (buffer.hasRemaining()) {
+			slices.add(buffer.duplicate());
+			length += buffer.remaining();
+		}
+	}
+	
+	/**
+	 * Returns the length of the body, computed from the slices without copying them.
+	 * 
+	 * @return	the length in bytes
+	 */
+	public synchronized long getLength() {
+		return length;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public synchronized int read() throws IOException {
+		ByteBuffer slice = nextSlice();
+		return slice == null ? -1 : slice.get() & 0xff;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		ByteBuffer slice;
+		while (count < len && (slice = nextSlice()) != null) {
+			int n = Math.min(slice.remaining(), len - count);
+			slice.get(b, off + count, n);
+			count += n;
+		}
+		return count == 0 ? -1 : count;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#skip(long)
+	 */
+	@Override
+	public synchronized long skip(long n) {
+		long skipped = 0;
+		ByteBuffer slice;
+		while (skipped < n && (slice = nextSlice()) != null) {
+			int count = (int)Math.min(slice.remaining(), n - skipped);
+			slice.position(slice.position() + count);
+			skipped += count;
+		}
+		return skipped;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public synchronized int available() {
+		long available = 0;
+		for (int i = index; i < slices.size(); i++) {
+			available += slices.get(i).remaining();
+		}
+		return (int)Math.min(available, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Closes the body, the slices are released.
+	 */
+	@Override
+	public synchronized void close() {
+		slices.clear();
+		index = 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody#writeTo(java.io.OutputStream)
+	 */
+	public synchronized void writeTo(OutputStream out) throws IOException {
+		try {
+			byte[] transfer = null;
+			for (int i = index; i < slices.size(); i++) {
+				ByteBuffer slice = slices.get(i);
+				if (slice.hasArray()) {
+					out.write(slice.array(), slice.arrayOffset() + slice.position(), slice.remaining());
+					slice.position(slice.limit());
+				} else {
+					if (transfer == null) {
+						transfer = new byte[TRANSFER_SIZE];
+					}
+					while (slice.hasRemaining()) {
+						int n = Math.min(slice.remaining(), transfer.length);
+						slice.get(transfer, 0, n);
+						out.write(transfer, 0, n);
+					}
+				}
+			}
+		} finally {
+			close();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody#writeTo(java.nio.channels.WritableByteChannel, java.nio.ByteBuffer)
+	 */
+	public synchronized void writeTo(WritableByteChannel channel, ByteBuffer head) throws IOException {
+		try {
+			List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(slices.size() - index + 1);
+			if (head != null) {
+				buffers.add(head);
+			}
+			buffers.addAll(slices.subList(index, slices.size()));
+			if (buffers.isEmpty()) {
+				return;
+			}
+			
+			if (channel instanceof GatheringByteChannel) {
+				ByteBuffer[] array = buffers.toArray(new ByteBuffer[buffers.size()]);
+				ByteBuffer last = array[array.length - 1];
+				while (last.hasRemaining()) {
+					((GatheringByteChannel)channel).write(array);
+				}
+			} else {
+				for (ByteBuffer buffer : buffers) {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				}
+			}
+		} finally {
+			close();
+		}
+	}
+	
+	/* Returns the slice with remaining bytes read next, or null at the end of the body */
+	private ByteBuffer nextSlice() {
+		while (index < slices.size()) {
+			ByteBuffer slice = slices.get(index);
+			if (slice.hasRemaining()) {
+				return slice;
+			}
+			index++;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXChunkParser;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXHeadParser;
+import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
+
+/**
+ * Decoding view of a body with chunked transfer encoding. The chunk-data is decoded incrementally 
+ * into the buffers of the caller, the chunk headers and the trailer are consumed by a 
+ * <code>HTTPXChunkParser</code>. After the last chunk the header fields of the trailer are 
+ * available through {@link #getTrailers()}. Closing the view skips the rest of the body and 
+ * closes the underlying stream.
+ * 
+ * @author Murat Ates
+ * @see HTTPXChunkParser
+ */
+public class HTTPXChunkDecodingInputStream extends InputStream implements ReadableByteChannel {
+	
+	/* readChunk() grows its array in steps of at most this size, not trusting the chunk-size */
+	private final static int PIECE_SIZE = 8192;
+	
+	private final InputStream in;
+	
+	private final HTTPXChunkParser parser;
+	
+	private boolean closed = false;
+	
+	/* buffer for reads into direct byte buffers */
+	private byte[] transfer = null;
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkDecodingInputStream</code> on the specified stream.
+	 * 
+	 * @param in	the underlying stream, positioned at the first chunk
+	 */
+	public HTTPXChunkDecodingInputStream(InputStream in) {
+		this(in, HTTPXHeadParser.DEFAULT_MAX_LINE_LENGTH);
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkDecodingInputStream</code> on the specified stream.
+	 * 
+	 * @param in			the underlying stream, positioned at the first chunk
+	 * @param maxLineLength	the maximum length of a chunk header or trailer line
+	 */
+	public HTTPXChunkDecodingInputStream(InputStream in, int maxLineLength) {
+		this.in = in;
+		this.parser = new HTTPXChunkParser(maxLineLength, HTTPXHeadParser.DEFAULT_MAX_HEADER_COUNT);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!nextData()) {
+			return -1;
+		}
+		int b = in.read();
+		if (b == -1) {
+			throw new IOException("Premature end of chunk");
+		}
+		parser.consumed(1);
+		return b;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		while (count < len && nextData()) {
+			int readBytes = in.read(b, off + count, (int)Math.min(len - count, parser.getRemaining()));
+			if (readBytes == -1) {
+				throw new IOException("Premature end of chunk");
+			}
+			parser.consumed(readBytes);
+			count += readBytes;
+			
+			// do not block for the next chunk if something has been read already
+			if (!parser.isData() && in.available() == 0) {
+				break;
+			}
+		}
+		return count == 0 ? -1 : count;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.nio.channels.ReadableByteChannel#read(java.nio.ByteBuffer)
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+		if (closed) {
+			throw new ClosedChannelException();
+		}
+		if (dst.hasArray()) {
+			int readBytes = read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+			if (readBytes > 0) {
+				dst.position(dst.position() + readBytes);
+			}
+			return readBytes;
+		}
+		
+		if (transfer == null) {
+			transfer = new byte[4096];
+		}
+		int readBytes = read(transfer, 0, Math.min(transfer.length, dst.remaining()));
+		if (readBytes > 0) {
+			dst.put(transfer, 0, readBytes);
+		}
+		return readBytes;
+	}
+	
+	/**
+	 * Reads the chunk-data of the next chunk completely, or the rest of the current chunk if it 
+	 * has been read partially already. The array grows with the data actually received, not 
+	 * with the announced chunk-size.
+	 * 
+	 * @return				the chunk-data, an array of length 0 after the last chunk
+	 * @throws IOException	if an I/O error occurs or the body is malformed
+	 */
+	public byte[] readChunk() throws IOException {
+		if (!nextData()) {
+			return new byte[0];
+		}
+		long size = parser.getRemaining();
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IOException("Chunk too big: " + size);
+		}
+		byte[] data = new byte[(int)Math.min(size, PIECE_SIZE)];
+		int count = 0;
+		while (count < size) {
+			if (count == data.length) {
+				byte[] tmp = new byte[(int)Math.min(size, (long)count + Math.max(count, PIECE_SIZE))];
+				System.arraycopy(data, 0, tmp, 0, count);
+				data = tmp;
+			}
+			int readBytes = in.read(data, count, data.length - count);
+			if (readBytes == -1) {
+				throw new IOException("Premature end of chunk");
+			}
+			parser.consumed(readBytes);
+			count += readBytes;
+		}
+		return data;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), parser.getRemaining());
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.nio.channels.Channel#isOpen()
+	 */
+	public boolean isOpen() {
+		return !closed;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the last chunk and the trailer have been read.
+	 * 
+	 * @return <code>true</code> if the body has been read completely
+	 */
+	public boolean isComplete() {
+		return parser.isComplete();
+	}
+	
+	/**
+	 * Returns the header fields of the trailer. The map is empty until the body has been read 
+	 * completely.
+	 * 
+	 * @return	the trailer fields
+	 */
+	public Map<String, String> getTrailers() {
+		return parser.getTrailers();
+	}
+	
+	/**
+	 * Skips the rest of the body and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			byte[] buffer = new byte[1024];
+			while (nextData()) {
+				int readBytes = in.read(buffer, 0, (int)Math.min(buffer.length, parser.getRemaining()));
+				if (readBytes == -1) {
+					break;
+				}
+				parser.consumed(readBytes);
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/* Feeds chunk headers to the parser until chunk-data is available, returns false at the end of the body */
+	private boolean nextData() throws IOException {
+		while (!parser.isData()) {
+			if (parser.isComplete()) {
+				return false;
+			}
+			int b = in.read();
+			if (b == -1) {
+				throw new IOException("Premature end of chunked body");
+			}
+			try {
+				parser.update(b);
+			} catch (HTTPXProtocolViolationException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.httpx.util.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedList;
+
+import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody;
+
+/**
+ * Body with chunked transfer encoding which is encoded on demand. The producer queues the 
+ * payload with {@link #write(byte[], int, int)}, the transport pulls the encoded chunks either 
+ * through the <code>InputStream</code> methods or, without any copy, with one of the 
+ * <code>writeTo</code> methods. No pipe and no thread is involved.
+ * <p>
+ * The chunks adapt to the producer: every chunk carries all payload queued so far, up to the 
+ * maximum chunk size. A fast producer therefore yields full chunks, a slow one small chunks 
+ * which are sent without delay. At most <code>restac.chunked.maxPending</code> bytes may be 
+ * queued by {@link #write(byte[], int, int)}, further writes block until the transport has 
+ * taken the queued bytes.
+ * <p>
+ * Neither side waits forever: a producer blocked for <code>restac.chunked.timeout</code> 
+ * milliseconds (default 30000, 0 waits forever) fails, e.g. because the message has not been 
+ * handed to a transport yet, and a transport which has waited as long for a producer that 
+ * neither writes nor finishes the body closes it and fails.
+ * 
+ * @author Murat Ates
+ */
+public class HTTPXChunkEncodingInputStream extends InputStream implements HTTPXWritableBody {
+	
+	public final static String MAX_PENDING_PROPERTY = "restac.chunked.maxPending";
+	
+	public final static int DEFAULT_MAX_PENDING = Integer.getInteger(MAX_PENDING_PROPERTY, 65536).intValue();
+	
+	public final static String TIMEOUT_PROPERTY = "restac.chunked.timeout";
+	
+	public final static int DEFAULT_TIMEOUT = Integer.getInteger(TIMEOUT_PROPERTY, 30000).intValue();
+	
+	private final static byte[] CRLF = {'\r', '\n'};
+	
+	private final static byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+	
+	private final static ByteBuffer[] WOULD_BLOCK = new ByteBuffer[0];
+	
+	private final int maxChunkSize;
+	
+	private final int maxPending;
+	
+	/* the queued payload, the arrays are not copied */
+	private final LinkedList<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+	
+	private long queued = 0;
+	
+	private boolean finished = false;
+	
+	private boolean terminated = false;
+	
+	private boolean closed = false;
+	
+	/* the chunk currently read through the InputStream methods */
+	private ByteBuffer[] current = null;
+	
+	private int index = 0;
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkEncodingInputStream</code> with the default limit of 
+	 * queued bytes.
+	 * 
+	 * @param maxChunkSize	the maximum size of the chunk-data of one chunk
+	 */
+	public HTTPXChunkEncodingInputStream(int maxChunkSize) {
+		this(maxChunkSize, DEFAULT_MAX_PENDING);
+	}
+	
+	/**
+	 * Constructs a new <code>HTTPXChunkEncodingInputStream</code>.
+	 * 
+	 * @param maxChunkSize	the maximum size of the chunk-data of one chunk
+	 * @param maxPending	the number of queued bytes which makes {@link #write(byte[], int, int)} block
+	 */
+	public HTTPXChunkEncodingInputStream(int maxChunkSize, int maxPending) {
+		if (maxChunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + maxChunkSize);
+		}
+		this.maxChunkSize = maxChunkSize;
+		this.maxPending = Math.max(maxPending, 1);
+	}
+	
+	/**
+	 * Queues the specified part of the payload, blocking while the limit of queued bytes is 
+	 * exceeded. The array is not copied and must not be modified afterwards.
+	 * 
+	 * @param array			the array
+	 * @param off			the offset of the payload in the array
+	 * @param len			the length of the payload
+	 * @throws IOException	if the body has been closed or finished, if the thread is interrupted 
+	 * 						or if the transport has not taken the queued bytes within the timeout
+	 */
+	public synchronized void write(byte[] array, int off, int len) throws IOException {
+		long deadline = DEFAULT_TIMEOUT > 0 ? System.currentTimeMillis() + DEFAULT_TIMEOUT : 0;
+		try {
+			while (queued >= maxPending && !closed) {
+				await(deadline, "transport");
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for the transport");
+		}
+		enqueue(array, off, len);
+	}
+	
+	/* waits until notified or the deadline (0 for none) has passed, which fails with an InterruptedIOException */
+	private void await(long deadline, String party) throws InterruptedException, InterruptedIOException {
+		if (deadline == 0) {
+			wait();
+			return;
+		}
+		long left = deadline - System.currentTimeMillis();
+		if (left <= 0) {
+			throw new InterruptedIOException("Timed out waiting for the " + party);
+		}
+		wait(left);
+	}
+	
+	/**
+	 * Queues the complete payload without blocking and finishes the body. The array is not 
+	 * copied and must not be modified afterwards.
+	 * 
+	 * @param array			the payload
+	 * @throws IOException	if the body has been closed or finished
+	 */
+	public synchronized void writeBuffered(byte[] array) throws IOException {
+		enqueue(array, 0, array.length);
+		finish();
+	}
+	
+	/**
+	 * Finishes the body, the last chunk is sent after the queued payload. Further calls have 
+	 * no effect.
+	 */
+	public synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+	
+	/**
+	 * Returns a stream which queues a copy of everything written to it and finishes the body when 
+	 * it is closed. Handlers can use it to stream a body as they produce it.
+	 * 
+	 * @return	the stream
+	 */
+	public OutputStream getOutputStream() {
+		return new OutputStream() {
+			
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte)b}, 0, 1);
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (len > 0) {
+					byte[] copy = new byte[len];
+					System.arraycopy(b, off, copy, 0, len);
+					HTTPXChunkEncodingInputStream.this.write(copy, 0, len);
+				}
+			}
+			
+			@Override
+			public void close() {
+				finish();
+			}
+		};
+	}
+	
+	private void enqueue(byte[] array, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (finished) {
+			throw new IOException("Body already finished");
+		}
+		if (len > 0) {
+			queue.add(ByteBuffer.wrap(array, off, len));
+			queued += len;
+			notifyAll();
+		}
+	}
+	
+	/* Returns the buffers of the next chunk, WOULD_BLOCK if none is available and the caller does 
+	 * not want to block, or null after the last chunk */
+	private synchronized ByteBuffer[] takeChunk(boolean block) throws IOException {
+		long deadline = DEFAULT_TIMEOUT > 0 ? System.currentTimeMillis() + DEFAULT_TIMEOUT : 0;
+		try {
+			while (queued == 0 && !finished && !closed) {
+				if (!block) {
+					return WOULD_BLOCK;
+				}
+				await(deadline, "producer");
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for the producer");
+		} catch (InterruptedIOException e) {
+			// the producer fails with its next write
+			close();
+			throw e;
+		}
+		if (closed) {
+			return null;
+		}
+		if (queued == 0) {
+			if (terminated) {
+				return null;
+			}
+			terminated = true;
+			return new ByteBuffer[] {ByteBuffer.wrap(LAST_CHUNK)};
+		}
+		
+		int size = (int)Math.min(queued, maxChunkSize);
+		LinkedList<ByteBuffer> buffers = new LinkedList<ByteBuffer>();
+		buffers.add(ByteBuffer.wrap((Integer.toHexString(size) + HTTPXConstants.CRLF).getBytes(HTTPXConstants.DEFAULT_CHARSET)));
+		
+		int left = size;
+		while (left > 0) {
+			ByteBuffer segment = queue.getFirst();
+			if (segment.remaining() <= left) {
+				left -= segment.remaining();
+				buffers.add(queue.removeFirst());
+			} else {
+				ByteBuffer slice = segment.duplicate();
+				slice.limit(slice.position() + left);
+				segment.position(segment.position() + left);
+				buffers.add(slice);
+				left = 0;
+			}
+		}
+		buffers.add(ByteBuffer.wrap(CRLF));
+		
+		queued -= size;
+		notifyAll();
+		return buffers.toArray(new ByteBuffer[buffers.size()]);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			if (current == null || index == current.length) {
+				// block only if nothing has been read yet
+				current = takeChunk(n == 0);
+				index = 0;
+				if (current == null || current == WOULD_BLOCK) {
+					current = null;
+					break;
+				}
+			}
+			ByteBuffer buffer = current[index];
+			int count = Math.min(buffer.remaining(), len - n);
+			buffer.get(b, off + n, count);
+			n += count;
+			if (!buffer.hasRemaining()) {
+				index++;
+			}
+		}
+		return n == 0 && len > 0 ? -1 : n;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() {
+		int available = 0;
+		if (current != null) {
+			for (int i = index; i < current.length; i++) {
+				available += current[i].remaining();
+			}
+		}
+		return available;
+	}
+	
+	/**
+	 * Closes the body. The queued payload is discarded and blocked producers fail.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		queue.clear();
+		queued = 0;
+		current = null;
+		notifyAll();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody#writeTo(java.io.OutputStream)
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		try {
+			ByteBuffer[] chunk = remainder();
+			while (true) {
+				if (chunk == WOULD_BLOCK) {
+					// the peer gets what we have while the producer is busy
+					out.flush();
+					chunk = takeChunk(true);
+				}
+				if (chunk == null) {
+					break;
+				}
+				for (int i = 0; i < chunk.length; i++) {
+					ByteBuffer buffer = chunk[i];
+					out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				}
+				chunk = takeChunk(false);
+			}
+		} finally {
+			close();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.fhg.fokus.restac.httpx.core.common.HTTPXWritableBody#writeTo(java.nio.channels.WritableByteChannel, java.nio.ByteBuffer)
+	 */
+	public void writeTo(WritableByteChannel channel, ByteBuffer head) throws IOException {
+		try {
+			ByteBuffer[] chunk = remainder();
+			while (true) {
+				if (chunk == WOULD_BLOCK) {
+					if (head != null) {
+						writeFully(channel, new ByteBuffer[] {head});
+						head = null;
+					}
+					chunk = takeChunk(true);
+				}
+				if (chunk == null) {
+					break;
+				}
+				if (head != null) {
+					ByteBuffer[] buffers = new ByteBuffer[chunk.length + 1];
+					buffers[0] = head;
+					System.arraycopy(chunk, 0, buffers, 1, chunk.length);
+					chunk = buffers;
+					head = null;
+				}
+				writeFully(channel, chunk);
+				chunk = takeChunk(false);
+			}
+			if (head != null) {
+				writeFully(channel, new ByteBuffer[] {head});
+			}
+		} finally {
+			close();
+		}
+	}
+	
+	/* Returns the rest of a chunk partially read through the InputStream methods, or takes the next chunk */
+	private ByteBuffer[] remainder() throws IOException {
+		if (current != null && index < current.length) {
+			ByteBuffer[] chunk = new ByteBuffer[current.length - index];
+			System.arraycopy(current, index, chunk, 0, chunk.length);
+			current = null;
+			return chunk;
+		}
+		return takeChunk(false);
+	}
+	
+	private void writeFully(WritableByteChannel channel, ByteBuffer[] buffers) throws IOException {
+		ByteBuffer last = buffers[buffers.length - 1];
+		if (channel instanceof GatheringByteChannel) {
+			while (last.hasRemaining()) {
+				((GatheringByteChannel)channel).write(buffers);
+			}
+		} else {
+			for (int i = 0; i < buffers.length; i++) {
+				while (buffers[i].hasRemaining()) {
+					channel.write(buffers[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the maximum size of the chunk-data of one chunk.
+	 * 
+	 * @return	the maximum chunk size
+	 */
+	public int getMaxChunkSize() {
+		return maxChunkSize;
+	}
+}
@@ -24,10 +24,9 @@
 package de.fhg.fokus.restac.httpx.util.streams;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.StringTokenizer;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -35,7 +34,9 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXAbstractMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 
 /**
- * Input Stream with methods for receiving chunks. 
+ * Input Stream with methods for receiving chunks. The chunks are decoded by a 
+ * {@link HTTPXChunkDecodingInputStream}, which is also available as a plain 
+ * <code>InputStream</code> or <code>ReadableByteChannel</code> for streaming the body.
  * 
  * @author Anna Kress
  *
@@ -44,16 +45,21 @@ public class HTTPXChunkedInputStream extends HTTPXInputStream {
 
 public HTTPXChunkedInputStream(HTTPXAbstractMessage message) {
 		super(message.getInputStream(),  message.getHeader(HTTPXConstants.CONTENT_TYPE));
+		
+		decoder = new HTTPXChunkDecodingInputStream(this.inputStream);
 	}
 
 	private final static Logger LOGGER = Logger.getLogger(HTTPXChunkedInputStream.class);
+	
+	private final static int INITIAL_BUFFER_SIZE = 4096;
 
-	private List<String> trailerHeader; //TODO trailer not supported so far...
+	private final HTTPXChunkDecodingInputStream decoder;
 	
 	/**
-	 * Reads chunk-data of next chunk.
+	 * Reads chunk-data of next chunk. If the chunk has been read partially through 
+	 * {@link #getBodyStream()} already, the rest of it is returned.
 	 * <p>
-	 * Attention: chunk-extension and trailer are not supported so far and simply ignored.
+	 * Attention: chunk-extension is ignored, the trailer is available through getTrailers().
 	 * <p>
 	 * Chunks according to RFC2616:
 	 * <p>
@@ -70,72 +76,14 @@ public HTTPXChunkedInputStream(HTTPXAbstractMessage message) {
 	 */
 	@Override
 	public byte[] read(){
-	
-		int currentCharacter = -1;
-		int previousCharacter = -1;
-		StringWriter chunkHeader = new StringWriter();
-
 		try {
-			while((currentCharacter = this.inputStream.read()) != -1) {
-				if(previousCharacter == 13 && currentCharacter == 10) //means "\r\n"
-					break;
-				if(currentCharacter != 13 && currentCharacter != 10)
-					chunkHeader.append((char)currentCharacter); 
-				previousCharacter = currentCharacter;
-			}
-		
-		StringTokenizer tokenizer = new StringTokenizer(chunkHeader.toString(), ";"); // header can contain chunk extensions delimited by ";"
-			
-		int chunk_size = (Integer.decode("0x" + tokenizer.nextToken())).intValue(); //decode chunk size
-		// TODO what about chunk extensions? we ignore them so far...
-		
-		LOGGER.debug("Read chunk size " + chunk_size);
-		
-		byte[] chunk_data = new byte[chunk_size];
-		
-		if(chunk_size != 0) {
-			this.inputStream.read(chunk_data);
-		
-			this.inputStream.read(); // remove CRLF from stream, would also be a good idea to check if we get CRLF...
-			this.inputStream.read();
-		}
-		else //chunk size = 0
-		{
-			//TODO read trailer? trailer is not supported so far...
-			int nextByte = -1;
-			
-			//ignore trailer, just take everything from stream
-			//TODO this implementation is probably buggy and will need another look at...
-			
-			if ((nextByte = this.inputStream.read()) != 13) {
-				while(nextByte != -1) {
-					if((nextByte = this.inputStream.read()) != 13)
-						continue;
-						if((nextByte = this.inputStream.read()) != 10)
-							continue;
-							if((nextByte = this.inputStream.read()) != 13)
-								continue;
-								if((nextByte = this.inputStream.read()) != 10)
-									break; 
-								else
-									break;//looking for to consecutive "\r\n" which means end of streaming
-				}
-			}
-			
-			//remove last LF from stream
-			else {
-				this.inputStream.read();
-			}
-		}
-		
-		return chunk_data;
-		
+			byte[] chunk_data = decoder.readChunk();
+			LOGGER.debug("Read chunk size " + chunk_data.length);
+			return chunk_data;
 		} catch (IOException e) {
+			LOGGER.error("Chunk could not be read: " + e.getMessage());
 			return new byte[0];
 		}
-		 catch (NoSuchElementException e) {
-				return new byte[0];
-		}
 	}
 
 	/**
@@ -171,9 +119,11 @@ public HTTPXChunkedInputStream(HTTPXAbstractMessage message) {
 
 	/**
 	 * Reads chunks (means chunk-data) until a zero length chunk is read indicating end of stream.
-	 * Concatenates all chunks and returns the complete chunk payload as raw byte array.
+	 * Concatenates all chunks and returns the complete chunk payload as raw byte array. The 
+	 * payload is decoded into a buffer which grows by doubling, so each byte is copied only a 
+	 * constant number of times.
 	 * <p>
-	 * Attention: chunk-extension and trailer are not supported so far and just ignored.
+	 * Attention: chunk-extension is ignored, the trailer is available through getTrailers().
 	 * 
 	 * @return payload of all chunks as raw byte array
 	 * 
@@ -181,21 +131,57 @@ public HTTPXChunkedInputStream(HTTPXAbstractMessage message) {
 	 */
 	@Override
 	public byte[] readBuffered() {
-
-		byte[] payload = new byte[0];
-		byte[] payloadSoFar = new byte[0];
-		byte[] nextChunkPayload = new byte[0];
 		
-	    //concatenate arrays until we get complete payload
-		while((nextChunkPayload = read()).length > 0) {
-			payload = new byte[( payloadSoFar.length + nextChunkPayload.length)];
-			System.arraycopy(payloadSoFar, 0, payload, 0, payloadSoFar.length);
-			System.arraycopy(nextChunkPayload, 0, payload, payloadSoFar.length, nextChunkPayload.length);
-			payloadSoFar = payload;
+		byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+		int length = 0;
+		
+		try {
+			int readBytes;
+			while ((readBytes = decoder.read(buffer, length, buffer.length - length)) != -1) {
+				length += readBytes;
+				if (length == buffer.length) {
+					byte[] grown = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, grown, 0, length);
+					buffer = grown;
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.error("Chunked body could not be read completely: " + e.getMessage());
 		}
 		
+		byte[] payload = new byte[length];
+		System.arraycopy(buffer, 0, payload, 0, length);
 		return payload;
 	}
+	
+	/**
+	 * Returns the decoded body as stream. Closing it skips the rest of the body.
+	 * 
+	 * @return the decoded body
+	 */
+	@Override
+	public InputStream getBodyStream() {
+		return decoder;
+	}
+	
+	/**
+	 * Returns the decoded body as channel. Closing it skips the rest of the body.
+	 * 
+	 * @return the decoded body
+	 */
+	public ReadableByteChannel getDecodedChannel() {
+		return decoder;
+	}
+	
+	/**
+	 * Returns the header fields of the trailer, which are available after the last chunk has 
+	 * been read.
+	 * 
+	 * @return the trailer fields, an empty map if there are none
+	 */
+	public Map<String, String> getTrailers() {
+		return decoder.getTrailers();
+	}
 
 	/**
 	 * Reads chunks from stream (means chunk-data) until a zero length chunk is read indicating end of stream.
@@ -24,8 +24,7 @@
 package de.fhg.fokus.restac.httpx.util.streams;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,10 +35,11 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
 import de.fhg.fokus.restac.httpx.core.common.ParameterList;
 import de.fhg.fokus.restac.httpx.core.common.Path;
-import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 
 /**
- * Output Stream with methods for sending chunks. 
+ * Output Stream with methods for sending chunks. The chunks are encoded on demand by a 
+ * {@link HTTPXChunkEncodingInputStream} while the transport writes the message, so no pipe and 
+ * no writer thread is needed.
  * 
  * @author Anna Kress
  *
@@ -47,7 +47,7 @@ import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConverting
 public class HTTPXChunkedOutputStream extends HTTPXOutputStream {
 	
 	private final static Logger LOGGER = Logger.getLogger(HTTPXChunkedOutputStream.class);
-	private PipedOutputStream pipeOut;
+	private HTTPXChunkEncodingInputStream encoder;
 	
 	/**
 	 * Constructor for HTTPXChunkedOutputStream.
@@ -58,16 +58,8 @@ public class HTTPXChunkedOutputStream extends HTTPXOutputStream {
 	public HTTPXChunkedOutputStream(String contentType, String contentCharset){
 		super(null, contentType + ";" + "charset=" + contentCharset);
 		
-		try {
-			//initialize stream if necessary
-			if(this.getInputStream() == null) {
-				pipeOut =  new PipedOutputStream();
-				this.inputStream = new PipedInputStream(pipeOut, this.getMaxChunkSize());
-			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		encoder = new HTTPXChunkEncodingInputStream(this.getMaxChunkSize());
+		this.inputStream = encoder;
 	}
 
 	/**
@@ -82,16 +74,8 @@ public class HTTPXChunkedOutputStream extends HTTPXOutputStream {
 		
 		this.setMaxChunkSize(maxChunkSize);
 		
-		try {
-			//initialize stream if necessary
-			if(this.getInputStream() == null) {
-				pipeOut =  new PipedOutputStream();
-				this.inputStream = new PipedInputStream(pipeOut, this.getMaxChunkSize()); 
-			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		encoder = new HTTPXChunkEncodingInputStream(this.getMaxChunkSize());
+		this.inputStream = encoder;
 	}
 	
 	/**
@@ -134,13 +118,17 @@ public class HTTPXChunkedOutputStream extends HTTPXOutputStream {
 //	}
 
 	/**
-	 * Writes one chunk into stream: Takes the chunk content (chunk-data) as parameter,
-	 * packages content into chunk according to RFC2616 (see below), and writes chunk into stream. 
+	 * Writes chunk-data into stream: A copy of the content is queued and packaged into
+	 * chunks according to RFC2616 (see below) when the transport sends the message. Content 
+	 * written in quick succession may share one chunk, big content is split according to 
+	 * maxChunkSize.
 	 * <p>
-	 * If a byte array with size zero is given, the chunk is taken to be the last-chunk:
-	 * Method writes chunk size and closes stream to free up resources.
+	 * If a byte array with size zero is given, the last-chunk is written after the queued 
+	 * content and no further content can be written.
 	 * <p>
-	 * Method blocks if size of array is greater than maxChunkSize!
+	 * Method blocks while the transport has not yet taken the content written before, if that 
+	 * exceeds <code>restac.chunked.maxPending</code> bytes, and fails if the transport has not taken 
+	 * it within <code>restac.chunked.timeout</code> milliseconds.
 	 * <p>
 	 * Attention: chunk-extension and trailer are not supported so far and are ignored!
 	 * <p>
@@ -161,103 +149,44 @@ public class HTTPXChunkedOutputStream extends HTTPXOutputStream {
 	 * trailer = *(entity-header CRLF)
 	 * <p>
 	 * @param array - content of chunk (chunk-data) to be written to stream as byte array.
+	 * @throws IOException if the stream has been closed, the last chunk has already been written or 
+	 * the transport timed out
 	 */
 	@Override
-	public void write(byte[] array){
-		
-		// get chunk length
-		int chunk_size = array.length;
-		
-		String chunkSize = Integer.toHexString(chunk_size);
-
-		if(chunk_size + chunkSize.getBytes().length > this.getMaxChunkSize())
-			LOGGER.warn("Chunk too big for internal buffer! Adjust maxChunkSize or write smaller byte array, otherwise method" +
-					" will block, if it is not executed in a thread!");
-		
-		// write chunk
-		try {	
-			//write chunk header
-			pipeOut.write(chunkSize.getBytes()); // write chunk size
-			pipeOut.write(HTTPXConstants.CRLF.getBytes()); // write delimiter "\r\n"
-
-			//TODO write chunk extension? extensions are not supported so far...
-			LOGGER.debug("Wrote header, header has size " + chunkSize.getBytes().length);
-			LOGGER.debug("size of content will be " + array.length);
-			LOGGER.debug("max chunk size is " + this.getMaxChunkSize());
-			
-			//write chunk data
-			if (chunk_size > 0) {
-				pipeOut.write(array); // write chunk data if available
-				LOGGER.debug("wrote body");
-				pipeOut.write(HTTPXConstants.CRLF.getBytes()); // write delimiter "\r\n"
-				LOGGER.debug("wrote delimiter");
-			}
-			else //chunk size = 0 means write last chunk without body
-			{
-				//TODO: if trailer available, write trailer and write chunkSizeDelimiter
-				
-				pipeOut.write(HTTPXConstants.CRLF.getBytes()); // write delimiter "\r\n";
-				LOGGER.debug("wrote delimiter");
-				pipeOut.write(HTTPXConstants.CRLF.getBytes()); // write delimiter "\r\n";
-				LOGGER.debug("wrote delimiter");
-				
-				//close stream
-				pipeOut.close();
-				LOGGER.debug("Wrote last chunk and closed stream");
-			}		
-			
-		} catch (IOException e) {
-			e.printStackTrace();
-		}		
+	public void write(byte[] array) throws IOException{
+		if (array.length == 0) {
+			encoder.finish();
+			LOGGER.debug("Finished chunked stream");
+		} else {
+			byte[] copy = new byte[array.length];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			encoder.write(copy, 0, copy.length);
+		}
 	}
 
 
 	/**
-	 * Writes byte array into stream, starts a new thread. 
-	 * Byte array is splitted into chunks according to maxChunkSize.
+	 * Writes byte array into stream and finishes the stream, without blocking. 
+	 * Byte array is splitted into chunks according to maxChunkSize when the message is sent.
 	 * <p>
-	 * @param array - payload to be chunked and written to stream. A byte array with size zero
-	 * indicates end of payload and closes stream to free up resources.
+	 * @param array - payload to be chunked and written to stream. The array must not be modified afterwards.
+	 * @throws IOException if the stream has been closed or the last chunk has already been written
 	 */
 	@Override
-	public void writeBuffered(final byte[] array) throws ContentConvertingException, IOException{
-		
-		if(array.length == 0)
-			write(array);
-		
-		new Thread(new Runnable(){
-			public void run(){
-			// break array down into chunks, max chunk size is by default 2048 byte
-			int sizeLeft = array.length;
-
-			int nextChar = 0;
-			byte[] buffer;
-			
-			while (sizeLeft > 0) {
-				if (sizeLeft >= getMaxChunkSize()) {
-					buffer = new byte[getMaxChunkSize()];
-
-					while (nextChar < getMaxChunkSize()) {
-						// copy next 2048 Byte
-						buffer[nextChar] = array[nextChar];
-						nextChar++;
-					}
-
-					write(buffer); // write next chunk with data
-				} else {
-					buffer = new byte[sizeLeft];
-					while (nextChar < sizeLeft){
-						buffer[nextChar] = array[nextChar];
-					nextChar++;
-				}
-					write(buffer); // write last chunk with data
-					write(new byte[0]); // write zero size chunk to close stream
-				}
-				sizeLeft -= buffer.length;
-			}
-			}
-		}).start();
-		
+	public void writeBuffered(byte[] array) throws IOException{
+		encoder.writeBuffered(array);
+	}
+	
+	/**
+	 * Returns a stream for handlers which produce the content step by step: everything written 
+	 * to it is sent in chunks, closing it writes the last chunk. Writing blocks while the 
+	 * transport lags behind.
+	 * 
+	 * @return the stream
+	 */
+	@Override
+	public OutputStream getOutputStream() {
+		return encoder.getOutputStream();
 	}
 	
 	/*
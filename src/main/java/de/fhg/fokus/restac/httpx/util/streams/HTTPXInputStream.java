@@ -23,6 +23,7 @@
 
 package de.fhg.fokus.restac.httpx.util.streams;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 public abstract class HTTPXInputStream extends HTTPXStream {
@@ -43,6 +44,19 @@ public HTTPXInputStream(InputStream inputStream, String contentTypeHeader) {
 	 */
 	abstract public byte[] readBuffered(); // read from input stream
 	
+	/**
+	 * Returns the payload as stream, e.g. for parsers which process the content while it is received.
+	 * The default reads the whole payload with <code>readBuffered()</code> first; subclasses which
+	 * can stream it override this method.
+	 * 
+	 * @return the payload or <code>null</code> if there is none
+	 * @see HTTPXPlainInputStream or HTTPXChunkedInputStream
+	 */
+	public InputStream getBodyStream() {
+		byte[] data = readBuffered();
+		return data == null ? null : new ByteArrayInputStream(data);
+	}
+	
 //	/**
 //	 * 
 //	 * @see HTTPXPlainInputStream or HTTPXChunkedInputStream
@@ -23,8 +23,10 @@
 
 package de.fhg.fokus.restac.httpx.util.streams;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
@@ -54,6 +56,31 @@ public abstract class HTTPXOutputStream extends HTTPXStream {
 	 */
 	abstract public void writeBuffered(byte[] array) throws ContentConvertingException, IOException;
 	
+	/**
+	 * Returns a stream for serializers which produce the payload step by step. Closing the stream
+	 * completes the payload. The default collects the payload and hands it to 
+	 * <code>writeBuffered(byte[])</code> on close; subclasses which can stream it override this method.
+	 * 
+	 * @see HTTPXPlainOutputStream or HTTPXChunkedOutputStream
+	 */
+	public OutputStream getOutputStream() {
+		return new ByteArrayOutputStream() {
+			private boolean closed;
+			
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				try {
+					writeBuffered(toByteArray());
+				} catch (ContentConvertingException e) {
+					throw new IOException("Content could not be processed: " + e);
+				}
+			}
+		};
+	}
+	
 //	/**
 //	 * 
 //	 * @see HTTPXPlainOutputStream or HTTPXChunkedOutputStream
@@ -23,35 +23,67 @@
 
 package de.fhg.fokus.restac.httpx.util.streams;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.apache.log4j.Logger;
 
+import de.fhg.fokus.restac.httpx.core.common.BoundedInputStream;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXAbstractMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 
 /**
  * Input Stream with methods for receiving plain (noch chunked) http message bodies. 
+ * <p>
+ * At most <code>Content-Length</code> bytes are read from the stream of the message, so the 
+ * connection can carry further messages. The body can be streamed with getBodyStream(), or 
+ * buffered with bufferBody(), which spills bodies bigger than <code>restac.http.spillThreshold</code> 
+ * bytes into a temporary file if that property is set.
  * 
  * @author Anna Kress
  *
  */
 public class HTTPXPlainInputStream extends HTTPXInputStream  {
 	
+	public final static String SPILL_THRESHOLD_PROPERTY = "restac.http.spillThreshold";
+	
+	/* 0 keeps every buffered body in memory */
+	public final static int DEFAULT_SPILL_THRESHOLD = Integer.getInteger(SPILL_THRESHOLD_PROPERTY, 0).intValue();
+	
 	private final static Logger LOGGER = Logger.getLogger(HTTPXPlainInputStream.class);
 	
-	private Integer contentLength = null; 
+	private final static int INITIAL_BUFFER_SIZE = 8192;
+	
+	private long contentLength = 0; 
+	
+	private BoundedInputStream body = null;
+	
+	private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
 	
 	public HTTPXPlainInputStream(HTTPXAbstractMessage message){
 		super(message.getInputStream(), message.getHeader(HTTPXConstants.CONTENT_TYPE));
 		
-		if(message.getHeader(HTTPXConstants.CONTENT_LENGTH) != null)
-			this.contentLength = new Integer(message.getHeader(HTTPXConstants.CONTENT_LENGTH));
-		else 
-			this.contentLength = 0;
+		if(message.getHeader(HTTPXConstants.CONTENT_LENGTH) != null) {
+			try {
+				this.contentLength = Long.parseLong(message.getHeader(HTTPXConstants.CONTENT_LENGTH).trim());
+			} catch (NumberFormatException e) {
+				LOGGER.error("Malformed " + HTTPXConstants.CONTENT_LENGTH + " header: " + message.getHeader(HTTPXConstants.CONTENT_LENGTH));
+			}
+		}
+		
+		if(this.getInputStream() != null)
+			this.body = new BoundedInputStream(this.getInputStream(), Math.max(contentLength, 0));
 	}
 	
 	/**
+	 * Reads the payload incrementally: the array grows with the bytes actually received instead 
+	 * of being allocated for the announced <code>Content-Length</code> up front.
+	 * 
 	 * @return payload of message as byte array.
 	 * Returns array with length 0 if no payload is 
 	 * available.
@@ -59,34 +91,120 @@ public class HTTPXPlainInputStream extends HTTPXInputStream  {
 	@Override
 	public byte[] read(){
 		
-		byte[] bytes = new byte[0];
+		if(body == null || this.contentLength <= 0)
+			return new byte[0];
 		
-	
-
-		if(this.contentLength > 0) {
-			
-			bytes = new byte[this.contentLength];
-			
-			int read_bytes = 0;
+		if(this.contentLength > Integer.MAX_VALUE - 8) {
+			LOGGER.error("Body too big to be read into an array: " + contentLength + " bytes");
+			return new byte[0];
+		}
+		
+		byte[] buffer = new byte[(int)Math.min(contentLength, INITIAL_BUFFER_SIZE)];
+		int read_bytes = 0;
 			
-			try {
-				
-				while (read_bytes < contentLength) {
-				
-					int read_tmp=this.getInputStream().read(bytes,read_bytes,contentLength-read_bytes);
-					
-					if (read_tmp==-1) break;
-					
-					read_bytes+=read_tmp;
-					
+		try {
+			int read_tmp;
+			while ((read_tmp = body.read(buffer, read_bytes, buffer.length - read_bytes)) != -1) {
+				read_bytes += read_tmp;
+				if (read_bytes == buffer.length && body.getRemaining() > 0) {
+					byte[] grown = new byte[(int)Math.min(contentLength, (long)buffer.length * 2)];
+					System.arraycopy(buffer, 0, grown, 0, read_bytes);
+					buffer = grown;
 				}
 			}
-			catch(IOException e) {
+		}
+		catch(IOException e) {
+			LOGGER.error(e);
+			return new byte[0];
+		}
+		
+		if (read_bytes == buffer.length)
+			return buffer;
+		
+		byte[] bytes = new byte[read_bytes];
+		System.arraycopy(buffer, 0, bytes, 0, read_bytes);
+		return bytes;	 //read from stream only once
+	}
+	
+	/**
+	 * Returns a view of the body which ends after <code>Content-Length</code> bytes. Closing the 
+	 * view skips the rest of the body, the stream of the message stays open.
+	 * 
+	 * @return the body, <code>null</code> if the message has none
+	 */
+	@Override
+	public InputStream getBodyStream(){
+		return body;
+	}
+	
+	/**
+	 * Reads the complete body and returns a stream of it. Bodies up to the spill threshold are 
+	 * kept in memory, bigger ones are written to a temporary file which is deleted when the 
+	 * returned stream is closed.
+	 * 
+	 * @return the buffered body
+	 * @throws IOException if the body could not be read or written to the file
+	 */
+	public InputStream bufferBody() throws IOException{
+		if(body == null || contentLength <= 0)
+			return new ByteArrayInputStream(new byte[0]);
+		
+		if(spillThreshold <= 0 || contentLength <= spillThreshold)
+			return new ByteArrayInputStream(read());
+		
+		File file = File.createTempFile("restac", ".body");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+			int readBytes;
+			while ((readBytes = body.read(buffer)) != -1) {
+				out.write(buffer, 0, readBytes);
+			}
+		} catch (IOException e) {
+			out.close();
+			file.delete();
+			throw e;
+		}
+		out.close();
+		
+		LOGGER.debug("Spilled body of " + contentLength + " bytes to " + file);
+		return new TemporaryFileInputStream(file);
+	}
+	
+	/**
+	 * Skips the rest of the body, so the connection can be used for the next message.
+	 */
+	public void close(){
+		if(body != null) {
+			try {
+				body.close();
+			} catch (IOException e) {
 				LOGGER.error(e);
-				bytes = new byte[0];
 			}
-		}		
-		return bytes;	 //read from stream only once
+		}
+	}
+	
+	/**
+	 * Returns the length of the body according to the <code>Content-Length</code> header.
+	 * 
+	 * @return the length, 0 if the header is missing
+	 */
+	public long getContentLength(){
+		return contentLength;
+	}
+	
+	public int getSpillThreshold(){
+		return spillThreshold;
+	}
+	
+	/**
+	 * Sets the size above which bufferBody() writes the body to a temporary file.
+	 * 
+	 * @param spillThreshold - the threshold in bytes, 0 keeps every body in memory
+	 */
+	public void setSpillThreshold(int spillThreshold){
+		this.spillThreshold = spillThreshold;
 	}
 
 
@@ -142,4 +260,23 @@ public class HTTPXPlainInputStream extends HTTPXInputStream  {
 //		return readContent();
 //	}
 
+	/* Stream of a temporary file which is deleted on close */
+	private static class TemporaryFileInputStream extends FileInputStream {
+		
+		private final File file;
+		
+		TemporaryFileInputStream(File file) throws IOException {
+			super(file);
+			this.file = file;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				file.delete();
+			}
+		}
+	}
 }
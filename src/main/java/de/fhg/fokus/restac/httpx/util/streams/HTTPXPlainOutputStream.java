@@ -23,9 +23,8 @@
 
 package de.fhg.fokus.restac.httpx.util.streams;
 
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,13 +38,18 @@ import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConverting
 
 /**
  * Output Stream with methods for sending plain (noch chunked) http message bodies. 
+ * The body is kept as slices of a {@link HTTPXByteSliceInputStream}, the transport sends them 
+ * together with the head in one gathering write. <code>write</code> copies the payload, the 
+ * <code>writeBuffered</code> methods take over the arrays without copying.
  * 
  * @author Anna Kress
  *
  */
 public class HTTPXPlainOutputStream extends HTTPXOutputStream {
 
-	private Integer contentLength = null; 
+	private final static int BLOCK_SIZE = 8192;
+	
+	private HTTPXByteSliceInputStream body = null; 
 	
 //	public HTTPXPlainOutputStream(Object obj, String contentType, String contentCharset) throws ContentConvertingException{
 //		super(null, contentType + ";" + "charset=" + contentCharset);
@@ -57,24 +61,135 @@ public class HTTPXPlainOutputStream extends HTTPXOutputStream {
 	}
 
 	/**
-	 * Writes payload as byte array into
-	 * input stream. Sets content length according to 
-	 * length of array.
+	 * Appends a copy of the payload to the body, the array may be reused afterwards. 
+	 * Content length is the sum of the lengths of all written arrays.
 	 */
 	@Override
-	public void write(final byte[] array){
-		
-		final PipedOutputStream pipeOut = new PipedOutputStream();
-		
-		try {
-			this.inputStream = new PipedInputStream(pipeOut, array.length);
-			pipeOut.write(array);
-			pipeOut.close();
-			this.contentLength = new Integer(array.length);
+	public void write(byte[] array){
+		write(array, 0, array.length);
+	}
+	
+	/**
+	 * Appends a copy of a slice of the array to the body, the array may be reused afterwards. 
+	 * 
+	 * @param array - the array
+	 * @param off - offset of the slice
+	 * @param len - length of the slice
+	 */
+	public void write(byte[] array, int off, int len){
+		byte[] copy = new byte[len];
+		System.arraycopy(array, off, copy, 0, len);
+		getBody().add(copy, 0, len);
+	}
+	
+	/**
+	 * Appends the payload to the body without copying it. The stream takes over the array, 
+	 * it must not be modified afterwards.
+	 */
+	@Override
+	public void writeBuffered(byte[] array){
+		writeBuffered(array, 0, array.length);
+	}
+	
+	/**
+	 * Appends a slice of the array to the body without copying it. The stream takes over the 
+	 * array, it must not be modified afterwards. 
+	 * 
+	 * @param array - the array
+	 * @param off - offset of the slice
+	 * @param len - length of the slice
+	 */
+	public void writeBuffered(byte[] array, int off, int len){
+		getBody().add(array, off, len);
+	}
+	
+	/**
+	 * Appends the remaining bytes of the buffer to the body without copying them. The stream 
+	 * takes over the buffer, its content must not be modified afterwards. The position of the 
+	 * buffer is not changed.
+	 * 
+	 * @param buffer - the buffer
+	 */
+	public void writeBuffered(ByteBuffer buffer){
+		getBody().add(buffer);
+	}
+	
+	/**
+	 * Returns the length of the body, 0 if nothing has been written.
+	 * 
+	 * @return content length
+	 */
+	public long getContentLength(){
+		return body == null ? 0 : body.getLength();
+	}
+	
+	/**
+	 * Returns a stream which appends everything written to it to the body. The content is 
+	 * collected in blocks which become slices of the body, content length is known after the 
+	 * stream has been flushed or closed.
+	 * 
+	 * @return the stream
+	 */
+	@Override
+	public OutputStream getOutputStream(){
+		return new OutputStream(){
+			
+			private byte[] block = null;
+			
+			/* start of the bytes of the block not yet added to the body */
+			private int start = 0;
 			
-		} catch (IOException e1) {
-			e1.printStackTrace();
+			private int count = 0;
+			
+			@Override
+			public void write(int b){
+				ensureBlock();
+				block[count++] = (byte)b;
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len){
+				while (len > 0) {
+					ensureBlock();
+					int n = Math.min(len, block.length - count);
+					System.arraycopy(b, off, block, count, n);
+					count += n;
+					off += n;
+					len -= n;
+				}
+			}
+			
+			@Override
+			public void flush(){
+				if (count > start) {
+					//the block is not written to any more
+					writeBuffered(block, start, count - start);
+					start = count;
+				}
+			}
+			
+			@Override
+			public void close(){
+				flush();
+			}
+			
+			private void ensureBlock(){
+				if (block == null || count == block.length) {
+					flush();
+					block = new byte[BLOCK_SIZE];
+					start = 0;
+					count = 0;
+				}
+			}
+		};
+	}
+	
+	private HTTPXByteSliceInputStream getBody(){
+		if (body == null) {
+			body = new HTTPXByteSliceInputStream();
+			this.inputStream = body;
 		}
+		return body;
 	}
 	
 	/**
@@ -107,11 +222,6 @@ public class HTTPXPlainOutputStream extends HTTPXOutputStream {
 //		}
 //	}
 	
-	@Override
-	public void writeBuffered(byte[] array) throws ContentConvertingException {
-		write(array);		
-	}
-
 //	@Override
 //	public void writeBufferedContent(Object obj) throws ContentConvertingException {
 //		writeContent(obj);
@@ -120,11 +230,11 @@ public class HTTPXPlainOutputStream extends HTTPXOutputStream {
 	@Override
 	public HTTPXStatusMessage constructHTTPXStatusMessage(int statusCode, String statusMessage, String protocol, Map<String, String> headers) {
 		
-		if(this.contentLength > 0) {
+		if(getContentLength() > 0) {
 			if (headers == null)
 				headers = new HashMap<String, String>();
 			
-			headers.put(HTTPXConstants.CONTENT_LENGTH, this.contentLength.toString());
+			headers.put(HTTPXConstants.CONTENT_LENGTH, Long.toString(getContentLength()));
 			headers.put(HTTPXConstants.CONTENT_TYPE, getContentType() + "; charset=" + getContentCharset());
 		}
 		return new HTTPXStatusMessage(statusCode, statusMessage, protocol, headers, this.getInputStream());
@@ -133,11 +243,11 @@ public class HTTPXPlainOutputStream extends HTTPXOutputStream {
 	@Override
 	public HTTPXActionMessage constructHTTPXActionMessage(String method, String protocol, String host, int port, Path path, ParameterList query, Map<String, String> headers) {
 		
-		if(this.contentLength > 0) {
+		if(getContentLength() > 0) {
 			if (headers == null)
 				headers = new HashMap<String, String>();
 			
-			headers.put(HTTPXConstants.CONTENT_LENGTH, this.contentLength.toString());
+			headers.put(HTTPXConstants.CONTENT_LENGTH, Long.toString(getContentLength()));
 			headers.put(HTTPXConstants.CONTENT_TYPE, getContentType() + "; charset=" + getContentCharset());
 		}
 		return new HTTPXActionMessage(method, protocol, host, port, path, query, headers, this.getInputStream());
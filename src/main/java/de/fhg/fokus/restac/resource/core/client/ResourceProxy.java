@@ -37,7 +37,8 @@ import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
 import de.fhg.fokus.restac.httpx.core.common.ParameterList;
 import de.fhg.fokus.restac.httpx.core.common.Path;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
-import de.fhg.fokus.restac.httpx.util.serialization.converter.TextPlainContentReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentConverterRegistry;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentReader;
 import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
@@ -283,7 +284,8 @@ public class ResourceProxy implements Resource {
 	
 	/**
 	 * Checks the response HTTPStatus to see whether the processing of the request at the
-	 * resource was successful.
+	 * resource was successful. Only the content of a failed request is read, as message 
+	 * of the exception.
 	 * 
 	 * @throws ResourceException	if an error occured while trying to process the
 	 * 								request at the resource 
@@ -293,26 +295,10 @@ public class ResourceProxy implements Resource {
 		 
 		  int responseCode=response.getStatusCode();
 		 
-		 String msg;
-
-		 if (response.getHeader(HTTPXConstants.CONTENT_TYPE) != null &&
-				 response.getHeader(HTTPXConstants.CONTENT_TYPE).equals(HTTPXConstants.TYPE_TXT_PLAIN)) {
-		
-				 // get either plain or chunked input stream
-				 HTTPXInputStream in = HTTPXStreamFactory.getHTTPXInputStream(response);
-					
-				 TextPlainContentReader rd;
-				try {
-					rd = new TextPlainContentReader(in);
-					 msg = (String)rd.readBuffered();
-				} catch (ContentConvertingException e) {
-					msg="";
-				}
-		 }
-		 else msg="";
-		 
 		 for (int i=0;i<HTTPStatus.ALL_USED.length;++i) {
 	       if (HTTPStatus.ALL_USED[i].getCode()==responseCode) {
+	    	   String msg = getMessage(response);
+	    	   
 	    	   if      (responseCode==404)  throw new NotFoundException(msg);
 	    	   else if (responseCode ==415) throw new UnsupportedContentTypeException(msg);
 	    	   else if (responseCode ==500) throw new InternalException(msg);
@@ -334,6 +320,26 @@ public class ResourceProxy implements Resource {
 	    }
 	  }
 	}
+	
+	/**
+	 * Reads the content of a response as message, if it is textual.
+	 * 
+	 * @param response	the response
+	 * @return			the message or an empty string
+	 */
+	private String getMessage(HTTPXStatusMessage response) {
+		if (response.getHeader(HTTPXConstants.CONTENT_TYPE) == null) return "";
+		
+		// get either plain or chunked input stream
+		HTTPXInputStream in = HTTPXStreamFactory.getHTTPXInputStream(response);
+		try {
+			ContentReader rd = ContentConverterRegistry.getInstance().getReader(in);
+			Object content = rd != null ? rd.readBuffered() : null;
+			return content instanceof String ? (String)content : "";
+		} catch (ContentConvertingException e) {
+			return "";
+		}
+	}
 
 	
 	
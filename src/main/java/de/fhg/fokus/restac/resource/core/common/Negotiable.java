@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2007 FhG Fokus
+ *
+ * This file is part of RESTAC, a peer-to-peer Java framework implementing REST.
+ *
+ * RESTAC is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * For a license to use the RESTAC software under conditions
+ * other than those described here, please contact David Linner by e-mail at the following addresses:
+ *    David.Linner@fokus.fraunhofer.de
+ * RESTAC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License and the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+/* Created on 18.10.2026 */
+
+package de.fhg.fokus.restac.resource.core.common;
+
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+import de.fhg.fokus.restac.resource.core.common.exceptions.ResourceException;
+
+/**
+ * Interface for resources whose representation depends on the media types the requester 
+ * accepts. The resource message handler passes the <code>Accept</code> header with each 
+ * request, since a resource may serve several requests at the same time.
+ * 
+ * @author Murat Ates
+ * @see Resource
+ */
+public interface Negotiable extends Resource {
+	
+	/**
+	 * Gets the content of this resource like {@link Get#get()}, in a media type the requester accepts.
+	 * 
+	 * @param accept	the value of the <code>Accept</code> header, null if the request has none
+	 * @return			the content of the resource
+	 * @throws ResourceException if the content cannot be retrieved
+	 */
+	public HTTPXOutputStream get(String accept) throws ResourceException;
+	
+	/**
+	 * Posts an input stream to this resource like {@link Post#post(HTTPXInputStream)}, the result 
+	 * is written in a media type the requester accepts.
+	 * 
+	 * @param in		input stream
+	 * @param accept	the value of the <code>Accept</code> header, null if the request has none
+	 * @return			the result of the post
+	 * @throws ResourceException if input cannot be processed
+	 */
+	public HTTPXOutputStream post(HTTPXInputStream in, String accept) throws ResourceException;
+}
@@ -28,14 +28,14 @@ package de.fhg.fokus.restac.resource.core.handler;
 
 import org.apache.log4j.Logger;
 
-import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessageFilter;
+import de.fhg.fokus.restac.httpx.core.common.HTTPXAttributeActionMessageFilter;
 import de.fhg.fokus.restac.httpx.core.common.Path;
 
 /**
  * @author mat
  *
  */
-public class HTTPXActionMessageFilterResourceImpl implements HTTPXActionMessageFilter {
+public class HTTPXActionMessageFilterResourceImpl implements HTTPXAttributeActionMessageFilter {
 
 	private final static Logger LOGGER = Logger.getLogger(HTTPXActionMessageFilterResourceImpl.class);
 	
@@ -136,4 +136,16 @@ public class HTTPXActionMessageFilterResourceImpl implements HTTPXActionMessageF
 	public String getProtocol() {
 		return protocol;
 	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getQuery() {
+		return query;
+	}
 }
@@ -41,6 +41,7 @@ import de.fhg.fokus.restac.httpx.util.streams.HTTPXStreamFactory;
 import de.fhg.fokus.restac.resource.core.common.Delete;
 import de.fhg.fokus.restac.resource.core.common.Get;
 import de.fhg.fokus.restac.resource.core.common.Head;
+import de.fhg.fokus.restac.resource.core.common.Negotiable;
 import de.fhg.fokus.restac.resource.core.common.Node;
 import de.fhg.fokus.restac.resource.core.common.Post;
 import de.fhg.fokus.restac.resource.core.common.Put;
@@ -129,11 +130,12 @@ public abstract class ResourceMessageHandler implements HTTPXSynActionMessageHan
 		} else {
 			Resource resource = node.getResource(request.getQuery());
 			if (resource != null){
+				String accept = request.getHeaderIgnoreCase(HTTPXConstants.ACCEPT);
 				try{
 					if (request.getMethod().equals(HTTPXConstants.GET) && resource instanceof Get){
 
 						try {
-							response = ((Get)resource).get();
+							response = resource instanceof Negotiable ? ((Negotiable)resource).get(accept) : ((Get)resource).get();
 							
 							if (response == null)
 								responseStatus = HTTPStatus.NO_CONTENT;
@@ -161,7 +163,7 @@ public abstract class ResourceMessageHandler implements HTTPXSynActionMessageHan
 
 								requestStream = HTTPXStreamFactory.getHTTPXInputStream(request);
 		
-							response = ((Post)resource).post(requestStream);
+							response = resource instanceof Negotiable ? ((Negotiable)resource).post(requestStream, accept) : ((Post)resource).post(requestStream);
 
 							if (response == null)
 								responseStatus = HTTPStatus.NO_CONTENT; // A 204 response MUST not have body. 
@@ -33,6 +33,7 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import de.fhg.fokus.restac.httpx.core.common.HTTPStatus;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXActionMessage;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.HTTPXStatusMessage;
@@ -40,11 +41,18 @@ import de.fhg.fokus.restac.httpx.core.common.ParameterList;
 import de.fhg.fokus.restac.httpx.core.common.Path;
 import de.fhg.fokus.restac.httpx.core.communication.exceptions.HTTPXProtocolViolationException;
 import de.fhg.fokus.restac.httpx.core.dispatcher.HTTPXActionMessageDispatcher;
-import de.fhg.fokus.restac.httpx.util.serialization.converter.UrlEncodedContentReader;
-import de.fhg.fokus.restac.httpx.util.serialization.converter.UrlEncodedContentWriter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.BinaryConverter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentConverterRegistry;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonContentReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonContentWriter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonWriter;
 import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXChunkedOutputStream;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXPlainOutputStream;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXStreamFactory;
 import de.fhg.fokus.restac.resource.wrapping.common.WrapperConstants;
 import de.fhg.fokus.restac.resource.wrapping.common.exceptions.InvocationException;
@@ -67,6 +75,19 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 		
 		private URL resourceURL;
 		
+		/** The system property which disables binary content if set to false. */
+		public final static String BINARY_PROPERTY = "restac.wrapping.binary";
+		
+		/** Whether binary content may be used at all. */
+		private final static boolean BINARY_ENABLED = !"false".equalsIgnoreCase(System.getProperty(BINARY_PROPERTY));
+		
+		/** The media types accepted for results, binary content is preferred if enabled, then JSON. */
+		private final static String ACCEPT = (BINARY_ENABLED ? HTTPXConstants.TYPE_APP_OCTET + ", " : "") + 
+				HTTPXConstants.TYPE_APP_JSON + ";q=0.9, " + HTTPXConstants.TYPE_APP_URLENCODED + ";q=0.5";
+		
+		/** The content type of arguments, follows the content type the resource answered with. */
+		private volatile String requestContentType = HTTPXConstants.TYPE_APP_URLENCODED;
+		
 	/**
 	 * Constructs a new <code>InvocationHandler</code> which maps
 	 * method invocation on a local proxy to a REST based communication pattern
@@ -104,20 +125,20 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 	 	 */		 
 		private Object invoke(String method, Object[] arguments, Class<?> resultType) throws InvocationException {
 	  		//ResourceProxy resource = null;
-	  		Map<String, String> allParams = new HashMap<String, String>();
-	  		Map<String, String> param;
 			SerializerFunction serializer=SerializerFunction.getInstance();
-			char prefix = WrapperConstants.PARAMETER_NAME_DEFAULT_PREFIX.charAt(0);//97; //'a'
 			if (arguments == null) arguments = new Object[0];
+			// binary content carries primitives and primitive arrays as they are, 
+			// they are only serialized to name-value pairs for url encoded content
+			Object[] values = new Object[arguments.length];
 			for (int i = 0; i < arguments.length; ++i) {
-				param = getPrefixedMap(serializer.serialize(arguments[i].getClass(), arguments[i]), prefix);
-				allParams.putAll(param);
-				prefix++;
+				values[i] = BinaryConverter.isEncodable(arguments[i].getClass()) ? 
+						arguments[i] : serializer.serialize(arguments[i].getClass(), arguments[i]);
 			}
 
-			Map<String, String> responseContent = new HashMap<String, String>();
+			Object result = null;
 			ParameterList paramQuery = new ParameterList();
 				// hssliches "casten" ...
+				Map<String, String> allParams = getAllParams(values);
 				for(Iterator<String> iter = allParams.keySet().iterator(); iter.hasNext();) {
 					String name = iter.next();
 					String value = allParams.get("name");
@@ -133,8 +154,10 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 
 						path.addToken(method.substring(3, method.length()));
 						
+						Map<String, String> headers = new HashMap<String, String>();
+						headers.put(HTTPXConstants.ACCEPT, ACCEPT);
 						HTTPXActionMessage request = new HTTPXActionMessage("GET", this.resourceURL.getProtocol(), 
-							this.resourceURL.getHost(), new Integer(this.resourceURL.getPort()), path, paramQuery, null, null);
+							this.resourceURL.getHost(), new Integer(this.resourceURL.getPort()), path, paramQuery, headers, null);
 			
 						
 						HTTPXStatusMessage response;
@@ -147,22 +170,7 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 						}
 						
 						if(response.getInputStream() != null) {
-							HTTPXInputStream responseInstream =  HTTPXStreamFactory.getHTTPXInputStream(response);
-							
-							
-							if (responseInstream.getContentType() != null && responseInstream.getContentType().equals(HTTPXConstants.TYPE_APP_URLENCODED)) {
-								// read and parse content of stream:
-								
-								UrlEncodedContentReader rd = new UrlEncodedContentReader(responseInstream);
-								responseContent = (Map<String, String>)rd.readBuffered();
-
-							}
-		 	                else {
-		 	                   	LOGGER.error("Client response content type either not set or cannot be processed: " + responseInstream.getContentType());
-		 	                   	throw new InvocationException("response content cannot be processed - only url encoded content is possible");
-		 	                }
-
-	 	                
+							result = readResult(HTTPXStreamFactory.getHTTPXInputStream(response), resultType);
 						}
 							else
 								throw new InvocationException("response content was empty");
@@ -171,21 +179,7 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 					else if(method.startsWith(WrapperConstants.PREFIX_SET) && (resultType.equals(Void.class) || resultType.equals(Void.TYPE))) { // invocation of a setter
 						path.addToken(method.substring(3, method.length()));
 						
-						HTTPXChunkedOutputStream out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.DEFAULT_CHARSET);
-						
-						UrlEncodedContentWriter wr = new UrlEncodedContentWriter(out);
-						
-						wr.writeBuffered(allParams);
-						
-						HTTPXActionMessage request = out.constructHTTPXActionMessage("PUT", this.resourceURL.getProtocol(), 
-							this.resourceURL.getHost(), new Integer(this.resourceURL.getPort()).intValue(), path, null, new HashMap<String, String>());
-			
-						try {
-							HTTPXStatusMessage response = outboundDispatcher.deliverSynchronous(request);
-						} catch (IOException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
+						deliverArguments("PUT", path, arguments, values);
 						return null; //put doesn't return anything
 						//if (response.getStatusCode().equals((new Integer(HTTPStatus.OK.getCode())).toString())){
 							
@@ -195,41 +189,10 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 					else { //invocation of a normal method 
 						path.addToken(method);
 						
-						HTTPXActionMessage request;
+						HTTPXStatusMessage response = deliverArguments("POST", path, arguments, values);
 						
-						HTTPXChunkedOutputStream out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.DEFAULT_CHARSET);
-						
-							UrlEncodedContentWriter wr = new UrlEncodedContentWriter(out);
-							wr.writeBuffered(allParams);
-							
-							request = out.constructHTTPXActionMessage("POST", this.resourceURL.getProtocol(), 
-									this.resourceURL.getHost(), new Integer(this.resourceURL.getPort()).intValue(), path, null, new HashMap<String, String>());
-						
-
-						
-						HTTPXStatusMessage response;
-						try {
-							response = outboundDispatcher.deliverSynchronous(request);
-						} catch (IOException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-							response=null;
-						}
-						
-						if(response.getInputStream() != null) {
-							HTTPXInputStream responseInstream = HTTPXStreamFactory.getHTTPXInputStream(response);
-							
-							
-							if (responseInstream.getContentType().equals(HTTPXConstants.TYPE_APP_URLENCODED)) {
-								UrlEncodedContentReader rd = new UrlEncodedContentReader(responseInstream);
-								responseContent = (Map<String, String>)rd.readBuffered();
-							}
-		 	                else {
-		 	                   	LOGGER.error("Client response content " + responseInstream.getContentType() + " cannot be processed");
-		 	                   	throw new InvocationException("response content cannot be processed - only url encoded content is possible");
-		 	                }
-
-	 	                
+						if(response != null && response.getInputStream() != null) {
+							result = readResult(HTTPXStreamFactory.getHTTPXInputStream(response), resultType);
 						}
 							else
 								throw new InvocationException("Response content was empty");
@@ -282,10 +245,141 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
 //			}
 
 		
-              	return ParserFunction.getInstance().parse(resultType, responseContent);
+              	return result;
 
 			}
-				
+		
+		/**
+		 * Sends the arguments of a method call as content of a request. The content is binary or 
+		 * JSON once the remote resource answered with binary or JSON content, if it rejects the 
+		 * content the request is repeated with url encoded content.
+		 * 
+		 * @param method		the request method
+		 * @param path			the path of the request
+		 * @param arguments		the arguments of the method call
+		 * @param values		the arguments, either binary values or name-value maps
+		 * @return				the response or null if delivering failed
+		 */
+		private HTTPXStatusMessage deliverArguments(String method, Path path, Object[] arguments, Object[] values) throws ContentConvertingException, HTTPXProtocolViolationException {
+			String type = requestContentType;
+			HTTPXOutputStream out;
+			if (type.equals(HTTPXConstants.TYPE_APP_JSON)) {
+				out = writeJsonArguments(arguments);
+			} else if (type.equals(HTTPXConstants.TYPE_APP_OCTET)) {
+				out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_OCTET, HTTPXConstants.UTF_8);
+				ContentConverterRegistry.getInstance().getWriter(out).writeBuffered(values);
+			} else {
+				out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.DEFAULT_CHARSET);
+				ContentConverterRegistry.getInstance().getWriter(out).writeBuffered(getAllParams(values));
+			}
+			
+			Map<String, String> headers = new HashMap<String, String>();
+			headers.put(HTTPXConstants.ACCEPT, ACCEPT);
+			HTTPXActionMessage request = out.constructHTTPXActionMessage(method, this.resourceURL.getProtocol(), 
+					this.resourceURL.getHost(), new Integer(this.resourceURL.getPort()).intValue(), path, null, headers);
+			
+			HTTPXStatusMessage response;
+			try {
+				response = outboundDispatcher.deliverSynchronous(request);
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+				return null;
+			}
+			
+			if (!type.equals(HTTPXConstants.TYPE_APP_URLENCODED) && response != null && response.getStatusCode() == HTTPStatus.UNSUPPORTED_TYPE.getCode()) {
+				LOGGER.debug("Resource " + resourceURL + " does not accept " + type + ", falling back to url encoded content.");
+				requestContentType = HTTPXConstants.TYPE_APP_URLENCODED;
+				return deliverArguments(method, path, arguments, values);
+			}
+			return response;
+		}
+		
+		/**
+		 * Writes the arguments of a method call as JSON array. The content is collected in a 
+		 * plain stream, since the request is not sent before the arguments are written completely.
+		 * 
+		 * @param arguments		the arguments of the method call
+		 * @return				the content of the request
+		 * @throws ContentConvertingException	if an argument cannot be serialized
+		 */
+		private HTTPXOutputStream writeJsonArguments(Object[] arguments) throws ContentConvertingException {
+			HTTPXPlainOutputStream out = new HTTPXPlainOutputStream(HTTPXConstants.TYPE_APP_JSON, HTTPXConstants.UTF_8);
+			JsonContentWriter writer = (JsonContentWriter)ContentConverterRegistry.getInstance().getWriter(out);
+			try {
+				JsonWriter json = writer.getJsonWriter();
+				json.beginArray();
+				for (int i = 0; i < arguments.length; i++) {
+					SerializerFunction.getInstance().serialize(arguments[i].getClass(), arguments[i], json);
+				}
+				json.endArray();
+			} catch (IOException e) {
+				throw new ContentConvertingException("Arguments could not be written: " + e.getMessage());
+			}
+			writer.close();
+			return out;
+		}
+		
+		/**
+		 * Reads the result of a method call from the content of a response.
+		 * 
+		 * @param in			the content of the response
+		 * @param resultType	the result type of the method
+		 * @return				the result of the method call
+		 */
+		private Object readResult(HTTPXInputStream in, Class<?> resultType) throws ContentConvertingException, InvocationException {
+			ContentReader rd = ContentConverterRegistry.getInstance().getReader(in);
+			if (rd instanceof JsonContentReader) {
+				// the remote resource speaks JSON, so requests may use it as well
+				requestContentType = HTTPXConstants.TYPE_APP_JSON;
+				try {
+					JsonReader json = ((JsonContentReader)rd).getJsonReader();
+					return json != null ? ParserFunction.getInstance().parse(resultType, json) : 
+							ParserFunction.getInstance().parse(resultType, new HashMap<String, String>());
+				} catch (IOException e) {
+					throw new ContentConvertingException("Content could not be processed: " + e);
+				} finally {
+					((JsonContentReader)rd).close();
+				}
+			}
+			
+			Object content = rd != null ? rd.readBuffered() : null;
+			if (content instanceof Object[]) {
+				// the remote resource speaks binary, so requests may use it as well
+				if (BINARY_ENABLED) requestContentType = HTTPXConstants.TYPE_APP_OCTET;
+				Object[] values = (Object[])content;
+				if (values.length != 1)
+					throw new InvocationException("response content cannot be processed - exactly one value expected");
+				return ParserFunction.getInstance().convert(resultType, values[0]);
+			}
+			else if (content instanceof Map || (rd != null && content == null)) {
+				return ParserFunction.getInstance().parse(resultType, content != null ? (Map<String, String>)content : new HashMap<String, String>());
+			}
+			else {
+				LOGGER.error("Client response content type either not set or cannot be processed: " + in.getContentType());
+				throw new InvocationException("response content cannot be processed - only url encoded, JSON or binary content is possible");
+			}
+		}
+		
+		/**
+		 * Serializes the arguments into one name-value map, the names of each argument 
+		 * get their own prefix.
+		 * 
+		 * @param values	the arguments, either binary values or name-value maps
+		 * @return			the name-value map with prefixes
+		 */
+		private Map<String, String> getAllParams(Object[] values){
+			Map<String, String> allParams = new HashMap<String, String>();
+			char prefix = WrapperConstants.PARAMETER_NAME_DEFAULT_PREFIX.charAt(0);//97; //'a'
+			for (int i = 0; i < values.length; ++i) {
+				Map<String, String> serialized = values[i] instanceof Map ? 
+						(Map<String, String>)values[i] : SerializerFunction.getInstance().serialize(values[i].getClass(), values[i]);
+				allParams.putAll(getPrefixedMap(serialized, prefix));
+				prefix++;
+			}
+			return allParams;
+		}
+		
 		/**
 		 * Sets the prefixes on a name-value map for serialization.
 		 * 
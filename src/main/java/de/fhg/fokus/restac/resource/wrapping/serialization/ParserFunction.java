@@ -26,6 +26,7 @@
  */
 package de.fhg.fokus.restac.resource.wrapping.serialization;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -41,6 +42,7 @@ import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import de.fhg.fokus.restac.httpx.core.common.Path;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonReader;
 
 /**
  * Simple function that retrieves a java object for a list of name-value pairs, if an adqquate
@@ -58,6 +60,20 @@ public class ParserFunction {
 	/** The map of registered parsers. */
 	private Map<Class<?>, Parser> parsers; 
 	
+	/** The wrapper classes of the primitive types. */
+	private final static Map<Class<?>, Class<?>> WRAPPERS = new HashMap<Class<?>, Class<?>>();
+	
+	static {
+		WRAPPERS.put(Boolean.TYPE, Boolean.class);
+		WRAPPERS.put(Byte.TYPE, Byte.class);
+		WRAPPERS.put(Character.TYPE, Character.class);
+		WRAPPERS.put(Short.TYPE, Short.class);
+		WRAPPERS.put(Integer.TYPE, Integer.class);
+		WRAPPERS.put(Long.TYPE, Long.class);
+		WRAPPERS.put(Float.TYPE, Float.class);
+		WRAPPERS.put(Double.TYPE, Double.class);
+	}
+	
 	/**
 	 * Constructs a new empty <code>ParserFunction</code>.
 	 */
@@ -130,7 +146,185 @@ public class ParserFunction {
 		return null;
 	} 
 	
+	/**
+	 * Assembles an object from a decoded value of binary or JSON content. Values of the expected 
+	 * type (for a primitive type its wrapper) are taken as they are, numbers are converted if 
+	 * they fit into the expected type, arrays element by element, and name-value maps are parsed. 
+	 * Any other value is parsed from its textual form, but it is never taken as a <code>String</code>.
+	 * 
+	 * @param expectedType	type that indicates a pattern for assembling
+	 * @param value			the decoded value
+	 * @return 				the object or null if converting failed
+	 */
+	public Object convert(Class<?> expectedType, Object value){
+		if (value == null) return null;
+		if (value instanceof Map) return parse(expectedType, toNameValueMap((Map<?, ?>)value));
+		
+		Class<?> type = expectedType.isPrimitive() ? WRAPPERS.get(expectedType) : expectedType;
+		if (type != null && type.isInstance(value)) return value;
+		if (value instanceof Number && Number.class.isAssignableFrom(type)) return convertNumber(type, (Number)value);
+		if (value instanceof String && expectedType == char[].class) return ((String)value).toCharArray();
+		if (expectedType == String.class) return null;
+		
+		if (value.getClass().isArray()){
+			if (!expectedType.isArray()) return null;
+			Class<?> componentType = expectedType.getComponentType();
+			Object array = Array.newInstance(componentType, Array.getLength(value));
+			for (int i = 0; i < Array.getLength(value); i++){
+				Object element = Array.get(value, i);
+				Object converted = convert(componentType, element);
+				if (converted == null && (element != null || componentType.isPrimitive())) return null;
+				Array.set(array, i, converted);
+			}
+			return array;
+		}
+		
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("value", value.toString());
+		return parse(expectedType, values);
+	}
+	
+	/**
+	 * Assembles an object of the expected type straight from the next value of a JSON document, 
+	 * without building name-value maps for strings, primitives and arrays. A JSON object is read 
+	 * into the name-value map for the parser of the expected type. The value is consumed even 
+	 * if it does not match the type.
+	 * 
+	 * @param expectedType	type that indicates a pattern for assembling
+	 * @param in			the JSON document positioned before the value
+	 * @return 				the object or null if the value is null or does not match the type
+	 * @throws IOException	if the document could not be read or is malformed
+	 */
+	public Object parse(Class<?> expectedType, JsonReader in) throws IOException {
+		int token = in.peek();
+		Class<?> type = expectedType.isPrimitive() ? WRAPPERS.get(expectedType) : expectedType;
+		
+		if (token == JsonReader.NULL){
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonReader.NUMBER && type != null && Number.class.isAssignableFrom(type))
+			return convertNumber(type, in.nextNumber());
+		if (token == JsonReader.BOOLEAN && type == Boolean.class)
+			return Boolean.valueOf(in.nextBoolean());
+		if (token == JsonReader.STRING && expectedType == String.class)
+			return in.nextString();
+		if (token == JsonReader.STRING && expectedType == char[].class)
+			return in.nextString().toCharArray();
+		
+		if (token == JsonReader.BEGIN_ARRAY){
+			if (!expectedType.isArray()){
+				in.skipValue();
+				return null;
+			}
+			return parseArray(expectedType.getComponentType(), in);
+		}
+		
+		Map<String, String> values = new HashMap<String, String>();
+		if (token == JsonReader.BEGIN_OBJECT){
+			in.beginObject();
+			while (in.hasNext()){
+				String name = in.nextName();
+				int valueToken = in.peek();
+				if (valueToken == JsonReader.NULL){
+					in.nextNull();
+					values.put(name, null);
+				} else if (valueToken == JsonReader.BOOLEAN){
+					values.put(name, String.valueOf(in.nextBoolean()));
+				} else if (valueToken == JsonReader.STRING || valueToken == JsonReader.NUMBER){
+					values.put(name, in.nextString());
+				} else {
+					// name-value maps are flat
+					in.skipValue();
+				}
+			}
+			in.endObject();
+		} else if (token == JsonReader.BOOLEAN){
+			if (expectedType == String.class) return null;
+			values.put("value", String.valueOf(in.nextBoolean()));
+		} else {
+			if (expectedType == String.class) return null;
+			values.put("value", in.nextString());
+		}
+		return parse(expectedType, values);
+	}
+	
+	/**
+	 * Reads the elements of a JSON array into an array of the given component type. 
+	 * <code>int</code>, <code>long</code> and <code>double</code> elements are read directly 
+	 * into the primitive array.
+	 * 
+	 * @return the array or null if an element does not match the component type
+	 */
+	private Object parseArray(Class<?> componentType, JsonReader in) throws IOException {
+		Object array = Array.newInstance(componentType, 16);
+		int length = 0;
+		boolean matches = true;
 		
+		in.beginArray();
+		while (in.hasNext()){
+			if (length == Array.getLength(array)){
+				Object grown = Array.newInstance(componentType, length * 2);
+				System.arraycopy(array, 0, grown, 0, length);
+				array = grown;
+			}
+			if (!matches){
+				in.skipValue();
+			} else if (componentType == Integer.TYPE && in.peek() == JsonReader.NUMBER){
+				long value = in.nextLong();
+				matches = value == (int)value;
+				((int[])array)[length++] = (int)value;
+			} else if (componentType == Long.TYPE && in.peek() == JsonReader.NUMBER){
+				((long[])array)[length++] = in.nextLong();
+			} else if (componentType == Double.TYPE && in.peek() == JsonReader.NUMBER){
+				((double[])array)[length++] = in.nextDouble();
+			} else {
+				Object element = parse(componentType, in);
+				if (element == null && componentType.isPrimitive())
+					matches = false;
+				else
+					Array.set(array, length++, element);
+			}
+		}
+		in.endArray();
+		
+		if (!matches) return null;
+		Object result = Array.newInstance(componentType, length);
+		System.arraycopy(array, 0, result, 0, length);
+		return result;
+	}
+	
+	/**
+	 * Converts a number into the given wrapper type, integral types only accept integral numbers 
+	 * in their range.
+	 * 
+	 * @return the converted number or null if it does not fit
+	 */
+	private static Object convertNumber(Class<?> type, Number number){
+		if (type == Double.class) return new Double(number.doubleValue());
+		if (type == Float.class) return new Float(number.floatValue());
+		if (number instanceof Double || number instanceof Float) return null;
+		
+		long value = number.longValue();
+		if (type == Long.class) return new Long(value);
+		if (type == Integer.class) return value == (int)value ? new Integer((int)value) : null;
+		if (type == Short.class) return value == (short)value ? new Short((short)value) : null;
+		if (type == Byte.class) return value == (byte)value ? new Byte((byte)value) : null;
+		return null;
+	}
+	
+	/**
+	 * Turns the values of a decoded map into strings, as expected by the parsers.
+	 */
+	private static Map<String, String> toNameValueMap(Map<?, ?> map){
+		Map<String, String> values = new HashMap<String, String>();
+		for (Iterator<? extends Map.Entry<?, ?>> iter = map.entrySet().iterator(); iter.hasNext();){
+			Map.Entry<?, ?> entry = iter.next();
+			values.put(String.valueOf(entry.getKey()), entry.getValue() != null ? entry.getValue().toString() : null);
+		}
+		return values;
+	}
+	
 	/**
 	 * Adds a new parser for a certain type to this <code>ParserFunction</code>.
 	 * 
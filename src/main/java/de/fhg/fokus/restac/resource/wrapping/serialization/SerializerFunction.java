@@ -26,6 +26,7 @@
  */
 package de.fhg.fokus.restac.resource.wrapping.serialization;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.net.URL;
 import java.util.Collections;
@@ -38,6 +39,7 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 
 import de.fhg.fokus.restac.httpx.core.common.Path;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonWriter;
 
 
 /**
@@ -121,6 +123,42 @@ public class SerializerFunction {
 		return null;
 	} 
 	
+	/**
+	 * Writes the JSON form of the given object. Strings, primitives, arrays of them and name-value 
+	 * maps are written as they are, without a serialization into name-value pairs; arrays of other objects become 
+	 * JSON arrays of their elements. Any other object is written as JSON object of the name-value 
+	 * pairs of its serializer.
+	 * 
+	 * @param preferredType	type that indicates a pattern for serialization
+	 * @param obj 			an instance to serialize, may be null
+	 * @param out			the writer to write the JSON value to
+	 * @throws IOException	if writing failed or no serializer for the object is known
+	 */
+	public void serialize(Class<?> preferredType, Object obj, JsonWriter out) throws IOException {
+		if (obj == null){
+			out.nullValue();
+			return;
+		}
+		
+		Class<?> cls = obj.getClass();
+		if (obj instanceof String || obj instanceof Number || obj instanceof Boolean || obj instanceof Character ||
+				obj instanceof Map || cls == String[].class || (cls.isArray() && cls.getComponentType().isPrimitive())){
+			out.writeValue(obj);
+		} else if (cls.isArray()){
+			out.beginArray();
+			for (int i = 0; i < Array.getLength(obj); i++){
+				Object element = Array.get(obj, i);
+				serialize(element != null ? element.getClass() : cls.getComponentType(), element, out);
+			}
+			out.endArray();
+		} else {
+			Map<String, String> map = serialize(preferredType, obj);
+			if (map == null)
+				throw new IOException("No serializer found for an object of type '" + cls.getName() + "'.");
+			out.writeValue(map);
+		}
+	}
+	
 	/**
 	 * Adds a new serializer for a certain type of object.
 	 * 
@@ -44,14 +44,20 @@ import org.apache.log4j.Logger;
 
 import de.fhg.fokus.restac.httpx.core.common.HTTPXConstants;
 import de.fhg.fokus.restac.httpx.core.common.ParameterList;
-import de.fhg.fokus.restac.httpx.util.serialization.converter.UrlEncodedContentReader;
-import de.fhg.fokus.restac.httpx.util.serialization.converter.UrlEncodedContentWriter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.BinaryConverter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentConverterRegistry;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.ContentReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonContentReader;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonContentWriter;
+import de.fhg.fokus.restac.httpx.util.serialization.converter.JsonReader;
 import de.fhg.fokus.restac.httpx.util.serialization.exceptions.ContentConvertingException;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXChunkedOutputStream;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXInputStream;
 import de.fhg.fokus.restac.httpx.util.streams.HTTPXOutputStream;
+import de.fhg.fokus.restac.httpx.util.streams.HTTPXPlainOutputStream;
 import de.fhg.fokus.restac.resource.core.common.Get;
 import de.fhg.fokus.restac.resource.core.common.Head;
+import de.fhg.fokus.restac.resource.core.common.Negotiable;
 import de.fhg.fokus.restac.resource.core.common.Node;
 import de.fhg.fokus.restac.resource.core.common.Post;
 import de.fhg.fokus.restac.resource.core.common.Put;
@@ -71,12 +77,15 @@ import de.fhg.fokus.restac.resource.wrapping.serialization.SerializerFunction;
  * applied by a certain request on a resource to method-invocation on a java-object. It asserts that 
  * contents of PUT and POST operations are represented as name-value-pairs. This concept originates from
  * the first implementation of the REST-Layer. For details see the diploma thesis of Witold Drytkiwicz.
+ * Alternatively arguments and results are exchanged as <code>application/octet-stream</code> 
+ * (see <code>BinaryConverter</code>), the content type of results is negotiated with the 
+ * <code>Accept</code> header of the request.
  *     
  * @author David Linner
  * 
  * changed by Anna Kress 01.06.07
  */
-public class InvocationWrapper implements Node, Put, Post, Get, Head {
+public class InvocationWrapper implements Node, Put, Post, Get, Head, Negotiable {
 
 	private final static Logger LOGGER = Logger.getLogger(InvocationWrapper.class); 
 	
@@ -92,6 +101,9 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 	/** The query parameters for a request on this <code>InvocationWrapper</code>. */
 	private Map<String, String> query;
 	
+	/** The content types of arguments and results, url encoded content is the default. */
+	private final static String[] CONTENT_TYPES = {HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.TYPE_APP_JSON, HTTPXConstants.TYPE_APP_OCTET};
+	
 	/**
 	 * Constructs a new invocation wrapper with the specified parent node, object to
 	 * be wrapped and name.
@@ -215,6 +227,8 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 				interfaces.add(Post.class);
 			} 
 		}
+		if (interfaces.size() > 0)
+			interfaces.add(Negotiable.class);
 		
 		return interfaces.size() > 0 ? interfaces.toArray(new Class[interfaces.size()]) : null;
 	}
@@ -229,14 +243,27 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 	 * @throws CallFailedException 	if no matching method can be found
 	 */	
 	private Object call(String methodName, Map<String, String> params, boolean isCheckOnly) throws CallFailedException, NoMatchFoundException  {
+		// get a list of name-value maps, wherein each map represents a certain instance 
+		return call(methodName, splitByNamePrefix(params), isCheckOnly);
+	}
+	
+	/**
+	 * Lazy search that tries to find a mapping of a list of arguments to a list of classes. An 
+	 * argument is either a name-value map representing an instance or a value of binary content. 
+	 * If the search is successful the method will be invoked. 
+	 * 
+	 * @param separated 			the arguments, received during a request
+	 * @param isCheckOnly 			defines whether a found method should be executed or not 
+	 * @return 						the return value of the invokated method
+	 * @throws CallFailedException 	if no matching method can be found
+	 */	
+	private Object call(String methodName, Object[] separated, boolean isCheckOnly) throws CallFailedException, NoMatchFoundException  {
 		
 		ParserFunction reader = ParserFunction.getInstance();
 		Vector<Object> parsedParams; 
 		
 		// get possible type combinations
 		Class<?>[][] options = getTypeSet(methodName, object.getClass()); 
-		// get a list of name-value maps, wherein each map represents a certain instance 
-		Map<String, String> [] separated = splitByNamePrefix(params);
 
 		// Search all possible type combinations for a match with the given sets of name-value-pairs
 		// if a candidate list of instances is found, take the method the combination is reffering to and
@@ -250,7 +277,7 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 				
 				// check if parseble
 				for (int j = 0; j < options[i].length; j++){
-					Object candidate = reader.parse(options[i][j], separated[j]);
+					Object candidate = reader.convert(options[i][j], separated[j]);
 					if (candidate != null){
 						parsedParams.add(candidate);
 					} else {
@@ -371,19 +398,25 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 	 * @throws BadContentException 
 	 */
 	public HTTPXOutputStream get() throws ResourceException{
+		return get(null);
+	}
+	
+	/**
+	 * Implements a <code>GET</code> request like {@link #get()}, the result is written in a 
+	 * content type accepted by the requester.
+	 * 
+	 * @param accept				the value of the <code>Accept</code> header, may be null
+	 * @return						the content of the body of the response
+	 * @throws ResourceException	if an error occured while processing the request
+	 * 								on this resource
+	 */
+	public HTTPXOutputStream get(String accept) throws ResourceException{
 		try {
 			Object result = call(WrapperConstants.PREFIX_GET + token, query, false);
 			if (result != null){
-				Map<String, String>  map = SerializerFunction.getInstance().serialize(result.getClass(), result);
-				if (map != null){
-					HTTPXChunkedOutputStream out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.DEFAULT_CHARSET);
-					
-					UrlEncodedContentWriter wr = new UrlEncodedContentWriter(out);
-					
-					wr.writeBuffered(getPrefixedMap(map));
-					
+				HTTPXOutputStream out = writeResult(result, accept);
+				if (out != null){
 					return out;
-				
 				} else 
 					throw new BadContentException("Cannot process the result of the request. Please do not request it again.");
 			}			
@@ -435,16 +468,13 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 		//parse inputstream into a content container
 		
 		//TODO: Do anything with query parameters?
-		if (in != null && in.getContentType() != null && in.getContentType().equals(HTTPXConstants.TYPE_APP_URLENCODED)){
+		if (isSupported(in)){
 
 			try {
 				// read and parse content of stream:
-				
-				UrlEncodedContentReader rd = new UrlEncodedContentReader(in);
-				
-				Map<String, String>  map = (Map<String, String>)rd.readBuffered();
+				Object[] arguments = readArguments(in);
 
-				call(WrapperConstants.PREFIX_SET + token, map, false);	
+				call(WrapperConstants.PREFIX_SET + token, arguments, false);	
 			} catch (CallFailedException e) {
 				LOGGER.error("Matching method cannot not be executed.", e);
 				throw new InternalException("Putting new content failed. An adequate method was found, but the invocation caused a problem.");
@@ -475,17 +505,28 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 	 * @throws IOException 
 	 */
 	public HTTPXOutputStream post(HTTPXInputStream in) throws ResourceException{
+		return post(in, null);
+	}
+	
+	/**
+	 * Implements a <code>POST</code> request like {@link #post(HTTPXInputStream)}, the result is 
+	 * written in a content type accepted by the requester.
+	 * 
+	 * @param in					the content of the body of the request
+	 * @param accept				the value of the <code>Accept</code> header, may be null
+	 * @return						the content of the body of the response
+	 * @throws ResourceException	if an error occured while processing the request
+	 * 								on this resource
+	 */
+	public HTTPXOutputStream post(HTTPXInputStream in, String accept) throws ResourceException{
 		//parse inputstream into a content container
 		
 		//TODO: Do anything with query parameters?
-		if (in != null && in.getContentType() != null &&  in.getContentType().equals(HTTPXConstants.TYPE_APP_URLENCODED)){
-			Map<String, String> map;
+		if (isSupported(in)){
+			Object[] map;
 			try {
 				// read and parse content of stream:
-				
-				UrlEncodedContentReader rd = new UrlEncodedContentReader(in);
-				
-				map = (Map<String, String>)rd.readBuffered();
+				map = readArguments(in);
 			} catch (ContentConvertingException e1) {
 				throw new InternalException("Converting failed.");
 			}
@@ -514,21 +555,14 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 			}
 			
 			if (result != null){
-				Map<String, String> output = SerializerFunction.getInstance().serialize(result.getClass(), result);
-				if (output != null){
-					try {
-						HTTPXChunkedOutputStream out = new HTTPXChunkedOutputStream(HTTPXConstants.TYPE_APP_URLENCODED, HTTPXConstants.DEFAULT_CHARSET);
-						
-						UrlEncodedContentWriter wr = new UrlEncodedContentWriter(out);
-						
-						wr.writeBuffered(getPrefixedMap(output));
-						
-						return out;
-						
-					
-					} catch (ContentConvertingException e) {
-						throw new InternalException(e.getMessage());
-					}
+				HTTPXOutputStream out;
+				try {
+					out = writeResult(result, accept);
+				} catch (ContentConvertingException e) {
+					throw new InternalException(e.getMessage());
+				}
+				if (out != null){
+					return out;
 				} else {
 					LOGGER.error("No writer found for an object of type '" + result.getClass().getName() + "', result cannot be serialized.");
 				}
@@ -539,6 +573,95 @@ public class InvocationWrapper implements Node, Put, Post, Get, Head {
 		return null;
 	}
 	
+	/**
+	 * Checks whether the content of a request can be mapped on method arguments.
+	 * 
+	 * @param in	the content of the request
+	 * @return		true if the content type is one of <code>CONTENT_TYPES</code>
+	 */
+	private boolean isSupported(HTTPXInputStream in){
+		if (in == null || in.getContentType() == null) return false;
+		for (int i = 0; i < CONTENT_TYPES.length; i++){
+			if (CONTENT_TYPES[i].equalsIgnoreCase(in.getContentType().trim())) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Reads the arguments of a method call from the content of a request. Binary content and a 
+	 * JSON array already are a list of values, a name-value map is split into a map per argument.
+	 * 
+	 * @param in	the content of the request
+	 * @return		the arguments
+	 * @throws ContentConvertingException	if the content cannot be parsed
+	 */
+	private Object[] readArguments(HTTPXInputStream in) throws ContentConvertingException {
+		ContentReader reader = ContentConverterRegistry.getInstance().getReader(in);
+		if (reader instanceof JsonContentReader){
+			try {
+				JsonReader json = ((JsonContentReader)reader).getJsonReader();
+				return json != null ? json.readValues() : new Object[0];
+			} catch (IOException e) {
+				throw new ContentConvertingException("Content could not be processed: " + e);
+			} finally {
+				((JsonContentReader)reader).close();
+			}
+		}
+		
+		Object content = reader.readBuffered();
+		if (content instanceof Object[]) return (Object[])content;
+		return splitByNamePrefix((Map<String, String>)content);
+	}
+	
+	/**
+	 * Writes the result of a method call in the content type negotiated with the requester. 
+	 * 
+	 * @param result	the result of the method call
+	 * @param accept	the value of the <code>Accept</code> header of the request, may be null
+	 * @return			the content of the response or null if the result cannot be serialized 
+	 * @throws ContentConvertingException	if writing the content failed
+	 */
+	private HTTPXOutputStream writeResult(Object result, String accept) throws ContentConvertingException {
+		ContentConverterRegistry registry = ContentConverterRegistry.getInstance();
+		String type = registry.negotiate(accept, InvocationWrapper.class, CONTENT_TYPES);
+		if (type == null){
+			LOGGER.debug("None of the offered content types is acceptable for '" + accept + "', using " + CONTENT_TYPES[0] + ".");
+			type = CONTENT_TYPES[0];
+		}
+		if (type.equals(HTTPXConstants.TYPE_APP_JSON)) return writeJsonResult(result);
+		boolean binary = type.equals(HTTPXConstants.TYPE_APP_OCTET);
+		
+		Object value = result;
+		if (!binary || !BinaryConverter.isEncodable(result.getClass())){
+			value = SerializerFunction.getInstance().serialize(result.getClass(), result);
+			if (value == null) return null;
+		}
+		
+		HTTPXChunkedOutputStream out = new HTTPXChunkedOutputStream(type, binary ? HTTPXConstants.UTF_8 : HTTPXConstants.DEFAULT_CHARSET);
+		registry.getWriter(out).writeBuffered(binary ? new Object[] {value} : getPrefixedMap((Map<String, String>)value));
+		return out;
+	}
+	
+	/**
+	 * Writes the result of a method call as JSON document. The content is collected in a plain 
+	 * stream, since the response is not sent before the result is written completely.
+	 * 
+	 * @param result	the result of the method call
+	 * @return			the content of the response
+	 * @throws ContentConvertingException	if the result cannot be serialized
+	 */
+	private HTTPXOutputStream writeJsonResult(Object result) throws ContentConvertingException {
+		HTTPXPlainOutputStream out = new HTTPXPlainOutputStream(HTTPXConstants.TYPE_APP_JSON, HTTPXConstants.UTF_8);
+		JsonContentWriter writer = (JsonContentWriter)ContentConverterRegistry.getInstance().getWriter(out);
+		try {
+			SerializerFunction.getInstance().serialize(result.getClass(), result, writer.getJsonWriter());
+		} catch (IOException e) {
+			throw new ContentConvertingException("Result could not be written: " + e.getMessage());
+		}
+		writer.close();
+		return out;
+	}
+	
 	/**
 	 * Adds prefixes to the names of a name-value map.
 	 * 